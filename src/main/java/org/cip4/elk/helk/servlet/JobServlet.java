@@ -5,6 +5,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -17,8 +18,11 @@ import org.apache.commons.io.CopyUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.cip4.elk.impl.queue.MemoryQueue;
 import org.cip4.elk.impl.util.URLAccessTool;
+import org.cip4.jdflib.core.AttributeName;
 import org.cip4.jdflib.core.JDFConstants;
+import org.cip4.jdflib.datatypes.JDFAttributeMap;
 import org.cip4.jdflib.jmf.JDFQueueEntry;
 import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
 import org.cip4.jdflib.node.JDFNode;
@@ -142,7 +146,7 @@ public class JobServlet extends QueueServlet implements javax.servlet.Servlet {
      */
     private void showJDF(HttpServletRequest req, HttpServletResponse res)
     throws IOException {
-        String qeID = req.getParameter("id");
+        String qeID = getQueueEntryID(req);
         if (qeID == null || qeID.length() == 0) {
             res.sendError(HttpServletResponse.SC_BAD_REQUEST,
                 "No Job ID was specified.");
@@ -182,7 +186,7 @@ public class JobServlet extends QueueServlet implements javax.servlet.Servlet {
      */
     private void showJob(HttpServletRequest req, HttpServletResponse res)
             throws ServletException, IOException {
-        String qeID = req.getParameter("id");
+        String qeID = getQueueEntryID(req);
         if (qeID == null || qeID.length() == 0) {
             res.sendError(HttpServletResponse.SC_BAD_REQUEST,
                 "No Job ID was specified.");
@@ -234,6 +238,33 @@ public class JobServlet extends QueueServlet implements javax.servlet.Servlet {
         req.getRequestDispatcher("/job/showJob.jsp").forward(req, res);
     }
 
+    /**
+     * Returns the queue entry ID of a request. The queue entry is either
+     * specified by its ID using the <code>id</code> parameter, or by its job
+     * using the <code>jobid</code> and optional <code>jobpartid</code>
+     * parameters. A job is looked up in the queue's indexes.
+     * 
+     * @param req
+     * @return the queue entry ID; <code>null</code> if no queue entry was
+     *         specified or found
+     */
+    private String getQueueEntryID(HttpServletRequest req) {
+        String qeID = req.getParameter("id");
+        String jobID = req.getParameter("jobid");
+        if ((qeID == null || qeID.length() == 0) && jobID != null
+                && jobID.length() != 0 && _queue instanceof MemoryQueue) {
+            JDFAttributeMap attributes = new JDFAttributeMap(
+                    AttributeName.JOBID, jobID);
+            String jobPartID = req.getParameter("jobpartid");
+            if (jobPartID != null && jobPartID.length() != 0) {
+                attributes.put(AttributeName.JOBPARTID, jobPartID);
+            }
+            List ids = ((MemoryQueue) _queue).findQueueEntryIDs(attributes);
+            qeID = ids.isEmpty() ? null : (String) ids.get(0);
+        }
+        return qeID;
+    }
+
     /**
      * Gets the JDF URL of a queue entry.
      * @param queueEntryID  a queue entry
@@ -13,7 +13,7 @@ import org.springframework.beans.factory.BeanFactory;
 
 /**
  * Servlet implementation class for Servlet. Used to display the simulation
- * phases
+ * phases and to switch the active simulation scenario
  * 
  * @author Marco.Kornrumpf@Bertelsmann.de
  * 
@@ -88,6 +88,35 @@ public class SimuServlet extends javax.servlet.http.HttpServlet implements
 	 */
 	protected void doPost(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
-		// TODO Auto-generated method stub
+		String command = request.getParameter("cmd");
+
+		if (command == null || command.length() == 0) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+
+		if (command.equals("switchScenario")) {
+			switchScenario(request, response);
+		} else {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+					"Unkonwn command.");
+		}
+	}
+
+	/**
+	 * Switches the active simulation scenario to the scenario given by the
+	 * request parameter <code>scenario</code>. Jobs that are already being
+	 * executed finish with the scenario they were started with.
+	 */
+	private void switchScenario(HttpServletRequest req,
+			HttpServletResponse res) throws IOException {
+		String scenario = req.getParameter("scenario");
+		try {
+			_simu.setActiveScenario(scenario);
+		} catch (IllegalArgumentException e) {
+			res.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+		res.sendRedirect(req.getContextPath() + "/simu?cmd=showConfSimu");
 	}
 }
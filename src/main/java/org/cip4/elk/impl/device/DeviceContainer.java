@@ -0,0 +1,255 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.cip4.elk.Config;
+import org.cip4.elk.impl.util.URLAccessTool;
+import org.cip4.elk.jmf.IncomingJMFDispatcher;
+import org.cip4.elk.lifecycle.Lifecycle;
+import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.resource.JDFDevice;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+
+/**
+ * Hosts several devices in one JVM. Each device has its own
+ * {@link DeviceStack}: configuration, queue, process, subscription manager and
+ * incoming JMF dispatcher. The beans of a device stack are defined in a stack
+ * configuration file, see {@link #setStackConfigLocation(String)}, that is
+ * loaded once per device into a child context of this container's context.
+ * Beans that all devices share, for example an outgoing JMF dispatcher and its
+ * HTTP client, the executor that sends signals and the file repository, are
+ * defined once in the container's context and referenced from the stack
+ * configuration.
+ * <p>
+ * The devices are configured either with a map of device IDs to
+ * <em>Device</em> element URLs, see {@link #setDevices(Map)}, or with one
+ * <em>Device</em> element URL and a number of devices, see
+ * {@link #setDeviceConfigURL(String)} and {@link #setDeviceCount(int)}. In the
+ * latter case the device IDs are the ID prefix followed by the device's
+ * number.
+ * </p>
+ * <p>
+ * Incoming JMF messages are routed to a device using
+ * {@link #getIncomingDispatcher(String)}, see
+ * {@link org.cip4.elk.impl.jmf.servlet.DeviceRoutingJMFServlet}.
+ * </p>
+ *
+ * @see DeviceStack
+ */
+public class DeviceContainer implements Lifecycle, ApplicationContextAware {
+
+    private static Logger log = Logger.getLogger(DeviceContainer.class);
+
+    public static final String DEFAULT_STACK_CONFIG_LOCATION = "elk-device-stack.xml";
+
+    private ApplicationContext _context;
+    private URLAccessTool _fileUtil;
+    private Config _config;
+    private String _stackConfigLocation = DEFAULT_STACK_CONFIG_LOCATION;
+    private Map _devices = Collections.EMPTY_MAP;
+    private String _deviceConfigUrl;
+    private int _deviceCount = 0;
+    private String _deviceIdPrefix = "Elk";
+    private String _jmfBaseUrl;
+    /** Maps device IDs to device stacks, replaced as a whole on init/destroy */
+    private Map _deviceStacks = Collections.EMPTY_MAP;
+
+    public DeviceContainer() {
+    }
+
+    public void setApplicationContext(ApplicationContext context) {
+        _context = context;
+    }
+
+    /**
+     * Sets the <code>URLAccessTool</code> used to load the devices'
+     * <em>Device</em> elements.
+     */
+    public void setFileUtil(URLAccessTool fileUtil) {
+        _fileUtil = fileUtil;
+    }
+
+    /**
+     * Sets the configuration that the devices' directories and proxy settings
+     * are copied from.
+     */
+    public void setConfig(Config config) {
+        _config = config;
+    }
+
+    /**
+     * Sets the class path location of the stack configuration. Default is
+     * {@link #DEFAULT_STACK_CONFIG_LOCATION}.
+     */
+    public void setStackConfigLocation(String stackConfigLocation) {
+        _stackConfigLocation = stackConfigLocation;
+    }
+
+    /**
+     * Sets the devices to host.
+     *
+     * @param devices a map with device IDs as keys and URLs to the devices'
+     *            <em>Device</em> elements as values
+     */
+    public void setDevices(Map devices) {
+        _devices = devices;
+    }
+
+    /**
+     * Sets the URL to the <em>Device</em> element used by devices configured
+     * with {@link #setDeviceCount(int)}.
+     */
+    public void setDeviceConfigURL(String deviceConfigUrl) {
+        _deviceConfigUrl = deviceConfigUrl;
+    }
+
+    /**
+     * Sets the number of devices to create from the <em>Device</em> element
+     * set with {@link #setDeviceConfigURL(String)}.
+     */
+    public void setDeviceCount(int deviceCount) {
+        _deviceCount = deviceCount;
+    }
+
+    /**
+     * Sets the prefix of the IDs of devices configured with
+     * {@link #setDeviceCount(int)}. Default is <code>Elk</code>.
+     */
+    public void setDeviceIDPrefix(String deviceIdPrefix) {
+        _deviceIdPrefix = deviceIdPrefix;
+    }
+
+    /**
+     * Sets the base URL of the devices' JMF URLs. If set, each device's
+     * <em>Device/@JMFURL</em> is the base URL followed by <code>/</code> and
+     * the device's ID.
+     */
+    public void setJMFBaseURL(String jmfBaseUrl) {
+        _jmfBaseUrl = jmfBaseUrl;
+    }
+
+    /**
+     * Creates the device stacks. If a stack cannot be created the stacks that
+     * were already created are destroyed.
+     *
+     * @throws RuntimeException if a device stack could not be created
+     */
+    public void init() {
+        log.debug("Creating device stacks...");
+        Map stacks = new LinkedHashMap();
+        try {
+            for (Iterator it = _devices.entrySet().iterator(); it.hasNext();) {
+                Map.Entry entry = (Map.Entry) it.next();
+                String id = (String) entry.getKey();
+                stacks.put(id, createDeviceStack(id, (String) entry.getValue()));
+            }
+            for (int i = 1; i <= _deviceCount; i++) {
+                String id = _deviceIdPrefix + i;
+                stacks.put(id, createDeviceStack(id, _deviceConfigUrl));
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not create the device stacks, destroying the "
+                    + stacks.size() + " stacks already created: " + e);
+            destroyDeviceStacks(stacks);
+            throw e;
+        }
+        synchronized (this) {
+            _deviceStacks = Collections.unmodifiableMap(stacks);
+        }
+        log.info("Created " + stacks.size() + " device stacks.");
+    }
+
+    /**
+     * Creates the stack of a device.
+     *
+     * @param id the device's ID
+     * @param deviceConfigUrl the URL to the device's <em>Device</em> element
+     * @return the device stack
+     */
+    protected DeviceStack createDeviceStack(String id, String deviceConfigUrl) {
+        JDFDevice device = loadDevice(deviceConfigUrl);
+        device.setDeviceID(id);
+        device.setJMFSenderID(id);
+        if (_jmfBaseUrl != null) {
+            device.setJMFURL(_jmfBaseUrl + "/" + id);
+        }
+        return new DeviceStack(device, _config, _stackConfigLocation, _context);
+    }
+
+    /**
+     * Loads a new copy of a <em>Device</em> element.
+     */
+    private JDFDevice loadDevice(String deviceConfigUrl) {
+        InputStream inStream = null;
+        try {
+            inStream = _fileUtil.getURLAsInputStream(deviceConfigUrl);
+            return (JDFDevice) new JDFParser().parseStream(inStream).getRoot();
+        } finally {
+            IOUtils.closeQuietly(inStream);
+        }
+    }
+
+    /**
+     * Destroys the device stacks.
+     */
+    public void destroy() {
+        Map stacks;
+        synchronized (this) {
+            stacks = _deviceStacks;
+            _deviceStacks = Collections.EMPTY_MAP;
+        }
+        destroyDeviceStacks(stacks);
+    }
+
+    private void destroyDeviceStacks(Map stacks) {
+        for (Iterator it = stacks.values().iterator(); it.hasNext();) {
+            ((DeviceStack) it.next()).destroy();
+        }
+        log.debug("Destroyed " + stacks.size() + " device stacks.");
+    }
+
+    /**
+     * Returns the stack of a device.
+     *
+     * @param id the device's ID
+     * @return the device's stack; <code>null</code> if there is no device with
+     *         the ID
+     */
+    public synchronized DeviceStack getDeviceStack(String id) {
+        return (DeviceStack) _deviceStacks.get(id);
+    }
+
+    /**
+     * Returns the stacks of all devices, in the order the devices were
+     * configured.
+     *
+     * @return a list of <code>DeviceStack</code>s
+     */
+    public synchronized List getDeviceStacks() {
+        return new ArrayList(_deviceStacks.values());
+    }
+
+    /**
+     * Returns the incoming JMF dispatcher of a device.
+     *
+     * @param id the device's ID
+     * @return the device's dispatcher; <code>null</code> if there is no
+     *         device with the ID
+     */
+    public IncomingJMFDispatcher getIncomingDispatcher(String id) {
+        DeviceStack stack = getDeviceStack(id);
+        return stack == null ? null : stack.getIncomingDispatcher();
+    }
+}
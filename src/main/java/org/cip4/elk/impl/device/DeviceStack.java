@@ -0,0 +1,162 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device;
+
+import org.apache.log4j.Logger;
+import org.cip4.elk.Config;
+import org.cip4.elk.device.DeviceConfig;
+import org.cip4.elk.device.process.Process;
+import org.cip4.elk.device.process.ProcessAmountListener;
+import org.cip4.elk.device.process.ProcessQueueEntryEventListener;
+import org.cip4.elk.device.process.ProcessStatusListener;
+import org.cip4.elk.impl.device.process.AbstractProcess;
+import org.cip4.elk.jmf.IncomingJMFDispatcher;
+import org.cip4.elk.jmf.SubscriptionManager;
+import org.cip4.elk.lifecycle.Lifecycle;
+import org.cip4.elk.queue.Queue;
+import org.cip4.elk.queue.QueueStatusListener;
+import org.cip4.jdflib.resource.JDFDevice;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * The components of one device in a {@link DeviceContainer}: its
+ * configuration, queue, process, subscription manager and incoming JMF
+ * dispatcher. The components are Spring beans defined in a stack
+ * configuration file, see {@link DeviceContainer#setStackConfigLocation(String)},
+ * that is loaded into a child context of the container's context. Beans that
+ * are not defined in the stack configuration, for example a shared outgoing
+ * dispatcher, are looked up in the container's context.
+ * <p>
+ * The device's configuration is registered as the bean
+ * <code>deviceConfig</code> before the stack configuration is loaded, so the
+ * other beans are created with the device's ID. The stack configuration must
+ * define the beans <code>queue</code>, <code>process</code>,
+ * <code>subscriptionManager</code> and <code>incomingDispatcher</code>.
+ * </p>
+ *
+ * @see DeviceContainer
+ */
+public class DeviceStack {
+
+    private static Logger log = Logger.getLogger(DeviceStack.class);
+
+    private GenericApplicationContext _context;
+    private SimpleDeviceConfig _config;
+    private Queue _queue;
+    private Process _process;
+    private SubscriptionManager _subscriptionManager;
+    private IncomingJMFDispatcher _incomingDispatcher;
+
+    /**
+     * Creates the components of a device.
+     *
+     * @param device the device's <em>Device</em> element
+     * @param baseConfig the configuration that the device's directories and
+     *            proxy settings are copied from, may be <code>null</code>
+     * @param stackConfigLocation the class path location of the stack
+     *            configuration
+     * @param parent the container's context
+     * @throws RuntimeException if the components could not be created; the
+     *             components that had been created are destroyed
+     */
+    public DeviceStack(JDFDevice device, Config baseConfig,
+            String stackConfigLocation, ApplicationContext parent) {
+        _config = new SimpleDeviceConfig();
+        _config.setDeviceConfig(device);
+        if (baseConfig != null) {
+            _config.setJDFTempURL(baseConfig.getJDFTempURL());
+            _config.setLocalJDFOutputURL(baseConfig.getLocalJDFOutputURL());
+            _config.setJDFOutputURL(baseConfig.getJDFOutputURL());
+            _config.setProxyHost(baseConfig.getProxyHost());
+            _config.setProxyPort(baseConfig.getProxyPort());
+        }
+        _context = new GenericApplicationContext(parent);
+        _context.getDefaultListableBeanFactory().registerSingleton(
+            "deviceConfig", _config);
+        try {
+            new XmlBeanDefinitionReader(_context)
+                    .loadBeanDefinitions(new ClassPathResource(
+                            stackConfigLocation));
+            _context.refresh();
+            _queue = (Queue) _context.getBean("queue");
+            _process = (Process) _context.getBean("process");
+            _subscriptionManager = (SubscriptionManager) _context
+                    .getBean("subscriptionManager");
+            _incomingDispatcher = (IncomingJMFDispatcher) _context
+                    .getBean("incomingDispatcher");
+            configureEventListeners();
+        } catch (RuntimeException e) {
+            destroy();
+            throw e;
+        }
+        log.debug("Created the device stack of device " + getID() + ".");
+    }
+
+    /**
+     * Hooks up the queue and process listeners, the same way as
+     * {@link org.cip4.elk.impl.servlet.ElkStartupServlet} does for a single
+     * device.
+     */
+    private void configureEventListeners() {
+        _queue.addQueueStatusListener((QueueStatusListener) _subscriptionManager);
+        _process.addProcessStatusListener((ProcessStatusListener) _queue);
+        _process.addProcessStatusListener((ProcessStatusListener) _subscriptionManager);
+        _process.addQueueEntryEventListener((ProcessQueueEntryEventListener) _queue);
+        if (_process instanceof AbstractProcess) {
+            ((AbstractProcess) _process)
+                    .addProcessAmountListener((ProcessAmountListener) _subscriptionManager);
+        }
+    }
+
+    /**
+     * Returns the device's ID.
+     *
+     * @return the device's ID
+     */
+    public String getID() {
+        return _config.getID();
+    }
+
+    public DeviceConfig getConfig() {
+        return _config;
+    }
+
+    public Queue getQueue() {
+        return _queue;
+    }
+
+    public Process getProcess() {
+        return _process;
+    }
+
+    public SubscriptionManager getSubscriptionManager() {
+        return _subscriptionManager;
+    }
+
+    public IncomingJMFDispatcher getIncomingDispatcher() {
+        return _incomingDispatcher;
+    }
+
+    /**
+     * Destroys the device's process, which stops it and shuts down its
+     * prefetcher, post-processor and node executor, destroys its subscription
+     * manager and queue and closes its context.
+     */
+    public void destroy() {
+        if (_process != null) {
+            _process.destroy();
+        }
+        if (_subscriptionManager instanceof Lifecycle) {
+            ((Lifecycle) _subscriptionManager).destroy();
+        }
+        if (_queue instanceof Lifecycle) {
+            ((Lifecycle) _queue).destroy();
+        }
+        _context.close();
+        log.debug("Destroyed the device stack of device " + getID() + ".");
+    }
+}
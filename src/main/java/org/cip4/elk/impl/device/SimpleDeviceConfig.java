@@ -13,6 +13,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.cip4.elk.DefaultConfig;
 import org.cip4.elk.device.DeviceConfig;
+import org.cip4.elk.impl.jmf.util.DeviceDetailsCache;
 import org.cip4.elk.impl.util.URLAccessTool;
 import org.cip4.jdflib.core.ElementName;
 import org.cip4.jdflib.core.JDFParser;
@@ -39,6 +40,9 @@ public class SimpleDeviceConfig extends DefaultConfig implements DeviceConfig {
 
     protected JDFDevice _jdfDevice;
 
+    /** The Device filtered for each DeviceDetails level, guarded by this */
+    private DeviceDetailsCache _deviceDetailsCache;
+
     protected String _deviceConfigUrl;
 
     protected URLAccessTool _urlAccessTool;
@@ -105,11 +109,33 @@ public class SimpleDeviceConfig extends DefaultConfig implements DeviceConfig {
                 // XXX JDFDevice d = loadDeviceConfiguration(_deviceConfigUrl);
                 // XXX _jdfDevice = (JDFDevice) convert2DOMLevel2(d);
                 _jdfDevice = loadDeviceConfiguration(_deviceConfigUrl);
+                _deviceDetailsCache = null;
             }
         }
         return _jdfDevice;
     }
 
+    /**
+     * Returns the <em>Device</em> of this configuration filtered for each
+     * level of <em>DeviceDetails</em>. The <em>Device</em>s are filtered
+     * once whenever the configuration changes; <em>Status</em> and
+     * <em>KnownDevices</em> queries append the cached <em>Device</em> for
+     * the requested level.
+     * 
+     * @return the filtered <em>Device</em>s; <code>null</code> if this
+     *         configuration has no <em>Device</em>
+     * @see #setDeviceConfig(JDFDevice)
+     */
+    public synchronized DeviceDetailsCache getDeviceDetailsCache() {
+        if (_deviceDetailsCache == null) {
+            final JDFDevice device = getDeviceConfig();
+            if (device != null) {
+                _deviceDetailsCache = new DeviceDetailsCache(device);
+            }
+        }
+        return _deviceDetailsCache;
+    }
+
     /**
      * List of supported schemes for retrieving JDF files.
      * 
@@ -144,6 +170,7 @@ public class SimpleDeviceConfig extends DefaultConfig implements DeviceConfig {
     public synchronized void setDeviceConfig(final JDFDevice deviceConfig) {
         _jdfDevice = deviceConfig;
         super.setID(_jdfDevice.getDeviceID());
+        _deviceDetailsCache = new DeviceDetailsCache(_jdfDevice);
     }
 
     /**
@@ -160,7 +187,7 @@ public class SimpleDeviceConfig extends DefaultConfig implements DeviceConfig {
      * @throws NullPointerException
      *             if id == null
      */
-    public void setID(String id) {
+    public synchronized void setID(String id) {
 
         if (id == null)
             throw new NullPointerException("parameter 'id' can not be null");
@@ -168,6 +195,7 @@ public class SimpleDeviceConfig extends DefaultConfig implements DeviceConfig {
         _jdfDevice.setJMFSenderID(id);
         _jdfDevice.setDeviceID(id);
         super.setID(id);
+        _deviceDetailsCache = new DeviceDetailsCache(_jdfDevice);
     }
 
     /**
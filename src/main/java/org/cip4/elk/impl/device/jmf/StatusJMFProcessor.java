@@ -6,8 +6,10 @@ package org.cip4.elk.impl.device.jmf;
 import org.cip4.elk.device.DeviceConfig;
 import org.cip4.elk.device.process.Process;
 //import org.cip4.elk.impl.device.process.BaseProcess;
+import org.cip4.elk.impl.device.SimpleDeviceConfig;
 import org.cip4.elk.impl.jmf.AbstractJMFProcessor;
 import org.cip4.elk.impl.jmf.util.BaseICSDeviceFilter;
+import org.cip4.elk.impl.jmf.util.DeviceDetailsCache;
 import org.cip4.elk.queue.Queue;
 import org.cip4.jdflib.auto.JDFAutoStatusQuParams.EnumDeviceDetails;
 import org.cip4.jdflib.jmf.JDFDeviceInfo;
@@ -102,15 +104,27 @@ public class StatusJMFProcessor extends AbstractJMFProcessor {
         log.debug("Processing Status query: " + sqp);
         // TODO Parse the status queue parameters
 
-        JDFDeviceInfo info = _device.getDeviceInfo(true);
-        response.copyElement(info,null);
-        
         EnumDeviceDetails edd = sqp.getDeviceDetails();
         if (edd == null) {
             // Default
             edd = EnumDeviceDetails.None;
         }
-        filter.applyDetails(info, edd.getName());
+
+        final JDFDeviceInfo deviceInfo = _device.getDeviceInfo(true);
+        final DeviceConfig config = _device.getDeviceConfig();
+        final DeviceDetailsCache devices = (config instanceof SimpleDeviceConfig) ? ((SimpleDeviceConfig) config)
+                .getDeviceDetailsCache()
+                : null;
+        final JDFDeviceInfo info;
+        if (devices != null) {
+            // Appends the Device already filtered for the level of detail
+            info = filter.appendDeviceInfo(response, deviceInfo, devices, edd
+                    .getName());
+        } else {
+            // Filters the response's copy of the DeviceInfo
+            info = (JDFDeviceInfo) response.copyElement(deviceInfo, null);
+            filter.applyDetails(info, edd.getName());
+        }
         log.debug("DeviceInfo: " + info);
         return returnCode;
     }
@@ -43,6 +43,17 @@ public class ApprovalProcess extends BaseProcess {
         super(config, queue, fileUtil, dispatcher, repository);
         setProcessTypes(PROCESS_TYPES);
     }
+
+    /**
+     * Approval nodes keep no state in fields and only set the JDF of the
+     * process state when nodes are executed one after another, so they may be
+     * executed concurrently.
+     * 
+     * @see BaseProcess#setNodeWorkers(int)
+     */
+    protected boolean canExecuteNodesConcurrently() {
+        return true;
+    }
     
     /**
      * Executes the specified JDF process node
@@ -50,26 +61,47 @@ public class ApprovalProcess extends BaseProcess {
      * @param jdf the JDF process node to execute
      */
     protected void executeNode(JDFNode jdf) {
-        JDFDate startTime = new JDFDate(); // XXX why is this XXX?
-        JDFAuditPool auditPool = jdf.getCreateAuditPool();        
-        auditPool.addModified(_config.getID(), null);
-        // JDFModified mod = auditPool.addModified(_config.getID(), null);
-        // XXX Do I need to add something to the mod?
-        _state.setJdf(jdf);
-        // Setup phase
-        jdf.setStatus(EnumNodeStatus.Setup);        
+        final Object jdfLock = getJdfLock(jdf);
+        JDFDate startTime = now(); // XXX why is this XXX?
+        synchronized (jdfLock) {
+            JDFAuditPool auditPool = jdf.getCreateAuditPool();
+            auditPool.addModified(_config.getID(), null);
+            // JDFModified mod = auditPool.addModified(_config.getID(), null);
+            // XXX Do I need to add something to the mod?
+            if (!isExecutingNodesConcurrently()) {
+                _state.setJdf(jdf);
+            }
+            // Setup phase
+            jdf.setStatus(EnumNodeStatus.Setup);
+        }
         int setUpTime = 2;
         log.debug(getProcessId() + " is setting up for " + setUpTime
                 + " seconds");
         sleepAWhile(setUpTime);
         
-        JDFDate endSetUpTime = new JDFDate();
-        jdf.setStatus(EnumNodeStatus.InProgress);
+        JDFDate endSetUpTime = now();
+        synchronized (jdfLock) {
+            jdf.setStatus(EnumNodeStatus.InProgress);
+        }
         int inProgressTime = 8;
         log.debug(getProcessId() + " is InProgress for " + inProgressTime
                 + " seconds");
         sleepAWhile(inProgressTime);
 
+        synchronized (jdfLock) {
+            approve(jdf, startTime, endSetUpTime);
+        }
+    }
+
+    /**
+     * Approves the resources of a process node and completes the node.
+     * 
+     * @param jdf the JDF process node to execute
+     * @param startTime when the node was started
+     * @param endSetUpTime when the node's setup phase ended
+     */
+    private void approve(JDFNode jdf, JDFDate startTime, JDFDate endSetUpTime) {
+        JDFAuditPool auditPool = jdf.getCreateAuditPool();
         // TODO Verify that the process and is correctly specified
         // TODO Verify that all input resources have status "Available" or
         // "Draft" so that the process can start executing
@@ -142,7 +174,7 @@ public class ApprovalProcess extends BaseProcess {
             approvalSuccess.setStatus(JDFResource.EnumResStatus.Unavailable);
         }
 
-        addAudits(jdf,startTime,endSetUpTime,new JDFDate(),null);
+        addAudits(jdf,startTime,endSetUpTime,now(),null);
         // Update the JDF node's state
         jdf.setStatus(EnumNodeStatus.Completed);
     }
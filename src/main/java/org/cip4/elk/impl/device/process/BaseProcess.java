@@ -18,7 +18,11 @@ import org.cip4.elk.device.DeviceConfig;
 import org.cip4.elk.device.process.Process;
 import org.cip4.elk.device.process.ProcessQueueEntryEvent;
 import org.cip4.elk.device.process.ProcessStatusEvent;
+import org.cip4.elk.impl.device.SimpleDeviceConfig;
 import org.cip4.elk.impl.jmf.util.Messages;
+import org.cip4.elk.impl.queue.ConcurrentQueue;
+import org.cip4.elk.impl.util.Clock;
+import org.cip4.elk.impl.util.RealTimeClock;
 import org.cip4.elk.impl.util.Repository;
 import org.cip4.elk.impl.util.URLAccessTool;
 import org.cip4.elk.jmf.IncomingJMFDispatcher;
@@ -27,6 +31,7 @@ import org.cip4.elk.jmf.OutgoingJMFDispatcher;
 import org.cip4.elk.lifecycle.Lifecycle;
 import org.cip4.elk.queue.Queue;
 import org.cip4.elk.util.JDFUtil;
+import org.cip4.jdflib.core.AttributeName;
 import org.cip4.jdflib.core.ElementName;
 import org.cip4.jdflib.core.JDFComment;
 import org.cip4.jdflib.core.JDFElement;
@@ -34,6 +39,7 @@ import org.cip4.jdflib.core.JDFNodeInfo;
 import org.cip4.jdflib.core.JDFParser;
 import org.cip4.jdflib.core.JDFResourceLink;
 import org.cip4.jdflib.core.KElement;
+import org.cip4.jdflib.core.VElement;
 import org.cip4.jdflib.core.VString;
 import org.cip4.jdflib.core.XMLDoc;
 import org.cip4.jdflib.core.JDFElement.EnumNodeStatus;
@@ -45,7 +51,6 @@ import org.cip4.jdflib.jmf.JDFJMF;
 import org.cip4.jdflib.jmf.JDFJobPhase;
 import org.cip4.jdflib.jmf.JDFMessage;
 import org.cip4.jdflib.jmf.JDFQuery;
-import org.cip4.jdflib.jmf.JDFQueue;
 import org.cip4.jdflib.jmf.JDFQueueEntry;
 import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
 import org.cip4.jdflib.jmf.JDFResponse;
@@ -63,8 +68,23 @@ import org.cip4.jdflib.resource.JDFResource;
 import org.cip4.jdflib.resource.process.JDFComponent;
 import org.cip4.jdflib.util.JDFDate;
 
+import EDU.oswego.cs.dl.util.concurrent.CountDown;
+import EDU.oswego.cs.dl.util.concurrent.LinkedQueue;
+import EDU.oswego.cs.dl.util.concurrent.PooledExecutor;
+import EDU.oswego.cs.dl.util.concurrent.QueuedExecutor;
+import EDU.oswego.cs.dl.util.concurrent.ThreadFactory;
+
 /**
  * This class contains base functionality for the Elk's reference processes.
+ * <p>
+ * By default a process is pipelined: while a job runs, the job that is first
+ * in the queue is downloaded, parsed and pre-flighted in the background by a
+ * {@link JobPrefetcher}, and when a job has run it is post-processed and
+ * returned by a separate thread, see {@link #postProcessJob(JDFQueueEntry,
+ * JDFNode)}, while the process starts its next job. The queue is told that
+ * the job has completed once it has been returned. Pipelining is turned off
+ * with {@link #setPipelined(boolean)}.
+ * </p>
  * 
  * @author Claes Buckwalter (clabu@itn.liu.se)
  * @author Ola Stering (olst6875@student.uu.se)
@@ -94,6 +114,38 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
     protected Repository _repository;
 
     protected JDFQueueEntry _runningQueueEntry;
+
+    protected Clock _clock = new RealTimeClock();
+
+    private boolean _pipelined = true;
+
+    private JobPrefetcher _prefetcher;
+
+    private QueuedExecutor _postProcessor;
+
+    private int _nodeWorkers = 1;
+
+    private PooledExecutor _nodeExecutor;
+
+    /**
+     * The last published JobPhase, may be null. Never modified once
+     * published and only read while holding its monitor, see
+     * {@link #copySnapshot(KElement)}.
+     */
+    private volatile JDFJobPhase _jobPhase;
+
+    /**
+     * The last published DeviceInfo without a Device, may be null. Read like
+     * {@link #_jobPhase}.
+     */
+    private volatile JDFDeviceInfo _deviceInfo;
+
+    /** Serializes publishing */
+    private final Object _publishLock = new Object();
+
+    private long _statusInterval = 1000;
+
+    private volatile long _lastPublished = 0;
     
     /**
      * @param config
@@ -215,11 +267,155 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
         _state = state;
     }
 
+    /**
+     * Sets the clock that this process' simulated delays and time stamps
+     * are taken from. Default is a {@link RealTimeClock}.
+     * 
+     * @param clock the clock
+     * @throws IllegalArgumentException if <code>clock</code> is
+     *             <code>null</code>
+     */
+    public void setClock(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock may not be null.");
+        }
+        _clock = clock;
+    }
+
+    public Clock getClock() {
+        return _clock;
+    }
+
+    /**
+     * Sets how often the progress of a running job is published, see
+     * {@link #publishProgress()}. Default is 1 second.
+     * 
+     * @param statusInterval
+     *            the interval in milliseconds
+     */
+    public void setStatusInterval(long statusInterval) {
+        _statusInterval = statusInterval;
+    }
+
+    public long getStatusInterval() {
+        return _statusInterval;
+    }
+
+    /**
+     * Returns the current time of this process' clock.
+     * 
+     * @return the current time
+     * @see #setClock(Clock)
+     */
+    protected JDFDate now() {
+        return new JDFDate(_clock.currentTimeMillis());
+    }
+
+    /**
+     * Sets whether the next job is prepared and the previous job is
+     * post-processed while a job runs. Default is <code>true</code>. Must
+     * be set before the process is started.
+     * 
+     * @param pipelined <code>false</code> to prepare, run and post-process
+     *            each job on the process' own thread
+     */
+    public void setPipelined(boolean pipelined) {
+        _pipelined = pipelined;
+    }
+
+    public boolean isPipelined() {
+        return _pipelined;
+    }
+
+    /**
+     * Sets the maximum number of process nodes of a job that are executed
+     * concurrently. Nodes are executed when the nodes producing their input
+     * resources have been executed, see {@link NodeGraph}. Default is 1, which
+     * executes the nodes one after another. Only processes that
+     * {@link #canExecuteNodesConcurrently() can execute nodes concurrently}
+     * use more than one worker. Must be set before the process is started.
+     * 
+     * @param nodeWorkers the number of node worker threads
+     */
+    public void setNodeWorkers(int nodeWorkers) {
+        _nodeWorkers = nodeWorkers;
+    }
+
+    public int getNodeWorkers() {
+        return _nodeWorkers;
+    }
+
+    /**
+     * Returns whether {@link #executeNode(JDFNode)} may be called
+     * concurrently for process nodes of the same job. Processes that return
+     * <code>true</code> must not keep the state of a node in fields, must
+     * not change the process state while
+     * {@link #isExecutingNodesConcurrently() nodes are executed concurrently}
+     * and must hold {@link #getJdfLock(JDFNode)} while they read or modify
+     * the JDF. The default is <code>false</code>.
+     * 
+     * @see #setNodeWorkers(int)
+     */
+    protected boolean canExecuteNodesConcurrently() {
+        return false;
+    }
+
+    /**
+     * Returns whether the process nodes of jobs are executed by node
+     * workers. If so, the JDF of the process state is set to the job's JDF
+     * when the job starts, and {@link #executeNode(JDFNode)} must not change
+     * the process state.
+     * 
+     * @see #canExecuteNodesConcurrently()
+     */
+    protected boolean isExecutingNodesConcurrently() {
+        return _nodeExecutor != null;
+    }
+
+    /**
+     * Returns the lock that guards the JDF document a process node belongs
+     * to. The JDF document is not thread safe; when process nodes are
+     * executed concurrently their audits, status and resources must be
+     * written while holding this lock.
+     * 
+     * @param jdf a process node
+     * @return the lock of the node's JDF document
+     */
+    protected Object getJdfLock(JDFNode jdf) {
+        return jdf.getOwnerDocument();
+    }
+
     /**
      * Starts this device.
      */
     public void start() {
         log.info("Starting " + getProcessType() + " device...");
+        if (_pipelined && _postProcessor == null) {
+            _prefetcher = new JobPrefetcher(this, getProcessType()
+                    + " prefetcher");
+            _postProcessor = new QueuedExecutor();
+            _postProcessor.setThreadFactory(new ThreadFactory() {
+                public Thread newThread(Runnable command) {
+                    Thread thread = new Thread(command, getProcessType()
+                            + " post-processor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        if (_nodeWorkers > 1 && canExecuteNodesConcurrently()
+                && _nodeExecutor == null) {
+            _nodeExecutor = new PooledExecutor(new LinkedQueue(), _nodeWorkers);
+            _nodeExecutor.setMinimumPoolSize(_nodeWorkers);
+            _nodeExecutor.setThreadFactory(new ThreadFactory() {
+                public Thread newThread(Runnable command) {
+                    Thread thread = new Thread(command, getProcessType()
+                            + " node worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
         if (_thread == null) {
             _thread = new Thread(this);
         }
@@ -232,44 +428,61 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
     }
 
     /**
-     * The device's main loop. Waits if the queue has status <em>Blocked</em>
-     * or if there is no runnable job in the queue.
+     * Wakes up the device if it is waiting for a runnable queue entry, so
+     * that it sees that it has become idle or has been stopped. Called when
+     * the state changes to <em>Idle</em> or <em>Stopped</em>.
+     */
+    private void signalRunnable() {
+        if (_queue instanceof ConcurrentQueue) {
+            ((ConcurrentQueue) _queue).signalRunnable();
+        }
+    }
+
+    /**
+     * The device's main loop. Waits if the device is not idle, if the queue
+     * has status <em>Blocked</em> or <em>Held</em>, or if there is no runnable
+     * job in the queue. If the queue is a {@link ConcurrentQueue} the loop
+     * waits for the queue's runnable signal, which is raised when a queue
+     * entry may have become runnable or the device becomes idle or is
+     * stopped, otherwise it polls the queue every second. A queue entry is only claimed while the device is idle; one that
+     * was claimed when the device was stopped is put back.
      * 
      * @see java.lang.Runnable#run()
      */
     public void run() {
         while (!_state.getState().equals(_state.STOPPED)) {
             JDFQueueEntry qe = null;
-            synchronized (_queue) {
-                try {
-                    // Wait if:
-                    // - Queue is Blocked
-                    // - There is a queue entry
-                    while ((_queue.getQueueStatus().equals(
-                            JDFQueue.EnumQueueStatus.Blocked)
-                            || _queue.getQueueStatus().equals(
-                                    JDFQueue.EnumQueueStatus.Held) || _queue
-                            .getFirstRunnableQueueEntry() == null)) {
-                        // Check if device has stopped
-                        if (_state.getState().equals(_state.STOPPED)) {
-                            log.debug("Stopped running " + getProcessType()
-                                    + ".");
-                            return;
+            try {
+                // Wait if:
+                // - Queue is Blocked or Held
+                // - There is no runnable queue entry
+                while (true) {
+                    // Reads the signal first so that no signal is missed
+                    final long signal = getRunnableSignal();
+                    // Check if device has stopped
+                    if (_state.getState().equals(_state.STOPPED)) {
+                        log.debug("Stopped running " + getProcessType()
+                                + ".");
+                        return;
+                    }
+                    if (_state.getState().equals(_state.IDLE)) {
+                        // Returns null if the queue is Blocked or Held
+                        qe = getFirstRunnableQueueEntry();
+                        if (qe != null) {
+                            break;
                         }
-                        // Sleep
-                        _queue.wait(1000);
                     }
-                } catch (InterruptedException ie) {
-                    log.error("Interrupted while waiting for queue: " + ie, ie);
-                    log.debug("Stopped running " + getProcessType() + ".");
-                    return;
+                    awaitRunnable(signal);
                 }
-                // Gets the job at the top of the queue
-                qe = _queue.getFirstRunnableQueueEntry();
+            } catch (InterruptedException ie) {
+                log.error("Interrupted while waiting for queue: " + ie, ie);
+                log.debug("Stopped running " + getProcessType() + ".");
+                return;
             }
             try {
-                // Check if device has stopped
+                // Check if device was stopped while claiming the queue entry
                 if (_state.getState().equals(_state.STOPPED)) {
+                    releaseQueueEntry(qe);
                     log.debug("Stopped running " + getProcessType() + ".");
                     return;
                 }
@@ -283,9 +496,71 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
         log.debug("Stopped running " + getProcessType() + ".");
     }
 
-    
-    
-    
+
+    /**
+     * Returns the first runnable queue entry of the queue. If the queue is a
+     * {@link ConcurrentQueue} the queue entry is claimed, so that processes
+     * sharing the queue never run the same queue entry.
+     * 
+     * @return the queue entry to run next; <code>null</code> if there is none
+     * @see ConcurrentQueue#claimFirstRunnableQueueEntry(JDFDate)
+     */
+    private JDFQueueEntry getFirstRunnableQueueEntry() {
+        if (_queue instanceof ConcurrentQueue) {
+            return ((ConcurrentQueue) _queue)
+                    .claimFirstRunnableQueueEntry(now());
+        }
+        return _queue.getFirstRunnableQueueEntry();
+    }
+
+    /**
+     * Puts a claimed queue entry that is not going to be run back with status
+     * <em>Waiting</em>, so that it can be run later. Queue entries that were
+     * not claimed are left unchanged.
+     * 
+     * @param qe the queue entry
+     */
+    private void releaseQueueEntry(JDFQueueEntry qe) {
+        if (_queue instanceof ConcurrentQueue
+                && JDFQueueEntry.EnumQueueEntryStatus.Running.equals(qe
+                        .getQueueEntryStatus())) {
+            qe.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Waiting);
+            qe.removeAttribute(AttributeName.STARTTIME);
+            _queue.putQueueEntry(qe);
+            log.debug("Released queue entry '" + qe.getQueueEntryID() + "'.");
+        }
+    }
+
+    /**
+     * Returns the runnable signal of the queue, or 0 if the queue cannot be
+     * waited on.
+     * 
+     * @return the queue's runnable signal
+     * @see ConcurrentQueue#getRunnableSignal()
+     */
+    private long getRunnableSignal() {
+        if (_queue instanceof ConcurrentQueue) {
+            return ((ConcurrentQueue) _queue).getRunnableSignal();
+        }
+        return 0;
+    }
+
+    /**
+     * Waits until the queue's runnable signal has been raised since the
+     * specified signal. If the queue cannot be waited on this sleeps for a
+     * second.
+     * 
+     * @param signal the runnable signal seen last
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void awaitRunnable(long signal) throws InterruptedException {
+        if (_queue instanceof ConcurrentQueue) {
+            ((ConcurrentQueue) _queue).awaitRunnable(signal, 0);
+        } else {
+            Thread.sleep(1000);
+        }
+    }
+
     /**
      * Runs the job represented by the specified queue entry.
      * 
@@ -311,30 +586,26 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
         if (!_state.getState().equals(_state.IDLE)) {
             log.warn("Could not run queue entry '" + qe.getQueueEntryID()
                     + "' because the device is not idle.");
+            releaseQueueEntry(qe);
             return null;
         }
         _runningQueueEntry = qe;
         
         // Change the queue status
-        qe.setStartTime(new JDFDate());
+        qe.setStartTime(now());
         qe.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Running);
         fireEvent(new ProcessQueueEntryEvent(this, qe));
+        prefetchNextJob();
 
         JDFNode jdf = null;
+        boolean completed = false;
         try {
             // Runs the job
             final String jdfUrl = subParams.getURL();
             jdf = runJob(jdfUrl);
             qe
                     .setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Completed);
-            // Returns the job
-            try {
-                postProcessJob(qe, jdf);
-            } catch (IOException ioe) {
-                log.error("Could not post-process JDF '" + jdf.getJobID(true)
-                        + "': " + ioe, ioe);
-                ioe.printStackTrace();
-            }
+            completed = true;
         } catch (Exception e) {
             qe.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Aborted);
             log.error("An error occurred while process queue entry '"
@@ -342,16 +613,133 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
             e.printStackTrace();
             // TODO After an error, should the device become Idle?
         } finally {
-            qe.setEndTime(new JDFDate());
+            qe.setEndTime(now());
             _runningQueueEntry = null;
-            fireEvent(new ProcessQueueEntryEvent(this, qe));
-            _state.setState(_state.IDLE);
+            if (completed) {
+                // Returns the job
+                returnJob(qe, jdf);
+            } else {
+                fireEvent(new ProcessQueueEntryEvent(this, qe));
+            }
+            // A device that was stopped while running the job stays stopped
+            if (!_state.getState().equals(_state.STOPPED)) {
+                _state.setState(_state.IDLE);
+            }
         }
         log.debug("Finished running queue entry '" + qe.getQueueEntryID()
                 + "'.");
         return jdf;
     }
 
+    /**
+     * Post-processes a job that has completed and then tells the queue. If
+     * the process is pipelined this is done by the post-processor thread.
+     * 
+     * @param qe
+     *            the queue entry of the job
+     * @param jdf
+     *            the processed job
+     */
+    private void returnJob(final JDFQueueEntry qe, final JDFNode jdf) {
+        final Runnable task = new Runnable() {
+            public void run() {
+                try {
+                    postProcessJob(qe, jdf);
+                } catch (IOException ioe) {
+                    log.error("Could not post-process JDF '"
+                            + jdf.getJobID(true) + "': " + ioe, ioe);
+                } catch (RuntimeException re) {
+                    log.error("An error occurred while post-processing queue "
+                            + "entry '" + qe.getQueueEntryID() + "': " + re, re);
+                } finally {
+                    fireEvent(new ProcessQueueEntryEvent(BaseProcess.this, qe));
+                }
+            }
+        };
+        if (_postProcessor != null) {
+            try {
+                _postProcessor.execute(task);
+                return;
+            } catch (InterruptedException ie) {
+                log.warn("Interrupted while handing over queue entry '"
+                        + qe.getQueueEntryID() + "' for post-processing.");
+                Thread.currentThread().interrupt();
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * Starts preparing the job that is first in the queue, which is probably
+     * the job this process runs next.
+     */
+    private void prefetchNextJob() {
+        if (_prefetcher == null || _repository == null) {
+            return;
+        }
+        final JDFQueueEntry next = _queue.getFirstRunnableQueueEntry();
+        if (next == null) {
+            return;
+        }
+        final JDFQueueSubmissionParams params = _queue
+                .getQueueSubmissionParams(next.getQueueEntryID());
+        if (params != null && params.getURL().length() != 0) {
+            _prefetcher.prefetch(params.getURL());
+        }
+    }
+
+    /**
+     * Downloads, parses and pre-flights a job: finds the process nodes this
+     * process executes and checks which of them are executable and have all
+     * their input resources available. This method may be called by a
+     * thread other than the process' own thread and must not change the
+     * process' state.
+     * 
+     * @param jdfUrl
+     *            the URL of the job's JDF
+     * @return the prepared job
+     * @throws Exception
+     *             if the job could not be read
+     * @see JobPrefetcher
+     */
+    protected PreparedJob prepareJob(String jdfUrl) throws Exception {
+        final JDFNode jdf = new JDFParser().parseStream(
+            _repository.getFile(jdfUrl)).getJDFRoot();
+        if (jdf == null) {
+            throw new IOException("Could not parse the JDF '" + jdfUrl + "'.");
+        }
+        final List processNodes = JDFUtil.getProcessNodes(getProcessType(),
+            jdf, null);
+        final int nodeCount = (processNodes == null) ? 0 : processNodes
+                .size();
+        final boolean[] executable = new boolean[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            executable[i] = JDFUtil.isExecutableAndAvailbleResources(
+                (JDFNode) processNodes.get(i), null);
+        }
+        return new PreparedJob(jdfUrl, jdf, processNodes, executable);
+    }
+
+    /**
+     * Returns a job ready to be executed, the prefetched job if it is the
+     * specified job.
+     * 
+     * @param jdfUrl
+     *            the URL of the job's JDF
+     * @return the prepared job
+     * @throws Exception
+     *             if the job could not be read
+     */
+    protected PreparedJob takePreparedJob(String jdfUrl) throws Exception {
+        if (_prefetcher != null) {
+            final PreparedJob job = _prefetcher.take(jdfUrl);
+            if (job != null) {
+                return job;
+            }
+        }
+        return prepareJob(jdfUrl);
+    }
+
     /**
      * Runs a job.
      * 
@@ -362,14 +750,14 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
     public JDFNode runJob(String jdfUrl) throws Exception {
         // Setup phase //
         _state.setState(_state.SETUP);
-        // Download job
-        JDFNode jdf = new JDFParser().parseStream(_repository.getFile(jdfUrl))
-                .getJDFRoot();
+        // Download job, unless it was prefetched
+        final PreparedJob job = takePreparedJob(jdfUrl);
+        JDFNode jdf = job.getJdf();
         _state.setJdfUrl(jdfUrl.toString());
         // Execution phase for Device
         _state.setState(_state.RUNNING);
-        List processNodes = JDFUtil.getProcessNodes(getProcessType(), jdf, null);
-        if (processNodes==null || processNodes.size() == 0) {
+        List processNodes = job.getProcessNodes();
+        if (processNodes.size() == 0) {
             String err = "Could not execute process because there were no"
                     + " process nodes of type '" + getProcessType()
                     + "' to execute.";
@@ -378,11 +766,15 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
             // this should not happen since it should be done in Preprocesssor.
         } else {
             log.info("Found " + processNodes.size() + " nodes to execute.");
-            for (int i = 0, imax = processNodes.size(); i < imax; i++) {
-                JDFNode jdfNode = (JDFNode) processNodes.get(i);
-                if (JDFUtil.isExecutableAndAvailbleResources(jdfNode,
-                        null)) {
-                    executeNode(jdfNode);
+            if (isExecutingNodesConcurrently()) {
+                // The nodes do not set the JDF, the JobPhase reports the job
+                _state.setJdf(jdf);
+            }
+            if (_nodeExecutor != null && processNodes.size() > 1) {
+                new NodeExecution(job).execute();
+            } else {
+                for (int i = 0, imax = processNodes.size(); i < imax; i++) {
+                    executeNode(job, i);
                 }
             }
         }
@@ -393,6 +785,25 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
         return jdf;
     }
 
+    /**
+     * Executes a process node of a job if it is executable.
+     * 
+     * @param job the job
+     * @param index the index of the node in the job's process nodes
+     */
+    private void executeNode(PreparedJob job, int index) {
+        final JDFNode jdfNode = (JDFNode) job.getProcessNodes().get(index);
+        final boolean executable;
+        synchronized (getJdfLock(jdfNode)) {
+            // Nodes may have been made executable by the nodes before
+            executable = job.isExecutable(index)
+                    || JDFUtil.isExecutableAndAvailbleResources(jdfNode, null);
+        }
+        if (executable) {
+            executeNode(jdfNode);
+        }
+    }
+
     // TODO Read this
     /**
      * Adds PhaseTime audits and ProcessRun audits for the given jdf node.
@@ -415,6 +826,14 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
      */
     public void addAudits(JDFNode jdf, JDFDate startTime, JDFDate endSetUpTime,
             JDFDate endTime, EnumNodeStatus nodeStatus) {
+        synchronized (getJdfLock(jdf)) {
+            addAuditsUnlocked(jdf, startTime, endSetUpTime, endTime,
+                nodeStatus);
+        }
+    }
+
+    private void addAuditsUnlocked(JDFNode jdf, JDFDate startTime,
+            JDFDate endSetUpTime, JDFDate endTime, EnumNodeStatus nodeStatus) {
         JDFAuditPool auditPool = jdf.getAuditPool();
         JDFPhaseTime phaseTime = null;
         // Add SetUp Audit.
@@ -438,7 +857,7 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
         JDFProcessRun prAudit = jdf.getAuditPool().addProcessRun(
                 EnumNodeStatus.Completed, _config.getID(), null);
         prAudit.setStart(startTime);
-        prAudit.setEnd(new JDFDate());
+        prAudit.setEnd(now());
     }
 
     /**
@@ -583,38 +1002,150 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
     protected abstract void executeNode(JDFNode processNode);
 
     /**
-     * For details on which attributes are set see
-     * {@link org.cip4.elk.impl.device.BaseProcess.ProcessState#getJobPhase()}
-     * {@link org.cip4.elk.impl.device.BaseProcess.ProcessState#getJobPhase()}.
+     * Returns a copy of the last published <em>JobPhase</em>. Each caller
+     * gets its own copy, which it may modify.
      * 
+     * @see #publishStatus()
      * @see org.cip4.elk.device.process.Process#getJobPhase()
      */
     public JDFJobPhase getJobPhase() {
+        return (JDFJobPhase) copySnapshot(_jobPhase);
+    }
+
+    /**
+     * Returns the <em>DeviceInfo</em> of the process. If
+     * <code>includeJobPhase</code> is <code>true</code> this is a copy of the
+     * last published <em>DeviceInfo</em>, otherwise a new
+     * <em>DeviceInfo</em> without a <em>JobPhase</em>. Each caller gets its
+     * own <em>DeviceInfo</em>, which it may modify.
+     * <p>
+     * The <em>Device</em> is only included if the device configuration does
+     * not provide a {@link SimpleDeviceConfig#getDeviceDetailsCache()}, from
+     * which <em>Status</em> and <em>KnownDevices</em> queries take the
+     * <em>Device</em> filtered for the requested level of detail.
+     * </p>
+     * 
+     * @see #publishStatus()
+     * @see #createDeviceInfo(boolean)
+     * @see org.cip4.elk.device.process.Process#getDeviceInfo(boolean)
+     */
+    public JDFDeviceInfo getDeviceInfo(boolean includeJobPhase) {
+        JDFDeviceInfo deviceInfo = null;
+        if (includeJobPhase) {
+            deviceInfo = (JDFDeviceInfo) copySnapshot(_deviceInfo);
+        }
+        if (deviceInfo == null) {
+            // Nothing has been published yet
+            deviceInfo = createDeviceInfo(includeJobPhase);
+        }
+        if (_config != null && !hasDeviceDetailsCache()) {
+            // Get the DEVICE, for Elk, it assumes ONLY ONE Device
+            JDFDevice device = _config.getDeviceConfig();
+            device.setJMFURL(_config.getJMFURL());
+            deviceInfo.copyElement(device, null);
+        }
+        return deviceInfo;
+    }
+
+    private boolean hasDeviceDetailsCache() {
+        return _config instanceof SimpleDeviceConfig
+                && ((SimpleDeviceConfig) _config).getDeviceDetailsCache() != null;
+    }
+
+    /**
+     * Copies a published element into a new document. Xerces does not
+     * support concurrent reads of a DOM, so every reader copies the element
+     * while holding its monitor instead of reading it directly.
+     * 
+     * @param snapshot the published element, may be <code>null</code>
+     * @return a copy owned by the caller; <code>null</code> if
+     *         <code>snapshot</code> is <code>null</code>
+     */
+    private static KElement copySnapshot(KElement snapshot) {
+        if (snapshot == null) {
+            return null;
+        }
+        synchronized (snapshot) {
+            final KElement copy = JDFElementFactory.getInstance()
+                    .createJDFElement(snapshot.getLocalName());
+            copy.setAttributes(snapshot);
+            final VElement children = snapshot.getChildElementVector(null,
+                null, null, true, 0, false);
+            for (int i = 0, imax = children.size(); i < imax; i++) {
+                copy.copyElement((KElement) children.get(i), null);
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Publishes a snapshot of this process' <em>JobPhase</em> and
+     * <em>DeviceInfo</em>. Status queries, signals and the queue copy the
+     * snapshot instead of building a <em>JobPhase</em> from the JDF that is
+     * being executed. Called whenever the status of the process changes and,
+     * while a job runs, by {@link #publishProgress()}. The published
+     * <em>DeviceInfo</em> does not include the <em>Device</em>, see
+     * {@link #getDeviceInfo(boolean)}.
+     * 
+     * @see #createJobPhase()
+     * @see #createDeviceInfo(boolean)
+     */
+    protected void publishStatus() {
+        synchronized (_publishLock) {
+            _jobPhase = createJobPhase();
+            // The Device is not copied, status readers take it from the cache
+            _deviceInfo = (_config == null) ? null : createDeviceInfo(true);
+            _lastPublished = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Publishes the progress of the running job if the status interval has
+     * elapsed since the status was last published. Processes call this
+     * method for every unit of work they produce.
+     * 
+     * @see #setStatusInterval(long)
+     */
+    protected void publishProgress() {
+        if (System.currentTimeMillis() - _lastPublished >= _statusInterval) {
+            publishStatus();
+        }
+    }
+
+    /**
+     * Creates the <em>JobPhase</em> of the job that is running. For details
+     * on which attributes are set see
+     * {@link org.cip4.elk.impl.device.process.BaseProcess.ProcessState#getJobPhase()}.
+     * Override this method to add additional values. The returned element
+     * is published and must not be modified afterwards.
+     * 
+     * @return the <em>JobPhase</em>; <code>null</code> if no job is running
+     * @see #publishStatus()
+     */
+    protected JDFJobPhase createJobPhase() {
         return _state.getJobPhase();
     }
 
     /**
-     * Return the DeviceInfo of the process. Sets the following:
+     * Creates the DeviceInfo of the process. Sets the following:
      * <ul>
      * <li>
      * 
      * @DeviceStatus</li>
-     *               <li>Device/@JMFURL</li>
      *               <li>JobPhase if it is available see
      *               {@link org.cip4.org.impl.device.BaseProcess#getJobPhase()}.</li>
      *               </ul>
-     *               Override this method in the process node implementation to
-     *               add additional values.
+     *               The <em>Device</em> is not included, see
+     *               {@link #getDeviceInfo(boolean)}. Override this method in
+     *               the process node implementation to add additional values.
      * 
-     * @see org.cip4.elk.device.process.Process#getDeviceInfo(boolean)
+     * @param includeJobPhase
+     *            whether the last published <em>JobPhase</em> is included
+     * @return a new <em>DeviceInfo</em>
      */
-    public JDFDeviceInfo getDeviceInfo(boolean includeJobPhase) {
-        // Get the DEVICE, for Elk, it assumes ONLY ONE Device
-        JDFDevice device = _config.getDeviceConfig();
-        device.setJMFURL(_config.getJMFURL());
+    protected JDFDeviceInfo createDeviceInfo(boolean includeJobPhase) {
         JDFDeviceInfo deviceinfo = (JDFDeviceInfo) JDFElementFactory
                 .getInstance().createJDFElement(ElementName.DEVICEINFO);
-        deviceinfo.copyElement(device, null); // add device to deviceInfo
         deviceinfo.setDeviceStatus(getStatus()); // JDF 1.2
 
         if (includeJobPhase) {
@@ -893,18 +1424,20 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
     }
 
     /**
-     * Makes this Thread sleep for the given amount of seconds.
+     * Makes this Thread sleep for the given amount of seconds on this
+     * process' clock.
      * 
      * @param seconds
      *            The number of seconds the Thread shall sleep.
      * @throws InterruptedException
      *             if Thread is interrupted.
+     * @see #setClock(Clock)
      */
     protected void sleepAWhile(int seconds) {
         try {
             log.debug("Sleeping...");
 
-            Thread.sleep(seconds * 1000);
+            _clock.sleep(seconds * 1000L);
             log.debug("Slept.");
         } catch (InterruptedException ie) {
             log.error("The sleeping was interrupted.");
@@ -1108,6 +1641,17 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
      */
     public void destroy() {
         _state.setState(_state.STOPPED);
+        if (_prefetcher != null) {
+            _prefetcher.shutdown();
+        }
+        if (_postProcessor != null) {
+            // Jobs that have run are still returned
+            _postProcessor.shutdownAfterProcessingCurrentlyQueuedTasks();
+        }
+        if (_nodeExecutor != null) {
+            // Nodes scheduled after shutdown run on the scheduling thread
+            _nodeExecutor.shutdownAfterProcessingCurrentlyQueuedTasks();
+        }
     }
 
     /*
@@ -1130,6 +1674,89 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
 
     }
 
+    /**
+     * Executes the process nodes of a job on the node workers. A node is
+     * scheduled when all nodes it depends on have been executed, so nodes
+     * that do not depend on each other are executed concurrently. If a node
+     * throws an exception the other nodes are still executed and the first
+     * exception is rethrown.
+     */
+    private class NodeExecution {
+
+        private final PreparedJob _job;
+        private final NodeGraph _graph;
+        /** For each node, its dependencies that have not been executed */
+        private final int[] _pending;
+        private final CountDown _executed;
+        /** The first exception thrown by a node, guarded by _pending */
+        private RuntimeException _failure;
+
+        NodeExecution(PreparedJob job) {
+            _job = job;
+            _graph = job.getNodeGraph();
+            _pending = new int[_graph.size()];
+            _executed = new CountDown(_graph.size());
+        }
+
+        /**
+         * Executes the nodes and waits until all have been executed.
+         * 
+         * @throws RuntimeException the first exception thrown by a node
+         */
+        void execute() throws InterruptedException {
+            for (int i = 0; i < _pending.length; i++) {
+                _pending[i] = _graph.getDependencies(i).length;
+            }
+            for (int i = 0; i < _pending.length; i++) {
+                if (_pending[i] == 0) {
+                    schedule(i);
+                }
+            }
+            _executed.acquire();
+            synchronized (_pending) {
+                if (_failure != null) {
+                    throw _failure;
+                }
+            }
+        }
+
+        private void schedule(final int index) {
+            final Runnable task = new Runnable() {
+                public void run() {
+                    try {
+                        executeNode(_job, index);
+                    } catch (RuntimeException e) {
+                        log.error("Could not execute process node "
+                                + _graph.getNode(index).getID() + ".", e);
+                        synchronized (_pending) {
+                            if (_failure == null) {
+                                _failure = e;
+                            }
+                        }
+                    } finally {
+                        final int[] dependants = _graph.getDependants(index);
+                        for (int i = 0; i < dependants.length; i++) {
+                            final boolean ready;
+                            synchronized (_pending) {
+                                ready = --_pending[dependants[i]] == 0;
+                            }
+                            if (ready) {
+                                schedule(dependants[i]);
+                            }
+                        }
+                        _executed.release();
+                    }
+                }
+            };
+            try {
+                _nodeExecutor.execute(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.run();
+            }
+        }
+    }
+
     // **************************************************************
     /**
      * A class that models the state of a device process.
@@ -1183,6 +1810,7 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
 
         protected void setJdf(JDFNode jdf) {
             this.jdf = jdf;
+            publishStatus();
         }
 
         protected JDFNode getJdf() {
@@ -1203,30 +1831,12 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
          * 
          * @param state
          */
-        protected synchronized void setState(
-                JDFDeviceInfo.EnumDeviceStatus state) {
-            // Determines if a new JobPhases begins
-            if (state.equals(this.state))
-                _stateChanged = false;
-            else
-                _stateChanged = true;
-
-            JDFDeviceInfo.EnumDeviceStatus oldState = this.state;
-            this.state = state;
-            String msg = "Process status change: " + oldState.getName()
-                    + " to " + this.state.getName();
-
-            if (state.equals(IDLE)) {
-                jdf = null;
-                jdfUrl = null;
-                running = false;
-            }
-            log.debug(msg);
-            setStatusEvent(true);
-            fireProcessStatusEvent(this.state, msg);
-
-            // TODO Temp solution for time-based signals
-            // _stateChanged=false;
+        protected void setState(JDFDeviceInfo.EnumDeviceStatus state) {
+            final String msg = changeState(state, null);
+            // Listeners see the new status when they get the event
+            publishStatus();
+            fireProcessStatusEvent(state, msg);
+            signalIfIdleOrStopped(state);
         }
 
         /**
@@ -1238,18 +1848,50 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
          * @param state
          * @param comment
          */
-        protected synchronized void setState(
-                JDFDeviceInfo.EnumDeviceStatus state, String comment) {
+        protected void setState(JDFDeviceInfo.EnumDeviceStatus state,
+                String comment) {
+            final String msg = changeState(state, comment);
+            publishStatus();
+            fireProcessStatusEvent(state, msg);
+            signalIfIdleOrStopped(state);
+        }
+
+        /**
+         * Wakes up the device's main loop if it waits for the device to
+         * become idle or if the device has been stopped.
+         */
+        private void signalIfIdleOrStopped(JDFDeviceInfo.EnumDeviceStatus state) {
+            if (state.equals(IDLE) || state.equals(STOPPED)) {
+                signalRunnable();
+            }
+        }
 
-            // Determines if the state of the device has changed
+        /**
+         * Changes the state. The status is published and the event fired by
+         * the caller, without holding this state's lock, because publishing
+         * creates a <em>JobPhase</em> which may need the lock.
+         * 
+         * @param state
+         *            the new state
+         * @param comment
+         *            a comment on the change, may be <code>null</code>
+         * @return the message of the status event
+         */
+        private synchronized String changeState(
+                JDFDeviceInfo.EnumDeviceStatus state, String comment) {
+            // Determines if a new JobPhases begins
             if (state.equals(this.state))
                 _stateChanged = false;
             else
                 _stateChanged = true;
+
             JDFDeviceInfo.EnumDeviceStatus oldState = this.state;
             this.state = state;
             String msg = "Process status change: " + oldState.getName()
-                    + " to " + this.state.getName() + " :" + comment;
+                    + " to " + this.state.getName();
+            if (comment != null) {
+                msg += " :" + comment;
+            }
 
             if (state.equals(IDLE)) {
                 jdf = null;
@@ -1259,7 +1901,7 @@ public abstract class BaseProcess extends AbstractProcess implements Runnable,
             if (log.isDebugEnabled())
                 log.debug(msg);
             setStatusEvent(true);
-            fireProcessStatusEvent(this.state, msg);
+            return msg;
 
             // TODO Temp solution for time-based signals
             // _stateChanged=false;
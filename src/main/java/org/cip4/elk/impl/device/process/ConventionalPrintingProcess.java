@@ -61,7 +61,8 @@ public class ConventionalPrintingProcess extends BaseProcess {
     
     // Device specific settings.
     private String _counterUnit = "Sheets";
-    private volatile int _totalProductionCounter = 0; 
+    /** Counts sheets during execution, written to the JDF lazily */
+    private final ProductionCounters _counters = new ProductionCounters();
     
     private int _waitingTimeMillis = 1;
     static final VJDFAttributeMap _emptyVJDFAttributeMap = new VJDFAttributeMap();
@@ -112,7 +113,7 @@ public class ConventionalPrintingProcess extends BaseProcess {
     protected void executeNode(JDFNode jdf) {
         log.debug("About to execute node for '" + getProcessId() + "'.");
         JDFAttributeMap emptyAttributeMap = new JDFAttributeMap();
-        JDFDate startTime = new JDFDate();
+        JDFDate startTime = now();
 
         // Add Modified Audit
         jdf.getCreateAuditPool().addModified(_config.getID(), null);
@@ -122,7 +123,7 @@ public class ConventionalPrintingProcess extends BaseProcess {
         jdf.setStatus(EnumNodeStatus.Setup);
         log.debug("Setting up Device...");
         sleepAWhile(_setUpTime);
-        JDFDate endSetUpTime = new JDFDate();
+        JDFDate endSetUpTime = now();
 
         // InProgress phase ...
         jdf.setStatus(EnumNodeStatus.InProgress);
@@ -181,45 +182,41 @@ public class ConventionalPrintingProcess extends BaseProcess {
                 + Integer.toString(_waitingTimeMillis * _totalAmount / 1000)
                 + " seconds.");
 
-        if (resLinkAmountIn != null) {
-
-        }
-        int actualWaste = 0;
+        _counters.bind(resLinkAmountOut, resLinkAmountIn, partAmountGood,
+            partAmountWaste);
         int producedAmount = 0;
 
         // Produce until desired or available amount is reached.
         for (int i = 1; producedAmount <= _totalAmount - 1
                 && (producedAmount <= inAmount || inAmount == 0); i++) {
             try {
-                Thread.sleep(_waitingTimeMillis);
+                _clock.sleep(_waitingTimeMillis);
             } catch (InterruptedException e) {
                 log.error("Thread was interrupted in method"
                         + " executeNode(JDFNode), execution continued.", e);
             }
+            // The JDF amounts are written when the loop ends, not for every
+            // sheet
             if (i % _wasteFrequency == 0) {
-                actualWaste++;
-                log.debug("Produced waste, actualWate: " + actualWaste);
-                partAmountWaste.setAttribute("ActualAmount", ""+actualWaste); ///XXX partAmountWaste.setActualAmount(actualWaste, emptyAttributeMap);
+                _counters.addWaste(1);
+                if (log.isDebugEnabled()) {
+                    log.debug("Produced waste, actualWaste: "
+                            + _counters.getWaste());
+                }
             } else {
                 producedAmount++;
-                if (i % 10 == 0) {
+                _counters.addGood(1);
+                if (i % 10 == 0 && log.isDebugEnabled()) {
                     log.debug("ActualAmount=" + producedAmount + " Total=" + _totalAmount);
                 }
-                resLinkAmountOut.setActualAmount(producedAmount, emptyAttributeMap);                
-                partAmountGood.setAttribute("ActualAmount", ""+producedAmount); //XXX partAmountGood.setActualAmount(producedAmount, emptyAttributeMap);
                 _amountNotifier.fireEvent(new ProcessAmountEvent(
                         EnumClass.Event, producedAmount, this,
                         "Amount changed event"));
             }
-            _totalProductionCounter++;
-            
-            if (resLinkAmountIn != null) {
-                resLinkAmountIn.setActualAmount(actualWaste + producedAmount,
-                    emptyAttributeMap);
-            }
-            resLinkAmountOut.setActualAmount(actualWaste + producedAmount,
-                emptyAttributeMap);
+            publishProgress();
         }
+        _counters.materialize();
+        publishStatus();
 
         List outRes = getOutputResources(jdf);
         for (int i = 0; i < outRes.size(); i++) {
@@ -232,7 +229,7 @@ public class ConventionalPrintingProcess extends BaseProcess {
                 + " seconds.");
         sleepAWhile(_inProgressTime);
         // Add audits
-        addAudits(jdf, startTime, endSetUpTime, new JDFDate(), null);
+        addAudits(jdf, startTime, endSetUpTime, now(), null);
         // Update the JDF node's state
         jdf.setStatus(EnumNodeStatus.Completed);
 
@@ -406,36 +403,31 @@ public class ConventionalPrintingProcess extends BaseProcess {
      * <li>CounterUnit</li>
      * <li>TotalProductionCounter</li>
      * </ul>
-     * @see org.cip4.elk.device.process.Process#getDeviceInfo(boolean)
+     * @see org.cip4.elk.impl.device.process.BaseProcess#createDeviceInfo(boolean)
      */
-    public JDFDeviceInfo getDeviceInfo(boolean includeJobPhase){
-        JDFDeviceInfo deviceInfo = super.getDeviceInfo(true);
+    protected JDFDeviceInfo createDeviceInfo(boolean includeJobPhase){
+        JDFDeviceInfo deviceInfo = super.createDeviceInfo(true);
         deviceInfo.setSpeed(getDeviceSpeed());
         deviceInfo.setCounterUnit(_counterUnit);
-        deviceInfo.setTotalProductionCounter(_totalProductionCounter);        
+        deviceInfo.setTotalProductionCounter(_counters
+                .getTotalProductionCounter());
         return deviceInfo;
     }
     /*
      * (non-Javadoc)
      * 
-     * @see org.cip4.elk.device.process.Process#getJobPhase()
+     * @see org.cip4.elk.impl.device.process.BaseProcess#createJobPhase()
      */
-    public JDFJobPhase getJobPhase() {
+    protected JDFJobPhase createJobPhase() {
 
-        JDFJobPhase jobPhase = super.getJobPhase();
+        JDFJobPhase jobPhase = super.createJobPhase();
 
         if (jobPhase != null) {
-            JDFNode jdf = _state.getJdf();
-            synchronized (jdf) {
-                JDFAttributeMap emptyAttributeMap = new JDFAttributeMap();
-                double producedAmount = getOutputResourceLink(jdf)
-                        .getActualAmount(emptyAttributeMap);
-                jobPhase.setAmount(producedAmount);
-                jobPhase.setTotalAmount(_totalAmount);
-                jobPhase.setPercentCompleted(Math.min((int) ((double) producedAmount
-                        / (double) _totalAmount * 100),100)); // XXX not a nice solution...
-            }
-
+            double producedAmount = _counters.getAmount();
+            jobPhase.setAmount(producedAmount);
+            jobPhase.setTotalAmount(_totalAmount);
+            jobPhase.setPercentCompleted(Math.min((int) ((double) producedAmount
+                    / (double) _totalAmount * 100),100)); // XXX not a nice solution...
         }
         return jobPhase;
     }
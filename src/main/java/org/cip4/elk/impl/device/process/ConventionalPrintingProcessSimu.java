@@ -1,7 +1,14 @@
 package org.cip4.elk.impl.device.process;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
 
 import org.cip4.elk.JDFElementFactory;
 import org.cip4.elk.device.DeviceConfig;
@@ -13,7 +20,9 @@ import org.cip4.elk.impl.device.process.simulation.Down;
 import org.cip4.elk.impl.device.process.simulation.Running;
 import org.cip4.elk.impl.device.process.simulation.Setup;
 import org.cip4.elk.impl.device.process.simulation.SimulationPhaseInterface;
+import org.cip4.elk.impl.device.process.simulation.SimulationScenario;
 import org.cip4.elk.impl.device.process.simulation.Stopped;
+import org.cip4.elk.impl.queue.scheduling.JobProfile;
 import org.cip4.elk.impl.util.Repository;
 import org.cip4.elk.impl.util.URLAccessTool;
 import org.cip4.elk.jmf.OutgoingJMFDispatcher;
@@ -33,8 +42,11 @@ import org.cip4.jdflib.datatypes.JDFAttributeMap;
 import org.cip4.jdflib.datatypes.VJDFAttributeMap;
 import org.cip4.jdflib.jmf.JDFDeviceInfo;
 import org.cip4.jdflib.jmf.JDFJobPhase;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
 import org.cip4.jdflib.node.JDFNode;
 import org.cip4.jdflib.pool.JDFAmountPool;
+import org.cip4.jdflib.pool.JDFAuditPool;
 import org.cip4.jdflib.pool.JDFResourcePool;
 import org.cip4.jdflib.resource.JDFNotification;
 import org.cip4.jdflib.resource.JDFPart;
@@ -46,6 +58,14 @@ import org.cip4.jdflib.util.JDFDuration;
 
 /**
  * A simulation of a the JDF ConventionalPrinting process.
+ * <p>
+ * The format change and form change setup phases are skipped when the job
+ * prints on the same media format or with the same plates as the previous
+ * job, see {@link JobProfile}. The skipped setup time is reported by
+ * {@link #getSetupSecondsSaved()}. Combine this with the queue's
+ * {@link org.cip4.elk.impl.queue.scheduling.SetupMinimizingPolicy} to
+ * execute compatible jobs one after the other.
+ * </p>
  * 
  * @version $Id$
  * @author Marco Kornrumpf (Marco.Kornrumpf@Bertelsmann.de)
@@ -63,7 +83,8 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 	/** If true device goodcopycounter is on */
 	private boolean _wasteCounter = false;
 
-	private int _totalProductionCounter = 0;
+	/** Counts sheets during execution, written to the JDF lazily */
+	private final ProductionCounters _counters = new ProductionCounters();
 
 	private DeviceStatusDetails _statusDetails = null;
 
@@ -80,8 +101,39 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 	private double _oldPhaseAmount = 0;
 
 	private int _deviceSpeed = 0;
-	
-	private ArrayList simuPhases = null;
+
+	/** The scenarios the simulation phases are taken from */
+	private ConfSimuHandler _simulation = new ConfSimuHandler();
+
+	/** Writes checkpoints of the running job, null if checkpointing is off */
+	private JobCheckpointer _checkpointer = null;
+
+	private long _checkpointInterval = 60 * 1000;
+
+	private long _lastCheckpoint = 0;
+
+	/** The ID of the process node being executed */
+	private String _nodeId = null;
+
+	/** The index of the simulation phase being executed */
+	private int _phaseIndex = 0;
+
+	/** The simulation scenario of the process node being executed */
+	private SimulationScenario _scenario = null;
+
+	/** The number of audits the node's AuditPool had before its execution */
+	private int _firstAudit = 0;
+
+	/** The XML of the audits at the last checkpoint, mapped by audit ID */
+	private final Map _checkpointedAudits = new HashMap();
+
+	/** The profile of the job being executed */
+	private JobProfile _jobProfile = null;
+
+	/** The profile of the job executed before, null if there was none */
+	private JobProfile _lastJobProfile = null;
+
+	private volatile long _setupSecondsSaved = 0;
 
 	/**
 	 * Creates a ConventionalPrinting Process.
@@ -389,6 +441,9 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		resAmountOut.setActualAmount(0, emptyAttributeMap);
 		// Creates an AmountPool if it is not specified
 		createPartAmount(resAmountOut);
+		_counters.bind(resAmountOut, getAmountResource("Input", jdf),
+				getPartAmountValue(resAmountOut, "Good"), getPartAmountValue(
+						resAmountOut, "Waste"));
 
 		final int partAmountGoodAmount = (int) resAmountOut
                 .getAmount(new JDFAttributeMap("Condition", "Good"));
@@ -441,9 +496,33 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		getTotalAmount(jdf);
 
 		_jobPhaseMap = new ArrayList();
+		_jobProfile = JobProfile.create(Collections.singletonList(jdf), null);
+		_nodeId = jdf.getID();
+		_scenario = _simulation.getScenario(jdf);
+		JobCheckpoint resumed = null;
+		if (_checkpointer != null && _runningQueueEntry != null) {
+			resumed = _checkpointer.getRecoveredCheckpoint(_runningQueueEntry
+					.getQueueEntryID(), _nodeId);
+		}
+		if (resumed != null
+				&& !resumed.isJob(jdf.getJobID(true), _state.getJdfUrl())) {
+			log.warn("Not resuming from " + resumed + ", the queue entry now "
+					+ "runs job " + jdf.getJobID(true) + " ("
+					+ _state.getJdfUrl() + "). Executing it from the start.");
+			resumed = null;
+		}
+		if (resumed != null
+				&& !resumed.isScenario(_scenario.getName(), _scenario.getSeed())) {
+			log.warn("Not resuming from " + resumed + ", the node now runs "
+					+ "scenario " + _scenario.getName() + " ("
+					+ _scenario.getSeed() + "). Executing it from the start.");
+			resumed = null;
+		}
 //		processSimuPhases(generateSimuPhases());
-//		processSimuPhases(simuPhases);
-		processSimuPhases(new ConfSimuHandler().getSimuPhases());
+		processSimuPhases(_scenario.createRun((_runningQueueEntry == null) ? jdf
+				.getJobID(true) : _runningQueueEntry.getQueueEntryID()),
+				resumed);
+		_lastJobProfile = _jobProfile;
 		
 		printJobPhases();
 
@@ -604,17 +683,18 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 	 * <li>TotalProductionCounter</li>
 	 * </ul>
 	 * 
-	 * @see org.cip4.elk.device.process.Process#getDeviceInfo(boolean)
+	 * @see org.cip4.elk.impl.device.process.BaseProcess#createDeviceInfo(boolean)
 	 */
-	public JDFDeviceInfo getDeviceInfo(boolean includeJobPhase) {
-		JDFDeviceInfo deviceInfo = super.getDeviceInfo(true);
+	protected JDFDeviceInfo createDeviceInfo(boolean includeJobPhase) {
+		JDFDeviceInfo deviceInfo = super.createDeviceInfo(true);
 
 		if (_statusDetails != null)
 			deviceInfo.setStatusDetails(_statusDetails.getName());
 
 		deviceInfo.setSpeed(getDeviceSpeed());
 		deviceInfo.setCounterUnit(_counterUnit);
-		deviceInfo.setTotalProductionCounter(_totalProductionCounter);
+		deviceInfo.setTotalProductionCounter(_counters
+				.getTotalProductionCounter());
 		deviceInfo.setDeviceStatus(_state.getState());
 
 		return deviceInfo;
@@ -649,7 +729,7 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 	 */
 	private synchronized void initNewJobPhase() {
 
-		_phaseStartTime = new JDFDate();
+		_phaseStartTime = now();
 		_state.setStatusEvent(false);
 
 		// Checks if a JDF is loaded, only if JDF != null counter values will be
@@ -657,16 +737,8 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		if (_state.getJdf() != null)
 
 		{
-			JDFResourceLink resAmountOut = getOutputResourceLink(_state
-					.getJdf());
-			JDFPartAmount partAmountGood = getPartAmountValue(resAmountOut,
-					"Good");
-			JDFPartAmount partAmountWaste = getPartAmountValue(resAmountOut,
-					"Waste");
-			_oldPhaseWaste = Double.parseDouble(partAmountWaste
-					.getAttribute("ActualAmount"));
-			_oldPhaseAmount = Double.parseDouble(partAmountGood
-					.getAttribute("ActualAmount"));
+			_oldPhaseWaste = _counters.getWaste();
+			_oldPhaseAmount = _counters.getGood();
 		}
 
 	}
@@ -674,152 +746,139 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see org.cip4.elk.device.process.Process#getJobPhase()
+	 * @see org.cip4.elk.impl.device.process.BaseProcess#createJobPhase()
 	 */
-	public JDFJobPhase getJobPhase() {
+	protected JDFJobPhase createJobPhase() {
 
 		if (_actualJobPhase == null || _state.isStateChanged()) {
-			_actualJobPhase = super.getJobPhase();
+			_actualJobPhase = super.createJobPhase();
 
 			if ((_state.isStateChanged() && _state.isStatusEvent())
 					|| _phaseStartTime == null) {
 				initNewJobPhase();
-				// _phaseStartTime = new JDFDate();
+				// _phaseStartTime = now();
 				// _state.setStatusEvent(false);
 			}
 
 		}
 
 		if (_actualJobPhase != null && _state.getJdf() != null) {
-			JDFNode jdf = _state.getJdf();
-			synchronized (jdf) {
-
-				JDFResourceLink resAmountOut = getOutputResourceLink(jdf);
-
-				double producedAmount = 0;
-				double producedWaste = 0;
-				try {
-					producedAmount = Double.parseDouble(getPartAmountValue(
-							resAmountOut, "Good").getAttribute("ActualAmount"));
-					producedWaste = Double
-							.parseDouble(getPartAmountValue(resAmountOut,
-									"Waste").getAttribute("ActualAmount"));
-				} catch (NumberFormatException e) {
-					log.info("ActualAmount values not available: " + e);
-				}
+			double producedAmount = _counters.getGood();
+			double producedWaste = _counters.getWaste();
+
+			if (_state.getState().equals(EnumDeviceStatus.Setup)
+					|| _state.getState().equals(EnumDeviceStatus.Cleanup)
+					|| _state.getState().equals(EnumDeviceStatus.Stopped)
+					|| _state.getState().equals(EnumDeviceStatus.Down)) {
+				_actualJobPhase.setStatusDetails("Waste");
 
-				if (_state.getState().equals(EnumDeviceStatus.Setup)
-						|| _state.getState().equals(EnumDeviceStatus.Cleanup)
-						|| _state.getState().equals(EnumDeviceStatus.Stopped)
-						|| _state.getState().equals(EnumDeviceStatus.Down)) {
+			}
+			// Device in running state
+			if (_state.getState().equals(EnumDeviceStatus.Running)) {
+				_actualJobPhase.setStatus(EnumNodeStatus.InProgress);
+				// Device goodcounter is off
+				if (isWasteCounter()) {
 					_actualJobPhase.setStatusDetails("Waste");
 
 				}
-				// Device in running state
-				if (_state.getState().equals(EnumDeviceStatus.Running)) {
-					_actualJobPhase.setStatus(EnumNodeStatus.InProgress);
-					// Device goodcounter is off
-					if (isWasteCounter()) {
-						_actualJobPhase.setStatusDetails("Waste");
-
-					}
-					// Device goodcounter is on
-					else {
+				// Device goodcounter is on
+				else {
 
-						_actualJobPhase.setStatusDetails("Good");
+					_actualJobPhase.setStatusDetails("Good");
 
-					}
 				}
+			}
 
-				// Device in cleanup state
-				// if (_state.getState().equals(EnumDeviceStatus.Cleanup)) {
-				// _actualJobPhase.setStatusDetails("Waste");
-				// }
-
-				_actualJobPhase.setPhaseWaste(producedWaste - _oldPhaseWaste);
-				_actualJobPhase
-						.setPhaseAmount(producedAmount - _oldPhaseAmount);
-				// Standard Elements of the JobPhase tag
-				_actualJobPhase.setPercentCompleted(Math
-						.min(
-								((double) producedAmount
-										/ (double) _totalAmount * 100), 100));
-
-				// Start time should only be altered if a new JobPhase begins
-				// like Setup to Running
-				_actualJobPhase.setPhaseStartTime(_phaseStartTime);
-
-				// Amount that will be produced when percenatage =100%
-				_actualJobPhase.setTotalAmount(_totalAmount);
-
-				// Amount produced during the whole phase, like Running to
-				// Running if waste is also specified without waste
-
-				_actualJobPhase.setAmount(producedAmount);
-
-				// Amount of waste produced during the whole phase, like Running
-				// to Running
-				_actualJobPhase.setWaste(producedWaste);
-
-				_actualJobPhase.setStartTime(_startTime);
-
-				// Calculating RestTime after 10 percent of totalproduction is
-				// already produced
-
-				if (_startTime != null
-						&& _actualJobPhase.getPercentCompleted() >= 10) {
-					// If TotalAmount is already reached the RestTime is always
-					// 0
-					if (_actualJobPhase.getAmount() >= _actualJobPhase
-							.getTotalAmount())
-						_actualJobPhase.setRestTime(new JDFDuration(0));
-					else {
-						// The RestTime is calculated by:
-						// ProducedAmount since JobStart (StartTime) =
-						// amountStart
-						// Time used until this point (ActualTime minus
-						// StartTime) = actualTime
-						// aStart : actualTime = units (sheets) produced for 1
-						// time unit = unitTime
-						// Remaining Amount to be produced to reach the
-						// TotalProductionAmount rAmount
-						// rAmount : unitTime = approximated time left until =
-						// approxLeft
-						// TotalProduction Limit is reached
-						long actualTime = (new JDFDate().getTime().getTime() - _startTime
-								.getTime().getTime()) / 1000;
-						double rAmount = _actualJobPhase.getTotalAmount()
-								- _actualJobPhase.getAmount();
-						double amountStart = _actualJobPhase.getAmount();
-
-						double unitTime = _actualJobPhase.getAmount()
-								/ (actualTime);
-
-						double approxLeft = rAmount / unitTime;
-						_actualJobPhase.setRestTime(new JDFDuration(
-								(int) approxLeft));
-
-					}
-					log.debug("Time left in seconds: "
-							+ _actualJobPhase.getRestTime().getDuration());
-				}
+			// Device in cleanup state
+			// if (_state.getState().equals(EnumDeviceStatus.Cleanup)) {
+			// _actualJobPhase.setStatusDetails("Waste");
+			// }
+
+			_actualJobPhase.setPhaseWaste(producedWaste - _oldPhaseWaste);
+			_actualJobPhase
+					.setPhaseAmount(producedAmount - _oldPhaseAmount);
+			// Standard Elements of the JobPhase tag
+			_actualJobPhase.setPercentCompleted(Math
+					.min(
+							((double) producedAmount
+									/ (double) _totalAmount * 100), 100));
+
+			// Start time should only be altered if a new JobPhase begins
+			// like Setup to Running
+			_actualJobPhase.setPhaseStartTime(_phaseStartTime);
+
+			// Amount that will be produced when percenatage =100%
+			_actualJobPhase.setTotalAmount(_totalAmount);
+
+			// Amount produced during the whole phase, like Running to
+			// Running if waste is also specified without waste
+
+			_actualJobPhase.setAmount(producedAmount);
+
+			// Amount of waste produced during the whole phase, like Running
+			// to Running
+			_actualJobPhase.setWaste(producedWaste);
+
+			_actualJobPhase.setStartTime(_startTime);
+
+			// Calculating RestTime after 10 percent of totalproduction is
+			// already produced
+
+			if (_startTime != null
+					&& _actualJobPhase.getPercentCompleted() >= 10) {
+				// If TotalAmount is already reached the RestTime is always
+				// 0
+				if (_actualJobPhase.getAmount() >= _actualJobPhase
+						.getTotalAmount())
+					_actualJobPhase.setRestTime(new JDFDuration(0));
+				else {
+					// The RestTime is calculated by:
+					// ProducedAmount since JobStart (StartTime) =
+					// amountStart
+					// Time used until this point (ActualTime minus
+					// StartTime) = actualTime
+					// aStart : actualTime = units (sheets) produced for 1
+					// time unit = unitTime
+					// Remaining Amount to be produced to reach the
+					// TotalProductionAmount rAmount
+					// rAmount : unitTime = approximated time left until =
+					// approxLeft
+					// TotalProduction Limit is reached
+					long actualTime = (now().getTime().getTime() - _startTime
+							.getTime().getTime()) / 1000;
+					double rAmount = _actualJobPhase.getTotalAmount()
+							- _actualJobPhase.getAmount();
+					double amountStart = _actualJobPhase.getAmount();
+
+					double unitTime = _actualJobPhase.getAmount()
+							/ (actualTime);
+
+					double approxLeft = rAmount / unitTime;
+					_actualJobPhase.setRestTime(new JDFDuration(
+							(int) approxLeft));
 
-				// not a
-				// nice
-				// solution...
-				// Just for controlling purpose
-				if (log.isDebugEnabled()) {
-					JDFJobPhase temp = (JDFJobPhase) JDFElementFactory
-							.getInstance().createJDFElement(
-									ElementName.JOBPHASE);
-					_jobPhaseMap.add(temp.copyElement(_actualJobPhase, null));
 				}
+				log.debug("Time left in seconds: "
+						+ _actualJobPhase.getRestTime().getDuration());
+			}
 
+			// not a
+			// nice
+			// solution...
+			// Just for controlling purpose
+			if (log.isDebugEnabled() && _jobPhaseMap != null) {
+				JDFJobPhase temp = (JDFJobPhase) JDFElementFactory
+						.getInstance().createJDFElement(
+								ElementName.JOBPHASE);
+				_jobPhaseMap.add(temp.copyElement(_actualJobPhase, null));
 			}
 
+
 		}
 
-		return _actualJobPhase;
+		// _actualJobPhase is updated in place, publish a copy of it
+		return (_actualJobPhase == null) ? null
+				: (JDFJobPhase) _actualJobPhase.cloneNode(true);
 	}
 
 	/**
@@ -853,17 +912,193 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 
 	}
 
-	private void processSimuPhases(ArrayList phases) {
-		_startTime = new JDFDate();
+	/**
+	 * Sets the simulation scenarios that jobs are executed with. Defaults to
+	 * the scenario <code>default</code>.
+	 * 
+	 * @param simulation
+	 *            the simulation scenarios
+	 */
+	public void setSimulation(ConfSimuHandler simulation) {
+		_simulation = simulation;
+	}
+
+	public ConfSimuHandler getSimulation() {
+		return _simulation;
+	}
+
+	/**
+	 * Turns on checkpointing. While a job is executed its progress is written
+	 * to a journal in the checkpoint directory, after every simulation phase
+	 * and every checkpoint interval during Running phases. A job that was
+	 * running when the device was stopped is resumed from its last
+	 * checkpoint when it is executed again.
+	 * 
+	 * @param checkpointDirectory
+	 *            the directory of the checkpoint journal
+	 * @throws IOException
+	 *             if the checkpoint journal could not be read
+	 * @see JobCheckpointer
+	 */
+	public void setCheckpointDirectory(String checkpointDirectory)
+			throws IOException {
+		if (_checkpointer != null) {
+			_checkpointer.close();
+		}
+		_checkpointer = new JobCheckpointer(checkpointDirectory,
+				getProcessType() + " checkpointer");
+	}
+
+	/**
+	 * Sets how often the progress of a Running phase is checkpointed.
+	 * Defaults to a minute.
+	 * 
+	 * @param checkpointInterval
+	 *            the interval in milliseconds
+	 */
+	public void setCheckpointInterval(long checkpointInterval) {
+		_checkpointInterval = checkpointInterval;
+	}
+
+	public long getCheckpointInterval() {
+		return _checkpointInterval;
+	}
+
+	/**
+	 * Returns the checkpointer of this process.
+	 * 
+	 * @return the checkpointer; <code>null</code> if checkpointing is off
+	 */
+	public JobCheckpointer getCheckpointer() {
+		return _checkpointer;
+	}
+
+	/**
+	 * Restores the progress of a node from a checkpoint: the start times, the
+	 * sheet counters and the audits added before the checkpoint. An audit
+	 * that is already in the AuditPool is replaced by its checkpointed version.
+	 * 
+	 * @return the index of the phase to resume
+	 */
+	private int resume(JobCheckpoint checkpoint) {
+		log.info("Resuming from " + checkpoint + ".");
+		_startTime = parseDate(checkpoint.getStartTime());
+		_phaseStartTime = parseDate(checkpoint.getPhaseStartTime());
+		_counters.restore(checkpoint.getGood(), checkpoint.getWaste());
+		_counters.materialize();
+		final JDFNode jdf = _state.getJdf();
+		synchronized (getJdfLock(jdf)) {
+			final JDFAuditPool pool = jdf.getCreateAuditPool();
+			final Map existing = new HashMap();
+			final KElement[] elements = pool.getChildElementArray();
+			for (int i = 0; i < elements.length; i++) {
+				existing.put(elements[i].getAttribute(AttributeName.ID),
+						elements[i]);
+			}
+			for (Iterator it = checkpoint.getAudits().entrySet().iterator(); it
+					.hasNext();) {
+				final Map.Entry audit = (Map.Entry) it.next();
+				final KElement previous = (KElement) existing.get(audit
+						.getKey());
+				pool.copyElement(new JDFParser().parseString(
+						(String) audit.getValue()).getRoot(), previous);
+				if (previous != null) {
+					previous.deleteNode();
+				}
+			}
+			_checkpointedAudits.putAll(checkpoint.getAudits());
+		}
+		return checkpoint.getPhase();
+	}
+
+	private JDFDate parseDate(String date) {
 		try {
-			// Just a test to keep the IDLE-State for 10 more seconds
-			Thread.sleep(5 * 1000);
-		} catch (InterruptedException e) {
-			log.error("Sleeping interrupted in the processSimuPhases method: "
-					+ e);
+			return new JDFDate(date);
+		} catch (DataFormatException e) {
+			log.warn("Invalid date in checkpoint: " + date);
+			return now();
+		}
+	}
+
+	/**
+	 * Hands the progress of the node over to the checkpointer, with the
+	 * audits added or changed since the last checkpoint. Does not wait for
+	 * the checkpoint to be written.
+	 * 
+	 * @param phase
+	 *            the index of the phase to resume
+	 * @param phaseGood
+	 *            the good sheets produced during the phase
+	 * @param phaseWaste
+	 *            the waste sheets produced during the phase
+	 */
+	private void checkpoint(int phase, int phaseGood, int phaseWaste) {
+		if (_checkpointer == null || _runningQueueEntry == null) {
+			return;
+		}
+		final JDFNode jdf = _state.getJdf();
+		final Map audits = new LinkedHashMap();
+		synchronized (getJdfLock(jdf)) {
+			final JDFAuditPool pool = jdf.getAuditPool();
+			if (pool != null) {
+				final KElement[] elements = pool.getChildElementArray();
+				for (int i = _firstAudit; i < elements.length; i++) {
+					String id = elements[i].getAttribute(AttributeName.ID);
+					if (id.length() == 0) {
+						id = "Audit" + i;
+					}
+					final String xml = elements[i].toXML();
+					if (!xml.equals(_checkpointedAudits.get(id))) {
+						audits.put(id, xml);
+					}
+				}
+			}
+		}
+		_checkpointedAudits.putAll(audits);
+		final JDFDate phaseStartTime = (_phaseStartTime == null) ? _startTime
+				: _phaseStartTime;
+		_checkpointer.checkpoint(new JobCheckpoint(_runningQueueEntry
+				.getQueueEntryID(), _nodeId, jdf.getJobID(true), _state
+				.getJdfUrl(), _scenario.getName(), _scenario.getSeed(), phase, phaseGood, phaseWaste,
+				_counters.getGood(), _counters.getWaste(), _startTime
+						.getDateTimeISO(), phaseStartTime.getDateTimeISO(),
+				audits));
+		_lastCheckpoint = _clock.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the number of audits in the AuditPool of the node being
+	 * executed.
+	 */
+	private int countAudits() {
+		final JDFNode jdf = _state.getJdf();
+		synchronized (getJdfLock(jdf)) {
+			final JDFAuditPool pool = jdf.getAuditPool();
+			return (pool == null) ? 0 : pool.getChildElementArray().length;
+		}
+	}
 
+	private void processSimuPhases(ArrayList phases, JobCheckpoint resumed) {
+		// Audits that the JDF already had are not checkpointed
+		_firstAudit = countAudits();
+		_checkpointedAudits.clear();
+		int first = 0;
+		if (resumed == null) {
+			_startTime = now();
+			try {
+				// Just a test to keep the IDLE-State for 10 more seconds
+				_clock.sleep(5 * 1000);
+			} catch (InterruptedException e) {
+				log.error("Sleeping interrupted in the processSimuPhases method: "
+						+ e);
+
+			}
+		} else {
+			first = Math.min(resume(resumed), phases.size());
 		}
-		for (int i = 0; i < phases.size(); i++) {
+		_lastCheckpoint = _clock.currentTimeMillis();
+		for (int i = first; i < phases.size(); i++) {
+			_phaseIndex = i;
 //			checkRunningJob(); //(JP) check if still running.
 			
 			// (JP) info about simulation.
@@ -874,14 +1109,25 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 			
 
 			if (phases.get(i) instanceof Setup) {
-
-				processSetupPhase((Setup) phases.get(i));
+				Setup setup = (Setup) phases.get(i);
+				if (isSetupRequired(setup)) {
+					processSetupPhase(setup);
+				} else {
+					_setupSecondsSaved += setup.getPhaseLength();
+					log.info("Skipped setup, the device is already set up for "
+							+ "this job: " + setup.getJmfComment());
+				}
 			}
 			if (phases.get(i) instanceof Cleanup) {
 				processCleanupPhase((Cleanup) phases.get(i));
 			}
 			if (phases.get(i) instanceof Running) {
-				processRunningPhase((Running) phases.get(i));
+				if (resumed != null && i == first) {
+					processRunningPhase((Running) phases.get(i), resumed
+							.getPhaseGood(), resumed.getPhaseWaste());
+				} else {
+					processRunningPhase((Running) phases.get(i), 0, 0);
+				}
 			}
 			if (phases.get(i) instanceof Down) {
 				processDownPhase((Down) phases.get(i));
@@ -889,9 +1135,12 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 			if (phases.get(i) instanceof Stopped) {
 				processStoppedPhase((Stopped) phases.get(i));
 			}
+			checkpoint(i + 1, 0, 0);
 		}
 		setDeviceStatusDetails(null);
 		_state.getJdf().setStatus(EnumNodeStatus.Completed);
+		log.info("Setup time saved since startup: " + _setupSecondsSaved
+				+ " seconds");
 		// All SimuPhases are processed
 		printJobPhases();
 
@@ -925,7 +1174,19 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		partAmountWaste.setAttribute("ActualAmount", "0", null);
 	}
 
-	private void processRunningPhase(Running running) {
+	/**
+	 * Processes a Running phase.
+	 * 
+	 * @param running
+	 *            the phase
+	 * @param produced
+	 *            the good sheets already produced during the phase, if it is
+	 *            resumed from a checkpoint
+	 * @param actualWaste
+	 *            the waste sheets already produced during the phase
+	 */
+	private void processRunningPhase(Running running, int produced,
+			int actualWaste) {
 
 		log.debug("Starting a RunningPhase: " + running.getJmfComment());
 
@@ -937,26 +1198,16 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		_state.getJdf().setStatus(EnumNodeStatus.InProgress);
 		_state.setState(JDFDeviceInfo.EnumDeviceStatus.Running, running
 				.getJmfComment());
-		JDFAttributeMap emptyAttributeMap = new JDFAttributeMap();
-		JDFResourceLink resAmountOut = getOutputResourceLink(_state.getJdf());
-
-		JDFResourceLink resAmountIn = getAmountResource("Input", _state
-				.getJdf());
-
-		JDFPartAmount partAmountGood = getPartAmountValue(resAmountOut, "Good");
-		JDFPartAmount partAmountWaste = getPartAmountValue(resAmountOut,
-				"Waste");
-		
 
 		try {
-			Thread.sleep(1 * 1000);
+			_clock.sleep(1 * 1000);
 		} catch (InterruptedException e1) {
 
 			log.error("Pre-Sleep interrupted in Running " + e1);
 		}
 
-		// Preparing the JDFNode Attributes
-		// resAmountOut will be update after each processing step (Waste+Good)
+		// The JDF amounts are written at the end of the phase, not for every
+		// sheet
 
 		int phaseWasteAmount = 0;
 		int phaseGoodAmount = 0;
@@ -964,29 +1215,13 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		phaseWasteAmount = (_totalAmount * running.getWasteVariance()) / 100;
 		phaseGoodAmount = (_totalAmount * running.getGoodVariance()) / 100;
 
-		// Actual is the amout already produced (waste+good)
-		int actualAmount = (int) resAmountOut
-				.getActualAmount(new JDFAttributeMap());
-		int oldGood = 0;
-		int oldWaste = 0;
-		try {
-			oldGood = Integer.parseInt(partAmountGood
-					.getAttribute("ActualAmount"));
-			oldWaste = Integer.parseInt(partAmountWaste
-					.getAttribute("ActualAmount"));
-		} catch (NumberFormatException e) {
-			log.info("No Actual Amounts available: " + e);
-		}
-
 		// Start Running the job
 		int toBeProduced = 0;
 		toBeProduced = phaseGoodAmount + phaseWasteAmount;
-		int produced = 0;
-		int actualWaste = 0;
 		while (produced + actualWaste <= toBeProduced) {
 			try {
 				// Thread sleeps as long as it takes to produce 1 sheet
-				Thread.sleep(waitTime);
+				_clock.sleep(waitTime);
 
 			} catch (InterruptedException e) {
 				log.error("Sleep interuppted during RunningPhase. " + e);
@@ -998,52 +1233,46 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 			if (actualWaste <= phaseWasteAmount && phaseWasteAmount != 0) {
 
 				actualWaste++;
-				partAmountWaste.setAttribute("ActualAmount", oldWaste
-						+ actualWaste, null);
-				resAmountOut.setActualAmount(actualAmount++, emptyAttributeMap);
-				_totalProductionCounter++;
+				_counters.addWaste(1);
 				if (log.isDebugEnabled() && actualWaste % 10 == 0)
 					log.debug("Produced waste, actualWaste: " + actualWaste
-							+ " :ActualAmount:" + actualAmount
+							+ " :ActualAmount:" + _counters.getAmount()
 							+ " :TotalProductionCounter: "
-							+ _totalProductionCounter);
+							+ _counters.getTotalProductionCounter());
 			}
 			// Good production
 			else {
 				if (produced <= phaseGoodAmount && phaseGoodAmount != 0) {
 					produced++;
-					partAmountGood.setAttribute("ActualAmount", oldGood
-							+ produced, null);
-					resAmountOut.setActualAmount(actualAmount++,
-							emptyAttributeMap);
-					_totalProductionCounter++;
+					_counters.addGood(1);
 					if (log.isDebugEnabled() && produced % 10 == 0)
 						log.debug("Produced good, produced: " + produced
-								+ " :ActualAmount:" + actualAmount
+								+ " :ActualAmount:" + _counters.getAmount()
 								+ " :TotalProductionCounter: "
-								+ _totalProductionCounter);
+								+ _counters.getTotalProductionCounter());
 				}
 			}
 
 			_amountNotifier.fireEvent(new ProcessAmountEvent(EnumClass.Event,
-					(int) actualAmount, this, "Amount changed event"));
-
-			if (resAmountIn != null) {
-				// Minus should be applied to simulate the consumption
-				resAmountIn.setActualAmount(actualWaste + actualAmount,
-						emptyAttributeMap);
+					_counters.getAmount(), this, "Amount changed event"));
+			publishProgress();
+			if (_checkpointer != null
+					&& _clock.currentTimeMillis() - _lastCheckpoint >= _checkpointInterval) {
+				checkpoint(_phaseIndex, produced, actualWaste);
 			}
 
 		}
+		_counters.materialize();
+		publishStatus();
 
-		JDFDate endSetUpTime = new JDFDate();
+		JDFDate endSetUpTime = now();
 
 		JDFResourceLink resLink = getOutputResourceLink(_state.getJdf());
 		JDFResourcePool pool = _state.getJdf().getResourcePool();
 		JDFResource resOut = pool.getResourceByID(resLink.getID());
 		setResourceStatus(resOut.getResourceRoot(), EnumResStatus.Available);
 
-		addAudits(_state.getJdf(), _startTime, endSetUpTime, new JDFDate(),_state.getJobPhase().getStatus());
+		addAudits(_state.getJdf(), _startTime, endSetUpTime, now(),_state.getJobPhase().getStatus());
 
 		
 		// Calls the jobPhaseHashMap
@@ -1051,6 +1280,36 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 
 	}
 
+	/**
+	 * Returns whether a setup phase is needed for the job being executed. A
+	 * format change is not needed if the previous job printed on the same
+	 * media format, and a form change is not needed if the previous job
+	 * printed with the same plates.
+	 * 
+	 * @param setupPhase
+	 *            the setup phase
+	 * @return <code>false</code> if the phase can be skipped
+	 */
+	private boolean isSetupRequired(Setup setupPhase) {
+		if (setupPhase.getStatusDetails() == DeviceStatusDetails.SIZECHANGE) {
+			return JobProfile.needsFormatChange(_lastJobProfile, _jobProfile);
+		}
+		if (setupPhase.getStatusDetails() == DeviceStatusDetails.FORMCHANGE) {
+			return JobProfile.needsFormChange(_lastJobProfile, _jobProfile);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the setup time that was skipped because consecutive jobs
+	 * printed on the same media format or with the same plates.
+	 * 
+	 * @return the saved setup time in seconds since this process was created
+	 */
+	public long getSetupSecondsSaved() {
+		return _setupSecondsSaved;
+	}
+
 	private void processSetupPhase(Setup setupPhase) {
 		log.debug("Starting SetupPhase: " + setupPhase.getJmfComment());
 
@@ -1062,41 +1321,23 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		_state.getJdf().setStatus(EnumNodeStatus.Setup);
 		_state.setState(JDFDeviceInfo.EnumDeviceStatus.Setup, setupPhase
 				.getJmfComment());
-		JDFAttributeMap emptyMap = new JDFAttributeMap();
-
-		JDFResourceLink resAmountOut = getOutputResourceLink(_state.getJdf());
-
-		JDFPartAmount partAmountWaste = getPartAmountValue(resAmountOut,
-				"Waste");
 
 		try {
-			Thread.sleep(1 * 1000);
+			_clock.sleep(1 * 1000);
 
 			if (setupPhase.producesWaste()) {
 				setWasteCounter(true);
-				double actualAmount = resAmountOut.getActualAmount(emptyMap);
-
-				double oldWaste = Double.parseDouble(partAmountWaste
-						.getAttribute("ActualAmount"));
-				partAmountWaste.setAttribute("ActualAmount", setupPhase
-						.getWasteAmount()
-						+ oldWaste, null);
-
-				resAmountOut.setActualAmount(actualAmount
-						+ setupPhase.getWasteAmount(), emptyMap);
-				_totalProductionCounter += setupPhase.getWasteAmount();
-
+				_counters.addWaste(setupPhase.getWasteAmount());
 			}
 
-			
-			
-
-			Thread.sleep(setupPhase.getPhaseLength() * 1000);
+			_clock.sleep(setupPhase.getPhaseLength() * 1000);
 		} catch (InterruptedException e) {
 			log
 					.error("Sleeping has been interrupted, Setup not correctly processed.");
 		}
-		addAudits(_state.getJdf(), _startTime, new JDFDate(), new JDFDate(),_state.getJobPhase().getStatus());
+		_counters.materialize();
+		publishStatus();
+		addAudits(_state.getJdf(), _startTime, now(), now(),_state.getJobPhase().getStatus());
 	
 
 	}
@@ -1111,38 +1352,24 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		_state.getJdf().setStatus(EnumNodeStatus.Cleanup);
 		_state.setState(JDFDeviceInfo.EnumDeviceStatus.Cleanup, clean
 				.getJmfComment());
-		JDFAttributeMap emptyMap = new JDFAttributeMap();
-		JDFResourceLink resAmountOut = getOutputResourceLink(_state.getJdf());
-
-		JDFPartAmount partAmountWaste = getPartAmountValue(resAmountOut,
-				"Waste");
 
 		try {
-			Thread.sleep(1 * 1000);
+			_clock.sleep(1 * 1000);
 
 			if (clean.producesWaste()) {
 				setWasteCounter(true);
-				double actualAmount = resAmountOut.getActualAmount(emptyMap);
-
-				double oldWaste = Double.parseDouble(partAmountWaste
-						.getAttribute("ActualAmount"));
-				partAmountWaste.setAttribute("ActualAmount", clean
-						.getWasteAmount()
-						+ oldWaste, null);
-
-				resAmountOut.setActualAmount(actualAmount
-						+ clean.getWasteAmount(), emptyMap);
-				_totalProductionCounter += clean.getWasteAmount();
-
+				_counters.addWaste(clean.getWasteAmount());
 			}
 
-			Thread.sleep(clean.getPhaseLength() * 1000);
+			_clock.sleep(clean.getPhaseLength() * 1000);
 
 		} catch (InterruptedException e) {
 			log
 					.error("Sleeping has been interrupted, Setup not correctly processed.");
 		}
-		addAudits(_state.getJdf(), _startTime, new JDFDate(), new JDFDate(),_state.getJobPhase().getStatus());
+		_counters.materialize();
+		publishStatus();
+		addAudits(_state.getJdf(), _startTime, now(), now(),_state.getJobPhase().getStatus());
 
 	}
 
@@ -1166,7 +1393,7 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		// "Waste");
 
 		try {
-			Thread.sleep(1 * 1000);
+			_clock.sleep(1 * 1000);
 
 			if (stopped.producesWaste()) {
 				setWasteCounter(true);
@@ -1184,13 +1411,13 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 
 			}
 
-			Thread.sleep(stopped.getPhaseLength() * 1000);
+			_clock.sleep(stopped.getPhaseLength() * 1000);
 
 		} catch (InterruptedException e) {
 			log
 					.error("Sleeping has been interrupted, Down not correctly processed.");
 		}
-		addAudits(_state.getJdf(), _startTime, new JDFDate(), new JDFDate(),_state.getJobPhase().getStatus());
+		addAudits(_state.getJdf(), _startTime, now(), now(),_state.getJobPhase().getStatus());
 
 	}
 
@@ -1214,20 +1441,20 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
 		// "Waste");
 
 		try {
-			Thread.sleep(1 * 1000);
+			_clock.sleep(1 * 1000);
 
 			if (down.producesWaste()) {
 				setWasteCounter(true);
 
 			}
 
-			Thread.sleep(down.getPhaseLength() * 1000);
+			_clock.sleep(down.getPhaseLength() * 1000);
 
 		} catch (InterruptedException e) {
 			log
 					.error("Sleeping has been interrupted, Down not correctly processed.");
 		}
-		addAudits(_state.getJdf(), _startTime, new JDFDate(), new JDFDate(),_state.getJobPhase().getStatus());
+		addAudits(_state.getJdf(), _startTime, now(), now(),_state.getJobPhase().getStatus());
 
 	}
 
@@ -1256,13 +1483,13 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
         // Setup phase //
         // SetUp has been moved to ConventionalPrintingProcessSimu
         // _state.setState(_state.SETUP, "Loading job into Device");
-        // Download job
-        JDFNode jdf = new JDFParser().parseStream(_repository.getFile(jdfUrl))
-                .getJDFRoot();
+        // Download job, unless it was prefetched
+        final PreparedJob job = takePreparedJob(jdfUrl);
+        JDFNode jdf = job.getJdf();
         _state.setJdfUrl(jdfUrl.toString());
         // Execution phase for Device
         // _state.setState(_state.RUNNING);
-        List processNodes = JDFUtil.getProcessNodes(getProcessType(), jdf, null);
+        List processNodes = job.getProcessNodes();
         if (processNodes.size() == 0) {
             String err = "Could not execute process because there were no"
                     + " process nodes of type '" + getProcessType()
@@ -1275,8 +1502,9 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
             for (int i = 0, imax = processNodes.size(); i < imax; i++) {
                 JDFNode jdfNode = (JDFNode) processNodes.get(i);
 
-                if (JDFUtil.isExecutableAndAvailbleResources(jdfNode,
-                        null)) {
+                if (job.isExecutable(i)
+                        || JDFUtil.isExecutableAndAvailbleResources(jdfNode,
+                            null)) {
                     executeNode(jdfNode);
                 }
             }
@@ -1287,4 +1515,52 @@ public class ConventionalPrintingProcessSimu extends BaseProcess {
         log.debug("Finished running job: " + jdf);
         return jdf;
     }
+
+    /**
+     * Discards the checkpoints of jobs that are no longer queued and starts
+     * the process.
+     * 
+     * @see org.cip4.elk.impl.device.process.BaseProcess#init()
+     */
+    public void init() {
+        if (_checkpointer != null && _queue != null) {
+            _checkpointer.discardUnmatched(_queue);
+        }
+        super.init();
+    }
+
+    /**
+     * Runs a job. The checkpoints of a job that is aborted are discarded, it
+     * is not resumed.
+     * 
+     * @see org.cip4.elk.impl.device.process.BaseProcess#runJob(org.cip4.jdflib.jmf.JDFQueueEntry,
+     *      org.cip4.jdflib.jmf.JDFQueueSubmissionParams)
+     */
+    public JDFNode runJob(JDFQueueEntry qe, JDFQueueSubmissionParams subParams)
+            throws Exception {
+        final JDFNode jdf = super.runJob(qe, subParams);
+        if (_checkpointer != null
+                && JDFQueueEntry.EnumQueueEntryStatus.Aborted.equals(qe
+                        .getQueueEntryStatus())) {
+            _checkpointer.complete(qe.getQueueEntryID());
+        }
+        return jdf;
+    }
+
+    /**
+     * Writes the job's JDF and then discards the job's checkpoints.
+     * 
+     * @see org.cip4.elk.impl.device.process.BaseProcess#postProcessJob(org.cip4.jdflib.jmf.JDFQueueEntry,
+     *      org.cip4.jdflib.node.JDFNode)
+     */
+    protected void postProcessJob(JDFQueueEntry qe, JDFNode jdf)
+            throws IOException {
+        try {
+            super.postProcessJob(qe, jdf);
+        } finally {
+            if (_checkpointer != null) {
+                _checkpointer.complete(qe.getQueueEntryID());
+            }
+        }
+    }
 }
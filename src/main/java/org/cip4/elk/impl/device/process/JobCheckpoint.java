@@ -0,0 +1,293 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+
+/**
+ * The progress of a process node at one point of its execution: the job it
+ * belongs to, the simulation scenario it runs, the phase being executed, the sheets produced
+ * so far, the start times and the audits that were added to the JDF or
+ * changed since the previous checkpoint. A checkpoint is a small record, not a
+ * copy of the JDF, so that it can be written often.
+ * <p>
+ * Audits are identified by their <code>ID</code>; a later version of an audit,
+ * for example a PhaseTime whose end time has been set, replaces the earlier
+ * one. Checkpoints are immutable.
+ * </p>
+ *
+ * @see JobCheckpointer
+ */
+public class JobCheckpoint {
+
+    private final String _queueEntryId;
+    private final String _nodeId;
+    private final String _jobId;
+    private final String _url;
+    private final String _scenario;
+    private final long _seed;
+    private final int _phase;
+    private final int _phaseGood;
+    private final int _phaseWaste;
+    private final int _good;
+    private final int _waste;
+    private final String _startTime;
+    private final String _phaseStartTime;
+    /** The XML strings of the audits, mapped by audit ID */
+    private final Map _audits;
+
+    /**
+     * Creates a checkpoint.
+     *
+     * @param queueEntryId the ID of the queue entry being executed
+     * @param nodeId the ID of the process node being executed
+     * @param jobId the JobID of the JDF being executed
+     * @param url the URL of the JDF being executed
+     * @param scenario the name of the simulation scenario being run
+     * @param seed the seed of the simulation scenario
+     * @param phase the index of the phase being executed
+     * @param phaseGood the good sheets produced during the phase
+     * @param phaseWaste the waste sheets produced during the phase
+     * @param good the good sheets produced by the node
+     * @param waste the waste sheets produced by the node
+     * @param startTime the time the node's execution started, in ISO format
+     * @param phaseStartTime the time the current job phase started, in ISO
+     *            format
+     * @param audits the XML of the audits added to the JDF or changed since
+     *            the previous checkpoint, <code>String</code>s mapped by audit
+     *            ID in the order of the AuditPool
+     */
+    public JobCheckpoint(String queueEntryId, String nodeId, String jobId,
+            String url, String scenario, long seed, int phase, int phaseGood, int phaseWaste, int good,
+            int waste, String startTime, String phaseStartTime, Map audits) {
+        super();
+        _queueEntryId = queueEntryId;
+        _nodeId = nodeId;
+        _jobId = jobId;
+        _url = url;
+        _scenario = scenario;
+        _seed = seed;
+        _phase = phase;
+        _phaseGood = phaseGood;
+        _phaseWaste = phaseWaste;
+        _good = good;
+        _waste = waste;
+        _startTime = startTime;
+        _phaseStartTime = phaseStartTime;
+        _audits = Collections.unmodifiableMap(new LinkedHashMap(audits));
+    }
+
+    public String getQueueEntryId() {
+        return _queueEntryId;
+    }
+
+    public String getNodeId() {
+        return _nodeId;
+    }
+
+    public String getJobId() {
+        return _jobId;
+    }
+
+    public String getUrl() {
+        return _url;
+    }
+
+    /**
+     * Returns whether this checkpoint was taken while running the specified
+     * job. Queue entry IDs are only unique within one queue, so a checkpoint
+     * may only be resumed if the JDF it was taken from is still the queue
+     * entry's JDF.
+     *
+     * @param jobId the JobID of a JDF
+     * @param url the URL of the JDF
+     */
+    public boolean isJob(String jobId, String url) {
+        return _jobId.equals(jobId) && _url.equals(url);
+    }
+
+    public String getScenario() {
+        return _scenario;
+    }
+
+    public long getSeed() {
+        return _seed;
+    }
+
+    /**
+     * Returns whether this checkpoint was taken while running the specified
+     * simulation scenario. A node may only be resumed under the scenario it
+     * was checkpointed with, since another scenario has other phases.
+     *
+     * @param scenario the name of a simulation scenario
+     * @param seed the seed of the simulation scenario
+     */
+    public boolean isScenario(String scenario, long seed) {
+        return _scenario.equals(scenario) && _seed == seed;
+    }
+
+    /**
+     * Returns the index of the phase being executed. After the last phase
+     * this is the number of phases.
+     */
+    public int getPhase() {
+        return _phase;
+    }
+
+    public int getPhaseGood() {
+        return _phaseGood;
+    }
+
+    public int getPhaseWaste() {
+        return _phaseWaste;
+    }
+
+    public int getGood() {
+        return _good;
+    }
+
+    public int getWaste() {
+        return _waste;
+    }
+
+    public String getStartTime() {
+        return _startTime;
+    }
+
+    public String getPhaseStartTime() {
+        return _phaseStartTime;
+    }
+
+    /**
+     * Returns the XML of audits, mapped by audit ID.
+     *
+     * @return an unmodifiable map of <code>String</code>s, in the order of
+     *         the AuditPool
+     */
+    public Map getAudits() {
+        return _audits;
+    }
+
+    /**
+     * Returns the key that identifies the process node of a queue entry.
+     */
+    String getKey() {
+        return _queueEntryId + " " + _nodeId;
+    }
+
+    /**
+     * Returns a checkpoint with the progress of a later checkpoint and the
+     * audits of both checkpoints, where the later checkpoint's version of an
+     * audit replaces the earlier one. A later checkpoint of another job or
+     * scenario belongs to a new execution of the node and replaces this one.
+     *
+     * @param next a later checkpoint of the same process node
+     * @return the merged checkpoint
+     */
+    public JobCheckpoint merge(JobCheckpoint next) {
+        if (!isJob(next._jobId, next._url)
+                || !isScenario(next._scenario, next._seed)) {
+            return next;
+        }
+        final Map audits = new LinkedHashMap(_audits);
+        audits.putAll(next._audits);
+        return new JobCheckpoint(next._queueEntryId, next._nodeId,
+                next._jobId, next._url, next._scenario, next._seed,
+                next._phase, next._phaseGood, next._phaseWaste, next._good,
+                next._waste, next._startTime, next._phaseStartTime, audits);
+    }
+
+    /**
+     * Encodes this checkpoint as XML.
+     */
+    String toXml() {
+        final Element root = new Element("Checkpoint");
+        root.setAttribute("NodeID", _nodeId);
+        root.setAttribute("JobID", _jobId);
+        root.setAttribute("URL", _url);
+        root.setAttribute("Scenario", _scenario);
+        root.setAttribute("Seed", Long.toString(_seed));
+        root.setAttribute("Phase", Integer.toString(_phase));
+        root.setAttribute("PhaseGood", Integer.toString(_phaseGood));
+        root.setAttribute("PhaseWaste", Integer.toString(_phaseWaste));
+        root.setAttribute("Good", Integer.toString(_good));
+        root.setAttribute("Waste", Integer.toString(_waste));
+        root.setAttribute("StartTime", _startTime);
+        root.setAttribute("PhaseStartTime", _phaseStartTime);
+        for (Iterator it = _audits.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry audit = (Map.Entry) it.next();
+            root.addContent(new Element("Audit").setAttribute("ID",
+                (String) audit.getKey()).setText((String) audit.getValue()));
+        }
+        return new XMLOutputter(Format.getCompactFormat()).outputString(root);
+    }
+
+    /**
+     * Decodes a checkpoint encoded by {@link #toXml()}.
+     *
+     * @param queueEntryId the ID of the checkpoint's queue entry
+     * @param xml the encoded checkpoint
+     * @return the checkpoint
+     * @throws IOException if the XML is not a valid checkpoint
+     */
+    static JobCheckpoint parse(String queueEntryId, String xml)
+            throws IOException {
+        final Document doc;
+        try {
+            doc = new SAXBuilder().build(new StringReader(xml));
+        } catch (JDOMException e) {
+            throw new IOException("Could not parse the checkpoint of queue "
+                    + "entry '" + queueEntryId + "': " + e.getMessage());
+        }
+        final Element root = doc.getRootElement();
+        if (root.getAttributeValue("JobID") == null
+                || root.getAttributeValue("URL") == null) {
+            throw new IOException("The checkpoint of queue entry '"
+                    + queueEntryId + "' does not identify its job.");
+        }
+        final Map audits = new LinkedHashMap();
+        for (Iterator it = root.getChildren("Audit").iterator(); it.hasNext();) {
+            final Element audit = (Element) it.next();
+            audits.put(audit.getAttributeValue("ID"), audit.getText());
+        }
+        try {
+            return new JobCheckpoint(queueEntryId, root
+                    .getAttributeValue("NodeID"), root
+                    .getAttributeValue("JobID"), root
+                    .getAttributeValue("URL"), root
+                    .getAttributeValue("Scenario"), Long.parseLong(root
+                    .getAttributeValue("Seed")), getInt(root, "Phase"),
+                    getInt(root, "PhaseGood"), getInt(root, "PhaseWaste"),
+                    getInt(root, "Good"), getInt(root, "Waste"), root
+                            .getAttributeValue("StartTime"), root
+                            .getAttributeValue("PhaseStartTime"), audits);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid checkpoint of queue entry '"
+                    + queueEntryId + "': " + e.getMessage());
+        }
+    }
+
+    private static int getInt(Element element, String attribute) {
+        return Integer.parseInt(element.getAttributeValue(attribute));
+    }
+
+    public String toString() {
+        return "JobCheckpoint[" + _queueEntryId + ", node " + _nodeId
+                + ", job " + _jobId + ", scenario " + _scenario + " (" + _seed + "), phase "
+                + _phase + ", good " + _good + ", waste "
+                + _waste + ", " + _audits.size() + " audits]";
+    }
+}
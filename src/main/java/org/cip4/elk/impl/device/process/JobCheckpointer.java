@@ -0,0 +1,333 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.cip4.elk.impl.util.RecordJournal;
+import org.cip4.elk.queue.Queue;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+
+import EDU.oswego.cs.dl.util.concurrent.QueuedExecutor;
+import EDU.oswego.cs.dl.util.concurrent.ThreadFactory;
+
+/**
+ * Writes {@link JobCheckpoint}s of running jobs to a journal, so that a
+ * process that is restarted after the JVM died can resume a job where it left
+ * off instead of executing it again from the start.
+ * <p>
+ * Checkpoints are written asynchronously: {@link #checkpoint(JobCheckpoint)}
+ * only hands the checkpoint over to a writer thread and never waits for the
+ * disk. The writer appends all checkpoints handed over since it last ran and
+ * forces them to disk with a single <code>fsync</code>. A checkpoint that had
+ * not been written when the JVM died is lost; the job is then resumed from
+ * the checkpoint before it.
+ * </p>
+ * <p>
+ * The journal, the <code>checkpoint</code> files in the checkpoint directory,
+ * is replayed when the checkpointer is created. The checkpoints of a queue entry
+ * are discarded by {@link #complete(String)} once the job's JDF has been
+ * written, and the journal is compacted when it holds no more running jobs.
+ * Recovered checkpoints of jobs that are no longer in the queue are discarded
+ * by {@link #discardUnmatched(Queue)}.
+ * </p>
+ *
+ * @see RecordJournal
+ */
+public class JobCheckpointer {
+
+    /** A checkpoint, the data is the checkpoint XML */
+    public static final int CHECKPOINT = 1;
+    /** The checkpoints of a queue entry were discarded */
+    public static final int COMPLETE = 2;
+
+    /** The number of records after which the journal is compacted */
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    private static Logger log = Logger.getLogger(JobCheckpointer.class);
+
+    private final RecordJournal _journal;
+
+    private final QueuedExecutor _writer;
+
+    /** The checkpoints found when the journal was replayed */
+    private final Map _recovered = new HashMap();
+
+    /* Checkpoints and completed queue entry IDs waiting to be written,
+     * guarded by _pending */
+    private final List _pending = new ArrayList();
+    private boolean _writeScheduled = false;
+
+    /** The merged checkpoints of the running jobs, used by the writer only */
+    private final Map _checkpoints = new HashMap();
+
+    /**
+     * Creates a checkpointer that keeps its journal in the specified
+     * directory, and replays the journal.
+     *
+     * @param checkpointDirectory the directory of the journal
+     * @param name the name of the writer thread
+     * @throws IOException if the journal could not be replayed
+     */
+    public JobCheckpointer(String checkpointDirectory, final String name)
+            throws IOException {
+        super();
+        _journal = new RecordJournal(new File(checkpointDirectory),
+                "checkpoint");
+        _journal.replay(new RecordJournal.RecordHandler() {
+            public void handleRecord(int type, String queueEntryId,
+                    String data) {
+                try {
+                    if (type == CHECKPOINT) {
+                        merge(JobCheckpoint.parse(queueEntryId, data));
+                    } else if (type == COMPLETE) {
+                        remove(queueEntryId);
+                    }
+                } catch (IOException ioe) {
+                    log.warn("Skipping a checkpoint: " + ioe);
+                }
+            }
+        });
+        _recovered.putAll(_checkpoints);
+        if (_recovered.size() > 0) {
+            log.info("Found " + _recovered.size() + " checkpoints of jobs "
+                    + "that were running when the device was stopped.");
+        }
+        _writer = new QueuedExecutor();
+        _writer.setThreadFactory(new ThreadFactory() {
+            public Thread newThread(Runnable command) {
+                Thread thread = new Thread(command, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Sets whether checkpoints are forced to disk. Disabling this trades
+     * durability for speed and should only be used for testing.
+     *
+     * @param syncEnabled <code>true</code> to force checkpoints to disk;
+     *            <code>false</code> otherwise
+     */
+    public void setSyncEnabled(boolean syncEnabled) {
+        _journal.setSyncEnabled(syncEnabled);
+    }
+
+    /**
+     * Returns the last checkpoint of a process node that was running when
+     * the device was stopped, including the audits of all its checkpoints.
+     *
+     * @param queueEntryId the ID of the queue entry
+     * @param nodeId the ID of the process node
+     * @return the checkpoint; <code>null</code> if the node was not running
+     */
+    public JobCheckpoint getRecoveredCheckpoint(String queueEntryId,
+            String nodeId) {
+        synchronized (_recovered) {
+            return (JobCheckpoint) _recovered.get(queueEntryId + " " + nodeId);
+        }
+    }
+
+    /**
+     * Discards the recovered checkpoints whose job is no longer in the queue:
+     * checkpoints of queue entries that do not exist, and checkpoints of queue
+     * entries whose JobID or JDF URL differs from the checkpointed job, for
+     * example because the queue was not persistent and now reuses the queue
+     * entry ID. Called when the process is started.
+     *
+     * @param queue the queue of the process
+     */
+    public void discardUnmatched(Queue queue) {
+        final List unmatched = new ArrayList();
+        synchronized (_recovered) {
+            for (Iterator it = _recovered.values().iterator(); it.hasNext();) {
+                final JobCheckpoint checkpoint = (JobCheckpoint) it.next();
+                if (!isQueued(queue, checkpoint)
+                        && !unmatched.contains(checkpoint.getQueueEntryId())) {
+                    unmatched.add(checkpoint.getQueueEntryId());
+                }
+            }
+        }
+        for (int i = 0, imax = unmatched.size(); i < imax; i++) {
+            log.info("Discarding the checkpoints of queue entry '"
+                    + unmatched.get(i) + "', its job is no longer queued.");
+            complete((String) unmatched.get(i));
+        }
+    }
+
+    private boolean isQueued(Queue queue, JobCheckpoint checkpoint) {
+        final JDFQueueEntry qe = queue.getQueueEntry(checkpoint
+                .getQueueEntryId());
+        final JDFQueueSubmissionParams subParams = queue
+                .getQueueSubmissionParams(checkpoint.getQueueEntryId());
+        if (qe == null || subParams == null) {
+            return false;
+        }
+        // The JobID is set by the preprocessor, it may still be missing
+        final String jobId = qe.getJobID();
+        return checkpoint.getUrl().equals(subParams.getURL())
+                && (jobId.length() == 0 || checkpoint.getJobId().equals(jobId));
+    }
+
+    /**
+     * Writes a checkpoint asynchronously. Returns immediately.
+     *
+     * @param checkpoint the checkpoint
+     */
+    public void checkpoint(JobCheckpoint checkpoint) {
+        schedule(checkpoint);
+    }
+
+    /**
+     * Discards the checkpoints of a queue entry asynchronously. Returns
+     * immediately.
+     *
+     * @param queueEntryId the ID of a queue entry whose JDF has been written
+     */
+    public void complete(String queueEntryId) {
+        synchronized (_recovered) {
+            for (Iterator it = _recovered.values().iterator(); it.hasNext();) {
+                if (((JobCheckpoint) it.next()).getQueueEntryId().equals(
+                    queueEntryId)) {
+                    it.remove();
+                }
+            }
+        }
+        schedule(queueEntryId);
+    }
+
+    private void schedule(Object record) {
+        synchronized (_pending) {
+            _pending.add(record);
+            if (_writeScheduled) {
+                return;
+            }
+            _writeScheduled = true;
+        }
+        try {
+            _writer.execute(new Runnable() {
+                public void run() {
+                    write();
+                }
+            });
+        } catch (InterruptedException ie) {
+            // The records stay pending and are written with the next ones
+            synchronized (_pending) {
+                _writeScheduled = false;
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Appends the pending records to the journal and forces them to disk.
+     * Called by the writer thread.
+     */
+    private void write() {
+        final Object[] records;
+        synchronized (_pending) {
+            records = _pending.toArray();
+            _pending.clear();
+            _writeScheduled = false;
+        }
+        try {
+            long position = -1;
+            for (int i = 0; i < records.length; i++) {
+                if (records[i] instanceof JobCheckpoint) {
+                    final JobCheckpoint checkpoint = (JobCheckpoint) records[i];
+                    merge(checkpoint);
+                    position = _journal.append(CHECKPOINT, checkpoint
+                            .getQueueEntryId(), checkpoint.toXml());
+                } else {
+                    remove((String) records[i]);
+                    position = _journal.append(COMPLETE, (String) records[i],
+                        null);
+                }
+            }
+            if (_checkpoints.isEmpty()
+                    || _journal.getRecordCount() > COMPACTION_THRESHOLD) {
+                compact();
+            } else if (position >= 0) {
+                _journal.sync(position);
+            }
+        } catch (IOException ioe) {
+            log.error("Could not write job checkpoints: " + ioe, ioe);
+        }
+    }
+
+    /**
+     * Replaces the journal with the merged checkpoints of the running jobs.
+     */
+    private void compact() throws IOException {
+        final List records = new ArrayList(_checkpoints.size());
+        for (Iterator it = _checkpoints.values().iterator(); it.hasNext();) {
+            final JobCheckpoint checkpoint = (JobCheckpoint) it.next();
+            records.add(new Object[] { new Integer(CHECKPOINT),
+                    checkpoint.getQueueEntryId(), checkpoint.toXml() });
+        }
+        _journal.compact(records);
+    }
+
+    private void merge(JobCheckpoint checkpoint) {
+        final JobCheckpoint previous = (JobCheckpoint) _checkpoints
+                .get(checkpoint.getKey());
+        _checkpoints.put(checkpoint.getKey(), (previous == null) ? checkpoint
+                : previous.merge(checkpoint));
+    }
+
+    private void remove(String queueEntryId) {
+        for (Iterator it = _checkpoints.values().iterator(); it.hasNext();) {
+            if (((JobCheckpoint) it.next()).getQueueEntryId().equals(
+                queueEntryId)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Waits until all checkpoints handed over so far have been written.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        final Object written = new Object();
+        final boolean[] done = new boolean[1];
+        _writer.execute(new Runnable() {
+            public void run() {
+                synchronized (written) {
+                    done[0] = true;
+                    written.notifyAll();
+                }
+            }
+        });
+        synchronized (written) {
+            while (!done[0]) {
+                written.wait();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending checkpoints, stops the writer thread and closes the
+     * journal.
+     */
+    public void close() {
+        try {
+            flush();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        _writer.shutdownAfterProcessingCurrentlyQueuedTasks();
+        _journal.close();
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import org.cip4.jdflib.jmf.JDFJobPhase;
+
+/**
+ * A process that can run several queue entries at a time and therefore
+ * reports a JobPhase per queue entry. The queue asks it for the JobPhase of a
+ * running queue entry instead of using
+ * {@link org.cip4.elk.device.process.Process#getJobPhase()}, which only
+ * reports one job.
+ *
+ * @see ProcessPool
+ */
+public interface JobPhaseProvider {
+
+    /**
+     * Returns the JobPhase of a queue entry that is being run.
+     *
+     * @param queueEntryId the ID of a queue entry
+     * @return the JobPhase of the queue entry; <code>null</code> if the queue
+     *         entry is not being run
+     */
+    public JDFJobPhase getJobPhase(String queueEntryId);
+}
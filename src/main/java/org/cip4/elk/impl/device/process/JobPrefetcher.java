@@ -0,0 +1,123 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.apache.log4j.Logger;
+
+import EDU.oswego.cs.dl.util.concurrent.Callable;
+import EDU.oswego.cs.dl.util.concurrent.FutureResult;
+import EDU.oswego.cs.dl.util.concurrent.QueuedExecutor;
+import EDU.oswego.cs.dl.util.concurrent.ThreadFactory;
+
+/**
+ * Prepares a process' next job in the background while the process executes
+ * its current job, so that the process does not wait for the job to be
+ * downloaded and parsed when it starts the next job. One job is prefetched at
+ * a time; prefetching another job discards the previous one.
+ * <p>
+ * The job to prefetch is a guess: if the process starts a different job, the
+ * prefetched job is discarded and the process prepares the job it started
+ * itself.
+ * </p>
+ *
+ * @see BaseProcess#prepareJob(String)
+ */
+public class JobPrefetcher {
+
+    private static Logger log = Logger.getLogger(JobPrefetcher.class);
+
+    private final BaseProcess _process;
+    private final QueuedExecutor _executor;
+    /** The URL of the prefetched job, guarded by this */
+    private String _jdfUrl;
+    /** The prefetched job, guarded by this */
+    private FutureResult _job;
+
+    /**
+     * Creates a prefetcher with its own background thread.
+     *
+     * @param process the process whose jobs are prefetched
+     * @param name the name of the background thread
+     */
+    public JobPrefetcher(BaseProcess process, final String name) {
+        _process = process;
+        _executor = new QueuedExecutor();
+        _executor.setThreadFactory(new ThreadFactory() {
+            public Thread newThread(Runnable command) {
+                Thread thread = new Thread(command, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts preparing a job in the background, unless it is already the
+     * prefetched job.
+     *
+     * @param jdfUrl the URL of the job's JDF
+     */
+    public synchronized void prefetch(final String jdfUrl) {
+        if (jdfUrl.equals(_jdfUrl)) {
+            return;
+        }
+        final FutureResult job = new FutureResult();
+        try {
+            _executor.execute(job.setter(new Callable() {
+                public Object call() throws Exception {
+                    return _process.prepareJob(jdfUrl);
+                }
+            }));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        log.debug("Prefetching job '" + jdfUrl + "'...");
+        _jdfUrl = jdfUrl;
+        _job = job;
+    }
+
+    /**
+     * Returns the prefetched job if it is the specified job, waiting for it
+     * to be prepared if necessary. The job is no longer prefetched
+     * afterwards.
+     *
+     * @param jdfUrl the URL of the job's JDF
+     * @return the prepared job; <code>null</code> if the job was not
+     *         prefetched or could not be prepared in the background
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public PreparedJob take(String jdfUrl) throws InterruptedException {
+        final FutureResult job;
+        synchronized (this) {
+            if (!jdfUrl.equals(_jdfUrl)) {
+                return null;
+            }
+            job = _job;
+            _jdfUrl = null;
+            _job = null;
+        }
+        try {
+            return (PreparedJob) job.get();
+        } catch (InvocationTargetException ite) {
+            log.warn("Could not prefetch job '" + jdfUrl + "': "
+                    + ite.getTargetException());
+            return null;
+        }
+    }
+
+    /**
+     * Stops the background thread. A job that is being prepared is finished
+     * first.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            _jdfUrl = null;
+            _job = null;
+        }
+        _executor.shutdownAfterProcessingCurrentlyQueuedTasks();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.cip4.jdflib.core.JDFResourceLink;
+import org.cip4.jdflib.datatypes.JDFAttributeMap;
+import org.cip4.jdflib.node.JDFNode;
+
+/**
+ * The dependencies between the process nodes of a job. A process node
+ * depends on another process node if one of its input resources is an
+ * output resource of the other node, as given by the <em>rRef</em>s of the
+ * nodes' <em>ResourceLink</em>s. If several nodes produce the same resource,
+ * for example different partitions of it, a node that consumes the resource
+ * depends on all of them. Nodes that do not depend on each other,
+ * for example the sections of a gray box or combined job, may be executed
+ * concurrently.
+ * <p>
+ * If the dependencies contain a cycle the graph falls back to executing the
+ * nodes one after another, in the order they were given.
+ * </p>
+ * The graph is immutable and thread safe.
+ *
+ * @see BaseProcess#setNodeWorkers(int)
+ */
+public class NodeGraph {
+
+    private static Logger log = Logger.getLogger(NodeGraph.class);
+
+    private final List _nodes;
+    /** For each node, the indices of the nodes it depends on */
+    private final int[][] _dependencies;
+    /** For each node, the indices of the nodes that depend on it */
+    private final int[][] _dependants;
+
+    /**
+     * Builds the dependency graph of process nodes.
+     *
+     * @param processNodes a list of <code>JDFNode</code>s
+     */
+    public NodeGraph(List processNodes) {
+        super();
+        _nodes = processNodes;
+        final int nodeCount = processNodes.size();
+        // Maps the ID of an output resource to the list of nodes that produce
+        // it
+        final Map producers = new HashMap();
+        for (int i = 0; i < nodeCount; i++) {
+            final List links = getResourceLinks((JDFNode) processNodes.get(i),
+                "Output");
+            for (int j = 0, jmax = links.size(); j < jmax; j++) {
+                final String rRef = ((JDFResourceLink) links.get(j)).getrRef();
+                List nodes = (List) producers.get(rRef);
+                if (nodes == null) {
+                    nodes = new ArrayList();
+                    producers.put(rRef, nodes);
+                }
+                nodes.add(new Integer(i));
+            }
+        }
+        final List[] dependencies = new List[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            dependencies[i] = new ArrayList();
+            final List links = getResourceLinks((JDFNode) processNodes.get(i),
+                "Input");
+            for (int j = 0, jmax = links.size(); j < jmax; j++) {
+                final List nodes = (List) producers
+                        .get(((JDFResourceLink) links.get(j)).getrRef());
+                if (nodes == null) {
+                    continue;
+                }
+                for (int k = 0, kmax = nodes.size(); k < kmax; k++) {
+                    final Integer producer = (Integer) nodes.get(k);
+                    if (producer.intValue() != i
+                            && !dependencies[i].contains(producer)) {
+                        dependencies[i].add(producer);
+                    }
+                }
+            }
+        }
+        if (hasCycle(dependencies)) {
+            log.warn("The resources of the process nodes depend on each"
+                    + " other in a cycle. The nodes will be executed in"
+                    + " document order.");
+            for (int i = 0; i < nodeCount; i++) {
+                dependencies[i].clear();
+                if (i > 0) {
+                    dependencies[i].add(new Integer(i - 1));
+                }
+            }
+        }
+        final List[] dependants = new List[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            dependants[i] = new ArrayList();
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            for (int j = 0, jmax = dependencies[i].size(); j < jmax; j++) {
+                dependants[((Integer) dependencies[i].get(j)).intValue()]
+                        .add(new Integer(i));
+            }
+        }
+        _dependencies = toArrays(dependencies);
+        _dependants = toArrays(dependants);
+    }
+
+    private static List getResourceLinks(JDFNode node, String usageType) {
+        final JDFAttributeMap attr = new JDFAttributeMap();
+        attr.put("Usage", usageType);
+        final List links = node.getResourceLinks(attr);
+        return (links == null) ? Collections.EMPTY_LIST : links;
+    }
+
+    /**
+     * Returns whether the dependencies contain a cycle, by repeatedly
+     * removing the nodes that depend on no remaining node.
+     */
+    private static boolean hasCycle(List[] dependencies) {
+        final int nodeCount = dependencies.length;
+        final boolean[] removed = new boolean[nodeCount];
+        int removedCount = 0;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int i = 0; i < nodeCount; i++) {
+                if (!removed[i] && isFree(dependencies[i], removed)) {
+                    removed[i] = true;
+                    removedCount++;
+                    progress = true;
+                }
+            }
+        }
+        return removedCount < nodeCount;
+    }
+
+    private static boolean isFree(List dependencies, boolean[] removed) {
+        for (int j = 0, jmax = dependencies.size(); j < jmax; j++) {
+            if (!removed[((Integer) dependencies.get(j)).intValue()]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[][] toArrays(List[] lists) {
+        final int[][] arrays = new int[lists.length][];
+        for (int i = 0; i < lists.length; i++) {
+            arrays[i] = new int[lists[i].size()];
+            for (int j = 0; j < arrays[i].length; j++) {
+                arrays[i][j] = ((Integer) lists[i].get(j)).intValue();
+            }
+        }
+        return arrays;
+    }
+
+    /**
+     * Returns the number of process nodes.
+     */
+    public int size() {
+        return _nodes.size();
+    }
+
+    public JDFNode getNode(int index) {
+        return (JDFNode) _nodes.get(index);
+    }
+
+    /**
+     * Returns the nodes a node depends on. The node may only be executed
+     * after these nodes have been executed.
+     *
+     * @param index the index of the node
+     * @return the indices of the nodes the node depends on
+     */
+    public int[] getDependencies(int index) {
+        return (int[]) _dependencies[index].clone();
+    }
+
+    /**
+     * Returns the nodes that depend on a node.
+     *
+     * @param index the index of the node
+     * @return the indices of the nodes that depend on the node
+     */
+    public int[] getDependants(int index) {
+        return (int[]) _dependants[index].clone();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.cip4.jdflib.node.JDFNode;
+
+/**
+ * A job that has been downloaded, parsed and pre-flighted, and is ready to
+ * be executed by a process.
+ *
+ * @see BaseProcess#prepareJob(String)
+ * @see JobPrefetcher
+ */
+public class PreparedJob {
+
+    private final String _jdfUrl;
+    private final JDFNode _jdf;
+    private final List _processNodes;
+    private final boolean[] _executable;
+    private final NodeGraph _nodeGraph;
+
+    /**
+     * Creates a prepared job.
+     *
+     * @param jdfUrl the URL the job was read from
+     * @param jdf the job's root node
+     * @param processNodes the process nodes the process executes, may be
+     *            <code>null</code> if there are none
+     * @param executable for each process node, whether it was executable and
+     *            all its input resources were available when the job was
+     *            prepared
+     */
+    public PreparedJob(String jdfUrl, JDFNode jdf, List processNodes,
+            boolean[] executable) {
+        _jdfUrl = jdfUrl;
+        _jdf = jdf;
+        _processNodes = (processNodes == null) ? Collections.EMPTY_LIST
+                : processNodes;
+        _executable = executable;
+        _nodeGraph = new NodeGraph(_processNodes);
+    }
+
+    public String getJdfUrl() {
+        return _jdfUrl;
+    }
+
+    public JDFNode getJdf() {
+        return _jdf;
+    }
+
+    /**
+     * Returns the process nodes the process executes.
+     *
+     * @return a list of <code>JDFNode</code>s, empty if there are none
+     */
+    public List getProcessNodes() {
+        return _processNodes;
+    }
+
+    /**
+     * Returns whether a process node was executable and all its input
+     * resources were available when the job was prepared. A node that was
+     * not may have become executable since, for example because a node
+     * before it produced its input resources.
+     *
+     * @param index the index of the node in {@link #getProcessNodes()}
+     * @return <code>true</code> if the node was executable
+     */
+    public boolean isExecutable(int index) {
+        return _executable[index];
+    }
+
+    /**
+     * Returns the dependencies between the process nodes, built when the job
+     * was prepared.
+     *
+     * @return the dependency graph of {@link #getProcessNodes()}
+     */
+    public NodeGraph getNodeGraph() {
+        return _nodeGraph;
+    }
+}
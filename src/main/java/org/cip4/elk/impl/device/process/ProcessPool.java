@@ -0,0 +1,418 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.cip4.elk.device.DeviceConfig;
+import org.cip4.elk.device.process.Process;
+import org.cip4.elk.device.process.ProcessAmountEvent;
+import org.cip4.elk.device.process.ProcessAmountListener;
+import org.cip4.elk.device.process.ProcessQueueEntryEvent;
+import org.cip4.elk.device.process.ProcessQueueEntryEventListener;
+import org.cip4.elk.device.process.ProcessStatusEvent;
+import org.cip4.elk.device.process.ProcessStatusListener;
+import org.cip4.elk.lifecycle.Lifecycle;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.jmf.JDFDeviceInfo;
+import org.cip4.jdflib.jmf.JDFJobPhase;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+import org.cip4.jdflib.node.JDFNode;
+
+/**
+ * A device with several lanes that run jobs in parallel. Each lane is a
+ * process of its own, with its own thread, state and JobPhase, and all lanes
+ * take queue entries from the same queue. Lanes claim queue entries from the
+ * queue atomically, see
+ * {@link org.cip4.elk.impl.queue.ConcurrentQueue#claimFirstRunnableQueueEntry(org.cip4.jdflib.util.JDFDate)},
+ * so no queue entry is run by two lanes.
+ * <p>
+ * To the rest of Elk the pool is the device's process: it forwards the events
+ * of its lanes to its own listeners, reports the status of its busiest lane
+ * and includes the JobPhase of every running job in its DeviceInfo. The lanes
+ * are initialized and destroyed by the pool, so they should not be configured
+ * with an <code>init-method</code> of their own:
+ * </p>
+ *
+ * <pre>
+ * &lt;bean id=&quot;process&quot; class=&quot;org.cip4.elk.impl.device.process.ProcessPool&quot; init-method=&quot;init&quot;&gt;
+ *     &lt;property name=&quot;processes&quot;&gt;
+ *         &lt;list&gt;
+ *             &lt;ref bean=&quot;lane1&quot;/&gt;
+ *             &lt;ref bean=&quot;lane2&quot;/&gt;
+ *         &lt;/list&gt;
+ *     &lt;/property&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ *
+ * @see BaseProcess
+ */
+public class ProcessPool extends AbstractProcess implements Lifecycle,
+        JobPhaseProvider, ProcessStatusListener,
+        ProcessQueueEntryEventListener, ProcessAmountListener {
+
+    // The statuses of the pool's lanes in order of precedence, the pool has
+    // the status of its lane with the status that comes first
+    private static final JDFDeviceInfo.EnumDeviceStatus[] STATUS_PRECEDENCE = {
+            JDFDeviceInfo.EnumDeviceStatus.Running,
+            JDFDeviceInfo.EnumDeviceStatus.Setup,
+            JDFDeviceInfo.EnumDeviceStatus.Cleanup,
+            JDFDeviceInfo.EnumDeviceStatus.Idle };
+
+    private static Logger log = Logger.getLogger(ProcessPool.class);
+
+    private Process[] _processes;
+    private DeviceConfig _config;
+
+    /**
+     * Creates a pool without lanes, use {@link #setProcesses(List)} to add
+     * them.
+     */
+    public ProcessPool() {
+        _processes = new Process[0];
+    }
+
+    /**
+     * Sets the lanes of this pool. Each lane is a process that takes queue
+     * entries from the same queue. The pool listens to the events of each
+     * lane.
+     *
+     * @param processes a list of {@link Process} objects
+     * @throws IllegalArgumentException if the list is empty
+     */
+    public void setProcesses(List processes) {
+        if (processes == null || processes.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "A process pool must have at least one process.");
+        }
+        _processes = (Process[]) processes.toArray(new Process[processes
+                .size()]);
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].addProcessStatusListener(this);
+            _processes[i].addQueueEntryEventListener(this);
+            if (_processes[i] instanceof AbstractProcess) {
+                ((AbstractProcess) _processes[i])
+                        .addProcessAmountListener(this);
+            }
+        }
+        log.debug("Configured a process pool with " + _processes.length
+                + " processes.");
+    }
+
+    /**
+     * Returns the lanes of this pool.
+     *
+     * @return a list of {@link Process} objects
+     */
+    public List getProcesses() {
+        final List processes = new ArrayList(_processes.length);
+        for (int i = 0; i < _processes.length; i++) {
+            processes.add(_processes[i]);
+        }
+        return processes;
+    }
+
+    /**
+     * Returns the lane that is running the specified queue entry.
+     *
+     * @param queueEntryId the ID of a queue entry
+     * @return the process running the queue entry; <code>null</code> if no
+     *         lane is running it
+     */
+    public Process getProcess(String queueEntryId) {
+        for (int i = 0; i < _processes.length; i++) {
+            final JDFQueueEntry qe = _processes[i].getRunningQueueEntry();
+            if (qe != null && queueEntryId.equals(qe.getQueueEntryID())) {
+                return _processes[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the queue entries that the lanes are running.
+     *
+     * @return a list of running {@link JDFQueueEntry} elements
+     */
+    public List getRunningQueueEntries() {
+        final List queueEntries = new ArrayList();
+        for (int i = 0; i < _processes.length; i++) {
+            final JDFQueueEntry qe = _processes[i].getRunningQueueEntry();
+            if (qe != null) {
+                queueEntries.add(qe);
+            }
+        }
+        return queueEntries;
+    }
+
+    /**
+     * Returns the JobPhases of the jobs that the lanes are running.
+     *
+     * @return a list of {@link JDFJobPhase} elements
+     */
+    public List getJobPhases() {
+        final List phases = new ArrayList();
+        for (int i = 0; i < _processes.length; i++) {
+            final JDFJobPhase phase = _processes[i].getJobPhase();
+            if (phase != null) {
+                phases.add(phase);
+            }
+        }
+        return phases;
+    }
+
+    /**
+     * Returns the JobPhase of the lane that is running the specified queue
+     * entry.
+     *
+     * @see JobPhaseProvider#getJobPhase(String)
+     */
+    public JDFJobPhase getJobPhase(String queueEntryId) {
+        final Process process = getProcess(queueEntryId);
+        return (process == null) ? null : process.getJobPhase();
+    }
+
+    /**
+     * Returns the first running queue entry, see
+     * {@link #getRunningQueueEntries()} for all of them.
+     *
+     * @see org.cip4.elk.device.process.Process#getRunningQueueEntry()
+     */
+    public JDFQueueEntry getRunningQueueEntry() {
+        final List queueEntries = getRunningQueueEntries();
+        return queueEntries.isEmpty() ? null : (JDFQueueEntry) queueEntries
+                .get(0);
+    }
+
+    /**
+     * Returns the JobPhase of the first running job, see
+     * {@link #getJobPhases()} for all of them.
+     *
+     * @see org.cip4.elk.device.process.Process#getJobPhase()
+     */
+    public JDFJobPhase getJobPhase() {
+        final List phases = getJobPhases();
+        return phases.isEmpty() ? null : (JDFJobPhase) phases.get(0);
+    }
+
+    /**
+     * Returns the DeviceInfo of the first lane with the status of the pool. If
+     * <code>includeJobPhase</code> is <code>true</code> the JobPhase of
+     * every running job is included.
+     *
+     * @see org.cip4.elk.device.process.Process#getDeviceInfo(boolean)
+     */
+    public JDFDeviceInfo getDeviceInfo(boolean includeJobPhase) {
+        final JDFDeviceInfo deviceInfo = getFirstProcess().getDeviceInfo(false);
+        // Some processes always include their JobPhase
+        deviceInfo.removeChildren(ElementName.JOBPHASE, null);
+        deviceInfo.setDeviceStatus(getStatus());
+        if (includeJobPhase) {
+            final List phases = getJobPhases();
+            for (int i = 0, imax = phases.size(); i < imax; i++) {
+                deviceInfo.copyElement((JDFJobPhase) phases.get(i), null);
+            }
+        }
+        return deviceInfo;
+    }
+
+    /**
+     * Returns the status of the busiest lane: <em>Running</em> if any lane is
+     * running, otherwise <em>Setup</em>, <em>Cleanup</em> or <em>Idle</em>.
+     * If no lane has any of these statuses the status of the first lane is
+     * returned.
+     *
+     * @see org.cip4.elk.device.process.Process#getStatus()
+     */
+    public JDFDeviceInfo.EnumDeviceStatus getStatus() {
+        for (int s = 0; s < STATUS_PRECEDENCE.length; s++) {
+            for (int i = 0; i < _processes.length; i++) {
+                if (STATUS_PRECEDENCE[s].equals(_processes[i].getStatus())) {
+                    return STATUS_PRECEDENCE[s];
+                }
+            }
+        }
+        return getFirstProcess().getStatus();
+    }
+
+    /**
+     * Forwards a lane's status event with the status of the pool.
+     *
+     * @see org.cip4.elk.device.process.ProcessStatusListener#processStatusChanged(org.cip4.elk.device.process.ProcessStatusEvent)
+     */
+    public void processStatusChanged(ProcessStatusEvent event) {
+        fireEvent(new ProcessStatusEvent(event.getEventClass(), getStatus(),
+                this, event.getDescription()));
+    }
+
+    /**
+     * Forwards a lane's queue entry event.
+     *
+     * @see org.cip4.elk.device.process.ProcessQueueEntryEventListener#queueEntryStatusChanged(org.cip4.elk.device.process.ProcessQueueEntryEvent)
+     */
+    public void queueEntryStatusChanged(ProcessQueueEntryEvent event) {
+        fireEvent(event);
+    }
+
+    /**
+     * Forwards a lane's amount event.
+     *
+     * @see org.cip4.elk.device.process.ProcessAmountListener#processAmountChanged(org.cip4.elk.device.process.ProcessAmountEvent)
+     */
+    public void processAmountChanged(ProcessAmountEvent event) {
+        fireEvent(event);
+    }
+
+    /**
+     * Runs the job on the first idle lane.
+     *
+     * @return the processed job; <code>null</code> if no lane is idle
+     * @see org.cip4.elk.device.process.Process#runJob(org.cip4.jdflib.jmf.JDFQueueEntry,
+     *      org.cip4.jdflib.jmf.JDFQueueSubmissionParams)
+     */
+    public JDFNode runJob(JDFQueueEntry qe, JDFQueueSubmissionParams subParams)
+            throws Exception {
+        final Process process = getIdleProcess();
+        if (process == null) {
+            log.warn("Could not run queue entry '" + qe.getQueueEntryID()
+                    + "' because no process is idle.");
+            return null;
+        }
+        return process.runJob(qe, subParams);
+    }
+
+    /**
+     * Runs the job on the first idle lane.
+     *
+     * @return the processed job; <code>null</code> if no lane is idle
+     * @see org.cip4.elk.device.process.Process#runJob(java.lang.String)
+     */
+    public JDFNode runJob(String jdfUrl) throws Exception {
+        final Process process = getIdleProcess();
+        if (process == null) {
+            log.warn("Could not run job '" + jdfUrl
+                    + "' because no process is idle.");
+            return null;
+        }
+        return process.runJob(jdfUrl);
+    }
+
+    public void testRunJob(String jdfUrl) {
+        getFirstProcess().testRunJob(jdfUrl);
+    }
+
+    public void suspendJob() {
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].suspendJob();
+        }
+    }
+
+    public void resumeJob() {
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].resumeJob();
+        }
+    }
+
+    public void abortJob() {
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].abortJob();
+        }
+    }
+
+    public void flushResources() {
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].flushResources();
+        }
+    }
+
+    public void wakeUp() {
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].wakeUp();
+        }
+    }
+
+    public void sleep() {
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].sleep();
+        }
+    }
+
+    public String getProcessType() {
+        return getFirstProcess().getProcessType();
+    }
+
+    public String[] getProcessTypes() {
+        return getFirstProcess().getProcessTypes();
+    }
+
+    /**
+     * @deprecated Use {@link DeviceConfig#getDeviceConfig()}.getDeviceID()
+     *             instead.
+     */
+    public String getProcessId() {
+        return getFirstProcess().getProcessId();
+    }
+
+    /**
+     * Sets the configuration of this pool and of all its lanes.
+     *
+     * @see org.cip4.elk.device.process.Process#setDeviceConfig(org.cip4.elk.device.DeviceConfig)
+     */
+    public void setDeviceConfig(DeviceConfig config) {
+        _config = config;
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].setDeviceConfig(config);
+        }
+    }
+
+    public DeviceConfig getDeviceConfig() {
+        return (_config == null) ? getFirstProcess().getDeviceConfig()
+                : _config;
+    }
+
+    /**
+     * Initializes all lanes, which starts them.
+     *
+     * @see org.cip4.elk.lifecycle.Lifecycle#init()
+     */
+    public void init() {
+        log.info("Starting " + _processes.length + " processes...");
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].init();
+        }
+    }
+
+    /**
+     * Destroys all lanes.
+     *
+     * @see org.cip4.elk.lifecycle.Lifecycle#destroy()
+     */
+    public void destroy() {
+        log.info("Stopping " + _processes.length + " processes...");
+        for (int i = 0; i < _processes.length; i++) {
+            _processes[i].destroy();
+        }
+    }
+
+    private Process getFirstProcess() {
+        if (_processes.length == 0) {
+            throw new IllegalStateException(
+                    "The process pool has no processes.");
+        }
+        return _processes[0];
+    }
+
+    private Process getIdleProcess() {
+        for (int i = 0; i < _processes.length; i++) {
+            if (JDFDeviceInfo.EnumDeviceStatus.Idle.equals(_processes[i]
+                    .getStatus())) {
+                return _processes[i];
+            }
+        }
+        return null;
+    }
+}
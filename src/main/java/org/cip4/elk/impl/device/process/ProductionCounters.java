@@ -0,0 +1,159 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import org.cip4.jdflib.core.JDFPartAmount;
+import org.cip4.jdflib.core.JDFResourceLink;
+import org.cip4.jdflib.datatypes.JDFAttributeMap;
+
+/**
+ * Counts the good and waste sheets a process produces. The print loop counts
+ * sheets in primitive fields instead of writing every sheet to the JDF;
+ * {@link #materialize()} writes the counts to the JDF amounts the counters are
+ * bound to. Processes materialize the counts at phase boundaries.
+ * <p>
+ * The counts are written by the process thread only and may be read by any
+ * thread. {@link #materialize()} writes to the JDF being executed and should
+ * only be called by the process thread.
+ * </p>
+ */
+public class ProductionCounters {
+
+    private static final JDFAttributeMap EMPTY_MAP = new JDFAttributeMap();
+
+    private volatile int _good = 0;
+    private volatile int _waste = 0;
+    /** All sheets produced since the process was created */
+    private volatile int _total = 0;
+
+    /* The JDF amounts the counts are written to, guarded by this */
+    private JDFResourceLink _amountOut;
+    private JDFResourceLink _amountIn;
+    private JDFPartAmount _partAmountGood;
+    private JDFPartAmount _partAmountWaste;
+    private int _writtenGood = -1;
+    private int _writtenWaste = -1;
+
+    public ProductionCounters() {
+        super();
+    }
+
+    /**
+     * Resets the good and waste counts and binds them to the JDF amounts of
+     * a new job or process node.
+     *
+     * @param amountOut the output resource link, its <em>ActualAmount</em>
+     *            is set to the good and waste sheets
+     * @param amountIn the input resource link, its <em>ActualAmount</em> is
+     *            set to the good and waste sheets; may be <code>null</code>
+     * @param partAmountGood the <em>PartAmount</em> of the good sheets, may
+     *            be <code>null</code>
+     * @param partAmountWaste the <em>PartAmount</em> of the waste sheets, may
+     *            be <code>null</code>
+     */
+    public synchronized void bind(JDFResourceLink amountOut,
+            JDFResourceLink amountIn, JDFPartAmount partAmountGood,
+            JDFPartAmount partAmountWaste) {
+        _good = 0;
+        _waste = 0;
+        _amountOut = amountOut;
+        _amountIn = amountIn;
+        _partAmountGood = partAmountGood;
+        _partAmountWaste = partAmountWaste;
+        _writtenGood = -1;
+        _writtenWaste = -1;
+    }
+
+    /**
+     * Sets the good and waste counts of a job that is resumed from a
+     * checkpoint. The sheets are not added to the total production counter,
+     * they were produced before the process was created.
+     *
+     * @param good the good sheets produced before the checkpoint
+     * @param waste the waste sheets produced before the checkpoint
+     * @see JobCheckpoint
+     */
+    public synchronized void restore(int good, int waste) {
+        _good = good;
+        _waste = waste;
+    }
+
+    /**
+     * Counts good sheets. May only be called by the process thread.
+     *
+     * @param sheets the number of good sheets produced
+     */
+    public void addGood(int sheets) {
+        _good += sheets;
+        _total += sheets;
+    }
+
+    /**
+     * Counts waste sheets. May only be called by the process thread.
+     *
+     * @param sheets the number of waste sheets produced
+     */
+    public void addWaste(int sheets) {
+        _waste += sheets;
+        _total += sheets;
+    }
+
+    /**
+     * Returns the good sheets produced since the counters were bound.
+     */
+    public int getGood() {
+        return _good;
+    }
+
+    /**
+     * Returns the waste sheets produced since the counters were bound.
+     */
+    public int getWaste() {
+        return _waste;
+    }
+
+    /**
+     * Returns the good and waste sheets produced since the counters were
+     * bound.
+     */
+    public int getAmount() {
+        return _good + _waste;
+    }
+
+    /**
+     * Returns all sheets produced since the counters were created.
+     *
+     * @return the value of <em>DeviceInfo/@TotalProductionCounter</em>
+     */
+    public int getTotalProductionCounter() {
+        return _total;
+    }
+
+    /**
+     * Writes the good and waste counts to the JDF amounts the counters are
+     * bound to. Nothing is written if the counts have not changed since they
+     * were last written.
+     */
+    public synchronized void materialize() {
+        final int good = _good;
+        final int waste = _waste;
+        if (good == _writtenGood && waste == _writtenWaste) {
+            return;
+        }
+        if (_partAmountGood != null) {
+            _partAmountGood.setAttribute("ActualAmount", good, null);
+        }
+        if (_partAmountWaste != null) {
+            _partAmountWaste.setAttribute("ActualAmount", waste, null);
+        }
+        if (_amountOut != null) {
+            _amountOut.setActualAmount(good + waste, EMPTY_MAP);
+        }
+        if (_amountIn != null) {
+            _amountIn.setActualAmount(good + waste, EMPTY_MAP);
+        }
+        _writtenGood = good;
+        _writtenWaste = waste;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A compiled simulation scenario: the phases a simulated device goes through
+ * for every job, and the seed of the random numbers that vary them. A phase
+ * may occur only with a given probability, which is used to inject failures
+ * such as breakdowns and paper jams, and may have a jitter that varies its
+ * length, or for a Running phase its good and waste amounts.
+ * <p>
+ * {@link #createRun(String)} draws the phases of one job from a random number
+ * generator seeded with the scenario's seed and the job's key, so each job
+ * executes its own, reproducible sequence of phases. Scenarios are immutable and thread safe.
+ * </p>
+ *
+ * @see SimulationScenarioParser
+ * @see ConfSimuHandler
+ */
+public class SimulationScenario {
+
+	private final String _name;
+
+	private final long _seed;
+
+	private final SimulationPhaseInterface[] _phases;
+
+	/** For each phase, the percent probability that it occurs */
+	private final int[] _probabilities;
+
+	/** For each phase, the maximum percent it is varied by */
+	private final int[] _jitters;
+
+	/**
+	 * Creates a scenario.
+	 *
+	 * @param name
+	 *            the name of the scenario
+	 * @param seed
+	 *            the seed of the random numbers
+	 * @param phases
+	 *            a list of <code>SimulationPhaseInterface</code>s
+	 * @param probabilities
+	 *            for each phase, the percent probability that it occurs
+	 * @param jitters
+	 *            for each phase, the maximum percent its length or amounts
+	 *            are varied by
+	 */
+	public SimulationScenario(String name, long seed, List phases,
+			int[] probabilities, int[] jitters) {
+		_name = name;
+		_seed = seed;
+		_phases = (SimulationPhaseInterface[]) phases
+				.toArray(new SimulationPhaseInterface[phases.size()]);
+		_probabilities = probabilities.clone();
+		_jitters = jitters.clone();
+	}
+
+	public String getName() {
+		return _name;
+	}
+
+	public long getSeed() {
+		return _seed;
+	}
+
+	/**
+	 * Returns all phases of the scenario, as configured, for display.
+	 *
+	 * @return a list of <code>SimulationPhaseInterface</code>s
+	 */
+	public List getPhases() {
+		return Arrays.asList(_phases);
+	}
+
+	/**
+	 * Returns the phases of one job. Phases with a probability below 100
+	 * percent are left out at random, and phases with a jitter are replaced by
+	 * varied copies. The random numbers are seeded with the scenario's seed
+	 * and the job's key, so different jobs get different runs but a job
+	 * always gets the same run, also when it is resumed after a restart.
+	 *
+	 * @param jobKey
+	 *            the key of the job, for example its queue entry ID; may be
+	 *            <code>null</code>
+	 * @return an <code>ArrayList</code> of
+	 *         <code>SimulationPhaseInterface</code>s
+	 */
+	public ArrayList createRun(String jobKey) {
+		final Random random = new Random((jobKey == null) ? _seed
+				: _seed ^ jobKey.hashCode());
+		final ArrayList run = new ArrayList(_phases.length);
+		for (int i = 0; i < _phases.length; i++) {
+			if (_probabilities[i] < 100
+					&& random.nextInt(100) >= _probabilities[i]) {
+				continue;
+			}
+			if (_jitters[i] > 0) {
+				run.add(vary(_phases[i], _jitters[i], random));
+			} else {
+				run.add(_phases[i]);
+			}
+		}
+		return run;
+	}
+
+	/**
+	 * Returns a copy of a phase whose length, or good and waste variance for
+	 * a Running phase, is varied by up to <code>jitter</code> percent.
+	 */
+	private static SimulationPhaseInterface vary(
+			SimulationPhaseInterface phase, int jitter, Random random) {
+		if (phase instanceof Running) {
+			final Running running = (Running) phase;
+			final Running varied = new Running(running.getJmfComment());
+			varied.setStatusDetails(running.getStatusDetails());
+			varied.setDeviceSpeed(running.getDeviceSpeed());
+			varied.setGoodVariance(vary(running.getGoodVariance(), jitter,
+					random));
+			varied.setWasteVariance(vary(running.getWasteVariance(), jitter,
+					random));
+			return varied;
+		}
+		final long length = vary((int) phase.getPhaseLength(), jitter, random);
+		if (phase instanceof Setup) {
+			final Setup setup = new Setup(length, phase.getJmfComment());
+			setup.setStatusDetails(((Setup) phase).getStatusDetails());
+			setup.setDeviceSpeed(phase.getDeviceSpeed());
+			return setup;
+		} else if (phase instanceof Stopped) {
+			final Stopped stopped = new Stopped(length, phase.getJmfComment());
+			stopped.setStatusDetails(((Stopped) phase).getStatusDetails());
+			return stopped;
+		} else if (phase instanceof Down) {
+			final Down down = new Down(length, phase.getJmfComment());
+			down.setStatusDetails(((Down) phase).getStatusDetails());
+			return down;
+		} else if (phase instanceof Cleanup) {
+			final Cleanup cleanup = new Cleanup(length, phase.getJmfComment());
+			cleanup.setStatusDetails(((Cleanup) phase).getStatusDetails());
+			return cleanup;
+		}
+		return phase;
+	}
+
+	/**
+	 * Varies a value by up to <code>jitter</code> percent of itself; a value
+	 * of 0 is varied by up to <code>jitter</code>.
+	 */
+	private static int vary(int value, int jitter, Random random) {
+		final int range = (value == 0) ? jitter : Math.max(1, value * jitter
+				/ 100);
+		return Math.max(0, value + random.nextInt(2 * range + 1) - range);
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process.simulation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+
+/**
+ * Parses a simulation scenario from an XML script and compiles it into a
+ * {@link SimulationScenario}. A script looks like this:
+ *
+ * <pre>
+ *  &lt;SimulationScenario name=&quot;default&quot; seed=&quot;42&quot;&gt;
+ *    &lt;Setup length=&quot;5&quot; speed=&quot;0&quot; statusDetails=&quot;WarmingUp&quot; comment=&quot;...&quot;/&gt;
+ *    &lt;Running speed=&quot;20000&quot; goodVariance=&quot;20&quot; wasteVariance=&quot;0&quot; jitter=&quot;5&quot;
+ *             statusDetails=&quot;Good&quot; comment=&quot;...&quot;/&gt;
+ *    &lt;Stopped length=&quot;5&quot; probability=&quot;10&quot; statusDetails=&quot;PaperJam&quot; comment=&quot;...&quot;/&gt;
+ *    &lt;Down length=&quot;5&quot; statusDetails=&quot;BreakDown&quot; comment=&quot;...&quot;/&gt;
+ *    &lt;Cleanup length=&quot;5&quot; statusDetails=&quot;WashUp&quot; comment=&quot;...&quot;/&gt;
+ *  &lt;/SimulationScenario&gt;
+ * </pre>
+ *
+ * The <code>length</code> of a phase is given in seconds; the variances of a
+ * <em>Running</em> phase in percent of the job's amount.
+ * <code>probability</code> and <code>jitter</code> are optional and default
+ * to 100 and 0 percent.
+ *
+ * @see SimulationScenario
+ */
+public class SimulationScenarioParser {
+
+	private SimulationScenarioParser() {
+	}
+
+	/**
+	 * Parses a simulation scenario.
+	 *
+	 * @param in
+	 *            the XML script
+	 * @param defaultName
+	 *            the name of the scenario if the script does not name it
+	 * @return the compiled scenario
+	 * @throws IOException
+	 *             if the script could not be read or is not well-formed
+	 * @throws IllegalArgumentException
+	 *             if the script is not a valid scenario
+	 */
+	public static SimulationScenario parse(InputStream in, String defaultName)
+			throws IOException {
+		final Document doc;
+		try {
+			final SAXBuilder builder = new SAXBuilder();
+			builder.setValidation(false);
+			doc = builder.build(in);
+		} catch (JDOMException e) {
+			throw new IOException("Could not parse simulation scenario '"
+					+ defaultName + "': " + e.getMessage());
+		}
+		final Element root = doc.getRootElement();
+		if (!root.getName().equals("SimulationScenario")) {
+			throw new IllegalArgumentException(
+					"Simulation scenarios must have a SimulationScenario root element, not "
+							+ root.getName() + ".");
+		}
+		final String name = root.getAttributeValue("name", defaultName);
+		final long seed = Long.parseLong(root.getAttributeValue("seed", "0"));
+		final List elements = root.getChildren();
+		final List phases = new ArrayList(elements.size());
+		final int[] probabilities = new int[elements.size()];
+		final int[] jitters = new int[elements.size()];
+		int i = 0;
+		for (Iterator it = elements.iterator(); it.hasNext(); i++) {
+			final Element element = (Element) it.next();
+			phases.add(createPhase(element));
+			probabilities[i] = getInt(element, "probability", 100);
+			jitters[i] = getInt(element, "jitter", 0);
+			if (probabilities[i] < 0 || probabilities[i] > 100
+					|| jitters[i] < 0) {
+				throw new IllegalArgumentException("Phase " + (i + 1)
+						+ " of simulation scenario '" + name
+						+ "' has an invalid probability or jitter.");
+			}
+		}
+		return new SimulationScenario(name, seed, phases, probabilities,
+				jitters);
+	}
+
+	private static SimulationPhaseInterface createPhase(Element element) {
+		final String type = element.getName();
+		final String comment = element.getAttributeValue("comment", "");
+		final DeviceStatusDetails details = getStatusDetails(element);
+		if (type.equals("Running")) {
+			final Running running = new Running(comment);
+			running.setStatusDetails(details);
+			running.setDeviceSpeed(getInt(element, "speed", 0));
+			running.setGoodVariance(getInt(element, "goodVariance", 0));
+			running.setWasteVariance(getInt(element, "wasteVariance", 0));
+			return running;
+		}
+		final long length = getInt(element, "length", 0);
+		final SimulationPhaseInterface phase;
+		if (type.equals("Setup")) {
+			final Setup setup = new Setup(length, comment);
+			setup.setDeviceSpeed(getInt(element, "speed", 0));
+			phase = setup;
+		} else if (type.equals("Stopped")) {
+			phase = new Stopped(length, comment);
+		} else if (type.equals("Down")) {
+			phase = new Down(length, comment);
+		} else if (type.equals("Cleanup")) {
+			phase = new Cleanup(length, comment);
+		} else {
+			throw new IllegalArgumentException("Unknown simulation phase: "
+					+ type);
+		}
+		phase.setStatusDetails(details);
+		return phase;
+	}
+
+	private static DeviceStatusDetails getStatusDetails(Element element) {
+		final String name = element.getAttributeValue("statusDetails");
+		if (name == null) {
+			return null;
+		}
+		final DeviceStatusDetails details = DeviceStatusDetails.getEnum(name);
+		if (details == null) {
+			throw new IllegalArgumentException("Unknown status details: "
+					+ name);
+		}
+		return details;
+	}
+
+	private static int getInt(Element element, String attribute,
+			int defaultValue) {
+		final String value = element.getAttributeValue(attribute);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The " + attribute
+					+ " of simulation phase " + element.getName()
+					+ " is not a number: " + value);
+		}
+	}
+}
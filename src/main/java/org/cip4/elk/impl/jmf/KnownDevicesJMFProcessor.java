@@ -7,8 +7,9 @@ package org.cip4.elk.impl.jmf;
 import org.cip4.elk.JDFElementFactory;
 import org.cip4.elk.device.DeviceConfig;
 import org.cip4.elk.device.process.Process;
+import org.cip4.elk.impl.device.SimpleDeviceConfig;
 import org.cip4.elk.impl.jmf.util.BaseICSDeviceFilter;
-import org.cip4.elk.jmf.util.DeviceFilter;
+import org.cip4.elk.impl.jmf.util.DeviceDetailsCache;
 import org.cip4.jdflib.core.ElementName;
 import org.cip4.jdflib.jmf.JDFDeviceInfo;
 import org.cip4.jdflib.jmf.JDFMessage;
@@ -41,7 +42,7 @@ import org.cip4.jdflib.resource.JDFDeviceList;
 public class KnownDevicesJMFProcessor extends AbstractJMFProcessor {
 
     private Process _deviceProcess; // XXX
-    private DeviceFilter _devicefilter;
+    private BaseICSDeviceFilter _devicefilter; // Could also be a DeviceFilter
     private final static String MESSAGE_TYPE = "KnownDevices";
 
     /**
@@ -102,6 +103,20 @@ public class KnownDevicesJMFProcessor extends AbstractJMFProcessor {
 
         JDFDeviceInfo deviceinfo = _deviceProcess.getDeviceInfo(true);
 
+        final DeviceConfig config = _deviceProcess.getDeviceConfig();
+        if (config instanceof SimpleDeviceConfig) {
+            // Appends the Device already filtered for the level of detail
+            final DeviceDetailsCache devices = ((SimpleDeviceConfig) config)
+                    .getDeviceDetailsCache();
+            if (devices != null) {
+                _devicefilter.appendDeviceList(output, deviceinfo, devices,
+                    input.getDeviceFilter(0));
+                output.setType(getMessageType());
+                output.setReturnCode(returnCode);
+                return returnCode;
+            }
+        }
+
         JDFDeviceList list = (JDFDeviceList) JDFElementFactory.getInstance()
                 .createJDFElement(ElementName.DEVICELIST);
         list.copyElement(deviceinfo, null); // add deviceInfo to list
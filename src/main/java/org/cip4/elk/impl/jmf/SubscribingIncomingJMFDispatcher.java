@@ -1,11 +1,17 @@
 package org.cip4.elk.impl.jmf;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.cip4.elk.JDFElementFactory;
+import org.cip4.elk.impl.queue.ConcurrentQueue;
 import org.cip4.elk.jmf.JMFProcessor;
 import org.cip4.elk.jmf.SubscriptionManager;
+import org.cip4.elk.queue.Queue;
+import org.cip4.jdflib.jmf.JDFCommand;
 import org.cip4.jdflib.jmf.JDFJMF;
 import org.cip4.jdflib.jmf.JDFMessage;
 import org.cip4.jdflib.jmf.JDFQuery;
@@ -23,6 +29,14 @@ import org.cip4.jdflib.jmf.JDFSubscription;
  * dispatcher attempts to register the subscription with the configured
  * <code>SubscriptionManager</code> before the message is dispatched.
  * </p>
+ * <p>
+ * If a queue has been set and a JMF message contains several consecutive
+ * queue commands, for example several <em>RemoveQueueEntry</em> commands,
+ * they are processed as one batch on the queue, see
+ * {@link ConcurrentQueue#beginBatch()}. Each message still gets its own
+ * <em>Response</em>. Submissions are never part of a batch, because the queue
+ * would stay locked while their JDF is downloaded.
+ * </p>
  * 
  * @author Claes Buckwalter (clabu@itn.liu.se)
  * @version $Id: SubscribingIncomingJMFDispatcher.java,v 1.6 2006/08/15 08:52:38 prosi Exp $
@@ -36,6 +50,15 @@ public class SubscribingIncomingJMFDispatcher extends
 
     private final static String XSI_ATTRIBUTE_NAME = "xsi:type";
     private final static String XSI_NAMESPACE_URI = "http://www.w3.org/2001/XMLSchema-instance";
+    // The commands that change the queue without fetching a JDF
+    private final static Set QUEUE_COMMAND_TYPES = new HashSet(Arrays
+            .asList(new String[] { "AbortQueueEntry", "CloseQueue",
+                    "FlushQueue", "HoldQueue", "HoldQueueEntry", "OpenQueue",
+                    "RemoveQueueEntry", "ResumeQueue", "ResumeQueueEntry",
+                    "SetQueueEntryPosition", "SetQueueEntryPriority",
+                    "SuspendQueueEntry" }));
+
+    private Queue _queue;
 
     private Logger log;
 
@@ -75,50 +98,103 @@ public class SubscribingIncomingJMFDispatcher extends
 
     /**
      * An implementation that dispatches JMF messages in sequence, one at a time
-     * after each other.
+     * after each other. Consecutive queue commands are dispatched as one batch
+     * on the queue.
      */
     public JDFJMF dispatchJMF(JDFJMF jmfIn) {
+        List msgsIn = jmfIn.getMessageVector (null, null);
         // Build response JMF
         JDFJMF jmfOut = _factory.createJMF();
         jmfOut.setSenderID(_config.getID());
 
-        List msgsIn = jmfIn.getMessageVector (null, null);
-        for (int i = 0, imax = msgsIn.size(); i < imax; i++) {
-            JDFMessage msgIn = (JDFMessage) msgsIn.get(i);
-            String xsiType;
-
-            JDFResponse msgOut = jmfOut.appendResponse();
-            String msgID = msgIn.getID();
-            String msgType = msgIn.getType();
-
-            //XXX Signal
-            if (msgIn instanceof JDFSignal) {
-
-                handleSignal((JDFSignal) msgIn);
-                if (imax == 1) {
+        int i = 0;
+        final int imax = msgsIn.size();
+        while (i < imax) {
+            final int batchEnd = getBatchEnd(msgsIn, i);
+            if (batchEnd - i > 1) {
+                final ConcurrentQueue queue = (ConcurrentQueue) _queue;
+                log.debug("Dispatching " + (batchEnd - i)
+                        + " queue commands as one batch...");
+                queue.beginBatch();
+                try {
+                    for (; i < batchEnd; i++) {
+                        dispatchMessage((JDFMessage) msgsIn.get(i), jmfOut);
+                    }
+                } finally {
+                    queue.endBatch();
+                }
+            } else {
+                JDFMessage msgIn = (JDFMessage) msgsIn.get(i++);
+                dispatchMessage(msgIn, jmfOut);
+                //XXX Signal
+                if (msgIn instanceof JDFSignal && imax == 1) {
                     // If the JMF only contained a Signal, return null
                     return null;
-                } else {
-                    // Process the rest of the messages
-                    continue;
                 }
-            }//XXX
+            }
+        }
+        return jmfOut;
+    }
 
-            msgOut.setID(generateResponseID(msgID));
-            msgOut.setrefID(msgID);
-            msgOut.setType(msgType);
+    /**
+     * Returns the end of the run of consecutive queue commands that starts at
+     * the specified message. The commands of a run can be dispatched as a
+     * batch.
+     * 
+     * @param msgsIn the messages to dispatch
+     * @param start the index of the first message of the run
+     * @return the index after the last queue command of the run;
+     *         <code>start</code> if the message is not a queue command or no
+     *         <code>ConcurrentQueue</code> has been set
+     */
+    private int getBatchEnd(List msgsIn, int start) {
+        if (!(_queue instanceof ConcurrentQueue)) {
+            return start;
+        }
+        int end = start;
+        while (end < msgsIn.size()) {
+            JDFMessage msgIn = (JDFMessage) msgsIn.get(end);
+            if (!(msgIn instanceof JDFCommand)
+                    || !QUEUE_COMMAND_TYPES.contains(msgIn.getType())) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
 
-            // set xsi:type.
-            xsiType = "Response" + msgType;
-            msgOut.setAttributeNS(XSI_NAMESPACE_URI, XSI_ATTRIBUTE_NAME,
-                xsiType);
+    /**
+     * Dispatches a message and appends its response.
+     * 
+     * @param msgIn the message to dispatch
+     * @param jmfOut the JMF to append the response to
+     */
+    private void dispatchMessage(JDFMessage msgIn, JDFJMF jmfOut) {
+        String xsiType;
 
-            // Dispatches message to processor
-            registerSubscription(msgIn, msgOut);
-            JMFProcessor processor = getProcessor(msgType);
-            processor.processJMF(msgIn, msgOut);
-        }
-        return jmfOut;
+        JDFResponse msgOut = jmfOut.appendResponse();
+        String msgID = msgIn.getID();
+        String msgType = msgIn.getType();
+
+        //XXX Signal
+        if (msgIn instanceof JDFSignal) {
+            handleSignal((JDFSignal) msgIn);
+            return;
+        }//XXX
+
+        msgOut.setID(generateResponseID(msgID));
+        msgOut.setrefID(msgID);
+        msgOut.setType(msgType);
+
+        // set xsi:type.
+        xsiType = "Response" + msgType;
+        msgOut.setAttributeNS(XSI_NAMESPACE_URI, XSI_ATTRIBUTE_NAME,
+            xsiType);
+
+        // Dispatches message to processor
+        registerSubscription(msgIn, msgOut);
+        JMFProcessor processor = getProcessor(msgType);
+        processor.processJMF(msgIn, msgOut);
     }
 
     /**
@@ -133,6 +209,27 @@ public class SubscribingIncomingJMFDispatcher extends
         _subscriptionManager = subscriptionManager;
     }
 
+    /**
+     * Sets the queue that queue commands are dispatched to. If the queue is a
+     * {@link ConcurrentQueue} consecutive queue commands are dispatched as one
+     * batch.
+     * 
+     * @param queue the queue; <code>null</code> to dispatch all messages one
+     *            at a time
+     */
+    public void setQueue(Queue queue) {
+        _queue = queue;
+    }
+
+    /**
+     * Returns the queue that queue commands are dispatched to.
+     * 
+     * @return the queue; <code>null</code> if no queue has been set
+     */
+    public Queue getQueue() {
+        return _queue;
+    }
+
     /**
      * Returns the configured subscription mananger.
      * 
@@ -13,6 +13,11 @@ import org.cip4.elk.JDFElementFactory;
 import org.cip4.elk.device.DeviceConfig;
 import org.cip4.elk.device.process.Process;
 import org.cip4.elk.impl.jmf.util.Messages;
+import org.cip4.elk.impl.queue.ConcurrentQueue;
+import org.cip4.elk.impl.queue.scheduling.JobProfile;
+import org.cip4.elk.impl.queue.util.QueueLock;
+import org.cip4.elk.impl.util.Clock;
+import org.cip4.elk.impl.util.RealTimeClock;
 import org.cip4.elk.impl.util.Repository;
 import org.cip4.elk.jmf.IncomingJMFDispatcher;
 import org.cip4.elk.jmf.OutgoingJMFDispatcher;
@@ -23,6 +28,7 @@ import org.cip4.jdflib.auto.JDFAutoQueueEntry.EnumQueueEntryStatus;
 import org.cip4.jdflib.core.ElementName;
 import org.cip4.jdflib.core.JDFNodeInfo;
 import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.core.KElement;
 import org.cip4.jdflib.core.VString;
 import org.cip4.jdflib.jmf.JDFAcknowledge;
 import org.cip4.jdflib.jmf.JDFCommand;
@@ -78,6 +84,7 @@ public class SimpleJDFPreprocessor implements JDFPreprocessor {
     protected Process _process;
     protected IncomingJMFDispatcher _incomingJMFDispatcher;
     protected Repository _repository;
+    protected Clock _clock = new RealTimeClock();
 
     /**
      * Creates a SimpleJDFPreprocessor.
@@ -124,6 +131,7 @@ public class SimpleJDFPreprocessor implements JDFPreprocessor {
      * 
      * @param submissionParams the <em>QueueSumissionParams</em>, may not be
      *            <code>null</code>
+     * @param jdf the parsed JDF that the submission parameters refer to
      * @param response the response message, a <em>Notification</em> will be
      *            appended to the response if the submission failed, otherwise
      *            the submitted <em>QueueEntry</em> will be appended
@@ -132,13 +140,23 @@ public class SimpleJDFPreprocessor implements JDFPreprocessor {
      *             or if response is <code>null</code>
      */
     private int enqueueJDF(final JDFQueueSubmissionParams submissionParams,
-            final JDFResponse response) {
+            final JDFNode jdf, final JDFResponse response) {
         JDFQueueEntry queueEntry = null;
         int returnCode = 0;
-        synchronized (_queue) {
+        // Holds the write lock so that the process never sees the queue entry
+        // before it is held. The JDF has already been parsed, so the lock is
+        // only held while the queue entry is added and held.
+        final QueueLock lock = QueueLock.getLock(_queue);
+        lock.lockWrite();
+        try {
             // must set the status of the queue entry to setUp
             // until the JDF Node is valid and ready to be processed.
-            queueEntry = _queue.addQueueEntry(submissionParams);
+            if (_queue instanceof ConcurrentQueue) {
+                queueEntry = ((ConcurrentQueue) _queue).addQueueEntry(
+                    submissionParams, jdf);
+            } else {
+                queueEntry = _queue.addQueueEntry(submissionParams);
+            }
             if (queueEntry != null) {
                 log.info("Submitted queue entry with id "
                         + queueEntry.getQueueEntryID()
@@ -157,6 +175,8 @@ public class SimpleJDFPreprocessor implements JDFPreprocessor {
                     JDFNotification.EnumClass.Warning, returnCode, msg);
                 log.info(msg);
             }
+        } finally {
+            lock.unlockWrite();
         }
         return returnCode;
     }
@@ -173,6 +193,25 @@ public class SimpleJDFPreprocessor implements JDFPreprocessor {
     public boolean getValidation() {
         return validation;
     }
+
+    /**
+     * Sets the clock that the simulated preprocessing time is waited for on.
+     * Default is a {@link RealTimeClock}.
+     * 
+     * @param clock the clock
+     * @throws IllegalArgumentException if <code>clock</code> is
+     *             <code>null</code>
+     */
+    public void setClock(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock may not be null.");
+        }
+        _clock = clock;
+    }
+
+    public Clock getClock() {
+        return _clock;
+    }
     
     /**
      * Validates a JDF node using CheckJDF. Currently only CheckJDF proper
@@ -357,7 +396,7 @@ public class SimpleJDFPreprocessor implements JDFPreprocessor {
         }
                 
         // Enqueue JDF
-        returnCode = enqueueJDF(submissionParams, response);
+        returnCode = enqueueJDF(submissionParams, jdf, response);
         if (returnCode != 0) { // The queue was in an invalid state
             _repository.removeFile(jdfUrl);
             completeMessages(returnCode, response, ackURL);
@@ -398,7 +437,7 @@ public class SimpleJDFPreprocessor implements JDFPreprocessor {
         }
 
         try {
-            Thread.sleep(processTime * 1000);
+            _clock.sleep(processTime * 1000);
         } catch (InterruptedException e1) {
             // don't bother, just pretend waiting anyway...
         }
@@ -406,6 +445,15 @@ public class SimpleJDFPreprocessor implements JDFPreprocessor {
         // Look for JDF/NodeInfo/JMF/Subscription.
         initSubscriptions(jdf);
 
+        // Profiles the job for the queue's scheduling policy
+        if (_queue instanceof ConcurrentQueue) {
+            final KElement jmf = command.getParentNode_KElement();
+            final String senderId = (jmf instanceof JDFJMF) ? ((JDFJMF) jmf)
+                    .getSenderID() : null;
+            ((ConcurrentQueue) _queue).setJobProfile(qe.getQueueEntryID(),
+                JobProfile.create(compatibleNodes, senderId));
+        }
+
         /*
          * // Persist update JDF instance try {
          * jdf.getOwnerDocument_KElement().write2Stream(_repository.updateFile(jdfUrl),
@@ -413,24 +461,22 @@ public class SimpleJDFPreprocessor implements JDFPreprocessor {
          * file to repository.", ioe); }
          */
         // Update Queue
-        synchronized (_queue) {
-            qe.setQueueEntryStatus(EnumQueueEntryStatus.Waiting); // Should
-            // save JDF
-            qe.setJobID(jdf.getJobID(true));
-            if (!jdf.getJobPartID(false).equals("")) {
-                qe.setJobPartID(jdf.getJobPartID(false));
-            } else {
-                log.warn("No JobPartID was set for the JDF, the JobPartID"
-                        + " is set to the same as JobID='" + jdf.getJobID(true)
-                        + "'.");
-                qe.setJobPartID(jdf.getJobID(true));
-            }
-            log.debug("Putting QueueEntry " + qe + " back into the Queue");
-            _queue.putQueueEntry(qe);
-            final JDFQueue q = _queue.getQueue(command.getQueueFilter(0));
-            response.copyElement(q, null);
-            response.setReturnCode(returnCode);
+        qe.setQueueEntryStatus(EnumQueueEntryStatus.Waiting); // Should
+        // save JDF
+        qe.setJobID(jdf.getJobID(true));
+        if (!jdf.getJobPartID(false).equals("")) {
+            qe.setJobPartID(jdf.getJobPartID(false));
+        } else {
+            log.warn("No JobPartID was set for the JDF, the JobPartID"
+                    + " is set to the same as JobID='" + jdf.getJobID(true)
+                    + "'.");
+            qe.setJobPartID(jdf.getJobID(true));
         }
+        log.debug("Putting QueueEntry " + qe + " back into the Queue");
+        _queue.putQueueEntry(qe);
+        final JDFQueue q = _queue.getQueue(command.getQueueFilter(0));
+        response.copyElement(q, null);
+        response.setReturnCode(returnCode);
 
         // The queue entry is already attached to response
         completeMessages(returnCode, response, ackURL);
@@ -0,0 +1,60 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.jmf.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+import org.cip4.elk.impl.device.DeviceContainer;
+import org.cip4.elk.impl.spring.ElkSpringConfiguration;
+import org.cip4.elk.jmf.IncomingJMFDispatcher;
+import org.cip4.jdflib.jmf.JDFJMF;
+
+/**
+ * A servlet that dispatches JMF messages to the devices hosted by a
+ * {@link org.cip4.elk.impl.device.DeviceContainer DeviceContainer}. The
+ * device a message is dispatched to is selected by the path after the
+ * servlet's path, for example <code>/elk/devices/Elk1</code>, or by the
+ * message's <em>JMF/@DeviceID</em> if the URL has no path. Messages
+ * addressed to an unknown device are answered with an error response.
+ * <p>
+ * The <code>DeviceContainer</code> is the Spring bean
+ * <code>deviceContainer</code>.
+ * </p>
+ *
+ * @see org.cip4.elk.impl.device.DeviceContainer
+ */
+public class DeviceRoutingJMFServlet extends DispatchingJMFServlet {
+
+    public static final String SERVLET_NAME = "Elk Device Routing JMF Servlet";
+
+    private DeviceContainer _container;
+
+    public void init() throws ServletException {
+        super.init();
+        _container = (DeviceContainer) ElkSpringConfiguration
+                .getBeanFactory().getBean("deviceContainer");
+    }
+
+    public String getServletName() {
+        return SERVLET_NAME;
+    }
+
+    /**
+     * Returns the dispatcher of the device the message is addressed to.
+     *
+     * @see org.cip4.elk.impl.jmf.servlet.DispatchingJMFServlet#getDispatcher(javax.servlet.http.HttpServletRequest,
+     *      org.cip4.jdflib.jmf.JDFJMF)
+     */
+    protected IncomingJMFDispatcher getDispatcher(HttpServletRequest req,
+            JDFJMF jmf) {
+        String deviceId = req.getPathInfo();
+        if (deviceId != null && deviceId.length() > 1) {
+            deviceId = deviceId.substring(1);
+        } else {
+            deviceId = jmf.getDeviceID();
+        }
+        return _container.getIncomingDispatcher(deviceId);
+    }
+}
@@ -160,7 +160,12 @@ public class DispatchingJMFServlet extends JMFServlet {
         if (log.isDebugEnabled()) {
             log.debug("Received JMF: " + jmfIn);
         }
-        jmfOut = _jmfDispatcher.dispatchJMF(jmfIn);
+        IncomingJMFDispatcher dispatcher = getDispatcher(req, jmfIn);
+        if (dispatcher == null) {
+            sendUnknownDeviceResponse(req, resp, jmfIn);
+            return;
+        }
+        jmfOut = dispatcher.dispatchJMF(jmfIn);
         if (jmfOut != null) {
             // Set content-type
             resp
@@ -247,8 +252,13 @@ public class DispatchingJMFServlet extends JMFServlet {
 
         log.debug("Dispatching JMF from MIME package...");
         
+        IncomingJMFDispatcher dispatcher = getDispatcher(req, jmfIn);
+        if (dispatcher == null) {
+            sendUnknownDeviceResponse(req, res, jmfIn);
+            return;
+        }
         JDFJMF jmfOut = null;
-        jmfOut = _jmfDispatcher.dispatchJMF(jmfIn);
+        jmfOut = dispatcher.dispatchJMF(jmfIn);
         
         log.debug("Response from dispatching JMF from MIME package: " + jmfOut);
         if (jmfOut != null) {
@@ -265,6 +275,33 @@ public class DispatchingJMFServlet extends JMFServlet {
         }
     }
 
+    /**
+     * Returns the dispatcher that a JMF message is dispatched to. This servlet
+     * dispatches all messages to the same dispatcher; subclasses that serve
+     * several devices override this method to route messages.
+     * 
+     * @param req the HTTP request the JMF message was received in
+     * @param jmf the JMF message
+     * @return the dispatcher; <code>null</code> if the message is addressed
+     *         to an unknown device
+     */
+    protected IncomingJMFDispatcher getDispatcher(HttpServletRequest req,
+            JDFJMF jmf) {
+        return _jmfDispatcher;
+    }
+
+    /**
+     * Sends a JMF Response with an error to a JMF message that is addressed
+     * to an unknown device.
+     */
+    private void sendUnknownDeviceResponse(HttpServletRequest req,
+            HttpServletResponse res, JDFJMF jmf) throws IOException {
+        String msg = "No device to dispatch the JMF message to. Path: "
+                + req.getPathInfo() + ", DeviceID: " + jmf.getDeviceID();
+        log.warn(msg);
+        sendJMFResponse(res, 6, msg);
+    }
+
     /**
      * Parses JMF from an InputStream
      * 
@@ -9,6 +9,8 @@ import org.cip4.elk.jmf.util.DeviceFilter;
 import org.cip4.jdflib.auto.JDFAutoDeviceFilter.EnumDeviceDetails;
 import org.cip4.jdflib.core.ElementName;
 import org.cip4.jdflib.core.JDFComment;
+import org.cip4.jdflib.core.JDFElement;
+import org.cip4.jdflib.core.KElement;
 import org.cip4.jdflib.core.VElement;
 import org.cip4.jdflib.jmf.JDFDeviceFilter;
 import org.cip4.jdflib.jmf.JDFDeviceInfo;
@@ -80,59 +82,143 @@ public class BaseICSDeviceFilter implements DeviceFilter {
 			return;
 		}
 
-		// Creates a defensive copy of the device
-		JDFDevice retDev = (JDFDevice) device.cloneNode(true);
-
-		String jmfSenderID = retDev.getJMFSenderID();
-		if (jmfSenderID == null || jmfSenderID.equals("")) {
-			jmfSenderID = "Not configured";
-			log.debug("No Device/@JMFSenderID configured: " + device
-					+ " NOT CONFORMANT WITH BASE ICS");
-		}
-
-		retDev.setJMFSenderID(jmfSenderID);
-
-		String jmfUrl = retDev.getJMFURL();
-		if (jmfUrl == null || jmfUrl.equals("")) {
-			jmfUrl = "Not configured";
-			log.debug("No Device/@JMFURL configured: " + device
-					+ " NOT CONFORMANT WITH BASE ICS");
+		JDFDevice retDev = filterDevice(device, enumDeviceDetails);
+		if (retDev == null) {
+			deviceInfo.removeChild(ElementName.DEVICE, null, 0);
+			if (enumDeviceDetails.equals(EnumDeviceDetails.None.getName())) {
+				appendNoneComment(deviceInfo);
+			}
+		} else if (retDev != device) {
+			deviceInfo.replaceChild(retDev, device);
 		}
+	}
 
-		retDev.setJMFURL(jmfUrl);
+	/**
+	 * Returns a copy of a <em>Device</em> filtered according to the value of
+	 * <em>DeviceDetails</em>, see {@link #applyDetails(JDFDeviceInfo, String)}.
+	 * The <em>JMFSenderID</em> and <em>JMFURL</em> of the copy are set to "Not
+	 * configured" if they are missing.
+	 * 
+	 * @param device
+	 *            the <em>Device</em> to filter
+	 * @param enumDeviceDetails
+	 *            The level of device detail.
+	 * @return the filtered copy; <code>null</code> if the level of detail does
+	 *         not include the <em>Device</em>; <code>device</code> itself if
+	 *         the level of detail is not implemented
+	 */
+	public static JDFDevice filterDevice(JDFDevice device,
+			String enumDeviceDetails) {
 
 		// See table 5-23 p. 145 JDF 1.2 or table 5-58 p. 163 JDF 1.2
-		if (enumDeviceDetails.equals(EnumDeviceDetails.None.toString())) {
-			deviceInfo
-					.removeChild(ElementName.DEVICE, null, 0);
-			String msg = "A Producer/Manager MUST NOT write the "
-					+ "DeviceFilter/@DeviceDetails='None' according to the"
-					+ "Base ICS. The JDF 1.2 Specification is incorrectly"
-					+ " specified for the 'None' value and will be "
-					+ "corrected for version 1.4.";
+		if (enumDeviceDetails.equals(EnumDeviceDetails.None.getName())) {
 			log.debug("No filter applied, defaults to None, "
 					+ "NOT CONFORMANT WITH BASE ICS.");
-			JDFComment c = deviceInfo.appendComment();
-			c.appendText(msg);
+			return null;
 
 		} else if (enumDeviceDetails.equals(EnumDeviceDetails.Brief.getName())) {
-			deviceInfo
-					.removeChild(ElementName.DEVICE, null, 0);
 			log.debug("Brief filter applied, All attributes, Device element"
 					+ " removed.");
+			return null;
 
 		} else if (enumDeviceDetails
 				.equals(EnumDeviceDetails.Details.getName())) {
+			// Creates a defensive copy of the device
+			JDFDevice retDev = (JDFDevice) device.cloneNode(true);
+
+			String jmfSenderID = retDev.getJMFSenderID();
+			if (jmfSenderID == null || jmfSenderID.equals("")) {
+				jmfSenderID = "Not configured";
+				log.debug("No Device/@JMFSenderID configured: " + device
+						+ " NOT CONFORMANT WITH BASE ICS");
+			}
+
+			retDev.setJMFSenderID(jmfSenderID);
+
+			String jmfUrl = retDev.getJMFURL();
+			if (jmfUrl == null || jmfUrl.equals("")) {
+				jmfUrl = "Not configured";
+				log.debug("No Device/@JMFURL configured: " + device
+						+ " NOT CONFORMANT WITH BASE ICS");
+			}
+
+			retDev.setJMFURL(jmfUrl);
+
 			String nameSpaceURI = device.getNamespaceURI();
 			retDev.removeChildren(ElementName.DEVICECAP, nameSpaceURI, null);
-			deviceInfo.replaceChild(retDev, device);
-			
 			log.debug("Detailed filter applied");
+			return retDev;
 
 		} else {
 			log.debug("Not implemented filter: " + enumDeviceDetails);
+			return device;
+		}
+	}
+
+	/**
+	 * Appends a copy of a <em>DeviceInfo</em> filtered according to the value
+	 * of <em>DeviceDetails</em> to an element. The attributes and child
+	 * elements of the <em>DeviceInfo</em> are copied, except for its
+	 * <em>Device</em>, which is taken from a cache of already filtered
+	 * <em>Device</em>s. This is cheaper than copying the <em>DeviceInfo</em>
+	 * and calling {@link #applyDetails(JDFDeviceInfo, String)}.
+	 * 
+	 * @param parent
+	 *            the element to append the <em>DeviceInfo</em> to
+	 * @param deviceInfo
+	 *            the <em>DeviceInfo</em> to copy
+	 * @param devices
+	 *            the <em>Device</em> of the <em>DeviceInfo</em> filtered for
+	 *            each level of detail
+	 * @param enumDeviceDetails
+	 *            The level of device detail.
+	 * @return the appended <em>DeviceInfo</em>
+	 */
+	public JDFDeviceInfo appendDeviceInfo(KElement parent,
+			JDFDeviceInfo deviceInfo, DeviceDetailsCache devices,
+			String enumDeviceDetails) {
+
+		if (enumDeviceDetails == null) {
+			NullPointerException e = new NullPointerException(
+					"EnumDeviceDetails can not be null");
+			log.error(e);
+			throw e;
 		}
 
+		JDFDeviceInfo retInfo = (JDFDeviceInfo) parent.appendElement(
+				ElementName.DEVICEINFO, null);
+		retInfo.setAttributes(deviceInfo);
+		JDFDevice device = devices.getDevice(enumDeviceDetails);
+		if (device != null) {
+			synchronized (device) {
+				retInfo.copyElement(device, null);
+			}
+		}
+		VElement children = deviceInfo.getChildElementVector(null, null, null,
+				true, 0, false);
+		for (int i = 0, imax = children.size(); i < imax; i++) {
+			KElement child = (KElement) children.get(i);
+			if (!ElementName.DEVICE.equals(child.getLocalName())) {
+				retInfo.copyElement(child, null);
+			}
+		}
+		if (enumDeviceDetails.equals(EnumDeviceDetails.None.getName())) {
+			appendNoneComment(retInfo);
+		}
+		return retInfo;
+	}
+
+	/**
+	 * Appends a comment that the None filter is not conformant with Base ICS.
+	 */
+	private static void appendNoneComment(JDFElement element) {
+		String msg = "A Producer/Manager MUST NOT write the "
+				+ "DeviceFilter/@DeviceDetails='None' according to the"
+				+ "Base ICS. The JDF 1.2 Specification is incorrectly"
+				+ " specified for the 'None' value and will be "
+				+ "corrected for version 1.4.";
+		JDFComment c = element.appendComment();
+		c.appendText(msg);
 	}
 
 	/**
@@ -275,22 +361,58 @@ public class BaseICSDeviceFilter implements DeviceFilter {
 				.cloneNode(true);
 		VElement deviceInfoElements = retDeviceList.getChildElementVector(ElementName.DEVICEINFO, null, null, true, 0, false);
 
-		EnumDeviceDetails edd;
+		EnumDeviceDetails edd = getDeviceDetails(retDeviceList, filter);
+        for (int i = 0, imax = deviceInfoElements.size(); i < imax; i++) {
+            applyDetails((JDFDeviceInfo) deviceInfoElements.get(i), edd.getName());
+        }
+		return retDeviceList;
+	}
+
+	/**
+	 * Appends a <em>DeviceList</em> with a copy of a <em>DeviceInfo</em> to
+	 * an element. Produces the same <em>DeviceList</em> as
+	 * {@link #filterDeviceList(JDFDeviceList, JDFDeviceFilter)} but takes the
+	 * filtered <em>Device</em> from a cache, see
+	 * {@link #appendDeviceInfo(KElement, JDFDeviceInfo, DeviceDetailsCache, String)}.
+	 * 
+	 * @param parent
+	 *            the element to append the <em>DeviceList</em> to
+	 * @param deviceInfo
+	 *            the <em>DeviceInfo</em> to copy
+	 * @param devices
+	 *            the <em>Device</em> of the <em>DeviceInfo</em> filtered for
+	 *            each level of detail
+	 * @param filter
+	 *            the filter applied to the device, may be <code>null</code>
+	 * @return the appended <em>DeviceList</em>
+	 */
+	public JDFDeviceList appendDeviceList(KElement parent,
+			JDFDeviceInfo deviceInfo, DeviceDetailsCache devices,
+			JDFDeviceFilter filter) {
+
+		JDFDeviceList retDeviceList = (JDFDeviceList) parent.appendElement(
+				ElementName.DEVICELIST, null);
+		appendDeviceInfo(retDeviceList, deviceInfo, devices,
+				getDeviceDetails(retDeviceList, filter).getName());
+		return retDeviceList;
+	}
 
+	/**
+	 * Returns the <em>DeviceDetails</em> of a filter. If the filter is
+	 * <code>null</code> a comment is appended to the <em>DeviceList</em> and
+	 * None is returned.
+	 */
+	private EnumDeviceDetails getDeviceDetails(JDFDeviceList deviceList,
+			JDFDeviceFilter filter) {
 		if (filter == null) { // DEFAULT, equals the None filter
 			String msg = "To be conformant with Base ICS the DeviceFilter"
 					+ " MUST be included in a KnownDevices message.";
 			log.debug("No filter applied, defaults to None, "
 					+ "NOT CONFORMANT WITH BASE ICS.");
-			JDFComment c = retDeviceList.appendComment();
+			JDFComment c = deviceList.appendComment();
 			c.appendText(msg);
-			edd = EnumDeviceDetails.None;
-		} else {
-            edd = filter.getDeviceDetails();
-        }
-        for (int i = 0, imax = deviceInfoElements.size(); i < imax; i++) {
-            applyDetails((JDFDeviceInfo) deviceInfoElements.get(i), edd.getName());
-        }
-		return retDeviceList;
+			return EnumDeviceDetails.None;
+		}
+		return filter.getDeviceDetails();
 	}
 }
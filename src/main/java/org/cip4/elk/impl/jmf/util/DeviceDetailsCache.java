@@ -0,0 +1,68 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.jmf.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.cip4.jdflib.auto.JDFAutoDeviceFilter.EnumDeviceDetails;
+import org.cip4.jdflib.resource.JDFDevice;
+
+/**
+ * Holds a <em>Device</em> filtered for each level of
+ * <em>DeviceDetails</em>. The <em>Device</em>s are filtered once, when the
+ * cache is created, so that <em>Status</em> and <em>KnownDevices</em>
+ * queries only need to append a copy of the <em>Device</em> for the
+ * requested level instead of copying the whole <em>Device</em>, including
+ * its <em>DeviceCap</em> elements, and filtering it again.
+ * <p>
+ * The cache is immutable. Create a new cache when the <em>Device</em>
+ * changes. The cached <em>Device</em>s must not be modified, and because
+ * Xerces does not support concurrent reads of a DOM they must only be read,
+ * for example copied, while holding their monitor.
+ * </p>
+ *
+ * @see BaseICSDeviceFilter#filterDevice(JDFDevice, String)
+ * @see org.cip4.elk.impl.device.SimpleDeviceConfig#getDeviceDetailsCache()
+ */
+public class DeviceDetailsCache {
+
+    /** Maps the name of a DeviceDetails level to its filtered Device */
+    private final Map _devices = new HashMap();
+
+    /**
+     * Creates a cache with the <em>Device</em> filtered for each level of
+     * <em>DeviceDetails</em>.
+     *
+     * @param device the <em>Device</em> to filter
+     */
+    public DeviceDetailsCache(JDFDevice device) {
+        super();
+        for (Iterator it = EnumDeviceDetails.iterator(); it.hasNext();) {
+            final String details = ((EnumDeviceDetails) it.next()).getName();
+            JDFDevice filtered = BaseICSDeviceFilter.filterDevice(device,
+                details);
+            if (filtered == device) {
+                // The level is not implemented, the Device is not filtered
+                filtered = (JDFDevice) device.cloneNode(true);
+            }
+            _devices.put(details, filtered);
+        }
+    }
+
+    /**
+     * Returns the <em>Device</em> filtered for a level of
+     * <em>DeviceDetails</em>. The returned element is shared and must not be
+     * modified; append a copy of it to messages, made while holding the
+     * element's monitor.
+     *
+     * @param enumDeviceDetails the level of device detail
+     * @return the filtered <em>Device</em>; <code>null</code> if the level
+     *         does not include the <em>Device</em>
+     */
+    public JDFDevice getDevice(String enumDeviceDetails) {
+        return (JDFDevice) _devices.get(enumDeviceDetails);
+    }
+}
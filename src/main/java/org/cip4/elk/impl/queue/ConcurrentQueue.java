@@ -0,0 +1,194 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue;
+
+import java.util.List;
+
+import org.cip4.elk.impl.queue.scheduling.JobProfile;
+import org.cip4.elk.impl.queue.scheduling.SchedulingPolicy;
+import org.cip4.elk.impl.queue.util.QueueLock;
+import org.cip4.elk.queue.Queue;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueFilter;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+import org.cip4.jdflib.node.JDFNode;
+import org.cip4.jdflib.util.JDFDate;
+
+/**
+ * A queue that is guarded by an explicit read/write lock and that threads can
+ * wait on for changes. This replaces synchronizing on the queue object and
+ * calling <code>wait</code> and <code>notify</code> on it.
+ * <p>
+ * A process waiting for a runnable queue entry reads the queue's version
+ * before it looks for a queue entry, and waits for the version to change if
+ * there was none:
+ * </p>
+ *
+ * <pre>
+ * long version = queue.getVersion();
+ * JDFQueueEntry qe = queue.getFirstRunnableQueueEntry();
+ * if (qe == null) {
+ *     queue.awaitChange(version, 1000);
+ * }
+ * </pre>
+ *
+ * <p>
+ * Because the version is read first no change can be missed between looking
+ * at the queue and starting to wait.
+ * </p>
+ * <p>
+ * Most changes, for example a running queue entry's progress, do not make a
+ * queue entry runnable. A process that only waits for a runnable queue entry
+ * therefore waits on the queue's <em>runnable signal</em> instead. The signal
+ * is raised only when a queue entry may have become runnable, so the process
+ * can wait without a timeout:
+ * </p>
+ *
+ * <pre>
+ * long signal = queue.getRunnableSignal();
+ * JDFQueueEntry qe = queue.getFirstRunnableQueueEntry();
+ * if (qe == null) {
+ *     queue.awaitRunnable(signal, 0);
+ * }
+ * </pre>
+ *
+ * @see org.cip4.elk.impl.queue.util.QueueLock
+ */
+public interface ConcurrentQueue extends Queue {
+
+    /**
+     * Returns the lock that guards this queue. Clients that need to make
+     * several changes atomically hold the write lock while making them.
+     *
+     * @return this queue's lock
+     */
+    public QueueLock getLock();
+
+    /**
+     * Returns the version of this queue. The version is incremented each time
+     * the queue is changed.
+     *
+     * @return this queue's version
+     */
+    public long getVersion();
+
+    /**
+     * Waits until this queue's version is no longer the specified version, or
+     * until the timeout has elapsed.
+     *
+     * @param version the version the caller last saw
+     * @param timeout the maximum time to wait in milliseconds
+     * @return the queue's current version
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public long awaitChange(long version, long timeout)
+            throws InterruptedException;
+
+    /**
+     * Returns this queue's runnable signal. The signal is incremented each
+     * time a queue entry may have become runnable: when a queue entry with
+     * status <em>Waiting</em> is added, when a queue entry's status changes to
+     * <em>Waiting</em>, and when the queue is opened or resumed.
+     *
+     * @return this queue's runnable signal
+     */
+    public long getRunnableSignal();
+
+    /**
+     * Waits until this queue's runnable signal is no longer the specified
+     * signal, or until the timeout has elapsed.
+     *
+     * @param signal the runnable signal the caller last saw
+     * @param timeout the maximum time to wait in milliseconds; 0 to wait
+     *            until the signal is raised
+     * @return the queue's current runnable signal
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public long awaitRunnable(long signal, long timeout)
+            throws InterruptedException;
+
+    /**
+     * Raises this queue's runnable signal, waking up all threads waiting for a
+     * runnable queue entry. The queue raises the signal itself when a queue
+     * entry may have become runnable. Clients raise it to wake up a process
+     * that should stop waiting, for example when the process is stopped.
+     */
+    public void signalRunnable();
+
+    /**
+     * Returns the first runnable queue entry and changes its status to
+     * <em>Running</em> in one atomic step, so that when several processes
+     * take queue entries from the same queue no queue entry is run twice.
+     * A process that does not run a claimed queue entry puts it back with
+     * status <em>Waiting</em>.
+     *
+     * @param startTime the start time of the claimed queue entry, taken from
+     *            the claiming process's clock
+     * @return the claimed queue entry with status <em>Running</em>;
+     *         <code>null</code> if there is no runnable queue entry or the
+     *         queue is <em>Blocked</em> or <em>Held</em>
+     * @see org.cip4.elk.queue.Queue#getFirstRunnableQueueEntry()
+     */
+    public JDFQueueEntry claimFirstRunnableQueueEntry(JDFDate startTime);
+
+    /**
+     * Adds a queue entry for a JDF that the caller has already downloaded and
+     * parsed. Clients that hold the write lock while adding a queue entry use
+     * this so that the JDF is not fetched while other threads are locked out.
+     * 
+     * @param params the submission parameters of the queue entry
+     * @param jdf the JDF that the submission parameters refer to; may be
+     *            <code>null</code> if it could not be parsed
+     * @return the added queue entry; <code>null</code> if the queue did not
+     *         accept it
+     * @see org.cip4.elk.queue.Queue#addQueueEntry(JDFQueueSubmissionParams)
+     */
+    public JDFQueueEntry addQueueEntry(JDFQueueSubmissionParams params,
+            JDFNode jdf);
+
+    /**
+     * Starts a batch of changes. The calling thread holds the write lock until
+     * the batch ends, so other threads see either none or all of the changes.
+     * The queue's status is recalculated once when the batch ends, and at most
+     * one <code>QueueStatusEvent</code> is sent for the whole batch. Each call
+     * must be followed by a call to {@link #endBatch()}:
+     *
+     * <pre>
+     * queue.beginBatch();
+     * try {
+     *     // Several queue operations
+     * } finally {
+     *     queue.endBatch();
+     * }
+     * </pre>
+     */
+    public void beginBatch();
+
+    /**
+     * Ends a batch of changes started by {@link #beginBatch()}.
+     */
+    public void endBatch();
+
+    /**
+     * Removes the queue entries selected by a <em>QueueFilter</em> in one
+     * atomic operation. Queue entries that are <em>Running</em> or
+     * <em>Suspended</em> are not removed.
+     * 
+     * @param filter the filter selecting the queue entries to remove;
+     *            <code>null</code> to remove all queue entries
+     * @return the IDs of the removed queue entries
+     */
+    public List flushQueue(JDFQueueFilter filter);
+
+    /**
+     * Sets the profile of a queue entry's job, which the queue's scheduling
+     * policy may order runnable queue entries by. The profile is kept until
+     * the queue entry is removed.
+     * 
+     * @param queueEntryId the ID of the queue entry
+     * @param profile the job's profile
+     * @see SchedulingPolicy
+     */
+    public void setJobProfile(String queueEntryId, JobProfile profile);
+}
@@ -0,0 +1,424 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.cip4.elk.Config;
+import org.cip4.elk.impl.util.URLAccessTool;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueFilter;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+import org.cip4.jdflib.node.JDFNode;
+
+/**
+ * A queue that survives restarts. All changes to the queue are appended to a
+ * write-ahead journal, a {@link QueueJournal}, before the method that made the
+ * change returns. When the queue is created the journal is replayed so that
+ * the queue has the same queue entries, submission parameters, open/held
+ * state and queue entry ID counter as when the device was stopped. New queue
+ * entries never get the ID of a queue entry that was removed or archived.
+ * <p>
+ * Records are appended while the queue is locked, but the journal is forced to
+ * disk after the thread has released its outermost write lock, also when the
+ * change is part of a batch or of claiming a queue entry. Concurrent
+ * submissions therefore share a single <code>fsync</code> and a slow disk does
+ * not block queries.
+ * Every {@link #setCompactionThreshold(int) compaction threshold} records the
+ * journal is compacted into a snapshot of the queue so that the log, and the
+ * time it takes to replay it, does not grow without bounds.
+ * </p>
+ * <p>
+ * Queue entries that were <em>Running</em> or <em>Suspended</em> when the
+ * device was stopped are restored as <em>Waiting</em> so that they are
+ * executed again.
+ * </p>
+ *
+ * @see org.cip4.elk.impl.queue.MemoryQueue
+ * @see org.cip4.elk.impl.queue.QueueJournal
+ */
+public class JournaledQueue extends MemoryQueue {
+
+    /** The default number of records after which the journal is compacted */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    private static Logger log = Logger.getLogger(JournaledQueue.class);
+
+    private QueueJournal _journal;
+    private int _compactionThreshold;
+    // Guarded by this queue's write lock
+    private boolean _queueClosed;
+    private boolean _queueHeld;
+    /** The end of the records a thread appended that are not yet synced */
+    private final ThreadLocal _unsyncedPosition = new ThreadLocal();
+
+    /**
+     * Creates a queue whose journal is kept in the specified directory. If the
+     * directory contains a journal it is replayed.
+     *
+     * @param config the device's configuration
+     * @param maxQueueSize the maximum number of queue entries
+     * @param fileUtil a tool for downloading JDF files
+     * @param journalDirectory the directory of the queue's journal
+     * @throws IOException if the journal could not be replayed
+     */
+    public JournaledQueue(Config config, int maxQueueSize,
+            URLAccessTool fileUtil, String journalDirectory) throws IOException {
+        super(config, maxQueueSize, fileUtil);
+        _compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+        _journal = new QueueJournal(new File(journalDirectory));
+        getLock().lockWrite();
+        try {
+            _journal.replay(new ReplayHandler());
+        } finally {
+            getLock().unlockWrite();
+        }
+        log.info("Restored " + getQueueEntryCount()
+                + " queue entries from the journal in " + journalDirectory
+                + ".");
+    }
+
+    /**
+     * Sets the number of journal records after which the journal is compacted.
+     *
+     * @param compactionThreshold the number of records
+     * @throws IllegalArgumentException if <code>compactionThreshold</code>
+     *             is less than 1
+     */
+    public void setCompactionThreshold(int compactionThreshold) {
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException(
+                    "The compaction threshold must be at least 1.");
+        }
+        _compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Sets whether the journal is forced to disk before a change returns.
+     * Disabling this trades durability for speed.
+     *
+     * @param syncEnabled <code>true</code> to force the journal to disk;
+     *            <code>false</code> otherwise
+     * @see QueueJournal#setSyncEnabled(boolean)
+     */
+    public void setSyncEnabled(boolean syncEnabled) {
+        _journal.setSyncEnabled(syncEnabled);
+    }
+
+    /**
+     * Holds the queue and closes the journal.
+     */
+    public void destroy() {
+        super.destroy();
+        _journal.close();
+    }
+
+    public JDFQueueEntry addQueueEntry(JDFQueueSubmissionParams params,
+            JDFNode jdf) {
+        JDFQueueEntry qe;
+        getLock().lockWrite();
+        try {
+            qe = super.addQueueEntry(params, jdf);
+            if (qe != null) {
+                appendRecord(QueueJournal.PUT_SUBMISSION_PARAMS, qe
+                        .getQueueEntryID(), params.toXML());
+                appendRecord(QueueJournal.PUT_QUEUE_ENTRY_ID_COUNTER, qe
+                        .getQueueEntryID(), Integer
+                        .toString(getQueueEntryIdCounter()));
+            }
+        } finally {
+            getLock().unlockWrite();
+        }
+        return qe;
+    }
+
+    public JDFQueueEntry putQueueEntry(JDFQueueEntry queueEntry) {
+        JDFQueueEntry oldQe;
+        getLock().lockWrite();
+        try {
+            final String qeId = queueEntry.getQueueEntryID();
+            final boolean accepted = hasCapacityFor(qeId);
+            oldQe = super.putQueueEntry(queueEntry);
+            // A finished queue entry may already have been evicted
+            if (accepted && containsQueueEntry(qeId)) {
+                appendRecord(QueueJournal.PUT_QUEUE_ENTRY, qeId, queueEntry
+                        .toXML());
+            }
+        } finally {
+            getLock().unlockWrite();
+        }
+        return oldQe;
+    }
+
+    public void abortQueueEntry(String queueEntryId) {
+        getLock().lockWrite();
+        try {
+            super.abortQueueEntry(queueEntryId);
+            // The aborted queue entry may already have been evicted
+            if (containsQueueEntry(queueEntryId)) {
+                appendRecord(QueueJournal.PUT_QUEUE_ENTRY, queueEntryId,
+                    getQueueEntry(queueEntryId).toXML());
+            }
+        } finally {
+            getLock().unlockWrite();
+        }
+    }
+
+    public JDFQueueEntry removeQueueEntry(String queueEntryId) {
+        JDFQueueEntry qe;
+        getLock().lockWrite();
+        try {
+            qe = super.removeQueueEntry(queueEntryId);
+            if (qe != null) {
+                appendRecord(QueueJournal.REMOVE_QUEUE_ENTRY, queueEntryId,
+                    null);
+            }
+        } finally {
+            getLock().unlockWrite();
+        }
+        return qe;
+    }
+
+    /**
+     * Journals the removal of each flushed queue entry. The records are synced
+     * once, after the lock has been released.
+     */
+    public List flushQueue(JDFQueueFilter filter) {
+        List qeIds;
+        getLock().lockWrite();
+        try {
+            qeIds = super.flushQueue(filter);
+            for (int i = 0, imax = qeIds.size(); i < imax; i++) {
+                appendRecord(QueueJournal.REMOVE_QUEUE_ENTRY, (String) qeIds
+                        .get(i), null);
+            }
+        } finally {
+            getLock().unlockWrite();
+        }
+        return qeIds;
+    }
+
+    /**
+     * Journals the eviction of a finished queue entry as its removal. The
+     * record is synced together with the change that caused the eviction.
+     */
+    protected void queueEntryEvicted(String queueEntryId) {
+        appendRecord(QueueJournal.REMOVE_QUEUE_ENTRY, queueEntryId, null);
+    }
+
+    public void openQueue() {
+        getLock().lockWrite();
+        try {
+            super.openQueue();
+            _queueClosed = false;
+            appendRecord(QueueJournal.OPEN_QUEUE, null, null);
+        } finally {
+            getLock().unlockWrite();
+        }
+    }
+
+    public void closeQueue() {
+        getLock().lockWrite();
+        try {
+            super.closeQueue();
+            _queueClosed = true;
+            appendRecord(QueueJournal.CLOSE_QUEUE, null, null);
+        } finally {
+            getLock().unlockWrite();
+        }
+    }
+
+    public void holdQueue() {
+        getLock().lockWrite();
+        try {
+            super.holdQueue();
+            _queueHeld = true;
+            appendRecord(QueueJournal.HOLD_QUEUE, null, null);
+        } finally {
+            getLock().unlockWrite();
+        }
+    }
+
+    public void resumeQueue() {
+        getLock().lockWrite();
+        try {
+            super.resumeQueue();
+            _queueHeld = false;
+            appendRecord(QueueJournal.RESUME_QUEUE, null, null);
+        } finally {
+            getLock().unlockWrite();
+        }
+    }
+
+    /**
+     * Appends a record to the journal and compacts the journal if it has grown
+     * past the compaction threshold. The record is forced to disk by
+     * {@link #writeLockReleased()} once the thread has released the
+     * outermost write lock. Must be called while holding this queue's write
+     * lock.
+     */
+    private void appendRecord(int type, String queueEntryId, String data) {
+        try {
+            final long position = _journal.append(type, queueEntryId, data);
+            final Long unsynced = (Long) _unsyncedPosition.get();
+            if (unsynced == null || unsynced.longValue() < position) {
+                _unsyncedPosition.set(new Long(position));
+            }
+            if (_journal.getRecordCount() >= _compactionThreshold) {
+                compact();
+            }
+        } catch (IOException ioe) {
+            log.error("Could not write to the queue journal, the change will"
+                    + " be lost if the device is restarted: " + ioe, ioe);
+        }
+    }
+
+    /**
+     * Forces the records that this thread appended while it held the write
+     * lock to disk. Records appended by several changes made under one lock,
+     * for example by a batch or while claiming a queue entry, are synced once,
+     * and no thread waits for the disk while holding the lock.
+     */
+    protected void writeLockReleased() {
+        super.writeLockReleased();
+        if (_unsyncedPosition == null) {
+            // Called by the super constructor
+            return;
+        }
+        final Long position = (Long) _unsyncedPosition.get();
+        if (position == null) {
+            return;
+        }
+        _unsyncedPosition.set(null);
+        try {
+            _journal.sync(position.longValue());
+        } catch (IOException ioe) {
+            log.error("Could not sync the queue journal: " + ioe, ioe);
+        }
+    }
+
+    /**
+     * Compacts the journal into records that recreate the queue's current
+     * state. Must be called while holding this queue's write lock.
+     */
+    private void compact() throws IOException {
+        List records = new ArrayList();
+        records.add(createRecord(QueueJournal.PUT_QUEUE_ENTRY_ID_COUNTER,
+            null, Integer.toString(getQueueEntryIdCounter())));
+        if (_queueClosed) {
+            records.add(createRecord(QueueJournal.CLOSE_QUEUE, null, null));
+        }
+        if (_queueHeld) {
+            records.add(createRecord(QueueJournal.HOLD_QUEUE, null, null));
+        }
+        List qeIds = getQueueEntryIDs();
+        for (int i = 0, imax = qeIds.size(); i < imax; i++) {
+            String qeId = (String) qeIds.get(i);
+            records.add(createRecord(QueueJournal.PUT_QUEUE_ENTRY, qeId,
+                getQueueEntry(qeId).toXML()));
+            JDFQueueSubmissionParams params = getQueueSubmissionParams(qeId);
+            if (params != null) {
+                records.add(createRecord(QueueJournal.PUT_SUBMISSION_PARAMS,
+                    qeId, params.toXML()));
+            }
+        }
+        _journal.compact(records);
+    }
+
+    private Object[] createRecord(int type, String queueEntryId, String data) {
+        return new Object[] { new Integer(type), queueEntryId, data };
+    }
+
+    /**
+     * Parses an XML string and returns the root element.
+     */
+    private static Object parseElement(String xml) {
+        JDFDoc doc = new JDFParser().parseString(xml);
+        return (doc == null) ? null : doc.getRoot();
+    }
+
+    /**
+     * Applies replayed journal records to the queue without journaling them
+     * again.
+     */
+    private class ReplayHandler implements QueueJournal.RecordHandler {
+        public void handleRecord(int type, String queueEntryId, String data) {
+            switch (type) {
+            case QueueJournal.PUT_QUEUE_ENTRY:
+                Object qe = parseElement(data);
+                if (qe instanceof JDFQueueEntry) {
+                    restoreQueueEntry(requeueInterrupted((JDFQueueEntry) qe));
+                } else {
+                    log.warn("Skipping unreadable queue entry '"
+                            + queueEntryId + "' in the queue journal.");
+                }
+                break;
+            case QueueJournal.PUT_SUBMISSION_PARAMS:
+                Object params = parseElement(data);
+                if (params instanceof JDFQueueSubmissionParams) {
+                    restoreQueueSubmissionParams(queueEntryId,
+                        (JDFQueueSubmissionParams) params);
+                } else {
+                    log.warn("Skipping unreadable submission parameters of"
+                            + " queue entry '" + queueEntryId
+                            + "' in the queue journal.");
+                }
+                break;
+            case QueueJournal.REMOVE_QUEUE_ENTRY:
+                JournaledQueue.super.removeQueueEntry(queueEntryId);
+                break;
+            case QueueJournal.PUT_QUEUE_ENTRY_ID_COUNTER:
+                try {
+                    restoreQueueEntryIdCounter(Integer.parseInt(data));
+                } catch (NumberFormatException nfe) {
+                    log.warn("Skipping an invalid queue entry ID counter in"
+                            + " the queue journal: " + data);
+                }
+                break;
+            case QueueJournal.OPEN_QUEUE:
+                JournaledQueue.super.openQueue();
+                _queueClosed = false;
+                break;
+            case QueueJournal.CLOSE_QUEUE:
+                JournaledQueue.super.closeQueue();
+                _queueClosed = true;
+                break;
+            case QueueJournal.HOLD_QUEUE:
+                JournaledQueue.super.holdQueue();
+                _queueHeld = true;
+                break;
+            case QueueJournal.RESUME_QUEUE:
+                JournaledQueue.super.resumeQueue();
+                _queueHeld = false;
+                break;
+            default:
+                log.warn("Skipping unknown queue journal record of type "
+                        + type + ".");
+            }
+        }
+
+        /**
+         * Queue entries that were being executed when the device stopped are
+         * executed again.
+         */
+        private JDFQueueEntry requeueInterrupted(JDFQueueEntry qe) {
+            JDFQueueEntry.EnumQueueEntryStatus status = qe
+                    .getQueueEntryStatus();
+            if (JDFQueueEntry.EnumQueueEntryStatus.Running.equals(status)
+                    || JDFQueueEntry.EnumQueueEntryStatus.Suspended
+                            .equals(status)) {
+                log.info("Queue entry '" + qe.getQueueEntryID()
+                        + "' was interrupted, it will be executed again.");
+                qe.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Waiting);
+            }
+            return qe;
+        }
+    }
+}
@@ -3,9 +3,17 @@
  */
 package org.cip4.elk.impl.queue;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 import org.apache.log4j.Logger;
@@ -17,30 +25,47 @@ import org.cip4.elk.device.process.ProcessQueueEntryEvent;
 import org.cip4.elk.device.process.ProcessQueueEntryEventListener;
 import org.cip4.elk.device.process.ProcessStatusEvent;
 import org.cip4.elk.device.process.ProcessStatusListener;
+import org.cip4.elk.impl.device.process.JobPhaseProvider;
+import org.cip4.elk.impl.queue.scheduling.JobProfile;
+import org.cip4.elk.impl.queue.scheduling.SchedulingPolicy;
 import org.cip4.elk.impl.queue.util.AttributeQueueFilter;
 import org.cip4.elk.impl.queue.util.BaseICSQueueFilter;
+import org.cip4.elk.impl.queue.util.QueueEntryIndex;
+import org.cip4.elk.impl.queue.util.QueueEntryRecord;
+import org.cip4.elk.impl.queue.util.QueueHistory;
+import org.cip4.elk.impl.queue.util.QueueLock;
+import org.cip4.elk.impl.queue.util.QueueSnapshotCache;
+import org.cip4.elk.impl.queue.util.RunnableQueueEntryIndex;
 import org.cip4.elk.impl.queue.util.SortingQueueFilter;
+import org.cip4.elk.impl.util.Repository;
 import org.cip4.elk.impl.util.URLAccessTool;
+import org.cip4.elk.lifecycle.Lifecycle;
 import org.cip4.elk.queue.Queue;
 import org.cip4.elk.queue.QueueStatusEvent;
 import org.cip4.elk.queue.QueueStatusListener;
 import org.cip4.elk.queue.util.QueueFilter;
 import org.cip4.jdflib.auto.JDFAutoJobPhase.EnumActivation;
 import org.cip4.jdflib.auto.JDFAutoQueue.EnumQueueStatus;
+import org.cip4.jdflib.auto.JDFAutoQueueFilter.EnumStatusList;
+import org.cip4.jdflib.core.AttributeName;
 import org.cip4.jdflib.core.ElementName;
 import org.cip4.jdflib.core.JDFDoc;
-import org.cip4.jdflib.core.JDFElement.EnumNodeStatus;
 import org.cip4.jdflib.datatypes.JDFAttributeMap;
 import org.cip4.jdflib.jmf.JDFDeviceInfo;
 import org.cip4.jdflib.jmf.JDFJobPhase;
 import org.cip4.jdflib.jmf.JDFQueue;
 import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueEntryDef;
 import org.cip4.jdflib.jmf.JDFQueueFilter;
 import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
 import org.cip4.jdflib.node.JDFNode;
 import org.cip4.jdflib.pool.JDFAncestorPool;
+import org.cip4.jdflib.resource.JDFDevice;
 import org.cip4.jdflib.util.JDFDate;
 
+import EDU.oswego.cs.dl.util.concurrent.QueuedExecutor;
+import EDU.oswego.cs.dl.util.concurrent.ThreadFactory;
+
 /**
  * An implementation of a queue.
  * <p>
@@ -51,6 +76,57 @@ import org.cip4.jdflib.util.JDFDate;
  * addition, none of the returned JDF objects share the same owner
  * <code>org.w3c.dom.Document</code>.
  * </p>
+ * <p>
+ * Queue entries are not stored as DOM elements but as compact
+ * {@link QueueEntryRecord}s. Elements are only created when a queue entry or
+ * the queue is returned. The records are indexed by <em>Status</em>,
+ * <em>JobID</em>, <em>JobPartID</em> and <em>DeviceID</em>, see
+ * {@link QueueEntryIndex}, and queue entries selected by a
+ * <em>QueueFilter</em> are looked up in the indexes.
+ * </p>
+ * <p>
+ * Only active queue entries count against the queue's size. Finished queue
+ * entries, those that are <em>Completed</em>, <em>Aborted</em> or
+ * <em>Removed</em>, are kept as the queue's history until they are removed
+ * or evicted. Finished queue entries are evicted, oldest first, when there
+ * are more than {@link #setMaxHistorySize(int) the maximum number} of them or
+ * when they are older than {@link #setMaxHistoryAge(long) the maximum age}.
+ * Evicted queue entries are written to the queue's
+ * {@link #setArchive(QueueArchive) archive}, if it has one, where status
+ * queries can still look them up: {@link #getQueue(JDFQueueFilter)}, for
+ * queue entries selected by <em>QueueEntryDef</em>, and
+ * {@link #getArchivedQueueEntry(String)} fall back to the archive. Methods
+ * that look up a queue entry to change it, such as
+ * {@link #getQueueEntry(String)}, never return archived queue entries. The
+ * archive is forced to disk after the write lock has been released.
+ * </p>
+ * <p>
+ * Queue entries selected by a <em>QueueFilter</em> can be flushed in one
+ * pass, see {@link #flushQueue(JDFQueueFilter)}. The JDF files of flushed
+ * queue entries that are private files of the queue's
+ * {@link #setRepository(Repository) repository}, if it has one, are removed
+ * by a background thread.
+ * </p>
+ * <p>
+ * The order in which runnable queue entries are executed is decided by the
+ * queue's {@link #setSchedulingPolicy(SchedulingPolicy) scheduling policy},
+ * by default a {@link RunnableQueueEntryIndex}. Policies may order queue
+ * entries by their jobs' {@link #setJobProfile(String, JobProfile) profiles}.
+ * </p>
+ * <p>
+ * The queue has a version number that is incremented each time the queue is
+ * modified. Filtered queues returned by {@link #getQueue(JDFQueueFilter)} are
+ * cached per filter and reused until the version changes.
+ * </p>
+ * <p>
+ * The queue is guarded by a read/write lock, see {@link #getLock()}. Methods
+ * that only read the queue hold the read lock and may run concurrently.
+ * Returned queues are copied while holding the read lock and sorted and
+ * filtered after it has been released, so a slow filter, for example one that
+ * downloads JDF files, does not block changes to the queue. Threads waiting
+ * for the queue to change use {@link #awaitChange(long, long)}; processes
+ * waiting for a runnable queue entry use {@link #awaitRunnable(long, long)}.
+ * </p>
  * 
  * @author Claes Buckwalter (clabu@itn.liu.se)
  * @author Ola Stering (olst6875@student.uu.se)
@@ -60,16 +136,34 @@ import org.cip4.jdflib.util.JDFDate;
  * @see org.cip4.elk.impl.queue.QueueState
  * @version $Id: MemoryQueue.java,v 1.15 2006/09/12 08:34:52 buckwalter Exp $
  */
-public class MemoryQueue implements Queue, ProcessStatusListener,
-        ProcessQueueEntryEventListener {
+public class MemoryQueue implements ConcurrentQueue, Lifecycle,
+        ProcessStatusListener, ProcessQueueEntryEventListener {
 
     private int _maxQueueSize;
     private SortingQueueFilter _sortingFilter;
     private BaseICSQueueFilter _baseICSFilter;
-    private QueueFilter _statusWaitingFilter;
+    private SchedulingPolicy _runnableIndex;
+    private QueueEntryIndex _entryIndex;
+    private QueueHistory _history;
+    private int _maxHistorySize;
+    private long _maxHistoryAge;
+    private QueueArchive _archive;
+    // The sequence number of the last queue entry each thread archived while
+    // holding the write lock, a Long; synced when the lock is released
+    private final ThreadLocal _unsyncedArchive = new ThreadLocal();
+    private Repository _repository;
+    private QueuedExecutor _fileReleaser;
+    private QueueSnapshotCache _snapshotCache;
+    private long _version;
+    private final Object _versionMonitor = new Object();
+    private long _runnableSignal;
+    private final Object _runnableMonitor = new Object();
+    private final QueueLock _lock = new QueueLock();
+    // The Queue element without queue entries, a template for returned queues
     private JDFQueue _queue;
     private Map _queueEntriesMap;
     private Map _queueSubmissionParamsMap;
+    private Map _jobProfilesMap;
     private Config _config;
     private URLAccessTool _fileUtil;
     private int _queueEntryIdIterator;
@@ -82,17 +176,39 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
         log.debug("Attempting to create MemoryQueue");
         // Create internal objects
         _state = new QueueState(this);
+        // Status events are published after the write lock is released, so
+        // that several status changes made while holding it send one event
+        _state.setPublishingDeferred(true);
+        _lock.setUnlockAction(new Runnable() {
+            public void run() {
+                writeLockReleased();
+                _state.publishStatus();
+            }
+        });
         _config = config;
         _fileUtil = fileUtil;
         _queueEntryIdIterator = 0;
         _queueEntriesMap = new HashMap();
         _queueSubmissionParamsMap = new HashMap();
+        _jobProfilesMap = new HashMap();
+        _runnableIndex = new RunnableQueueEntryIndex();
+        _entryIndex = new QueueEntryIndex();
+        _history = new QueueHistory();
+        _maxHistorySize = -1;
+        _maxHistoryAge = -1;
+        _snapshotCache = new QueueSnapshotCache();
+        _fileReleaser = new QueuedExecutor();
+        _fileReleaser.setThreadFactory(new ThreadFactory() {
+            public Thread newThread(Runnable command) {
+                Thread thread = new Thread(command, "MemoryQueue file releaser");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        _version = 0;
+        _runnableSignal = 0;
         _queue = createQueue();
         // Configure queue filters
-        JDFAttributeMap attrMap = new JDFAttributeMap();
-        attrMap.put("Status", JDFQueueEntry.EnumQueueEntryStatus.Waiting
-                .getName());
-        _statusWaitingFilter = new AttributeQueueFilter(attrMap);
         _sortingFilter = new SortingQueueFilter();
         _baseICSFilter = new BaseICSQueueFilter(this);
         // Set queue size
@@ -115,15 +231,62 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
     }
 
     public void destroy() {
-        _state.holdQueue();
+        _lock.lockWrite();
+        try {
+            _state.holdQueue();
+            if (_archive != null) {
+                _archive.close();
+            }
+        } finally {
+            _lock.unlockWrite();
+        }
+        _fileReleaser.shutdownAfterProcessingCurrentlyQueuedTasks();
+    }
+
+    /**
+     * Called each time a thread releases the write lock and no longer holds
+     * it, without holding the lock, before the queue's status is published.
+     * Forces the queue entries that the thread archived to disk. Subclasses
+     * that write changes to disk force them here.
+     */
+    protected void writeLockReleased() {
+        final Long sequence = (Long) _unsyncedArchive.get();
+        if (sequence == null) {
+            return;
+        }
+        _unsyncedArchive.set(null);
+        final QueueArchive archive = getArchive();
+        if (archive == null) {
+            return;
+        }
+        try {
+            archive.sync(sequence.longValue());
+        } catch (IOException ioe) {
+            log.error("Could not sync the queue archive: " + ioe, ioe);
+        }
+    }
+
+    /**
+     * Returns the lock that guards this queue.
+     * 
+     * @see ConcurrentQueue#getLock()
+     */
+    public QueueLock getLock() {
+        return _lock;
     }
 
     /**
      * @see org.cip4.elk.queue.Queue#setMaxQueueSize(int)
      */
     public void setQueueSize(int size) {
-        _maxQueueSize = size;
-        _state.setQueueFull(getQueueEntryCount() >= _maxQueueSize);
+        _lock.lockWrite();
+        try {
+            _maxQueueSize = size;
+            updateQueueFull();
+            incrementVersion();
+        } finally {
+            _lock.unlockWrite();
+        }
     }
 
     /**
@@ -140,12 +303,295 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
      * @return the number of queue entries allowed in this queue
      * @see org.cip4.elk.queue.Queue#getQueueSize()
      */
-    public synchronized int getQueueSize() {
-        return _maxQueueSize;
+    public int getQueueSize() {
+        _lock.lockRead();
+        try {
+            return _maxQueueSize;
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    public int getQueueEntryCount() {
+        _lock.lockRead();
+        try {
+            return _queueEntriesMap.size();
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * Returns the number of queue entries that have not finished. Only these
+     * queue entries count against the queue's size.
+     * 
+     * @return the number of active queue entries in this queue
+     * @see QueueHistory#isFinished(JDFQueueEntry.EnumQueueEntryStatus)
+     */
+    public int getActiveQueueEntryCount() {
+        _lock.lockRead();
+        try {
+            return _queueEntriesMap.size() - _history.size();
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * Returns whether this queue has room for the specified queue entry,
+     * either because it already contains it or because it has fewer active
+     * queue entries than its size.
+     * 
+     * @param queueEntryId the ID of the queue entry
+     * @return <code>true</code> if the queue entry can be put in this queue;
+     *         <code>false</code> otherwise
+     */
+    protected boolean hasCapacityFor(String queueEntryId) {
+        _lock.lockRead();
+        try {
+            return _queueEntriesMap.containsKey(queueEntryId)
+                    || getActiveQueueEntryCount() < getQueueSize();
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * Sets whether the queue is full from the number of active queue entries.
+     * Must be called while holding the write lock.
+     */
+    private void updateQueueFull() {
+        _state.setQueueFull(getActiveQueueEntryCount() >= getQueueSize());
+    }
+
+    /**
+     * Sets the maximum number of finished queue entries to keep in this
+     * queue. Finished queue entries in excess of this number are evicted,
+     * oldest first.
+     * 
+     * @param maxHistorySize the maximum number of finished queue entries; a
+     *            negative number for no limit, which is the default
+     */
+    public void setMaxHistorySize(int maxHistorySize) {
+        _lock.lockWrite();
+        try {
+            _maxHistorySize = maxHistorySize;
+            evictFinishedQueueEntries();
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Sets the maximum time to keep finished queue entries in this queue.
+     * Older finished queue entries are evicted the next time this queue is
+     * changed or {@link #evictHistory()} is called.
+     * 
+     * @param maxHistoryAge the maximum age in milliseconds, counted from when
+     *            the queue entry finished; a negative number for no limit,
+     *            which is the default
+     */
+    public void setMaxHistoryAge(long maxHistoryAge) {
+        _lock.lockWrite();
+        try {
+            _maxHistoryAge = maxHistoryAge;
+            evictFinishedQueueEntries();
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Sets the archive that evicted queue entries are written to. If this
+     * queue has no archive evicted queue entries are discarded. The queue
+     * entry ID counter is advanced past the IDs of the archived queue entries
+     * so that new queue entries do not get the same ID.
+     * 
+     * @param archive the archive, may be <code>null</code>
+     */
+    public void setArchive(QueueArchive archive) {
+        _lock.lockWrite();
+        try {
+            _archive = archive;
+            if (archive != null) {
+                final List ids = archive.getQueueEntryIDs();
+                for (int i = 0, imax = ids.size(); i < imax; i++) {
+                    advanceQueueEntryIdCounter((String) ids.get(i));
+                }
+            }
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Returns the archive that evicted queue entries are written to.
+     * 
+     * @return the archive; <code>null</code> if this queue has none
+     */
+    public QueueArchive getArchive() {
+        _lock.lockRead();
+        try {
+            return _archive;
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * Sets the policy that decides the order in which runnable queue entries
+     * are executed. The runnable queue entries are added to the new policy.
+     * 
+     * @param policy the scheduling policy
+     * @see SchedulingPolicy
+     */
+    public void setSchedulingPolicy(SchedulingPolicy policy) {
+        _lock.lockWrite();
+        try {
+            for (Iterator it = _queueEntriesMap.values().iterator(); it
+                    .hasNext();) {
+                final QueueEntryRecord record = (QueueEntryRecord) it.next();
+                policy.update(record, (JobProfile) _jobProfilesMap.get(record
+                        .getQueueEntryID()));
+            }
+            _runnableIndex = policy;
+            log.debug("Set the scheduling policy of the queue with class '"
+                    + policy.getClass().getName() + "'.");
+        } finally {
+            _lock.unlockWrite();
+        }
+        signalRunnable();
+    }
+
+    /**
+     * Returns the policy that decides the order in which runnable queue
+     * entries are executed.
+     * 
+     * @return the scheduling policy
+     */
+    public SchedulingPolicy getSchedulingPolicy() {
+        _lock.lockRead();
+        try {
+            return _runnableIndex;
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * @see ConcurrentQueue#setJobProfile(String, JobProfile)
+     */
+    public void setJobProfile(String queueEntryId, JobProfile profile) {
+        _lock.lockWrite();
+        try {
+            final QueueEntryRecord record = (QueueEntryRecord) _queueEntriesMap
+                    .get(queueEntryId);
+            if (record != null) {
+                _jobProfilesMap.put(queueEntryId, profile);
+                _runnableIndex.update(record, profile);
+            }
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Sets the repository that holds the JDF files of this queue's queue
+     * entries. The file at the <em>QueueSubmissionParams/@URL</em> of each
+     * flushed queue entry is removed from the repository if it is one of the
+     * repository's private files, for example when JDF files are added to the
+     * repository by a <code>SimpleJDFPreprocessor</code>. Files that clients
+     * submitted directly are left alone.
+     * 
+     * @param repository the repository, may be <code>null</code>
+     * @see #flushQueue(JDFQueueFilter)
+     */
+    public void setRepository(Repository repository) {
+        _lock.lockWrite();
+        try {
+            _repository = repository;
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Returns the repository that holds the JDF files of this queue's queue
+     * entries.
+     * 
+     * @return the repository; <code>null</code> if this queue has none
+     */
+    public Repository getRepository() {
+        _lock.lockRead();
+        try {
+            return _repository;
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * Evicts the finished queue entries that are older than the maximum
+     * history age, or in excess of the maximum history size. Finished queue
+     * entries are also evicted each time a queue entry is put or aborted.
+     */
+    public void evictHistory() {
+        _lock.lockWrite();
+        try {
+            evictFinishedQueueEntries();
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Moves the finished queue entries that should be evicted from this queue
+     * to the archive. If a queue entry cannot be archived it is kept. Must be
+     * called while holding the write lock.
+     */
+    private void evictFinishedQueueEntries() {
+        if (_maxHistorySize < 0 && _maxHistoryAge < 0) {
+            return;
+        }
+        final List ids = _history.getEvictableQueueEntryIDs(_maxHistorySize,
+            _maxHistoryAge, System.currentTimeMillis());
+        int evicted = 0;
+        for (int i = 0, imax = ids.size(); i < imax; i++) {
+            final String qeId = (String) ids.get(i);
+            final QueueEntryRecord record = (QueueEntryRecord) _queueEntriesMap
+                    .get(qeId);
+            if (_archive != null) {
+                try {
+                    _unsyncedArchive.set(new Long(_archive.archive(record)));
+                } catch (IOException ioe) {
+                    log.error("Could not archive queue entry '" + qeId
+                            + "', it is kept in the queue: " + ioe, ioe);
+                    break;
+                }
+            }
+            _queueEntriesMap.remove(qeId);
+            _queueSubmissionParamsMap.remove(qeId);
+            _jobProfilesMap.remove(qeId);
+            _runnableIndex.remove(qeId);
+            _entryIndex.remove(record);
+            _history.remove(qeId);
+            queueEntryEvicted(qeId);
+            evicted++;
+        }
+        if (evicted > 0) {
+            log.debug("Evicted " + evicted + " finished queue entries.");
+            incrementVersion();
+        }
     }
 
-    public synchronized int getQueueEntryCount() {
-        return _queueEntriesMap.size();
+    /**
+     * Called when a finished queue entry has been evicted from this queue,
+     * while holding the write lock. Subclasses that keep a copy of the queue
+     * entries use this to drop the queue entry.
+     * 
+     * @param queueEntryId the ID of the evicted queue entry
+     */
+    protected void queueEntryEvicted(String queueEntryId) {
     }
 
     /**
@@ -153,7 +599,7 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
      * 
      * @see com.heidelberg.JDFLib.jmf.JDFQueue.EnumQueueStatus;
      */
-    public synchronized JDFQueue.EnumQueueStatus getQueueStatus() {
+    public JDFQueue.EnumQueueStatus getQueueStatus() {
         return _state==null ? EnumQueueStatus.Blocked : _state.getQueueStatus();
     }
 
@@ -162,29 +608,46 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
      * 
      * @see org.cip4.elk.queue.Queue#addQueueEntry(org.cip4.jdflib.jmf.JDFQueueSubmissionParams)
      */
-    public synchronized JDFQueueEntry addQueueEntry(
-            JDFQueueSubmissionParams params) {
-        log.debug("Adding queue entry: " + params);
-        JDFQueueEntry qe;
-        // Check if the queue is accepting new queue entries
-        JDFQueue.EnumQueueStatus status = _state.getQueueStatus();
-        if (status.equals(JDFQueue.EnumQueueStatus.Full)) {
-            qe = null;
-        } else if (status.equals(JDFQueue.EnumQueueStatus.Blocked)) {
-            qe = null;
-        } else if (status.equals(JDFQueue.EnumQueueStatus.Closed)) {
-            qe = null;
-        } else {
-            qe = createQueueEntry(params);
-            putQueueEntry(qe);
+    public JDFQueueEntry addQueueEntry(JDFQueueSubmissionParams params) {
+        // The JDF is downloaded and parsed before the write lock is taken
+        return addQueueEntry(params, _fileUtil.getURLAsJDF(params.getURL()));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.cip4.elk.impl.queue.ConcurrentQueue#addQueueEntry(org.cip4.jdflib.jmf.JDFQueueSubmissionParams, org.cip4.jdflib.node.JDFNode)
+     */
+    public JDFQueueEntry addQueueEntry(JDFQueueSubmissionParams params,
+            JDFNode jdf) {
+        _lock.lockWrite();
+        try {
+            log.debug("Adding queue entry: " + params);
+            JDFQueueEntry qe;
+            // Check if the queue is accepting new queue entries
+            JDFQueue.EnumQueueStatus status = _state.getQueueStatus();
+            // Counts the queue entries since the status is not recalculated
+            // until the end of a batch
+            if (getActiveQueueEntryCount() >= getQueueSize()) {
+                qe = null;
+            } else if (status.equals(JDFQueue.EnumQueueStatus.Blocked)) {
+                qe = null;
+            } else if (status.equals(JDFQueue.EnumQueueStatus.Closed)) {
+                qe = null;
+            } else {
+                qe = createQueueEntry(params, jdf);
+                putQueueEntry(qe);
         
-            // Keep a copy of submission parameters
-            // TODO Make a defensive copy first
-            _queueSubmissionParamsMap.put(qe.getQueueEntryID(), params);
-            // Check if the queue was filled
-            _state.setQueueFull(getQueueEntryCount() >= getQueueSize());
+                // Keep a copy of submission parameters
+                // TODO Make a defensive copy first
+                _queueSubmissionParamsMap.put(qe.getQueueEntryID(), params);
+                // Check if the queue was filled
+                updateQueueFull();
+            }
+            return qe;
+        } finally {
+            _lock.unlockWrite();
         }
-        return qe;
     }
 
     /*
@@ -192,20 +655,53 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
      * 
      * @see org.cip4.elk.queue.Queue#getQueueEntry(java.lang.String)
      */
-    public synchronized JDFQueueEntry getQueueEntry(String queueEntryId) {
-        JDFQueueEntry qe = (JDFQueueEntry) _queueEntriesMap.get(queueEntryId);
-        if (qe != null) {
-            // Creates a copy of the queue entry
-            JDFDoc owner = new JDFDoc();
-            qe = (JDFQueueEntry) owner.importNode(qe, true);
+    public JDFQueueEntry getQueueEntry(String queueEntryId) {
+        _lock.lockRead();
+        try {
+            QueueEntryRecord record = (QueueEntryRecord) _queueEntriesMap
+                    .get(queueEntryId);
+            // Creates the queue entry element in a new document
+            return (record == null) ? null : record.toQueueEntry();
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * Returns a queue entry that has been evicted from this queue to its
+     * archive, for status queries. An archived queue entry is finished and
+     * can no longer be changed: aborting, removing or putting it does not
+     * affect the archive. Must be called without holding the lock.
+     * 
+     * @param queueEntryId the ID of the queue entry
+     * @return the archived queue entry; <code>null</code> if this queue has
+     *         no archive, or the queue entry was not archived or could not be
+     *         read
+     * @see #setArchive(QueueArchive)
+     */
+    public JDFQueueEntry getArchivedQueueEntry(String queueEntryId) {
+        final QueueArchive archive = getArchive();
+        if (archive == null) {
+            return null;
+        }
+        try {
+            return archive.getQueueEntry(queueEntryId);
+        } catch (IOException ioe) {
+            log.warn("Could not read queue entry " + queueEntryId
+                    + " from the archive: " + ioe);
+            return null;
         }
-        return qe;
     }
 
     public JDFQueueSubmissionParams getQueueSubmissionParams(String queueEntryId) {
-        // TODO Make defensive copy before returning
-        return (JDFQueueSubmissionParams) _queueSubmissionParamsMap
-                .get(queueEntryId);
+        _lock.lockRead();
+        try {
+            // TODO Make defensive copy before returning
+            return (JDFQueueSubmissionParams) _queueSubmissionParamsMap
+                    .get(queueEntryId);
+        } finally {
+            _lock.unlockRead();
+        }
     }
 
     /*
@@ -213,16 +709,27 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
      * 
      * @see org.cip4.elk.queue.Queue#abortQueueEntry(java.lang.String)
      */
-    public synchronized void abortQueueEntry(String queueEntryId) {
-        log.debug("Aborting queue entry '" + queueEntryId + "'...");
+    public void abortQueueEntry(String queueEntryId) {
+        _lock.lockWrite();
+        try {
+            log.debug("Aborting queue entry '" + queueEntryId + "'...");
         
-        // Get the queue entry element.
-        JDFQueueEntry qe = (JDFQueueEntry) _queueEntriesMap.get(queueEntryId);
-        if (qe == null) {
-        	log.error("Aborting error: cannot find queue entry '" + queueEntryId + "'.");
-        }
-        else {
-        	qe.setStatus(EnumNodeStatus.Aborted);
+            // Get the queue entry record.
+            QueueEntryRecord record = (QueueEntryRecord) _queueEntriesMap
+                    .get(queueEntryId);
+            if (record == null) {
+            	log.error("Aborting error: cannot find queue entry '" + queueEntryId + "'.");
+            }
+            else {
+            	record = record
+                        .withQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Aborted);
+            	storeRecord(record);
+            	updateQueueFull();
+            	incrementVersion();
+            	evictFinishedQueueEntries();
+            }
+        } finally {
+            _lock.unlockWrite();
         }
     }
 
@@ -230,47 +737,485 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
     /**
      * @see org.cip4.elk.queue.Queue#removeQueueEntry(java.lang.String)
      */
-    public synchronized JDFQueueEntry removeQueueEntry(String queueEntryId) {
-        log.debug("Removing queue entry '" + queueEntryId + "'...");
+    public JDFQueueEntry removeQueueEntry(String queueEntryId) {
+        _lock.lockWrite();
+        try {
+            log.debug("Removing queue entry '" + queueEntryId + "'...");
+
+            QueueEntryRecord record = removeRecord(queueEntryId);
+            // Creates an element of the removed queue entry and returns it
+            JDFQueueEntry qe = (record == null) ? null : record.toQueueEntry();
+
+            updateQueueFull();
+            incrementVersion();
+            return qe;
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * @see org.cip4.elk.queue.Queue#putQueueEntry(JDFQueueEntry)
+     */
+    public JDFQueueEntry putQueueEntry(JDFQueueEntry queueEntry) {
+        _lock.lockWrite();
+        try {
+            String qeId = queueEntry.getQueueEntryID();
+            log.debug("Putting queue entry '" + qeId + "'...");
+            // Checks if the queue is full
+            if (!hasCapacityFor(qeId)) {
+                return null;
+            }
+            // Keeps a compact record of the queue entry
+            QueueEntryRecord record = new QueueEntryRecord(queueEntry);
+            incrementVersion();
+            // Puts the record in the ID->QueueEntryRecord map
+            record = storeRecord(record);
+            updateQueueFull();
+            evictFinishedQueueEntries();
+            // Creates an element of the old queue entry and returns it
+            return (record == null) ? null : record.toQueueEntry();
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
 
+    /**
+     * Removes a queue entry record, its submission parameters and its index
+     * entries. Must be called while holding the write lock.
+     * 
+     * @param queueEntryId the ID of the queue entry
+     * @return the queue entry's record; <code>null</code> if there is no
+     *         such queue entry
+     */
+    private QueueEntryRecord removeRecord(String queueEntryId) {
         _queueSubmissionParamsMap.remove(queueEntryId);
-        // Creates a copy of the removed queue entry and returns the copy
-        JDFQueueEntry qe = (JDFQueueEntry) _queueEntriesMap
+        _jobProfilesMap.remove(queueEntryId);
+        _runnableIndex.remove(queueEntryId);
+        QueueEntryRecord record = (QueueEntryRecord) _queueEntriesMap
                 .remove(queueEntryId);
+        if (record != null) {
+            _entryIndex.remove(record);
+            _history.remove(queueEntryId);
+        }
+        return record;
+    }
 
-        if (qe != null) {
-            // Detaches the queue entry from the queue
-            _queue.removeChild(qe);
-            // Creates a copy of the removed queue entry and returns the copy
-            JDFDoc owner = new JDFDoc();
-            qe = (JDFQueueEntry) owner.importNode(qe, true);
+    /**
+     * Puts a queue entry record in the ID->QueueEntryRecord map and updates
+     * the indexes. Raises the runnable signal if the queue entry has become
+     * runnable. Must be called while holding the write lock.
+     * 
+     * @param record the queue entry's new record
+     * @return the queue entry's previous record; <code>null</code> if the
+     *         queue entry is new
+     */
+    private QueueEntryRecord storeRecord(QueueEntryRecord record) {
+        final QueueEntryRecord oldRecord = (QueueEntryRecord) _queueEntriesMap
+                .put(record.getQueueEntryID(), record);
+        final boolean wasRunnable = _runnableIndex.contains(record
+                .getQueueEntryID());
+        _runnableIndex.update(record, (JobProfile) _jobProfilesMap.get(record
+                .getQueueEntryID()));
+        if (!wasRunnable && _runnableIndex.contains(record.getQueueEntryID())) {
+            signalRunnable();
         }
+        _entryIndex.update(oldRecord, record);
+        _history.update(record, System.currentTimeMillis());
+        return oldRecord;
+    }
 
-        _state.setQueueFull(getQueueEntryCount() >= getQueueSize());
-        return qe;
+    /**
+     * Returns the IDs of the queue entries that have all the specified
+     * attribute values. Queue entries are looked up in the indexes of this
+     * queue, so only the attributes <em>QueueEntryID</em>, <em>Status</em>,
+     * <em>JobID</em>, <em>JobPartID</em> and <em>DeviceID</em> may be
+     * specified.
+     * 
+     * @param attributes the attribute values to match
+     * @return the IDs of the matching queue entries, sorted in the same order
+     *         as the queue entries of {@link #getQueue()}
+     * @throws IllegalArgumentException if an attribute that is not indexed is
+     *             specified
+     */
+    public List findQueueEntryIDs(JDFAttributeMap attributes) {
+        final QueueEntryRecord[] records;
+        _lock.lockRead();
+        try {
+            records = findRecords(attributes);
+        } finally {
+            _lock.unlockRead();
+        }
+        _sortingFilter.getComparator().sort(records);
+        final List ids = new ArrayList(records.length);
+        for (int i = 0; i < records.length; i++) {
+            ids.add(records[i].getQueueEntryID());
+        }
+        return ids;
     }
 
     /**
-     * @see org.cip4.elk.queue.Queue#putQueueEntry(JDFQueueEntry)
+     * Returns whether queue entries can be looked up by all the specified
+     * attributes.
      */
-    public synchronized JDFQueueEntry putQueueEntry(JDFQueueEntry queueEntry) {
-        String qeId = queueEntry.getQueueEntryID();
-        log.debug("Putting queue entry '" + qeId + "'...");
-        // Checks if the queue is full
-        if (!_queueEntriesMap.containsKey(qeId)
-                && getQueueSize() == getQueueEntryCount()) {
-            return null;
+    private static boolean isIndexed(JDFAttributeMap attributes) {
+        for (Iterator it = attributes.getKeyIterator(); it.hasNext();) {
+            final String name = (String) it.next();
+            if (!AttributeName.QUEUEENTRYID.equals(name)
+                    && !QueueEntryIndex.isIndexed(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the records of the queue entries that have all the specified
+     * attribute values. Must be called while holding the read lock.
+     * 
+     * @see #findQueueEntryIDs(JDFAttributeMap)
+     */
+    private QueueEntryRecord[] findRecords(JDFAttributeMap attributes) {
+        Set ids = null;
+        for (Iterator it = attributes.getKeyIterator(); it.hasNext();) {
+            final String name = (String) it.next();
+            final String value = attributes.get(name);
+            Set matches;
+            if (AttributeName.QUEUEENTRYID.equals(name)) {
+                matches = new HashSet();
+                matches.add(value);
+            } else {
+                matches = _entryIndex.getQueueEntryIDs(name, value);
+            }
+            ids = intersect(ids, matches);
+        }
+        return getRecords(ids);
+    }
+
+    /**
+     * Returns the records of the archived queue entries that a
+     * <em>QueueFilter</em> selects by <em>QueueEntryDef</em>. Must be called
+     * without holding the lock.
+     * 
+     * @param filter the filter, may be <code>null</code>
+     * @return the records of the archived queue entries that match the filter
+     */
+    private List getArchivedRecords(JDFQueueFilter filter) {
+        if (filter == null || getArchive() == null) {
+            return Collections.EMPTY_LIST;
+        }
+        final List records = new ArrayList();
+        JDFQueueEntryDef def;
+        for (int i = 0; (def = filter.getQueueEntryDef(i)) != null; i++) {
+            final JDFQueueEntry qe = getArchivedQueueEntry(def
+                    .getQueueEntryID());
+            if (qe != null) {
+                final QueueEntryRecord record = new QueueEntryRecord(qe);
+                if (matches(record, filter)) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Adds the records of archived queue entries to selected records. An
+     * archived queue entry is only added if the queue has no queue entry with
+     * the same ID. Must be called while holding the read lock.
+     * 
+     * @param records the selected records
+     * @param archivedRecords the records of archived queue entries
+     * @return the selected and archived records
+     */
+    private QueueEntryRecord[] addArchivedRecords(QueueEntryRecord[] records,
+            List archivedRecords) {
+        if (archivedRecords.isEmpty()) {
+            return records;
+        }
+        final List all = new ArrayList(Arrays.asList(records));
+        for (int i = 0, imax = archivedRecords.size(); i < imax; i++) {
+            final QueueEntryRecord record = (QueueEntryRecord) archivedRecords
+                    .get(i);
+            if (!_queueEntriesMap.containsKey(record.getQueueEntryID())) {
+                all.add(record);
+            }
+        }
+        return (QueueEntryRecord[]) all.toArray(new QueueEntryRecord[all
+                .size()]);
+    }
+
+    /**
+     * Returns whether a record matches the <em>StatusList</em>,
+     * <em>Device</em>, <em>NewerThan</em> and <em>OlderThan</em> of a
+     * <em>QueueFilter</em>. Used for records that are not in the indexes.
+     * 
+     * @param record the record
+     * @param filter the filter
+     * @return <code>true</code> if the record matches the filter;
+     *         <code>false</code> otherwise
+     */
+    private boolean matches(QueueEntryRecord record, JDFQueueFilter filter) {
+        if (filter.hasAttribute(AttributeName.STATUSLIST)) {
+            final Vector statusList = filter.getStatusList();
+            final String status = (record.getQueueEntryStatus() == null) ? null
+                    : record.getQueueEntryStatus().getName();
+            boolean found = false;
+            for (int i = 0, imax = statusList.size(); !found && i < imax; i++) {
+                found = ((EnumStatusList) statusList.get(i)).getName().equals(
+                    status);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        if (filter.getDevice(0) != null) {
+            boolean found = false;
+            JDFDevice device;
+            for (int i = 0; !found && (device = filter.getDevice(i)) != null; i++) {
+                found = device.getDeviceID().equals(record.getDeviceID());
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        final long time = record.getStatusChangeTimeMillis();
+        if (filter.hasAttribute(AttributeName.NEWERTHAN)
+                && (time == QueueEntryRecord.NO_SUBMISSION_TIME || time <= filter
+                        .getNewerThan().getTimeInMillis())) {
+            return false;
+        }
+        if (filter.hasAttribute(AttributeName.OLDERTHAN)
+                && (time == QueueEntryRecord.NO_SUBMISSION_TIME || time >= filter
+                        .getOlderThan().getTimeInMillis())) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the records of the queue entries selected by a
+     * <em>QueueFilter</em>. The queue entries are selected by
+     * <em>QueueEntryDef</em>, <em>StatusList</em> and <em>Device</em>
+     * using the indexes, and by <em>NewerThan</em> and <em>OlderThan</em>
+     * using the time of each selected record's latest status change. Must be
+     * called while holding the read lock.
+     * 
+     * @param filter the filter, may be <code>null</code>
+     * @return the selected records in no particular order
+     */
+    private QueueEntryRecord[] selectRecords(JDFQueueFilter filter) {
+        if (filter == null) {
+            return getRecords(null);
+        }
+        Set ids = null;
+        Set matches = new HashSet();
+        JDFQueueEntryDef def;
+        for (int i = 0; (def = filter.getQueueEntryDef(i)) != null; i++) {
+            matches.add(def.getQueueEntryID());
+        }
+        if (!matches.isEmpty()) {
+            ids = intersect(ids, matches);
+        }
+        if (filter.hasAttribute(AttributeName.STATUSLIST)) {
+            final Vector statusList = filter.getStatusList();
+            matches = new HashSet();
+            for (int i = 0, imax = statusList.size(); i < imax; i++) {
+                final EnumStatusList status = (EnumStatusList) statusList
+                        .get(i);
+                matches.addAll(_entryIndex.getQueueEntryIDs(
+                    AttributeName.STATUS, status.getName()));
+            }
+            ids = intersect(ids, matches);
+        }
+        if (filter.getDevice(0) != null) {
+            matches = new HashSet();
+            JDFDevice device;
+            for (int i = 0; (device = filter.getDevice(i)) != null; i++) {
+                matches.addAll(_entryIndex.getQueueEntryIDs(
+                    AttributeName.DEVICEID, device.getDeviceID()));
+            }
+            ids = intersect(ids, matches);
+        }
+        QueueEntryRecord[] records = getRecords(ids);
+        final boolean newerThan = filter.hasAttribute(AttributeName.NEWERTHAN);
+        final boolean olderThan = filter.hasAttribute(AttributeName.OLDERTHAN);
+        if (newerThan || olderThan) {
+            final long newer = newerThan ? filter.getNewerThan()
+                    .getTimeInMillis() : Long.MIN_VALUE;
+            final long older = olderThan ? filter.getOlderThan()
+                    .getTimeInMillis() : Long.MAX_VALUE;
+            final List selected = new ArrayList(records.length);
+            for (int i = 0; i < records.length; i++) {
+                final long time = records[i].getStatusChangeTimeMillis();
+                if (time != QueueEntryRecord.NO_SUBMISSION_TIME
+                        && time > newer && time < older) {
+                    selected.add(records[i]);
+                }
+            }
+            records = (QueueEntryRecord[]) selected
+                    .toArray(new QueueEntryRecord[selected.size()]);
+        }
+        return records;
+    }
+
+    /**
+     * Returns the intersection of two sets of queue entry IDs.
+     * 
+     * @param ids the IDs selected so far, or <code>null</code> if all queue
+     *            entries are selected so far; may be modified
+     * @param matches the IDs matching another criterion
+     * @return the intersection
+     */
+    private static Set intersect(Set ids, Set matches) {
+        if (ids == null) {
+            return new HashSet(matches);
+        }
+        ids.retainAll(matches);
+        return ids;
+    }
+
+    /**
+     * Returns the records of the specified queue entries. Must be called
+     * while holding the read lock.
+     * 
+     * @param ids the IDs of the queue entries, or <code>null</code> for all
+     *            queue entries
+     * @return the records of the queue entries in this queue
+     */
+    private QueueEntryRecord[] getRecords(Set ids) {
+        final Collection records;
+        if (ids == null) {
+            records = _queueEntriesMap.values();
+        } else {
+            records = new ArrayList(ids.size());
+            for (Iterator it = ids.iterator(); it.hasNext();) {
+                final Object record = _queueEntriesMap.get(it.next());
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+        }
+        return (QueueEntryRecord[]) records
+                .toArray(new QueueEntryRecord[records.size()]);
+    }
+
+    /**
+     * Returns whether this queue contains the specified queue entry.
+     * 
+     * @param queueEntryId the ID of the queue entry
+     * @return <code>true</code> if the queue entry is in this queue;
+     *         <code>false</code> otherwise
+     */
+    protected boolean containsQueueEntry(String queueEntryId) {
+        _lock.lockRead();
+        try {
+            return _queueEntriesMap.containsKey(queueEntryId);
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * Returns the IDs of all queue entries in this queue.
+     * 
+     * @return a list of queue entry IDs, the list is a copy
+     */
+    protected List getQueueEntryIDs() {
+        _lock.lockRead();
+        try {
+            return new ArrayList(_queueEntriesMap.keySet());
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * Restores a queue entry, for example one read from persistent storage
+     * when the queue is restarted. Unlike {@link #putQueueEntry(JDFQueueEntry)}
+     * the queue entry is restored even if the queue is full. The queue entry
+     * ID counter is advanced past the restored queue entry's ID so that new
+     * queue entries do not get the same ID.
+     * 
+     * @param queueEntry the queue entry to restore
+     */
+    protected void restoreQueueEntry(JDFQueueEntry queueEntry) {
+        _lock.lockWrite();
+        try {
+            storeRecord(new QueueEntryRecord(queueEntry));
+            advanceQueueEntryIdCounter(queueEntry.getQueueEntryID());
+            updateQueueFull();
+            incrementVersion();
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Advances the queue entry ID counter past a queue entry's ID if the ID
+     * was generated by the counter. Must be called while holding the write
+     * lock.
+     * 
+     * @param queueEntryId the ID of a restored or archived queue entry
+     */
+    private void advanceQueueEntryIdCounter(String queueEntryId) {
+        try {
+            restoreQueueEntryIdCounter(Integer.parseInt(queueEntryId));
+        } catch (NumberFormatException nfe) {
+            log.debug("Queue entry '" + queueEntryId
+                    + "' does not have a generated ID.");
+        }
+    }
+
+    /**
+     * Restores the queue entry ID counter, for example one read from
+     * persistent storage when the queue is restarted. The counter is only
+     * advanced, never set back, so IDs are not reused even if some of the
+     * queue entries that had them are still in this queue or its archive.
+     * 
+     * @param counter the counter, the last generated queue entry ID
+     * @see #getQueueEntryIdCounter()
+     */
+    protected void restoreQueueEntryIdCounter(int counter) {
+        _lock.lockWrite();
+        try {
+            if (counter > _queueEntryIdIterator) {
+                _queueEntryIdIterator = counter;
+            }
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Returns the queue entry ID counter, the last generated queue entry ID.
+     * 
+     * @return the queue entry ID counter
+     */
+    protected int getQueueEntryIdCounter() {
+        _lock.lockRead();
+        try {
+            return _queueEntryIdIterator;
+        } finally {
+            _lock.unlockRead();
         }
-        // Creates a copy of the queue entry and appends it to the queue
-        queueEntry = (JDFQueueEntry) _queue.copyElement(queueEntry, null);
-        // Puts the queue entry in the ID->QueueEntry map
-        queueEntry = (JDFQueueEntry) _queueEntriesMap.put(qeId, queueEntry);
-        // Creates a copy of the old queue entry and returns it
-        if (queueEntry != null) {
-            JDFDoc owner = new JDFDoc();
-            owner.importNode(queueEntry, true);
+    }
+
+    /**
+     * Restores the submission parameters of a queue entry.
+     * 
+     * @param queueEntryId the ID of the queue entry
+     * @param params the queue entry's submission parameters
+     * @see #restoreQueueEntry(JDFQueueEntry)
+     */
+    protected void restoreQueueSubmissionParams(String queueEntryId,
+            JDFQueueSubmissionParams params) {
+        _lock.lockWrite();
+        try {
+            _queueSubmissionParamsMap.put(queueEntryId, params);
+        } finally {
+            _lock.unlockWrite();
         }
-        return queueEntry;
     }
 
     /**
@@ -284,7 +1229,7 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
      * @see #getQueue(org.cip4.elk.impl.queue.util.QueueFilter)
      * @see org.cip4.elk.queue.Queue#getQueue()
      */
-    public synchronized JDFQueue getQueue() {
+    public JDFQueue getQueue() {
         return getQueue(_sortingFilter);
     }
 
@@ -292,54 +1237,223 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
      * Returns a filtered queue.
      * 
      * The queue is sorted and filtered according to the requirements of Base
-     * ICS.
+     * ICS. If the result does not depend on the progress of running jobs it is
+     * cached and returned again, as a copy, until this queue is modified.
+     * <p>
+     * The queue is copied while holding the read lock. Sorting and filtering is
+     * done on the copy after the lock has been released.
+     * </p>
      * 
      * @see org.cip4.impl.queue.util.SortingQueueFilter
+     * @see QueueSnapshotCache
      * @return the filtered and sorted queue
      */
-
-    public synchronized JDFQueue getQueue(JDFQueueFilter filter) {
+    public JDFQueue getQueue(JDFQueueFilter filter) {
+        final boolean cacheable = QueueSnapshotCache.isCacheable(filter);
+        String cacheKey = null;
+        if (cacheable) {
+            cacheKey = QueueSnapshotCache.getKey(filter);
+            final long version = getVersion();
+            JDFQueue snapshot;
+            synchronized (_snapshotCache) {
+                snapshot = _snapshotCache.getSnapshot(cacheKey, version);
+            }
+            if (snapshot != null) {
+                log.debug("Returning cached Queue of version " + version + ".");
+                return copyQueue(snapshot);
+            }
+        }
         // TODO Map the JDFQueueFilter to a QueueFilter
-        // Creates a copy of the queue element
-        JDFDoc owner = new JDFDoc();
-        JDFQueue q = (JDFQueue) owner.importNode(_queue, false);
-
-        q.setDeviceID(_config.getID());
-        q.setQueueSize(getQueueSize());
-        q.setQueueStatus(getQueueStatus());
-        // Appends all queue entries to the queue copy
-        for (Iterator it = _queueEntriesMap.values().iterator(); it.hasNext();) {
-            q.copyElement((JDFQueueEntry) it.next(), null);
+        // Evicted queue entries are read from the archive before the lock is
+        // taken
+        final List archivedRecords = getArchivedRecords(filter);
+        final long version;
+        JDFQueue q;
+        _lock.lockRead();
+        try {
+            version = getVersion();
+            // Selects the queue entries using the indexes
+            q = copyQueueEntries(addArchivedRecords(selectRecords(filter),
+                archivedRecords));
+            q.setDeviceID(_config.getID());
+        } finally {
+            _lock.unlockRead();
         }
 
-        log.debug("About to sort the Queue.");
-        // First sort the queue according to specification
-        q = _sortingFilter.filterQueue(q, filter, false); // TODO test
-
+        // The queue entries were appended in sorted order
         log.debug("About to filter the Queue using "
                 + _baseICSFilter.getClass().getName());
         q = _baseICSFilter.filterQueue(q, filter);
 
+        if (cacheable) {
+            // Keeps the filtered queue and returns a copy of it. If the queue
+            // was changed while filtering the snapshot is already stale.
+            synchronized (_snapshotCache) {
+                _snapshotCache.putSnapshot(cacheKey, version, q);
+            }
+            q = copyQueue(q);
+        }
         return q;
     }
 
     /**
-     * Returns a filtered queue.
+     * Returns the version of this queue. The version is incremented each time a
+     * queue entry is added, put, aborted or removed, and each time the queue's
+     * status or size may have changed.
      * 
-     * @todo The performance of this method most likely needs to be optimized.
-     *       There is a lot of cloning and iterating over Nodes nodes going on
-     *       here.
-     * @see org.cip4.elk.queue.Queue#getQueue(org.cip4.elk.impl.queue.util.QueueFilter)
+     * @return the version of this queue
+     * @see ConcurrentQueue#getVersion()
+     */
+    public long getVersion() {
+        synchronized (_versionMonitor) {
+            return _version;
+        }
+    }
+
+    /**
+     * Waits until this queue's version has changed.
+     * 
+     * @see ConcurrentQueue#awaitChange(long, long)
+     */
+    public long awaitChange(long version, long timeout)
+            throws InterruptedException {
+        synchronized (_versionMonitor) {
+            final long deadline = System.currentTimeMillis() + timeout;
+            long remaining = timeout;
+            while (_version == version && remaining > 0) {
+                _versionMonitor.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return _version;
+        }
+    }
+
+    /**
+     * Returns this queue's runnable signal.
+     * 
+     * @return the runnable signal of this queue
+     * @see ConcurrentQueue#getRunnableSignal()
+     */
+    public long getRunnableSignal() {
+        synchronized (_runnableMonitor) {
+            return _runnableSignal;
+        }
+    }
+
+    /**
+     * Waits until this queue's runnable signal has been raised.
+     * 
+     * @see ConcurrentQueue#awaitRunnable(long, long)
+     */
+    public long awaitRunnable(long signal, long timeout)
+            throws InterruptedException {
+        synchronized (_runnableMonitor) {
+            if (timeout == 0) {
+                while (_runnableSignal == signal) {
+                    _runnableMonitor.wait();
+                }
+            } else {
+                final long deadline = System.currentTimeMillis() + timeout;
+                long remaining = timeout;
+                while (_runnableSignal == signal && remaining > 0) {
+                    _runnableMonitor.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            }
+            return _runnableSignal;
+        }
+    }
+
+    /**
+     * Raises this queue's runnable signal, waking up threads waiting for a
+     * runnable queue entry.
+     * 
+     * @see ConcurrentQueue#signalRunnable()
+     */
+    public void signalRunnable() {
+        synchronized (_runnableMonitor) {
+            _runnableSignal++;
+            _runnableMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Increments this queue's version, invalidating all cached queue
+     * snapshots and waking up threads waiting for the queue to change.
+     */
+    private void incrementVersion() {
+        synchronized (_versionMonitor) {
+            _version++;
+            _versionMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Creates a copy of a queue that is owned by a new document. Cached
+     * snapshots are read by several threads, and Xerces does not support
+     * concurrent reads of a DOM, so the queue is copied while holding its
+     * monitor.
+     * 
+     * @param queue the queue to copy
+     * @return a copy of the queue
      */
-    public synchronized JDFQueue getQueue(QueueFilter filter) {
-        // Creates a copy of the queue element
+    private JDFQueue copyQueue(JDFQueue queue) {
+        JDFDoc owner = new JDFDoc();
+        synchronized (queue) {
+            return (JDFQueue) owner.importNode(queue, true);
+        }
+    }
+
+    /**
+     * Creates a sorted copy of this queue with the specified queue entries.
+     * The queue entries are sorted in the same order as
+     * {@link SortingQueueFilter} sorts them, using the sort keys of their
+     * records. Must be called while holding the read lock.
+     * 
+     * @param records the records of the queue entries to copy; the array is
+     *            sorted
+     * @return a copy of this queue that is owned by a new document
+     */
+    private JDFQueue copyQueueEntries(QueueEntryRecord[] records) {
         JDFDoc owner = new JDFDoc();
         JDFQueue q = (JDFQueue) owner.importNode(_queue, false);
         q.setQueueSize(getQueueSize());
         q.setQueueStatus(getQueueStatus());
+        _sortingFilter.getComparator().sort(records);
         // Appends all queue entries to the queue copy
-        for (Iterator it = _queueEntriesMap.values().iterator(); it.hasNext();) {
-            q.copyElement((JDFQueueEntry) it.next(), null);
+        for (int i = 0; i < records.length; i++) {
+            records[i].appendTo(q);
+        }
+        return q;
+    }
+
+    /**
+     * Returns a filtered queue. The queue is copied while holding the read
+     * lock and filtered after the lock has been released.
+     * 
+     * @todo The performance of this method most likely needs to be optimized.
+     *       There is a lot of cloning and iterating over Nodes nodes going on
+     *       here.
+     * @see org.cip4.elk.queue.Queue#getQueue(org.cip4.elk.impl.queue.util.QueueFilter)
+     */
+    public JDFQueue getQueue(QueueFilter filter) {
+        JDFAttributeMap attributes = null;
+        if (filter instanceof AttributeQueueFilter) {
+            attributes = ((AttributeQueueFilter) filter).getAttributeMap();
+        }
+        // Queue entries selected by indexed attributes are looked up
+        final boolean indexed = attributes != null && isIndexed(attributes);
+        JDFQueue q;
+        _lock.lockRead();
+        try {
+            q = copyQueueEntries(indexed ? findRecords(attributes)
+                    : getRecords(null));
+        } finally {
+            _lock.unlockRead();
+        }
+        if (filter == _sortingFilter || indexed) {
+            // The queue entries were selected and appended in sorted order
+            return q;
         }
         if (filter instanceof SortingQueueFilter) {
             // Sorts without copying and cloning
@@ -352,33 +1466,91 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
     }
 
     /**
-     * Returns the first queue entry that is runnable.
+     * Returns the first queue entry that is runnable. The runnable queue
+     * entries are kept by the queue's scheduling policy, which is updated each
+     * time a queue entry is added, put, aborted or removed, so no copy of the
+     * queue is created. Only the returned queue entry is copied.
+     * 
+     * @see #setSchedulingPolicy(SchedulingPolicy)
      */
-    public synchronized JDFQueueEntry getFirstRunnableQueueEntry() {
-        // log.debug("Getting first runnable queue entry: " +
-        // _queue.getQueueEntry(0));
-        JDFQueueEntry qe = null;
-        JDFQueue.EnumQueueStatus status = getQueueStatus();
-        if (!status.equals(JDFQueue.EnumQueueStatus.Held)
-                && !status.equals(JDFQueue.EnumQueueStatus.Blocked)) {
-            JDFQueue q = getQueue(_statusWaitingFilter);
-            qe = q.getQueueEntry(0);
+    public JDFQueueEntry getFirstRunnableQueueEntry() {
+        _lock.lockRead();
+        try {
+            JDFQueueEntry qe = null;
+            JDFQueue.EnumQueueStatus status = getQueueStatus();
+            if (!status.equals(JDFQueue.EnumQueueStatus.Held)
+                    && !status.equals(JDFQueue.EnumQueueStatus.Blocked)) {
+                String qeId = _runnableIndex.getFirstQueueEntryID();
+                if (qeId != null) {
+                    qe = getQueueEntry(qeId);
+                }
+            }
+            return qe;
+        } finally {
+            _lock.unlockRead();
+        }
+    }
+
+    /**
+     * Returns the first runnable queue entry after changing its status to
+     * <em>Running</em>. The queue entry is put using
+     * {@link #putQueueEntry(JDFQueueEntry)} while holding the write lock.
+     * 
+     * @see ConcurrentQueue#claimFirstRunnableQueueEntry(JDFDate)
+     */
+    public JDFQueueEntry claimFirstRunnableQueueEntry(JDFDate startTime) {
+        _lock.lockWrite();
+        try {
+            final JDFQueueEntry qe = getFirstRunnableQueueEntry();
+            if (qe != null) {
+                qe.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Running);
+                qe.setStartTime(startTime);
+                putQueueEntry(qe);
+                log.debug("Claimed queue entry '" + qe.getQueueEntryID()
+                        + "'.");
+            }
+            return qe;
+        } finally {
+            _lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Starts a batch of changes by acquiring the write lock.
+     * 
+     * @see ConcurrentQueue#beginBatch()
+     */
+    public void beginBatch() {
+        _lock.lockWrite();
+        _state.beginBatch();
+    }
+
+    /**
+     * Ends a batch of changes and releases the write lock.
+     * 
+     * @see ConcurrentQueue#endBatch()
+     */
+    public void endBatch() {
+        try {
+            _state.endBatch();
+        } finally {
+            _lock.unlockWrite();
         }
-        return qe;
     }
 
     /**
      * Creates a new queue entry based on the submission parameters. The queue
      * entry is represented by a <em>QueueEntry</em> element that is owned by
-     * this queue's owner document. When creating the queue entry the JDF job
-     * file that the queue entry refers to is downloaded so that job ID (
-     * <em>JDF/@JobID</em>) and job part ID (<em>JDF/@JobPartID</em>) can
-     * be retrieved.
+     * this queue's owner document. The job ID (<em>JDF/@JobID</em>) and job
+     * part ID (<em>JDF/@JobPartID</em>) are retrieved from the JDF job file
+     * that the queue entry refers to, which the caller has already downloaded.
      * 
      * @param params
+     * @param jdf the JDF the queue entry refers to, may be <code>null</code>
      * @return
      */
-    private JDFQueueEntry createQueueEntry(JDFQueueSubmissionParams params) {
+    private JDFQueueEntry createQueueEntry(JDFQueueSubmissionParams params,
+            JDFNode jdf) {
         JDFQueueEntry qe = (JDFQueueEntry) JDFElementFactory.getInstance()
                 .createJDFElement(ElementName.QUEUEENTRY);
         qe.setDeviceID(getDeviceID());
@@ -390,9 +1562,6 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
         // XXX qe.setStatus();
         qe.setSubmissionTime(new JDFDate());
         // XXX qe.setJobPhase();
-        // Get JDF file
-        String url = params.getURL();
-        JDFNode jdf = _fileUtil.getURLAsJDF(url);
         // TODO Cache the JDF file to temp dir so that the device does not have
         // to download it again
         if (jdf != null) {
@@ -436,12 +1605,13 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
 
     /**
      * Creates a new queue entry ID (<em>QueueEntry/@QueueEntryID</em>).
-     * This returns the next integer value from a counter which is reset each
-     * time the queue is restarted.
+     * This returns the next integer value from a counter. The counter starts
+     * at 0, subclasses that restore queue entries when the queue is restarted
+     * also restore the counter. Must be called while holding the write lock.
      * 
      * @return
      */
-    private synchronized String createQueueEntryID() {
+    private String createQueueEntryID() {
         _queueEntryIdIterator++;
         return "" + _queueEntryIdIterator;
     }
@@ -467,24 +1637,145 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
     }
 
     public void openQueue() {
-        _queue.setQueueStatus(_state.openQueue());
+        _lock.lockWrite();
+        try {
+            _queue.setQueueStatus(_state.openQueue());
+            incrementVersion();
+            signalRunnable();
+        } finally {
+            _lock.unlockWrite();
+        }
     }
 
     public void closeQueue() {
-        _queue.setQueueStatus(_state.closeQueue());
+        _lock.lockWrite();
+        try {
+            _queue.setQueueStatus(_state.closeQueue());
+            incrementVersion();
+        } finally {
+            _lock.unlockWrite();
+        }
     }
 
     public void holdQueue() {
-        // TODO Hold currently running processes
-        _queue.setQueueStatus(_state.holdQueue());
+        _lock.lockWrite();
+        try {
+            // TODO Hold currently running processes
+            _queue.setQueueStatus(_state.holdQueue());
+            incrementVersion();
+        } finally {
+            _lock.unlockWrite();
+        }
     }
 
     public void resumeQueue() {
-        _queue.setQueueStatus(_state.resumeQueue());
+        _lock.lockWrite();
+        try {
+            _queue.setQueueStatus(_state.resumeQueue());
+            incrementVersion();
+            signalRunnable();
+        } finally {
+            _lock.unlockWrite();
+        }
     }
 
+    /**
+     * Removes all queue entries that are not <em>Running</em> or
+     * <em>Suspended</em>.
+     * 
+     * @see #flushQueue(JDFQueueFilter)
+     * @see org.cip4.elk.queue.Queue#flushQueue()
+     */
     public void flushQueue() {
-        // TODO Implement flush queue
+        flushQueue(null);
+    }
+
+    /**
+     * Removes the queue entries selected by a <em>QueueFilter</em> in one
+     * pass. The queue entries are selected the same way as by
+     * {@link #getQueue(JDFQueueFilter)}, using the indexes, and all of them
+     * are removed while holding the write lock once. Queue entries that are
+     * <em>Running</em> or <em>Suspended</em> are not removed.
+     * <p>
+     * If this queue has a repository the JDF files of the removed queue
+     * entries that are private files of the repository are removed from it
+     * by a background thread, after the lock has been released.
+     * </p>
+     * 
+     * @see ConcurrentQueue#flushQueue(JDFQueueFilter)
+     */
+    public List flushQueue(JDFQueueFilter filter) {
+        final List ids = new ArrayList();
+        final List urls = new ArrayList();
+        final Repository repository;
+        _lock.lockWrite();
+        try {
+            repository = _repository;
+            final QueueEntryRecord[] records = selectRecords(filter);
+            _sortingFilter.getComparator().sort(records);
+            for (int i = 0; i < records.length; i++) {
+                final JDFQueueEntry.EnumQueueEntryStatus status = records[i]
+                        .getQueueEntryStatus();
+                if (JDFQueueEntry.EnumQueueEntryStatus.Running.equals(status)
+                        || JDFQueueEntry.EnumQueueEntryStatus.Suspended
+                                .equals(status)) {
+                    continue;
+                }
+                final String qeId = records[i].getQueueEntryID();
+                final JDFQueueSubmissionParams params = (JDFQueueSubmissionParams) _queueSubmissionParamsMap
+                        .get(qeId);
+                // Only the repository's own copies are removed, never a
+                // client's file
+                if (params != null && repository != null
+                        && repository.isPrivateFile(params.getURL())) {
+                    urls.add(params.getURL());
+                }
+                removeRecord(qeId);
+                ids.add(qeId);
+            }
+            if (!ids.isEmpty()) {
+                updateQueueFull();
+                incrementVersion();
+            }
+        } finally {
+            _lock.unlockWrite();
+        }
+        log.info("Flushed " + ids.size() + " queue entries.");
+        if (repository != null) {
+            releaseFiles(repository, urls);
+        }
+        return ids;
+    }
+
+    /**
+     * Removes files from a repository using a background thread.
+     * 
+     * @param repository the repository
+     * @param urls the URLs of the files to remove
+     */
+    private void releaseFiles(final Repository repository, final List urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        try {
+            _fileReleaser.execute(new Runnable() {
+                public void run() {
+                    for (int i = 0, imax = urls.size(); i < imax; i++) {
+                        final String url = (String) urls.get(i);
+                        if (!repository.removeFile(url)) {
+                            log.warn("Could not remove the JDF file " + url
+                                    + " of a flushed queue entry.");
+                        }
+                    }
+                    log.debug("Removed the JDF files of " + urls.size()
+                            + " flushed queue entries.");
+                }
+            });
+        } catch (InterruptedException ie) {
+            log.warn("Interrupted before the JDF files of the flushed queue"
+                    + " entries could be removed.");
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -519,16 +1810,22 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
      * Updates the queue's state. ProcessStatusListener interface.
      */
     public void processStatusChanged(ProcessStatusEvent processEvent) {
-        JDFDeviceInfo.EnumDeviceStatus status = processEvent.getProcessStatus();
-        if (status.equals(JDFDeviceInfo.EnumDeviceStatus.Running)
-                || status.equals(JDFDeviceInfo.EnumDeviceStatus.Setup)
-                || status.equals(JDFDeviceInfo.EnumDeviceStatus.Cleanup)) {
-            _state.setProcessFull(true);
-            _state.setQueueFull(getQueueSize() == getQueueEntryCount());
-        } else if (status.equals(JDFDeviceInfo.EnumDeviceStatus.Idle)
-                || status.equals(JDFDeviceInfo.EnumDeviceStatus.Stopped)
-                || status.equals(JDFDeviceInfo.EnumDeviceStatus.Down)) {
-            _state.setProcessFull(false);
+        _lock.lockWrite();
+        try {
+            JDFDeviceInfo.EnumDeviceStatus status = processEvent.getProcessStatus();
+            if (status.equals(JDFDeviceInfo.EnumDeviceStatus.Running)
+                    || status.equals(JDFDeviceInfo.EnumDeviceStatus.Setup)
+                    || status.equals(JDFDeviceInfo.EnumDeviceStatus.Cleanup)) {
+                _state.setProcessFull(true);
+                updateQueueFull();
+            } else if (status.equals(JDFDeviceInfo.EnumDeviceStatus.Idle)
+                    || status.equals(JDFDeviceInfo.EnumDeviceStatus.Stopped)
+                    || status.equals(JDFDeviceInfo.EnumDeviceStatus.Down)) {
+                _state.setProcessFull(false);
+            }
+            incrementVersion();
+        } finally {
+            _lock.unlockWrite();
         }
     }
 
@@ -537,10 +1834,14 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
      * QueueFilter/QueueEntryDetails/@JDF) it will not work correctly yet,
      * because the Queue will fetch the JDFs from the URL at the moment (which
      * means unprocessed).
+     * <p>
+     * The queue is only locked while the queue entry is copied. The JobPhase
+     * and JDF are retrieved without holding the lock.
+     * </p>
      * 
      * @see org.cip4.elk.queue.Queue#getJobPhase(java.lang.String, boolean)
      */
-    public synchronized JDFJobPhase getJobPhase(String queueEntryId,
+    public JDFJobPhase getJobPhase(String queueEntryId,
             boolean includeJDF) {
 
         if (queueEntryId == null) {
@@ -568,7 +1869,18 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
                         + " Process.");
                 return null;
             }
-            phase = _process.getJobPhase();
+            final Process process = _process;
+            if (process instanceof JobPhaseProvider) {
+                // The process may be running several queue entries
+                phase = ((JobPhaseProvider) process).getJobPhase(queueEntryId);
+                if (phase == null) {
+                    log.debug("The process is not running queue entry '"
+                            + queueEntryId + "', no JobPhase returned.");
+                    return null;
+                }
+            } else {
+                phase = process.getJobPhase();
+            }
             if (phase == null) { // Programming error
                 String msg = "The QueueEntry with id '" + qe.getQueueEntryID()
                         + "' state was Running. The Process that is "
@@ -581,10 +1893,9 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
             } 
             // copy the element to the JobPhase element to the QueueEntry
             JDFJobPhase qephase = qe.getJobPhase();
+            phase = (JDFJobPhase) qe.copyElement(phase, qephase);
             if (qephase != null) {
-                qe.replaceChild(phase, qephase);
-            } else {
-                qe.copyElement(phase, null);
+                qephase.deleteNode();
             }
         } else {
             log.debug("The QueueEntryID='" + qe.getQueueEntryID()
@@ -600,8 +1911,8 @@ public class MemoryQueue implements Queue, ProcessStatusListener,
             // This will become the repository's duty
             // for now download it from URL.
             // TODO Change to use the Repository.
-            JDFQueueSubmissionParams params = (JDFQueueSubmissionParams) _queueSubmissionParamsMap
-                    .get(qe.getQueueEntryID());
+            JDFQueueSubmissionParams params = getQueueSubmissionParams(qe
+                    .getQueueEntryID());
             String url = params.getURL();
             JDFNode jdf = _fileUtil.getURLAsJDF(url);
             if (jdf == null) {
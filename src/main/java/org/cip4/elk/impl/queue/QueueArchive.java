@@ -0,0 +1,441 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.cip4.elk.impl.queue.util.QueueEntryRecord;
+import org.cip4.jdflib.core.AttributeName;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+/**
+ * An append-only file of finished queue entries that have been evicted from a
+ * queue, see {@link MemoryQueue#setArchive(QueueArchive)}. Archived queue
+ * entries no longer use memory, except for the position of each queue entry
+ * in the file, but can still be looked up by ID for status queries.
+ * <p>
+ * Each queue entry is written as its length, a CRC32 checksum and the
+ * payload: the queue entry's ID, status, job ID, job part ID, device ID and
+ * its XML. A torn record at the end of the file is discarded when the archive
+ * is opened. If a queue entry is archived more than once the last copy is
+ * returned.
+ * </p>
+ * <p>
+ * The archive keeps the {@link #setMaxSize(int) maximum number} of most
+ * recently archived queue entries. Older ones are dropped, and the file is
+ * rewritten with the kept queue entries when it holds twice as many records.
+ * </p>
+ * <p>
+ * Like the queue's journal, archiving and syncing are separate steps.
+ * {@link #archive(QueueEntryRecord)} writes a queue entry while the queue is
+ * locked, and the queue passes the returned sequence number to
+ * {@link #sync(long)} after it has released the lock. A thread that syncs
+ * forces all queue entries archived so far to disk.
+ * </p>
+ *
+ * @see MemoryQueue
+ */
+public class QueueArchive {
+
+    /** The default maximum number of archived queue entries */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private static final String ARCHIVE_FILE_NAME = "queue.archive";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String ENCODING = "UTF-8";
+    // The attributes stored before the XML of each queue entry
+    private static final String[] ATTRIBUTES = { AttributeName.QUEUEENTRYID,
+            AttributeName.STATUS, AttributeName.JOBID,
+            AttributeName.JOBPARTID, AttributeName.DEVICEID };
+
+    private static Logger log = Logger.getLogger(QueueArchive.class);
+
+    private File _file;
+    private RandomAccessFile _raf;
+    // Queue entry ID -> Long position of the queue entry's last record, in
+    // the order the queue entries were last archived
+    private Map _positions;
+    private int _maxSize;
+    private boolean _syncEnabled;
+    // The number of records in the file, including superseded ones
+    private int _recordCount;
+    // The number of queue entries archived since the archive was opened
+    private long _archivedCount;
+
+    // Guarded by _syncLock, which is never taken while holding this archive
+    private final Object _syncLock = new Object();
+    private long _syncedCount;
+
+    /**
+     * Opens the archive in the specified directory, creating the directory and
+     * the archive if they do not exist.
+     *
+     * @param directory the archive directory
+     * @throws IOException if the archive could not be opened
+     */
+    public QueueArchive(String directory) throws IOException {
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create the queue archive directory "
+                    + dir.getAbsolutePath() + ".");
+        }
+        _file = new File(dir, ARCHIVE_FILE_NAME);
+        // A rewrite that was interrupted left the archive itself intact
+        new File(dir, ARCHIVE_FILE_NAME + TEMP_SUFFIX).delete();
+        _raf = new RandomAccessFile(_file, "rw");
+        _positions = new LinkedHashMap();
+        _maxSize = DEFAULT_MAX_SIZE;
+        _syncEnabled = true;
+        long validLength = 0;
+        Record record;
+        while ((record = readRecord(validLength)) != null) {
+            _positions.remove(record.attributes[0]);
+            _positions.put(record.attributes[0], new Long(validLength));
+            _recordCount++;
+            validLength = record.end;
+        }
+        if (_raf.length() > validLength) {
+            log.warn("Discarding " + (_raf.length() - validLength)
+                    + " bytes of incomplete records at the end of "
+                    + _file.getAbsolutePath() + ".");
+            _raf.setLength(validLength);
+        }
+        log.debug("Opened the queue archive " + _file.getAbsolutePath()
+                + " with " + _positions.size() + " queue entries.");
+    }
+
+    /**
+     * Sets the maximum number of queue entries to keep in the archive. The
+     * queue entries archived longest ago are dropped first.
+     *
+     * @param maxSize the maximum number of queue entries; a negative number
+     *            for no limit
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        _maxSize = maxSize;
+        prune();
+    }
+
+    /**
+     * Sets whether archived queue entries are forced to disk when synced.
+     * Disabling this trades durability for speed and should only be used for
+     * testing.
+     *
+     * @param syncEnabled <code>true</code> to force queue entries to disk;
+     *            <code>false</code> otherwise
+     */
+    public void setSyncEnabled(boolean syncEnabled) {
+        _syncEnabled = syncEnabled;
+    }
+
+    /**
+     * Appends a queue entry to the archive. The queue entry is not guaranteed
+     * to be on disk until {@link #sync(long)} has been called with the
+     * returned sequence number.
+     *
+     * @param record the record of the queue entry
+     * @return the sequence number of the archived queue entry
+     * @throws IOException if the queue entry could not be written
+     */
+    public synchronized long archive(QueueEntryRecord record)
+            throws IOException {
+        checkOpen();
+        final String[] attributes = {
+                record.getQueueEntryID(),
+                (record.getQueueEntryStatus() == null) ? null : record
+                        .getQueueEntryStatus().getName(), record.getJobID(),
+                record.getJobPartID(), record.getDeviceID() };
+        final byte[] bytes = encodeRecord(attributes, record.toQueueEntry()
+                .toXML());
+        final long position = _raf.length();
+        _raf.seek(position);
+        _raf.write(bytes);
+        _positions.remove(record.getQueueEntryID());
+        _positions.put(record.getQueueEntryID(), new Long(position));
+        _recordCount++;
+        _archivedCount++;
+        prune();
+        return _archivedCount;
+    }
+
+    /**
+     * Waits until the queue entries archived up to the specified sequence
+     * number have been forced to disk. Must be called without holding the
+     * queue's lock.
+     *
+     * @param sequence a sequence number returned by
+     *            {@link #archive(QueueEntryRecord)}
+     * @throws IOException if the archive could not be forced to disk
+     */
+    public void sync(long sequence) throws IOException {
+        synchronized (_syncLock) {
+            if (_syncedCount >= sequence) {
+                return;
+            }
+            // Everything archived before the force starts is synced by it
+            final long target;
+            final FileChannel channel;
+            synchronized (this) {
+                checkOpen();
+                target = _archivedCount;
+                channel = _raf.getChannel();
+            }
+            try {
+                if (_syncEnabled) {
+                    channel.force(false);
+                }
+            } catch (ClosedChannelException cce) {
+                // The file was rewritten meanwhile, which forced it to disk
+            }
+            _syncedCount = Math.max(_syncedCount, target);
+        }
+    }
+
+    /**
+     * Drops the queue entries in excess of the maximum size, and rewrites the
+     * file once it holds twice as many records as the maximum size. If the
+     * file cannot be rewritten it is kept, the dropped queue entries are
+     * still dropped.
+     */
+    private void prune() {
+        if (_maxSize < 0) {
+            return;
+        }
+        for (Iterator it = _positions.keySet().iterator(); it.hasNext()
+                && _positions.size() > _maxSize;) {
+            it.next();
+            it.remove();
+        }
+        if (_recordCount > Math.max(2 * _maxSize, 1)) {
+            try {
+                rewrite();
+            } catch (IOException ioe) {
+                log.warn("Could not rewrite the queue archive: " + ioe, ioe);
+            }
+        }
+    }
+
+    /**
+     * Replaces the file with one that only holds the latest record of each
+     * kept queue entry. The new file is written and forced to disk under a
+     * temporary name before it replaces the old one.
+     */
+    private void rewrite() throws IOException {
+        checkOpen();
+        final File tempFile = new File(_file.getParentFile(), _file.getName()
+                + TEMP_SUFFIX);
+        final RandomAccessFile temp = new RandomAccessFile(tempFile, "rw");
+        final Map positions = new LinkedHashMap();
+        try {
+            temp.setLength(0);
+            for (Iterator it = _positions.entrySet().iterator(); it.hasNext();) {
+                final Map.Entry entry = (Map.Entry) it.next();
+                final long position = ((Long) entry.getValue()).longValue();
+                final Record record = readRecord(position);
+                if (record == null) {
+                    continue;
+                }
+                final byte[] bytes = new byte[(int) (record.end - position)];
+                _raf.seek(position);
+                _raf.readFully(bytes);
+                positions.put(entry.getKey(), new Long(temp.getFilePointer()));
+                temp.write(bytes);
+            }
+            if (_syncEnabled) {
+                temp.getFD().sync();
+            }
+        } finally {
+            temp.close();
+        }
+        _raf.close();
+        final boolean renamed = tempFile.renameTo(_file)
+                || (_file.delete() && tempFile.renameTo(_file));
+        _raf = new RandomAccessFile(_file, "rw");
+        if (!renamed) {
+            tempFile.delete();
+            throw new IOException("Could not rename " + tempFile + " to "
+                    + _file + ".");
+        }
+        _positions = positions;
+        _recordCount = positions.size();
+        log.debug("Rewrote the queue archive with " + _recordCount
+                + " queue entries.");
+    }
+
+    /**
+     * Returns an archived queue entry.
+     *
+     * @param queueEntryId the ID of the queue entry
+     * @return the queue entry; <code>null</code> if it was not archived
+     * @throws IOException if the archive could not be read
+     */
+    public synchronized JDFQueueEntry getQueueEntry(String queueEntryId)
+            throws IOException {
+        checkOpen();
+        final Long position = (Long) _positions.get(queueEntryId);
+        if (position == null) {
+            return null;
+        }
+        final Record record = readRecord(position.longValue());
+        return (record == null) ? null : parseQueueEntry(record.xml);
+    }
+
+    /**
+     * Returns the IDs of the archived queue entries.
+     *
+     * @return a list of queue entry IDs, the list is a copy
+     */
+    public synchronized List getQueueEntryIDs() {
+        return new ArrayList(_positions.keySet());
+    }
+
+    /**
+     * Returns the number of archived queue entries.
+     *
+     * @return the number of queue entries in the archive
+     */
+    public synchronized int size() {
+        return _positions.size();
+    }
+
+    /**
+     * Forces the archive to disk and closes it.
+     */
+    public synchronized void close() {
+        if (_raf != null) {
+            try {
+                if (_syncEnabled) {
+                    _raf.getFD().sync();
+                }
+                _raf.close();
+            } catch (IOException ioe) {
+                log.warn("Could not close the queue archive: " + ioe, ioe);
+            }
+            _raf = null;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (_raf == null) {
+            throw new IOException("The queue archive has been closed.");
+        }
+    }
+
+    private static JDFQueueEntry parseQueueEntry(String xml) {
+        final JDFDoc doc = new JDFParser().parseString(xml);
+        if (doc == null || !(doc.getRoot() instanceof JDFQueueEntry)) {
+            log.warn("Skipping an unreadable queue entry in the queue archive.");
+            return null;
+        }
+        return (JDFQueueEntry) doc.getRoot();
+    }
+
+    /**
+     * Encodes a queue entry as: length, CRC32, attributes, XML.
+     */
+    private static byte[] encodeRecord(String[] attributes, String xml)
+            throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        for (int i = 0; i < attributes.length; i++) {
+            writeString(payload, attributes[i]);
+        }
+        writeString(payload, xml);
+        payload.flush();
+        byte[] bytes = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(
+                bytes.length + 12);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeInt(bytes.length);
+        record.writeLong(crc.getValue());
+        record.write(bytes);
+        record.flush();
+        return recordBytes.toByteArray();
+    }
+
+    /**
+     * Reads the record at the specified position.
+     *
+     * @return the record; <code>null</code> at the end of the file or if the
+     *         record is incomplete or corrupt
+     */
+    private Record readRecord(long position) throws IOException {
+        if (position + 12 > _raf.length()) {
+            return null;
+        }
+        _raf.seek(position);
+        final int length = _raf.readInt();
+        final long checksum = _raf.readLong();
+        if (length < 0 || position + 12 + length > _raf.length()) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        _raf.readFully(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if (crc.getValue() != checksum) {
+            log.warn("Found a queue archive record with a bad checksum.");
+            return null;
+        }
+        final DataInputStream payload = new DataInputStream(
+                new ByteArrayInputStream(bytes));
+        final Record record = new Record();
+        record.attributes = new String[ATTRIBUTES.length];
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            record.attributes[i] = readString(payload);
+        }
+        record.xml = readString(payload);
+        record.end = position + 12 + length;
+        return record;
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(ENCODING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, ENCODING);
+    }
+
+    /**
+     * An archived queue entry read from the file.
+     */
+    private static class Record {
+        String[] attributes;
+        String xml;
+        long end;
+    }
+}
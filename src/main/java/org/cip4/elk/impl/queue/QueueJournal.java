@@ -0,0 +1,73 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.cip4.elk.impl.util.RecordJournal;
+
+/**
+ * An append-only journal of queue mutations, used by {@link JournaledQueue}.
+ * <p>
+ * The journal consists of two files in the journal directory:
+ * </p>
+ * <ul>
+ * <li><code>queue.<i>n</i>.snapshot</code> - a compacted image of the queue,
+ * written by {@link #compact(java.util.List)}</li>
+ * <li><code>queue.<i>n</i>.log</code> - the records appended since the
+ * snapshot was written</li>
+ * </ul>
+ * <p>
+ * <i>n</i> is the generation of the journal, which is incremented by each
+ * compaction. A compaction writes the snapshot of the next generation and
+ * starts its log before the files of the previous generation are deleted, so
+ * a crash during compaction leaves either the old or the new generation
+ * complete. Replay uses the newest snapshot and only the log of its own
+ * generation; the records of older logs are covered by the snapshot. Journals
+ * written before generations were introduced are named
+ * <code>queue.snapshot</code> and <code>queue.log</code> and are read as
+ * generation 0.
+ * </p>
+ * <p>
+ * Each record holds one of the record types below, a queue entry ID and an
+ * XML string. The file format, replay and group commit are those of
+ * {@link RecordJournal}.
+ * </p>
+ *
+ * @see JournaledQueue
+ */
+public class QueueJournal extends RecordJournal {
+
+    /** A queue entry was added or changed, the data is the QueueEntry XML */
+    public static final int PUT_QUEUE_ENTRY = 1;
+    /** Submission parameters were stored, the data is the QueueSubmissionParams XML */
+    public static final int PUT_SUBMISSION_PARAMS = 2;
+    /** A queue entry was removed */
+    public static final int REMOVE_QUEUE_ENTRY = 3;
+    /** The queue was opened */
+    public static final int OPEN_QUEUE = 4;
+    /** The queue was closed */
+    public static final int CLOSE_QUEUE = 5;
+    /** The queue was held */
+    public static final int HOLD_QUEUE = 6;
+    /** The queue was resumed */
+    public static final int RESUME_QUEUE = 7;
+    /** A queue entry ID was generated, the data is the ID counter */
+    public static final int PUT_QUEUE_ENTRY_ID_COUNTER = 8;
+
+    private static final String DEFAULT_NAME = "queue";
+
+    /**
+     * Creates a journal in the specified directory. The directory is created
+     * if it does not exist. The journal must be replayed before records are
+     * appended.
+     *
+     * @param directory the journal directory
+     * @throws IOException if the directory could not be created
+     */
+    public QueueJournal(File directory) throws IOException {
+        super(directory, DEFAULT_NAME);
+    }
+}
@@ -4,19 +4,39 @@ import org.apache.log4j.Logger;
 import org.cip4.elk.queue.Queue;
 import org.cip4.elk.queue.QueueStatusEvent;
 import org.cip4.elk.queue.QueueStatusListener;
-import org.cip4.jdflib.auto.JDFAutoQueue.EnumQueueStatus;
 import org.cip4.jdflib.jmf.JDFQueue;
 
+import EDU.oswego.cs.dl.util.concurrent.SynchronizedBoolean;
+import EDU.oswego.cs.dl.util.concurrent.SynchronizedInt;
+import EDU.oswego.cs.dl.util.concurrent.SynchronizedRef;
+
 /**
  * This class models the state of a JDF queue. Whenever the state changes events
  * are sent to all registered listeners.
  * <p>
- * This implementation recalculates the queue's status each time any of the methods
- * that potentially modify the queue's status are called. Calling a method that 
- * results in the same status as the queue had prior to the method call does not 
- * result in a status change. For example, if the queue already is closed, calling
- * {@link #closeQueue() closeQueue} will not modify the queue's status (it will 
- * however cause the queue's status to be recalculated).
+ * The queue's state is kept as a single state word with one bit each for
+ * closed, held, queue full and process full. The word is changed with
+ * compare-and-set, and the queue's status is computed from it, so the status
+ * is always consistent with the flags and no method of this class blocks while
+ * another thread changes the state. Calling a method that results in the same
+ * status as the queue had prior to the method call does not result in a status
+ * change. For example, if the queue already is closed, calling
+ * {@link #closeQueue() closeQueue} will not modify the queue's status.
+ * </p>
+ * <p>
+ * Events are published by {@link #publishStatus()} without holding any lock
+ * of this class, and are coalesced: an event is only sent when the status
+ * differs from the status of the last event, so listeners see at most one
+ * event per net change. If several threads change the state at the same time
+ * one of them publishes the resulting status. By default the status is
+ * published after each change. A queue that changes the state while holding
+ * its own lock can call {@link #setPublishingDeferred(boolean)} and publish
+ * after releasing the lock instead.
+ * </p>
+ * <p>
+ * Between {@link #beginBatch()} and {@link #endBatch()} no events are sent.
+ * When the batch ends a single event is sent if the status differs from the
+ * status before the batch.
  * </p>
  * @author Claes Buckwalter (clabu@itn.liu.se)
  * @see org.cip4.jdflib.jmf.JDFQueue.EnumQueueStatus
@@ -33,12 +53,20 @@ public class QueueState {
     public static final JDFQueue.EnumQueueStatus RUNNING = JDFQueue.EnumQueueStatus.Running;
     public static final JDFQueue.EnumQueueStatus WAITING = JDFQueue.EnumQueueStatus.Waiting;
 
+    // The bits of the state word
+    private static final int QUEUE_CLOSED = 1;
+    private static final int QUEUE_HELD = 2;
+    private static final int QUEUE_FULL = 4;
+    private static final int PROCESS_FULL = 8;
+
     private Logger log;
-    private boolean _queueClosed;
-    private boolean _queueHeld;
-    private boolean _queueFull;
-    private boolean _processFull;
-    private JDFQueue.EnumQueueStatus _queueStatus=EnumQueueStatus.Blocked;
+    private final SynchronizedInt _state;
+    private final SynchronizedInt _batchDepth;
+    // The status of the last event, or the initial status
+    private final SynchronizedRef _publishedStatus;
+    // Set while a thread is publishing the status
+    private final SynchronizedBoolean _publishing;
+    private volatile boolean _publishingDeferred;
     private QueueStatusListenerNotifier _notifier;
     private Queue _queue;
     
@@ -51,79 +79,168 @@ public class QueueState {
         log = Logger.getLogger(this.getClass());
         _notifier = new  QueueStatusListenerNotifier();
         _queue = owner;
-        _queueStatus = owner.getQueueStatus();
-        _queueClosed = false;
-        _queueHeld = false;
-        _queueFull = false;
-        _processFull = false;
-        _queueStatus = recalculateQueueStatus();
+        _state = new SynchronizedInt(0);
+        _batchDepth = new SynchronizedInt(0);
+        _publishedStatus = new SynchronizedRef(getStatus(0));
+        _publishing = new SynchronizedBoolean(false);
+        _publishingDeferred = false;
     }
-    
-    /**
-     * Sets the queue's status.
-     * @param status    the queue's new status
-     * @return the queue's old status
-     * @see org.cip4.jdflib.jmf.JDFQueue.EnumQueueStatus
-     */
-    private synchronized JDFQueue.EnumQueueStatus setQueueStatus(final JDFQueue.EnumQueueStatus status) {
-        final JDFQueue.EnumQueueStatus oldStatus = _queueStatus;
-        _queueStatus = status;
-        final String msg = "Status Change: " + oldStatus.getName() + " -> " + _queueStatus.getName();
-        log.debug(msg);
-        fireQueueStatusEvent(new QueueStatusEvent(QueueStatusEvent.EVENT, status, _queue, msg));        
-        return oldStatus;
-    }
-    
-    /**
-     * Returns the queue's status. 
-     * @return the queue's status
-     * @see org.cip4.jdflib.jmf.JDFQueue.EnumQueueStatus
-     */
-    public synchronized JDFQueue.EnumQueueStatus getQueueStatus() {
-        return _queueStatus;
-    }
-    
+
     /**
-     * Recalculates the queue's status.
+     * Returns the status of a queue in the specified state.
+     * @param state a state word
      * @return the queue's status
-     * @see org.cip4.jdflib.jmf.JDFQueue.EnumQueueStatus
      */
-    public final synchronized JDFQueue.EnumQueueStatus recalculateQueueStatus() {        
+    private static JDFQueue.EnumQueueStatus getStatus(final int state) {
+        final boolean queueClosed = (state & QUEUE_CLOSED) != 0;
+        final boolean queueHeld = (state & QUEUE_HELD) != 0;
+        final boolean queueFull = (state & QUEUE_FULL) != 0;
+        final boolean processFull = (state & PROCESS_FULL) != 0;
         final JDFQueue.EnumQueueStatus status;
-        if (_queueClosed && _queueHeld) {
+        if (queueClosed && queueHeld) {
             status = BLOCKED;
-        } else if (_queueClosed && !_queueHeld) {
+        } else if (queueClosed && !queueHeld) {
             status = CLOSED;
-        } else if (!_queueClosed && _queueHeld) {
+        } else if (!queueClosed && queueHeld) {
             status = HELD;
         } else {
-            if (!_queueFull && _processFull) {
+            if (!queueFull && processFull) {
                 status = RUNNING;
-            } else if (_queueFull && _processFull) {
+            } else if (queueFull && processFull) {
                 status = FULL;
-            } else if (_queueFull) {
+            } else if (queueFull) {
                 // This does not conform with the JDF spec, table 5-92
                 status = FULL;
             } else { 
                 status = WAITING; 
             }
         }
-        log.debug("Recalculated Status: " + status==null ? "unknown" : status.getName());
-        if (!getQueueStatus().equals(status)) {            
-            setQueueStatus(status);
-        } 
         return status;
     }
+
+    /**
+     * Sets or clears a bit of the state word and publishes the new status
+     * unless publishing is deferred.
+     * @param bit   the bit to change
+     * @param value <code>true</code> to set the bit; <code>false</code> to clear it
+     * @return the queue's new status
+     */
+    private JDFQueue.EnumQueueStatus update(final int bit, final boolean value) {
+        int oldState;
+        int newState;
+        do {
+            oldState = _state.get();
+            newState = value ? (oldState | bit) : (oldState & ~bit);
+        } while (oldState != newState && !_state.commit(oldState, newState));
+        final JDFQueue.EnumQueueStatus status = getStatus(newState);
+        if (log.isDebugEnabled() && oldState != newState) {
+            log.debug("Status Change: " + getStatus(oldState).getName() + " -> " + status.getName());
+        }
+        if (!_publishingDeferred) {
+            publishStatus();
+        }
+        return status;
+    }
+
+    /**
+     * Sends an event to all listeners if the queue's status differs from the
+     * status of the last event. No lock is held while the event is sent. If
+     * another thread is publishing the status this method returns immediately;
+     * that thread publishes the status again if it changed in the meantime. No
+     * events are sent during a batch.
+     */
+    public void publishStatus() {
+        while (_batchDepth.get() == 0 && _publishing.commit(false, true)) {
+            try {
+                final JDFQueue.EnumQueueStatus oldStatus = (JDFQueue.EnumQueueStatus) _publishedStatus.get();
+                final JDFQueue.EnumQueueStatus status = getQueueStatus();
+                if (!status.equals(oldStatus)) {
+                    _publishedStatus.set(status);
+                    final String msg = "Status Change: " + oldStatus.getName() + " -> " + status.getName();
+                    fireQueueStatusEvent(new QueueStatusEvent(QueueStatusEvent.EVENT, status, _queue, msg));
+                }
+            } finally {
+                _publishing.set(false);
+            }
+            // Publishes again if the status changed while publishing
+            if (getQueueStatus().equals(_publishedStatus.get())) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Sets whether changes are published immediately or by the caller. When
+     * publishing is deferred the caller must call {@link #publishStatus()}
+     * after changing the state.
+     * @param deferred <code>true</code> to publish changes by calling
+     *            {@link #publishStatus()}; <code>false</code> to publish each
+     *            change immediately, which is the default
+     */
+    public void setPublishingDeferred(final boolean deferred) {
+        _publishingDeferred = deferred;
+    }
+
+    /**
+     * Starts a batch of changes. Batches may be nested, only the outermost
+     * batch sends an event when it ends.
+     * @see #endBatch()
+     */
+    public void beginBatch() {
+        _batchDepth.increment();
+    }
+
+    /**
+     * Ends a batch of changes. When the outermost batch ends one event is sent
+     * if the status has changed, unless publishing is deferred.
+     * @return the queue's status
+     * @throws IllegalStateException if no batch has been started
+     * @see #beginBatch()
+     */
+    public JDFQueue.EnumQueueStatus endBatch() {
+        int depth;
+        do {
+            depth = _batchDepth.get();
+            if (depth == 0) {
+                throw new IllegalStateException("No batch has been started.");
+            }
+        } while (!_batchDepth.commit(depth, depth - 1));
+        if (depth == 1 && !_publishingDeferred) {
+            publishStatus();
+        }
+        return getQueueStatus();
+    }
+    
+    /**
+     * Returns the queue's status. 
+     * @return the queue's status
+     * @see org.cip4.jdflib.jmf.JDFQueue.EnumQueueStatus
+     */
+    public JDFQueue.EnumQueueStatus getQueueStatus() {
+        return getStatus(_state.get());
+    }
+    
+    /**
+     * Recalculates the queue's status. The status is always computed from the
+     * queue's state, so this only publishes it.
+     * @return the queue's status
+     * @see org.cip4.jdflib.jmf.JDFQueue.EnumQueueStatus
+     */
+    public final JDFQueue.EnumQueueStatus recalculateQueueStatus() {        
+        if (!_publishingDeferred) {
+            publishStatus();
+        }
+        return getQueueStatus();
+    }
     
     /**
      * Closes the queue. If the queue already is closed no status change will occur.
      * @return the queue's new status
      * @see #openQueue()
      */
-    public synchronized JDFQueue.EnumQueueStatus closeQueue() {        
+    public JDFQueue.EnumQueueStatus closeQueue() {        
         log.debug("Queue closed...");
-        _queueClosed = true;         
-        return recalculateQueueStatus();
+        return update(QUEUE_CLOSED, true);
     }
     
     /**
@@ -131,10 +248,9 @@ public class QueueState {
      * @return the queue's new status
      * @see #closeQueue()
      */
-    public synchronized JDFQueue.EnumQueueStatus openQueue() {
+    public JDFQueue.EnumQueueStatus openQueue() {
         log.debug("Queue opened...");
-        _queueClosed = false;
-        return recalculateQueueStatus();
+        return update(QUEUE_CLOSED, false);
     }
     
     /**
@@ -142,10 +258,9 @@ public class QueueState {
      * @return the queue's new status
      * @see #resumeQueue()
      */
-    public synchronized JDFQueue.EnumQueueStatus holdQueue() {
+    public JDFQueue.EnumQueueStatus holdQueue() {
         log.debug("Queue held...");
-        _queueHeld = true;
-        return recalculateQueueStatus();        
+        return update(QUEUE_HELD, true);
     }
 
     /**
@@ -153,10 +268,9 @@ public class QueueState {
      * @return the queue's new status
      * @see #holdQueue()
      */
-    public synchronized JDFQueue.EnumQueueStatus resumeQueue() {
+    public JDFQueue.EnumQueueStatus resumeQueue() {
         log.debug("Queue resumed...");
-        _queueHeld = false;
-        return recalculateQueueStatus();        
+        return update(QUEUE_HELD, false);
     }
     
     /**
@@ -164,10 +278,9 @@ public class QueueState {
      * accept any new queue entries.
      * @param queueFull <code>true</code> if the queue is full; <code>false</code> otherwise
      */    
-    public synchronized void setQueueFull(final boolean queueFull) {
+    public void setQueueFull(final boolean queueFull) {
         log.debug("Set Queue Full to " + queueFull + "...");
-        _queueFull = queueFull;
-        recalculateQueueStatus();
+        update(QUEUE_FULL, queueFull);
     }
     
     /**
@@ -177,7 +290,7 @@ public class QueueState {
      * @return <code>true</code> if the queue is full; <code>false</code> otherwise
      * @see #isQueueFull()
      */
-    public synchronized boolean getQueueFull() {
+    public boolean getQueueFull() {
         return isQueueFull();
     }
 
@@ -188,8 +301,8 @@ public class QueueState {
      * @return <code>true</code> if the queue is full; <code>false</code> otherwise
      * @see #getQueueFull()
      */
-    public synchronized boolean isQueueFull() {
-        return _queueFull;
+    public boolean isQueueFull() {
+        return (_state.get() & QUEUE_FULL) != 0;
     }
     
     /**
@@ -197,10 +310,9 @@ public class QueueState {
      * processing a queue entry. 
      * @param processFull <code>true</code> if the process is full; <code>false</code> otherwise
      */ 
-    public synchronized void setProcessFull(final boolean processFull) {
+    public void setProcessFull(final boolean processFull) {
         log.debug("Set Process Full to " + processFull + "...");
-        _processFull = processFull;
-        recalculateQueueStatus();
+        update(PROCESS_FULL, processFull);
     }
     
     /**
@@ -210,8 +322,8 @@ public class QueueState {
      * @param processFull <code>true</code> if the process is full; <code>false</code> otherwise
      * @see #getProcessFull()
      */    
-    public synchronized boolean isProcessFull() {
-        return _processFull;
+    public boolean isProcessFull() {
+        return (_state.get() & PROCESS_FULL) != 0;
     }
 
     /**
@@ -221,7 +333,7 @@ public class QueueState {
      * @param processFull <code>true</code> if the process is full; <code>false</code> otherwise
      * @see #isProcessFull()
      */    
-    public synchronized boolean getProcessFull() {
+    public boolean getProcessFull() {
         return isProcessFull();
     }
     
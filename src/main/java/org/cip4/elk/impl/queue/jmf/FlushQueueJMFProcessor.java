@@ -0,0 +1,119 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.jmf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cip4.elk.Config;
+import org.cip4.elk.impl.jmf.AbstractJMFProcessor;
+import org.cip4.elk.impl.queue.ConcurrentQueue;
+import org.cip4.elk.queue.Queue;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.jmf.JDFCommand;
+import org.cip4.jdflib.jmf.JDFFlushQueueInfo;
+import org.cip4.jdflib.jmf.JDFFlushQueueParams;
+import org.cip4.jdflib.jmf.JDFMessage;
+import org.cip4.jdflib.jmf.JDFQueue;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueFilter;
+import org.cip4.jdflib.jmf.JDFResponse;
+
+/**
+ * A processor for FlushQueue commands. The queue entries selected by the
+ * command's <em>FlushQueueParams/QueueFilter</em>, or by the command's
+ * <em>QueueFilter</em> if it has no <em>FlushQueueParams</em>, are removed
+ * from the queue. Queue entries that are <em>Running</em> or
+ * <em>Suspended</em> are not removed. The IDs of the removed queue entries
+ * are returned as <em>QueueEntryDef</em> elements in the response's
+ * <em>FlushQueueInfo/QueueFilter</em>.
+ * <p>
+ * If the queue is a {@link ConcurrentQueue} all queue entries are removed in
+ * one pass, see {@link ConcurrentQueue#flushQueue(JDFQueueFilter)}. Otherwise
+ * they are removed one at a time.
+ * </p>
+ */
+public class FlushQueueJMFProcessor extends AbstractJMFProcessor {
+
+    private Queue _queue;
+
+    private static final String MESSAGE_TYPE = "FlushQueue";
+
+    public FlushQueueJMFProcessor(Config config, Queue queue) {
+        super();
+        _queue = queue;
+        setMessageType(MESSAGE_TYPE);
+        setCommandProcessor(true);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.cip4.elk.impl.jmf.AbstractJMFProcessor#processMessage(com.heidelberg.JDFLib.jmf.JDFMessage,
+     *      com.heidelberg.JDFLib.jmf.JDFResponse)
+     */
+    public int processMessage(JDFMessage input, JDFResponse output) {
+        return processFlushQueue((JDFCommand) input, output);
+    }
+
+    /**
+     * Processes FlushQueue commands.
+     *
+     * @param command the FlushQueue command
+     * @param response the response to the command
+     * @return the return code
+     */
+    public int processFlushQueue(JDFCommand command, JDFResponse response) {
+        int returnCode = 0;
+        JDFQueueFilter filter = command.getQueueFilter(0);
+        final JDFFlushQueueParams params = command.getFlushQueueParams(0);
+        if (params != null) {
+            filter = params.getQueueFilter();
+        }
+        final List qeIds;
+        if (_queue instanceof ConcurrentQueue) {
+            qeIds = ((ConcurrentQueue) _queue).flushQueue(filter);
+        } else {
+            qeIds = flushQueueEntries(filter);
+        }
+        log.info("Flushed " + qeIds.size() + " queue entries.");
+
+        // Returns the IDs of the flushed queue entries
+        final JDFFlushQueueInfo info = (JDFFlushQueueInfo) response
+                .appendElement(ElementName.FLUSHQUEUEINFO, null);
+        final JDFQueueFilter flushed = info.appendQueueFilter();
+        for (int i = 0, imax = qeIds.size(); i < imax; i++) {
+            flushed.appendQueueEntryDef().setQueueEntryID(
+                (String) qeIds.get(i));
+        }
+        // Returns a filtered queue
+        JDFQueue q = _queue.getQueue(command.getQueueFilter(0));
+        response.copyElement(q, null);
+        response.setReturnCode(returnCode);
+        return returnCode;
+    }
+
+    /**
+     * Removes the selected queue entries one at a time.
+     *
+     * @param filter the filter selecting the queue entries to remove
+     * @return the IDs of the removed queue entries
+     */
+    private List flushQueueEntries(JDFQueueFilter filter) {
+        final List qeIds = new ArrayList();
+        final List qEntries = _queue.getQueue(filter).getQueueEntryVector();
+        for (int i = 0, imax = qEntries.size(); i < imax; i++) {
+            final JDFQueueEntry qe = (JDFQueueEntry) qEntries.get(i);
+            final JDFQueueEntry.EnumQueueEntryStatus status = qe
+                    .getQueueEntryStatus();
+            if (!JDFQueueEntry.EnumQueueEntryStatus.Running.equals(status)
+                    && !JDFQueueEntry.EnumQueueEntryStatus.Suspended
+                            .equals(status)
+                    && _queue.removeQueueEntry(qe.getQueueEntryID()) != null) {
+                qeIds.add(qe.getQueueEntryID());
+            }
+        }
+        return qeIds;
+    }
+}
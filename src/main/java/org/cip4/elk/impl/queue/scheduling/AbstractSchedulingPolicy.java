@@ -0,0 +1,180 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.scheduling;
+
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.cip4.elk.impl.queue.util.QueueEntryRecord;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+/**
+ * A base class for scheduling policies that keep the runnable queue entries
+ * sorted. Subclasses define the order with
+ * {@link #compareEntries(Entry, Entry)}; queue entries that a subclass
+ * considers equal are ordered by highest priority, then earliest submission
+ * time, then the order they became runnable in, see
+ * {@link #compareDefault(Entry, Entry)}. Adding, updating and removing a
+ * queue entry is done in O(log n) time and the first runnable queue entry is
+ * found in O(log n) time.
+ */
+public abstract class AbstractSchedulingPolicy implements SchedulingPolicy {
+
+    private SortedSet _index;
+    private Map _entriesById;
+    private long _sequence;
+
+    protected AbstractSchedulingPolicy() {
+        _index = new TreeSet(new Comparator() {
+            public int compare(Object o1, Object o2) {
+                final Entry e1 = (Entry) o1;
+                final Entry e2 = (Entry) o2;
+                final int result = compareEntries(e1, e2);
+                return (result != 0) ? result : compareDefault(e1, e2);
+            }
+        });
+        _entriesById = new HashMap();
+        _sequence = 0;
+    }
+
+    /**
+     * Compares two runnable queue entries for execution order.
+     *
+     * @return a negative integer if <code>e1</code> should be executed
+     *         before <code>e2</code>, a positive integer if after, and zero
+     *         if the default order decides
+     */
+    protected abstract int compareEntries(Entry e1, Entry e2);
+
+    /**
+     * Compares two runnable queue entries by highest priority, then earliest
+     * submission time, then the order they became runnable in.
+     */
+    protected static int compareDefault(Entry e1, Entry e2) {
+        if (e1.priority != e2.priority) {
+            return (e1.priority > e2.priority) ? -1 : 1;
+        }
+        if (e1.submissionTime != e2.submissionTime) {
+            return (e1.submissionTime < e2.submissionTime) ? -1 : 1;
+        }
+        if (e1.sequence != e2.sequence) {
+            return (e1.sequence < e2.sequence) ? -1 : 1;
+        }
+        return 0;
+    }
+
+    public void update(QueueEntryRecord record, JobProfile profile) {
+        update(record.getQueueEntryID(), record.getQueueEntryStatus(), record
+                .getPriority(), record.getSubmissionTimeMillis(), profile);
+    }
+
+    /**
+     * Updates the policy with a queue entry that was added or changed.
+     *
+     * @param qeId the ID of the queue entry
+     * @param status the status of the queue entry
+     * @param priority the priority of the queue entry
+     * @param submissionTime the submission time in milliseconds
+     * @param profile the job's profile; <code>null</code> to keep the
+     *            previous profile
+     * @see SchedulingPolicy#update(QueueEntryRecord, JobProfile)
+     */
+    protected void update(String qeId,
+            JDFQueueEntry.EnumQueueEntryStatus status, int priority,
+            long submissionTime, JobProfile profile) {
+        final Entry oldEntry = (Entry) _entriesById.remove(qeId);
+        if (oldEntry != null) {
+            _index.remove(oldEntry);
+            if (profile == null) {
+                profile = oldEntry.profile;
+            }
+        }
+        if (JDFQueueEntry.EnumQueueEntryStatus.Waiting.equals(status)) {
+            // Keeps the insertion order of entries that are only updated
+            final long sequence = (oldEntry == null) ? _sequence++
+                    : oldEntry.sequence;
+            final Entry entry = new Entry(qeId, priority, submissionTime,
+                    sequence, profile);
+            _index.add(entry);
+            _entriesById.put(qeId, entry);
+        }
+    }
+
+    public boolean remove(String queueEntryId) {
+        final Entry entry = (Entry) _entriesById.remove(queueEntryId);
+        if (entry == null) {
+            return false;
+        }
+        _index.remove(entry);
+        return true;
+    }
+
+    public String getFirstQueueEntryID() {
+        if (_index.isEmpty()) {
+            return null;
+        }
+        return ((Entry) _index.first()).queueEntryId;
+    }
+
+    /**
+     * Returns the runnable queue entries in execution order.
+     *
+     * @return an unmodifiable iterator over {@link Entry}s
+     */
+    protected Iterator entries() {
+        return Collections.unmodifiableSortedSet(_index).iterator();
+    }
+
+    public boolean contains(String queueEntryId) {
+        return _entriesById.containsKey(queueEntryId);
+    }
+
+    /**
+     * Returns the profile of a runnable queue entry.
+     *
+     * @param queueEntryId the ID of the queue entry
+     * @return the job's profile; <code>null</code> if the queue entry is not
+     *         runnable or its profile is not known
+     */
+    protected JobProfile getProfile(String queueEntryId) {
+        final Entry entry = (Entry) _entriesById.get(queueEntryId);
+        return (entry == null) ? null : entry.profile;
+    }
+
+    public int size() {
+        return _index.size();
+    }
+
+    public void clear() {
+        _index.clear();
+        _entriesById.clear();
+    }
+
+    /**
+     * A runnable queue entry. An entry is immutable so that the index is never
+     * corrupted by changes to the queue entry it was created from.
+     */
+    protected static class Entry {
+        public final String queueEntryId;
+        public final int priority;
+        public final long submissionTime;
+        public final long sequence;
+        /** The job's profile, may be <code>null</code> */
+        public final JobProfile profile;
+
+        Entry(String queueEntryId, int priority, long submissionTime,
+                long sequence, JobProfile profile) {
+            this.queueEntryId = queueEntryId;
+            this.priority = priority;
+            this.submissionTime = submissionTime;
+            this.sequence = sequence;
+            this.profile = profile;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.scheduling;
+
+/**
+ * A scheduling policy that executes the job with the earliest deadline first.
+ * A job's deadline is its <em>NodeInfo/@End</em>, see
+ * {@link JobProfile#getDeadline()}. Jobs without a deadline are executed
+ * after all jobs with a deadline. Jobs with the same deadline are executed in
+ * the default order.
+ */
+public class EarliestDeadlineFirstPolicy extends AbstractSchedulingPolicy {
+
+    public EarliestDeadlineFirstPolicy() {
+        super();
+    }
+
+    protected int compareEntries(Entry e1, Entry e2) {
+        final long d1 = getDeadline(e1);
+        final long d2 = getDeadline(e2);
+        return (d1 < d2) ? -1 : ((d1 == d2) ? 0 : 1);
+    }
+
+    private static long getDeadline(Entry e) {
+        return (e.profile == null) ? JobProfile.NO_TIME : e.profile
+                .getDeadline();
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.scheduling;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cip4.elk.impl.queue.util.QueueEntryRecord;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+/**
+ * A scheduling policy that shares the device between the senders that submit
+ * jobs, in proportion to the senders' weights. Each sender's jobs are
+ * executed in the default order. The next job is taken from the sender that
+ * has received the least service relative to its weight, where a sender is
+ * charged the job's amount, or 1 if the amount is not known, divided by the
+ * sender's weight each time one of its jobs starts. A sender whose jobs were
+ * all executed does not save up service while it is idle: when it submits a
+ * job again it is charged at least as much as the least charged sender with
+ * runnable jobs.
+ * <p>
+ * Jobs are assigned to senders by {@link JobProfile#getSenderID()}. Jobs
+ * without a sender ID share one sender.
+ * </p>
+ */
+public class FairSharePolicy implements SchedulingPolicy {
+
+    private static final String NO_SENDER = "";
+
+    private Map _weights = new HashMap();
+    private double _defaultWeight = 1;
+    /** Maps sender IDs to shares, in the order the senders were first seen */
+    private Map _shares = new LinkedHashMap();
+    /** Maps the IDs of runnable queue entries to sender IDs */
+    private Map _senderIds = new HashMap();
+
+    public FairSharePolicy() {
+    }
+
+    /**
+     * Sets the weights of senders. Senders without a weight have the default
+     * weight.
+     *
+     * @param weights a map with sender IDs as keys and weights as values, the
+     *            values may be <code>Number</code>s or <code>String</code>s
+     * @throws IllegalArgumentException if a weight is not positive
+     */
+    public void setWeights(Map weights) {
+        final Map parsed = new HashMap();
+        for (Iterator it = weights.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry entry = (Map.Entry) it.next();
+            final double weight = Double.parseDouble(entry.getValue()
+                    .toString());
+            checkWeight(weight);
+            parsed.put(entry.getKey(), new Double(weight));
+        }
+        _weights = parsed;
+        for (Iterator it = _shares.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry entry = (Map.Entry) it.next();
+            ((Share) entry.getValue()).weight = getWeight((String) entry
+                    .getKey());
+        }
+    }
+
+    /**
+     * Sets the weight of senders that have no weight. Default is 1.
+     *
+     * @param defaultWeight the default weight
+     * @throws IllegalArgumentException if the weight is not positive
+     */
+    public void setDefaultWeight(double defaultWeight) {
+        checkWeight(defaultWeight);
+        _defaultWeight = defaultWeight;
+    }
+
+    private static void checkWeight(double weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weights must be positive.");
+        }
+    }
+
+    private double getWeight(String senderId) {
+        final Double weight = (Double) _weights.get(senderId);
+        return (weight == null) ? _defaultWeight : weight.doubleValue();
+    }
+
+    public void update(QueueEntryRecord record, JobProfile profile) {
+        final String qeId = record.getQueueEntryID();
+        String senderId = (String) _senderIds.get(qeId);
+        Share share = (senderId == null) ? null : (Share) _shares
+                .get(senderId);
+        final JobProfile oldProfile = (share == null) ? null : share.runnable
+                .getProfile(qeId);
+        if (profile != null) {
+            final String newSenderId = (profile.getSenderID() == null) ? NO_SENDER
+                    : profile.getSenderID();
+            if (share != null && !newSenderId.equals(senderId)) {
+                // The queue entry's sender became known
+                share.runnable.remove(qeId);
+                share = null;
+            }
+            senderId = newSenderId;
+        } else if (senderId == null) {
+            senderId = NO_SENDER;
+        }
+        if (share == null) {
+            share = getShare(senderId);
+        }
+        final boolean wasRunnable = share.runnable.contains(qeId);
+        if (!wasRunnable
+                && share.runnable.size() == 0
+                && JDFQueueEntry.EnumQueueEntryStatus.Waiting.equals(record
+                        .getQueueEntryStatus())) {
+            activate(share);
+        }
+        share.runnable.update(record, profile);
+        if (share.runnable.contains(qeId)) {
+            _senderIds.put(qeId, senderId);
+        } else {
+            _senderIds.remove(qeId);
+            if (wasRunnable
+                    && JDFQueueEntry.EnumQueueEntryStatus.Running.equals(record
+                            .getQueueEntryStatus())) {
+                // The job started
+                final JobProfile started = (profile != null) ? profile
+                        : oldProfile;
+                final long amount = (started == null) ? JobProfile.NO_AMOUNT
+                        : started.getAmount();
+                share.charge += Math.max(1, amount) / share.weight;
+            }
+        }
+    }
+
+    private Share getShare(String senderId) {
+        Share share = (Share) _shares.get(senderId);
+        if (share == null) {
+            share = new Share(getWeight(senderId));
+            _shares.put(senderId, share);
+        }
+        return share;
+    }
+
+    /**
+     * Keeps a sender that becomes active from using service it did not use
+     * while idle.
+     */
+    private void activate(Share share) {
+        double minCharge = Double.MAX_VALUE;
+        for (Iterator it = _shares.values().iterator(); it.hasNext();) {
+            final Share s = (Share) it.next();
+            if (s != share && s.runnable.size() > 0) {
+                minCharge = Math.min(minCharge, s.charge);
+            }
+        }
+        if (minCharge != Double.MAX_VALUE) {
+            share.charge = Math.max(share.charge, minCharge);
+        }
+    }
+
+    public boolean remove(String queueEntryId) {
+        final String senderId = (String) _senderIds.remove(queueEntryId);
+        if (senderId == null) {
+            return false;
+        }
+        return ((Share) _shares.get(senderId)).runnable.remove(queueEntryId);
+    }
+
+    public String getFirstQueueEntryID() {
+        Share first = null;
+        for (Iterator it = _shares.values().iterator(); it.hasNext();) {
+            final Share share = (Share) it.next();
+            if (share.runnable.size() > 0
+                    && (first == null || share.charge < first.charge)) {
+                first = share;
+            }
+        }
+        return (first == null) ? null : first.runnable.getFirstQueueEntryID();
+    }
+
+    public boolean contains(String queueEntryId) {
+        return _senderIds.containsKey(queueEntryId);
+    }
+
+    public int size() {
+        return _senderIds.size();
+    }
+
+    public void clear() {
+        _shares.clear();
+        _senderIds.clear();
+    }
+
+    /**
+     * Returns the service a sender has been charged, relative to its weight.
+     *
+     * @param senderId the sender's ID; <code>null</code> for jobs without a
+     *            sender ID
+     * @return the sender's charge
+     */
+    public double getCharge(String senderId) {
+        final Share share = (Share) _shares.get((senderId == null) ? NO_SENDER
+                : senderId);
+        return (share == null) ? 0 : share.charge;
+    }
+
+    /**
+     * A sender's weight, charge and runnable queue entries.
+     */
+    private static class Share {
+        double weight;
+        double charge = 0;
+        final SenderQueue runnable = new SenderQueue();
+
+        Share(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A sender's runnable queue entries in the default order.
+     */
+    private static class SenderQueue extends AbstractSchedulingPolicy {
+        protected int compareEntries(Entry e1, Entry e2) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.scheduling;
+
+import java.util.List;
+
+import org.cip4.jdflib.core.AttributeName;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.core.JDFNodeInfo;
+import org.cip4.jdflib.core.JDFResourceLink;
+import org.cip4.jdflib.core.KElement;
+import org.cip4.jdflib.datatypes.JDFAttributeMap;
+import org.cip4.jdflib.node.JDFNode;
+import org.cip4.jdflib.resource.JDFResource;
+import org.cip4.jdflib.util.JDFDate;
+
+/**
+ * The properties of a job that scheduling policies order queue entries by:
+ * the amount the job produces, its deadline, the ID of the sender that
+ * submitted it and the media and plates the device must be set up with. A
+ * profile is created once, when the job's JDF has been parsed,
+ * so that policies never look at the JDF.
+ * <p>
+ * Instances of this class are immutable.
+ * </p>
+ *
+ * @see SchedulingPolicy
+ */
+public class JobProfile {
+
+    /** The amount of jobs whose amount is not known */
+    public static final long NO_AMOUNT = -1;
+
+    /** The deadline of jobs without a deadline */
+    public static final long NO_TIME = Long.MAX_VALUE;
+
+    private final long _amount;
+    private final long _deadline;
+    private final String _senderId;
+    private final String _mediaKey;
+    private final String _plateKey;
+
+    /**
+     * Creates a job profile without setup properties.
+     *
+     * @param amount the amount the job produces, or {@link #NO_AMOUNT}
+     * @param deadline the time in milliseconds that the job should be finished
+     *            by, or {@link #NO_TIME}
+     * @param senderId the ID of the sender that submitted the job, may be
+     *            <code>null</code>
+     */
+    public JobProfile(long amount, long deadline, String senderId) {
+        this(amount, deadline, senderId, null, null);
+    }
+
+    /**
+     * Creates a job profile.
+     *
+     * @param amount the amount the job produces, or {@link #NO_AMOUNT}
+     * @param deadline the time in milliseconds that the job should be finished
+     *            by, or {@link #NO_TIME}
+     * @param senderId the ID of the sender that submitted the job, may be
+     *            <code>null</code>
+     * @param mediaKey identifies the media format the job prints on, may be
+     *            <code>null</code>
+     * @param plateKey identifies the plates the job prints with, may be
+     *            <code>null</code>
+     */
+    public JobProfile(long amount, long deadline, String senderId,
+            String mediaKey, String plateKey) {
+        _amount = amount;
+        _deadline = deadline;
+        _senderId = senderId;
+        _mediaKey = mediaKey;
+        _plateKey = plateKey;
+    }
+
+    /**
+     * Creates the profile of a job from the process nodes that the device
+     * executes. The amount is the sum of the <em>Amount</em> of the nodes'
+     * output <em>ResourceLink</em>s. The deadline is the earliest
+     * <em>NodeInfo/@End</em> of the nodes, where a node without an
+     * <em>End</em> inherits the one of its closest ancestor. The media key is
+     * the <em>Dimension</em> and <em>Weight</em> of the first input
+     * <em>Media</em>, and the plate key is the <em>ProductID</em> of the
+     * first input <em>ExposedMedia</em>.
+     *
+     * @param processNodes the <code>JDFNode</code>s the device executes
+     * @param senderId the ID of the sender that submitted the job, may be
+     *            <code>null</code>
+     * @return the job's profile
+     */
+    public static JobProfile create(List processNodes, String senderId) {
+        final JDFAttributeMap outputs = new JDFAttributeMap(
+                AttributeName.USAGE, "Output");
+        final JDFAttributeMap inputs = new JDFAttributeMap(
+                AttributeName.USAGE, "Input");
+        long amount = NO_AMOUNT;
+        long deadline = NO_TIME;
+        String mediaKey = null;
+        String plateKey = null;
+        for (int i = 0, imax = processNodes.size(); i < imax; i++) {
+            final JDFNode node = (JDFNode) processNodes.get(i);
+            List links = node.getResourceLinks(outputs);
+            for (int j = 0, jmax = (links == null) ? 0 : links.size(); j < jmax; j++) {
+                final JDFResourceLink link = (JDFResourceLink) links.get(j);
+                if (link.hasAttribute(AttributeName.AMOUNT)) {
+                    amount = Math.max(0, amount)
+                            + (long) link.getAmount(new JDFAttributeMap());
+                }
+            }
+            deadline = Math.min(deadline, getEnd(node));
+            links = node.getResourceLinks(inputs);
+            for (int j = 0, jmax = (links == null) ? 0 : links.size(); j < jmax; j++) {
+                final JDFResourceLink link = (JDFResourceLink) links.get(j);
+                final String name = link.getLinkedResourceName();
+                if (mediaKey == null && ElementName.MEDIA.equals(name)) {
+                    final JDFResource media = link.getTarget();
+                    if (media != null
+                            && media.hasAttribute(AttributeName.DIMENSION)) {
+                        mediaKey = media.getAttribute(AttributeName.DIMENSION)
+                                + "/"
+                                + media.getAttribute(AttributeName.WEIGHT);
+                    }
+                } else if (plateKey == null
+                        && ElementName.EXPOSEDMEDIA.equals(name)) {
+                    final JDFResource plates = link.getTarget();
+                    if (plates != null
+                            && plates.hasAttribute(AttributeName.PRODUCTID)) {
+                        plateKey = plates
+                                .getAttribute(AttributeName.PRODUCTID);
+                    }
+                }
+            }
+        }
+        return new JobProfile(amount, deadline, senderId, mediaKey, plateKey);
+    }
+
+    /**
+     * Returns the <em>NodeInfo/@End</em> of a node or of its closest ancestor
+     * that has one.
+     */
+    private static long getEnd(JDFNode node) {
+        for (KElement e = node; e instanceof JDFNode; e = e
+                .getParentNode_KElement()) {
+            final JDFNodeInfo nodeInfo = ((JDFNode) e).getNodeInfo();
+            if (nodeInfo != null && nodeInfo.hasAttribute(AttributeName.END)) {
+                final JDFDate end = nodeInfo.getEnd();
+                if (end != null) {
+                    return end.getTimeInMillis();
+                }
+            }
+        }
+        return NO_TIME;
+    }
+
+    /**
+     * Returns the amount the job produces, for printing jobs the number of
+     * sheets.
+     *
+     * @return the amount; {@link #NO_AMOUNT} if it is not known
+     */
+    public long getAmount() {
+        return _amount;
+    }
+
+    /**
+     * Returns the time the job should be finished by.
+     *
+     * @return the deadline in milliseconds; {@link #NO_TIME} if the job has
+     *         no deadline
+     */
+    public long getDeadline() {
+        return _deadline;
+    }
+
+    /**
+     * Returns the ID of the sender that submitted the job.
+     *
+     * @return the sender ID; <code>null</code> if it is not known
+     */
+    public String getSenderID() {
+        return _senderId;
+    }
+
+    /**
+     * Returns the key that identifies the media format the job prints on.
+     * Consecutive jobs with the same media key need no format change.
+     *
+     * @return the media key; <code>null</code> if it is not known
+     */
+    public String getMediaKey() {
+        return _mediaKey;
+    }
+
+    /**
+     * Returns the key that identifies the plates the job prints with.
+     * Consecutive jobs with the same plate key need no form change.
+     *
+     * @return the plate key; <code>null</code> if it is not known
+     */
+    public String getPlateKey() {
+        return _plateKey;
+    }
+
+    /**
+     * Returns whether the device needs a format change between two jobs.
+     *
+     * @param previous the profile of the previous job, may be
+     *            <code>null</code>
+     * @param next the profile of the next job, may be <code>null</code>
+     * @return <code>false</code> if both jobs print on the same known media
+     *         format; <code>true</code> otherwise
+     */
+    public static boolean needsFormatChange(JobProfile previous,
+            JobProfile next) {
+        return !sameKey(previous == null ? null : previous._mediaKey,
+            next == null ? null : next._mediaKey);
+    }
+
+    /**
+     * Returns whether the device needs a form change between two jobs.
+     *
+     * @param previous the profile of the previous job, may be
+     *            <code>null</code>
+     * @param next the profile of the next job, may be <code>null</code>
+     * @return <code>false</code> if both jobs print with the same known
+     *         plates; <code>true</code> otherwise
+     */
+    public static boolean needsFormChange(JobProfile previous, JobProfile next) {
+        return !sameKey(previous == null ? null : previous._plateKey,
+            next == null ? null : next._plateKey);
+    }
+
+    private static boolean sameKey(String key1, String key2) {
+        return key1 != null && key1.equals(key2);
+    }
+
+    public String toString() {
+        return "JobProfile[amount=" + _amount + ", deadline=" + _deadline
+                + ", senderID=" + _senderId + ", mediaKey=" + _mediaKey
+                + ", plateKey=" + _plateKey + "]";
+    }
+}
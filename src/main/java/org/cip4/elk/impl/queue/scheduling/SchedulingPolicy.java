@@ -0,0 +1,78 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.scheduling;
+
+import org.cip4.elk.impl.queue.util.QueueEntryRecord;
+
+/**
+ * Decides the order in which a queue's runnable queue entries, that is queue
+ * entries with status <em>Waiting</em>, are executed. A queue tells its
+ * policy about every change to a queue entry and asks it for the queue entry
+ * to execute next, see
+ * {@link org.cip4.elk.impl.queue.MemoryQueue#getFirstRunnableQueueEntry()}.
+ * <p>
+ * Besides the queue entry, a policy is given the job's {@link JobProfile},
+ * which describes the job's size, deadline and submitter. The profile may be
+ * <code>null</code> if it is not known.
+ * </p>
+ * <p>
+ * <strong>Note: </strong> Implementations need not be thread-safe. A policy
+ * is guarded by the queue that owns it.
+ * </p>
+ *
+ * @see org.cip4.elk.impl.queue.util.RunnableQueueEntryIndex
+ * @see org.cip4.elk.impl.queue.MemoryQueue#setSchedulingPolicy(SchedulingPolicy)
+ */
+public interface SchedulingPolicy {
+
+    /**
+     * Updates the policy with a queue entry that was added or changed. If the
+     * queue entry has status <em>Waiting</em> it becomes runnable, or is
+     * repositioned if it already was runnable; otherwise it is no longer
+     * runnable.
+     *
+     * @param record the record of the queue entry
+     * @param profile the job's profile; <code>null</code> to keep the
+     *            profile the queue entry was last updated with
+     */
+    public void update(QueueEntryRecord record, JobProfile profile);
+
+    /**
+     * Removes a queue entry from the runnable queue entries.
+     *
+     * @param queueEntryId the ID of the queue entry
+     * @return <code>true</code> if the queue entry was runnable;
+     *         <code>false</code> otherwise
+     */
+    public boolean remove(String queueEntryId);
+
+    /**
+     * Returns the ID of the queue entry that should be executed next.
+     *
+     * @return the ID of a runnable queue entry; <code>null</code> if there
+     *         are no runnable queue entries
+     */
+    public String getFirstQueueEntryID();
+
+    /**
+     * Returns whether a queue entry is runnable.
+     *
+     * @param queueEntryId the ID of the queue entry
+     * @return <code>true</code> if the queue entry is runnable;
+     *         <code>false</code> otherwise
+     */
+    public boolean contains(String queueEntryId);
+
+    /**
+     * Returns the number of runnable queue entries.
+     *
+     * @return the number of runnable queue entries
+     */
+    public int size();
+
+    /**
+     * Removes all runnable queue entries.
+     */
+    public void clear();
+}
@@ -0,0 +1,141 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.scheduling;
+
+import java.util.Iterator;
+
+import org.cip4.elk.impl.queue.util.QueueEntryRecord;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+/**
+ * A scheduling policy that sequences jobs to reduce the time the device
+ * spends setting up between jobs. Of the runnable queue entries with the
+ * highest priority, the job that needs the least setup after the job that
+ * was started last is executed next; a job that prints on the same media
+ * format needs no format change and a job that prints with the same plates
+ * needs no form change, see {@link JobProfile#needsFormatChange(JobProfile,
+ * JobProfile)} and {@link JobProfile#needsFormChange(JobProfile, JobProfile)}.
+ * Jobs that need the same setup are executed in the default order.
+ * <p>
+ * A job is never passed over for a job with a lower priority, and once the
+ * job that would be executed next in the default order has waited longer
+ * than the maximum wait time it is executed regardless of its setup.
+ * </p>
+ * <p>
+ * Finding the next job takes O(k) time, where k is the number of runnable
+ * queue entries with the highest priority.
+ * </p>
+ */
+public class SetupMinimizingPolicy extends AbstractSchedulingPolicy {
+
+    private long _formatChangeTime = 5000;
+    private long _formChangeTime = 5000;
+    private long _maxWaitTime = 30 * 60 * 1000;
+    /** The profile of the job that was started last */
+    private JobProfile _lastProfile = null;
+
+    public SetupMinimizingPolicy() {
+        super();
+    }
+
+    /**
+     * Sets the time it takes to change the device to a new media format.
+     * Default is 5 seconds.
+     *
+     * @param formatChangeTime the format change time in milliseconds
+     */
+    public void setFormatChangeTime(long formatChangeTime) {
+        _formatChangeTime = formatChangeTime;
+    }
+
+    public long getFormatChangeTime() {
+        return _formatChangeTime;
+    }
+
+    /**
+     * Sets the time it takes to change the plates. Default is 5 seconds.
+     *
+     * @param formChangeTime the form change time in milliseconds
+     */
+    public void setFormChangeTime(long formChangeTime) {
+        _formChangeTime = formChangeTime;
+    }
+
+    public long getFormChangeTime() {
+        return _formChangeTime;
+    }
+
+    /**
+     * Sets how long a job may wait before it is executed regardless of its
+     * setup. Default is 30 minutes.
+     *
+     * @param maxWaitTime the maximum wait time in milliseconds
+     */
+    public void setMaxWaitTime(long maxWaitTime) {
+        _maxWaitTime = maxWaitTime;
+    }
+
+    public long getMaxWaitTime() {
+        return _maxWaitTime;
+    }
+
+    /**
+     * Returns the time it takes to set up the device for a job.
+     *
+     * @param previous the profile of the previous job, may be
+     *            <code>null</code>
+     * @param next the profile of the job, may be <code>null</code>
+     * @return the setup time in milliseconds
+     */
+    public long getSetupTime(JobProfile previous, JobProfile next) {
+        long setupTime = 0;
+        if (JobProfile.needsFormatChange(previous, next)) {
+            setupTime += _formatChangeTime;
+        }
+        if (JobProfile.needsFormChange(previous, next)) {
+            setupTime += _formChangeTime;
+        }
+        return setupTime;
+    }
+
+    public void update(QueueEntryRecord record, JobProfile profile) {
+        final String qeId = record.getQueueEntryID();
+        if (contains(qeId)
+                && JDFQueueEntry.EnumQueueEntryStatus.Running.equals(record
+                        .getQueueEntryStatus())) {
+            // The job started, the device is now set up for it
+            _lastProfile = (profile != null) ? profile : getProfile(qeId);
+        }
+        super.update(record, profile);
+    }
+
+    public String getFirstQueueEntryID() {
+        final Iterator it = entries();
+        if (!it.hasNext()) {
+            return null;
+        }
+        final Entry first = (Entry) it.next();
+        if (System.currentTimeMillis() - first.submissionTime > _maxWaitTime) {
+            return first.queueEntryId;
+        }
+        Entry best = first;
+        long bestSetupTime = getSetupTime(_lastProfile, first.profile);
+        while (bestSetupTime > 0 && it.hasNext()) {
+            final Entry entry = (Entry) it.next();
+            if (entry.priority < first.priority) {
+                break;
+            }
+            final long setupTime = getSetupTime(_lastProfile, entry.profile);
+            if (setupTime < bestSetupTime) {
+                best = entry;
+                bestSetupTime = setupTime;
+            }
+        }
+        return best.queueEntryId;
+    }
+
+    protected int compareEntries(Entry e1, Entry e2) {
+        return 0;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.scheduling;
+
+/**
+ * A scheduling policy that executes the job with the shortest estimated
+ * duration first, which minimizes the average time jobs spend in the queue.
+ * The duration of a job is estimated from the amount it produces and the
+ * device's speed, see {@link #getEstimatedDuration(JobProfile)}. Jobs whose
+ * amount is not known are executed after all jobs whose amount is known.
+ * Jobs with the same estimated duration are executed in the default order.
+ * <p>
+ * Note that long jobs may wait indefinitely if short jobs keep arriving.
+ * </p>
+ */
+public class ShortestJobFirstPolicy extends AbstractSchedulingPolicy {
+
+    private static final long MILLIS_PER_HOUR = 3600000;
+
+    private double _speed = 60000;
+    private long _setupTime = 0;
+
+    public ShortestJobFirstPolicy() {
+        super();
+    }
+
+    /**
+     * Sets the device's speed. Default is 60000 sheets/hour.
+     *
+     * @param speed the speed in sheets/hour
+     * @throws IllegalArgumentException if <code>speed</code> is not
+     *             positive
+     */
+    public void setSpeed(double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("The speed must be positive.");
+        }
+        _speed = speed;
+    }
+
+    public double getSpeed() {
+        return _speed;
+    }
+
+    /**
+     * Sets the time it takes to set up the device for a job. Default is 0.
+     *
+     * @param setupTime the setup time in milliseconds
+     */
+    public void setSetupTime(long setupTime) {
+        _setupTime = setupTime;
+    }
+
+    public long getSetupTime() {
+        return _setupTime;
+    }
+
+    /**
+     * Returns the estimated duration of a job: the setup time plus the time
+     * it takes to produce the job's amount at the device's speed.
+     *
+     * @param profile the job's profile, may be <code>null</code>
+     * @return the estimated duration in milliseconds;
+     *         <code>Long.MAX_VALUE</code> if the job's amount is not known
+     */
+    public long getEstimatedDuration(JobProfile profile) {
+        if (profile == null || profile.getAmount() == JobProfile.NO_AMOUNT) {
+            return Long.MAX_VALUE;
+        }
+        return _setupTime
+                + (long) (profile.getAmount() * MILLIS_PER_HOUR / _speed);
+    }
+
+    protected int compareEntries(Entry e1, Entry e2) {
+        final long d1 = getEstimatedDuration(e1.profile);
+        final long d2 = getEstimatedDuration(e2.profile);
+        return (d1 < d2) ? -1 : ((d1 == d2) ? 0 : 1);
+    }
+}
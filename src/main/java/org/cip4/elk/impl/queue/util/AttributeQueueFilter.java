@@ -43,14 +43,23 @@ public class AttributeQueueFilter implements QueueFilter {
     public JDFQueue filterQueue(JDFQueue queue, JDFQueueFilter filter) {
         // Filters the queue        
         List qEntries = queue.getChildElementVector(ElementName.QUEUEENTRY, JDFConstants.NONAMESPACE, _attrMap, true, 0, false);
+        // Sorts the filtered queue entries before they are copied
+        _sortingFilter.getComparator().sort(qEntries);
         // Creates a copy of the original queue
         queue = (JDFQueue) queue.cloneNode(false);
         // Copies the filtered queue entries to the new queue
         for(int i=0, imax=qEntries.size(); i<imax; i++) {
             queue.copyElement((JDFQueueEntry)qEntries.get(i), null);
         }
-        // Sorts the queue
-        return _sortingFilter.filterQueue(queue, null, false); 
+        return queue;
+    }
+
+    /**
+     * Returns the attributes that queue entries must match.
+     * @return the attributes to filter on
+     */
+    public JDFAttributeMap getAttributeMap() {
+        return _attrMap;
     }
     
 //    /**
@@ -67,7 +67,11 @@ public class BaseICSQueueFilter implements QueueFilter {
      * enters this filter.
      * </p>
      * <p>
-     * Other attributes of <em>QueueFilter</em> are ignored.
+     * Other attributes of <em>QueueFilter</em> are ignored. The criteria that
+     * select queue entries, such as <em>QueueEntryDef</em> and
+     * <em>StatusList</em>, are applied by
+     * {@link org.cip4.elk.impl.queue.MemoryQueue} using its indexes before
+     * the queue is passed to this filter.
      * </p>
      * <p>
      * A new queue is returned, with the same owner document as the incoming
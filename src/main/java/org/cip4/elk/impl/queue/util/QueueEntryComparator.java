@@ -3,7 +3,11 @@
  */
 package org.cip4.elk.impl.queue.util;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.cip4.elk.util.JDFDateComparator;
 import org.cip4.jdflib.jmf.JDFQueueEntry;
@@ -36,6 +40,16 @@ import org.cip4.jdflib.util.JDFDate;
  * sorted using the
  * {@link QueueEntryComparator#compareEndTimes(JDFQueueEntry, JDFQueueEntry)}
  * method.
+ * <p>
+ * Queue entries are compared using a sort key, a <code>long</code> that
+ * combines the entry's status, its priority or end time group, and its
+ * submission or end time. Sorting a list of queue entries with
+ * {@link #sort(List)} computes the key of each entry once instead of parsing
+ * dates and mapping statuses in every comparison. A {@link QueueEntryRecord}
+ * computes its key when it is created, that is each time a queue entry
+ * changes, so records are sorted with {@link #sort(QueueEntryRecord[])}
+ * without looking at any attributes at all.
+ * </p>
  * 
  * @see <a
  *      href="http://www.cip4.org/documents/jdf_specifications/JDF1.2.pdf">JDF
@@ -55,6 +69,35 @@ public class QueueEntryComparator implements Comparator {
     public static final int SORT_ASCENDING = 1;
     public static final int SORT_DESCENDING = -1;
 
+    /** The time of queue entries without a time */
+    public static final long NO_TIME = Long.MAX_VALUE;
+
+    // Layout of a sort key: status rank, priority or time group, time
+    private static final int RANK_SHIFT = 51;
+    private static final int GROUP_SHIFT = 44;
+    private static final long MAX_GROUP = 0x7FL;
+    private static final long MAX_TIME = (1L << GROUP_SHIFT) - 1;
+    // Reverses the rank and the group but not the time
+    private static final long DESCENDING_MASK = 0x3FFL << GROUP_SHIFT;
+
+    private static final int WAITING_RANK = 5;
+    private static final Map _statusRanks = new HashMap();
+    static {
+        _statusRanks.put(JDFQueueEntry.EnumQueueEntryStatus.Running, new Integer(7));
+        _statusRanks.put(JDFQueueEntry.EnumQueueEntryStatus.Suspended, new Integer(6));
+        _statusRanks.put(JDFQueueEntry.EnumQueueEntryStatus.Waiting, new Integer(WAITING_RANK));
+        _statusRanks.put(JDFQueueEntry.EnumQueueEntryStatus.Held, new Integer(4));
+        _statusRanks.put(JDFQueueEntry.EnumQueueEntryStatus.Completed, new Integer(3));
+        _statusRanks.put(JDFQueueEntry.EnumQueueEntryStatus.Aborted, new Integer(2));
+        _statusRanks.put(JDFQueueEntry.EnumQueueEntryStatus.Removed, new Integer(1));
+    }
+
+    private static final Comparator SORT_KEY_COMPARATOR = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            return compareSortKeys(((SortKey) o1).key, ((SortKey) o2).key);
+        }
+    };
+
     private int _sortOrder;
     private JDFDateComparator _dateComparator;
 
@@ -111,39 +154,129 @@ public class QueueEntryComparator implements Comparator {
             String msg = "Objects in this comparator must be of type JDFQueueEntry";
             throw new IllegalArgumentException(msg);
         }
-        JDFQueueEntry qe1 = (JDFQueueEntry) o1;
-        JDFQueueEntry qe2 = (JDFQueueEntry) o2;
-        // Order entries by status
-        Integer status1 = new Integer(getSortValue(qe1.getQueueEntryStatus()));
-        Integer status2 = new Integer(getSortValue(qe2.getQueueEntryStatus()));
-        int result = status1.compareTo(status2);
-        // Order entries with the same status
-        if (result == 0) {
-            // Sort by priority
-            if (status1.intValue() == getSortValue(JDFQueueEntry.EnumQueueEntryStatus.Waiting)) {
-                Integer prio1 = new Integer(qe1.getPriority());
-                Integer prio2 = new Integer(qe2.getPriority());
-                result = prio1.compareTo(prio2);
-                // Sort by submission time
-                if (result == 0) {
-                    result = _dateComparator.compare(qe1.getSubmissionTime(),
-                        qe2.getSubmissionTime());
-                }
-            } else if (status1.intValue() == getSortValue(JDFQueueEntry.EnumQueueEntryStatus.Suspended)) {
-                // TODO Youngest suspend time fist
-                result = compareEndTimes(qe1, qe2);
-            } else if (status1.intValue() == getSortValue(JDFQueueEntry.EnumQueueEntryStatus.Held)) {
-                // TODO Youngest held time first
-                result = compareEndTimes(qe1, qe2);
-            } else if (status1.intValue() == getSortValue(JDFQueueEntry.EnumQueueEntryStatus.Completed)) {
-                // TODO Latest completed (end time) first, then submission time
-                result = compareEndTimes(qe1, qe2);
-            } else if (status1.intValue() == getSortValue(JDFQueueEntry.EnumQueueEntryStatus.Aborted)) {
-                // TODO Latest aborted first
-                result = compareEndTimes(qe1, qe2);
+        return compareSortKeys(getSortKey((JDFQueueEntry) o1),
+            getSortKey((JDFQueueEntry) o2));
+    }
+
+    /**
+     * Returns the sort key of a queue entry for this comparator's sort order.
+     * Queue entries are ordered by comparing their sort keys as numbers.
+     * 
+     * @param qe the queue entry
+     * @return the sort key of the queue entry
+     */
+    public long getSortKey(JDFQueueEntry qe) {
+        final JDFDate submissionTime = qe.getSubmissionTime();
+        final JDFDate endTime = qe.getEndTime();
+        return applySortOrder(createSortKey(qe.getQueueEntryStatus(), qe
+                .getPriority(), (submissionTime == null) ? NO_TIME
+                : submissionTime.getTimeInMillis(), (endTime == null) ? NO_TIME
+                : endTime.getTimeInMillis()));
+    }
+
+    /**
+     * Returns the sort key of a queue entry record for this comparator's sort
+     * order. The key was computed when the record was created.
+     * 
+     * @param record the queue entry record
+     * @return the sort key of the queue entry
+     * @see QueueEntryRecord#getSortKey()
+     */
+    public long getSortKey(QueueEntryRecord record) {
+        return applySortOrder(record.getSortKey());
+    }
+
+    /**
+     * Sorts a list of <em>QueueEntry</em> elements. The sort key of each
+     * queue entry is computed once. The sort is stable.
+     * 
+     * @param queueEntries the <code>JDFQueueEntry</code> elements to sort
+     */
+    public void sort(List queueEntries) {
+        final SortKey[] keys = new SortKey[queueEntries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            final JDFQueueEntry qe = (JDFQueueEntry) queueEntries.get(i);
+            keys[i] = new SortKey(getSortKey(qe), qe);
+        }
+        Arrays.sort(keys, SORT_KEY_COMPARATOR);
+        for (int i = 0; i < keys.length; i++) {
+            queueEntries.set(i, keys[i].element);
+        }
+    }
+
+    /**
+     * Sorts an array of queue entry records by their precomputed sort keys.
+     * The sort is stable.
+     * 
+     * @param records the records to sort
+     */
+    public void sort(QueueEntryRecord[] records) {
+        final SortKey[] keys = new SortKey[records.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new SortKey(getSortKey(records[i]), records[i]);
+        }
+        Arrays.sort(keys, SORT_KEY_COMPARATOR);
+        for (int i = 0; i < keys.length; i++) {
+            records[i] = (QueueEntryRecord) keys[i].element;
+        }
+    }
+
+    /**
+     * Creates the sort key of a queue entry in ascending sort order. The key
+     * packs, from the most significant bits:
+     * <ol>
+     * <li>the status rank</li>
+     * <li>the priority of <em>Waiting</em> entries, or whether the end time
+     * or submission time is set for <em>Suspended</em>, <em>Held</em>,
+     * <em>Completed</em> and <em>Aborted</em> entries</li>
+     * <li>the submission time of <em>Waiting</em> entries, or the end time,
+     * else the submission time, of the other entries listed above</li>
+     * </ol>
+     * Times are always ordered earliest first, as in
+     * {@link #compare(Object, Object)}.
+     * 
+     * @param status the status of the queue entry
+     * @param priority the priority of the queue entry
+     * @param submissionTime the submission time in milliseconds, or
+     *            {@link #NO_TIME}
+     * @param endTime the end time in milliseconds, or {@link #NO_TIME}
+     * @return the sort key
+     */
+    public static long createSortKey(JDFQueueEntry.EnumQueueEntryStatus status,
+            int priority, long submissionTime, long endTime) {
+        final int rank = getStatusRank(status);
+        long group = 0;
+        long time = 0;
+        if (rank == WAITING_RANK) {
+            group = Math.max(0, Math.min(priority, MAX_GROUP));
+            time = submissionTime;
+        } else if (rank >= 2 && rank <= 6) {
+            // Suspended, Held, Completed and Aborted
+            if (endTime != NO_TIME) {
+                group = 2;
+                time = endTime;
+            } else if (submissionTime != NO_TIME) {
+                group = 1;
+                time = submissionTime;
             }
         }
-        return result * _sortOrder;
+        time = Math.max(0, Math.min(time, MAX_TIME));
+        return ((long) rank << RANK_SHIFT) | (group << GROUP_SHIFT) | time;
+    }
+
+    /**
+     * Compares two sort keys.
+     * 
+     * @return a negative integer, zero, or a positive integer as the first key
+     *         is less than, equal to, or greater than the second
+     */
+    private static int compareSortKeys(long key1, long key2) {
+        return (key1 < key2) ? -1 : ((key1 == key2) ? 0 : 1);
+    }
+
+    private long applySortOrder(long key) {
+        return (_sortOrder == SORT_DESCENDING) ? key ^ DESCENDING_MASK : key;
+
     }
 
     /**
@@ -203,25 +336,25 @@ public class QueueEntryComparator implements Comparator {
      * sort order of queue entries.
      * 
      * @param status
-     * @return
+     * @return the rank of the status, from 1 for <em>Removed</em> to 7 for
+     *         <em>Running</em>; 0 for unknown statuses
+     */
+    private static int getStatusRank(JDFQueueEntry.EnumQueueEntryStatus status) {
+        final Integer rank = (status == null) ? null : (Integer) _statusRanks
+                .get(status);
+        return (rank == null) ? 0 : rank.intValue();
+    }
+
+    /**
+     * A sort key and the queue entry or record it was computed from.
      */
-    private int getSortValue(JDFQueueEntry.EnumQueueEntryStatus status) {
-        int value = -1;
-        if (status.equals(JDFQueueEntry.EnumQueueEntryStatus.Running)) {
-            value = 100;
-        } else if (status.equals(JDFQueueEntry.EnumQueueEntryStatus.Suspended)) {
-            value = 90;
-        } else if (status.equals(JDFQueueEntry.EnumQueueEntryStatus.Waiting)) {
-            value = 80;
-        } else if (status.equals(JDFQueueEntry.EnumQueueEntryStatus.Held)) {
-            value = 70;
-        } else if (status.equals(JDFQueueEntry.EnumQueueEntryStatus.Completed)) {
-            value = 60;
-        } else if (status.equals(JDFQueueEntry.EnumQueueEntryStatus.Aborted)) {
-            value = 50;
-        } else if (status.equals(JDFQueueEntry.EnumQueueEntryStatus.Removed)) {
-            value = 40;
+    private static class SortKey {
+        final long key;
+        final Object element;
+
+        SortKey(long key, Object element) {
+            this.key = key;
+            this.element = element;
         }
-        return value;
     }
 }
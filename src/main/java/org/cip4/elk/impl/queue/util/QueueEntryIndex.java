@@ -0,0 +1,152 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.cip4.jdflib.core.AttributeName;
+
+/**
+ * Hash indexes of queue entries by the attributes that clients most often
+ * select queue entries by: <em>Status</em>, <em>JobID</em>,
+ * <em>JobPartID</em> and <em>DeviceID</em>. Each index maps an attribute value
+ * to the IDs of the queue entries that have that value, so selecting the queue
+ * entries with a given status or of a given job takes time proportional to the
+ * number of matching queue entries and not to the length of the queue.
+ * <p>
+ * <strong>Note: </strong> This class is not thread-safe. It is meant to be
+ * guarded by the queue that owns it.
+ * </p>
+ *
+ * @see org.cip4.elk.impl.queue.MemoryQueue#findQueueEntryIDs(org.cip4.jdflib.datatypes.JDFAttributeMap)
+ */
+public class QueueEntryIndex {
+
+    private static final String[] INDEXED_ATTRIBUTES = { AttributeName.STATUS,
+            AttributeName.JOBID, AttributeName.JOBPARTID,
+            AttributeName.DEVICEID };
+
+    // Attribute name -> (attribute value -> Set of queue entry IDs)
+    private Map _indexes;
+
+    /**
+     * Creates empty indexes.
+     */
+    public QueueEntryIndex() {
+        _indexes = new HashMap();
+        for (int i = 0; i < INDEXED_ATTRIBUTES.length; i++) {
+            _indexes.put(INDEXED_ATTRIBUTES[i], new HashMap());
+        }
+    }
+
+    /**
+     * Returns whether queue entries are indexed by the specified attribute.
+     *
+     * @param attributeName the name of a queue entry attribute
+     * @return <code>true</code> if the attribute is indexed;
+     *         <code>false</code> otherwise
+     */
+    public static boolean isIndexed(String attributeName) {
+        for (int i = 0; i < INDEXED_ATTRIBUTES.length; i++) {
+            if (INDEXED_ATTRIBUTES[i].equals(attributeName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates the indexes when a queue entry has been added or changed.
+     *
+     * @param oldRecord the queue entry's previous record, or <code>null</code>
+     *            if the queue entry was added
+     * @param newRecord the queue entry's new record
+     */
+    public void update(QueueEntryRecord oldRecord, QueueEntryRecord newRecord) {
+        if (oldRecord != null) {
+            remove(oldRecord);
+        }
+        final String qeId = newRecord.getQueueEntryID();
+        for (int i = 0; i < INDEXED_ATTRIBUTES.length; i++) {
+            final String value = getValue(newRecord, INDEXED_ATTRIBUTES[i]);
+            if (value != null) {
+                final Map index = (Map) _indexes.get(INDEXED_ATTRIBUTES[i]);
+                Set ids = (Set) index.get(value);
+                if (ids == null) {
+                    ids = new HashSet();
+                    index.put(value, ids);
+                }
+                ids.add(qeId);
+            }
+        }
+    }
+
+    /**
+     * Removes a queue entry from the indexes.
+     *
+     * @param record the record of the queue entry that was removed
+     */
+    public void remove(QueueEntryRecord record) {
+        final String qeId = record.getQueueEntryID();
+        for (int i = 0; i < INDEXED_ATTRIBUTES.length; i++) {
+            final String value = getValue(record, INDEXED_ATTRIBUTES[i]);
+            if (value != null) {
+                final Map index = (Map) _indexes.get(INDEXED_ATTRIBUTES[i]);
+                final Set ids = (Set) index.get(value);
+                if (ids != null) {
+                    ids.remove(qeId);
+                    if (ids.isEmpty()) {
+                        index.remove(value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the IDs of the queue entries that have the specified attribute
+     * value.
+     *
+     * @param attributeName the name of an indexed attribute
+     * @param value the attribute value
+     * @return an unmodifiable view of the IDs of the matching queue entries
+     * @throws IllegalArgumentException if the attribute is not indexed
+     */
+    public Set getQueueEntryIDs(String attributeName, String value) {
+        final Map index = (Map) _indexes.get(attributeName);
+        if (index == null) {
+            throw new IllegalArgumentException("Queue entries are not indexed by "
+                    + attributeName + ".");
+        }
+        final Set ids = (Set) index.get(value);
+        return (ids == null) ? Collections.EMPTY_SET : Collections
+                .unmodifiableSet(ids);
+    }
+
+    /**
+     * Removes all queue entries from the indexes.
+     */
+    public void clear() {
+        for (int i = 0; i < INDEXED_ATTRIBUTES.length; i++) {
+            ((Map) _indexes.get(INDEXED_ATTRIBUTES[i])).clear();
+        }
+    }
+
+    private static String getValue(QueueEntryRecord record, String attributeName) {
+        if (AttributeName.STATUS.equals(attributeName)) {
+            return (record.getQueueEntryStatus() == null) ? null : record
+                    .getQueueEntryStatus().getName();
+        } else if (AttributeName.JOBID.equals(attributeName)) {
+            return record.getJobID();
+        } else if (AttributeName.JOBPARTID.equals(attributeName)) {
+            return record.getJobPartID();
+        } else {
+            return record.getDeviceID();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.cip4.jdflib.core.AttributeName;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.core.KElement;
+import org.cip4.jdflib.datatypes.JDFAttributeMap;
+import org.cip4.jdflib.jmf.JDFQueue;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.util.JDFDate;
+import org.w3c.dom.Node;
+
+/**
+ * A compact, immutable representation of a queue entry. A queue keeps one
+ * record per queue entry instead of a <em>QueueEntry</em> DOM element and
+ * only creates elements when a queue entry is returned to a client, see
+ * {@link #toQueueEntry()} and {@link #appendTo(JDFQueue)}.
+ * <p>
+ * The attributes that the queue uses are kept as fields: ID, status, priority,
+ * submission, start and end time, job ID, job part ID and device ID. The
+ * submission time is also kept in milliseconds, and the record's sort key is
+ * computed when the record is created, so that queue entries can be sorted
+ * without parsing dates. <em>Part</em> elements are kept as attribute
+ * maps. Any other attributes and child elements are kept as well, so that
+ * converting a queue entry to a record and back does not lose information.
+ * </p>
+ *
+ * @see org.cip4.elk.impl.queue.MemoryQueue
+ */
+public class QueueEntryRecord {
+
+    /** The submission time of queue entries without a submission time */
+    public static final long NO_SUBMISSION_TIME = Long.MAX_VALUE;
+
+    private static final String XMLNS = "xmlns";
+    private static final String[] NO_STRINGS = new String[0];
+    private static final JDFAttributeMap[] NO_PARTS = new JDFAttributeMap[0];
+
+    private final String _queueEntryId;
+    private final JDFQueueEntry.EnumQueueEntryStatus _status;
+    private final int _priority;
+    private final boolean _hasPriority;
+    private final String _submissionTime;
+    private final long _submissionTimeMillis;
+    private final String _startTime;
+    private final String _endTime;
+    private final long _endTimeMillis;
+    private final long _statusChangeTimeMillis;
+    private final long _sortKey;
+    private final String _jobId;
+    private final String _jobPartId;
+    private final String _deviceId;
+    private final JDFAttributeMap[] _parts;
+    // Pairs of attribute names and values
+    private final String[] _otherAttributes;
+    // Other child elements as XML
+    private final String[] _otherElements;
+
+    private QueueEntryRecord(QueueEntryRecord record,
+            JDFQueueEntry.EnumQueueEntryStatus status) {
+        _queueEntryId = record._queueEntryId;
+        _status = status;
+        _priority = record._priority;
+        _hasPriority = record._hasPriority;
+        _submissionTime = record._submissionTime;
+        _submissionTimeMillis = record._submissionTimeMillis;
+        _startTime = record._startTime;
+        _endTime = record._endTime;
+        _endTimeMillis = record._endTimeMillis;
+        _statusChangeTimeMillis = record._statusChangeTimeMillis;
+        _sortKey = QueueEntryComparator.createSortKey(status, _priority,
+            _submissionTimeMillis, _endTimeMillis);
+        _jobId = record._jobId;
+        _jobPartId = record._jobPartId;
+        _deviceId = record._deviceId;
+        _parts = record._parts;
+        _otherAttributes = record._otherAttributes;
+        _otherElements = record._otherElements;
+    }
+
+    /**
+     * Creates a record of a queue entry element.
+     *
+     * @param qe the queue entry
+     */
+    public QueueEntryRecord(JDFQueueEntry qe) {
+        _queueEntryId = qe.getQueueEntryID();
+        _status = qe.getQueueEntryStatus();
+        _hasPriority = qe.hasAttribute(AttributeName.PRIORITY);
+        _priority = qe.getPriority();
+        _submissionTime = getAttribute(qe, AttributeName.SUBMISSIONTIME);
+        if (_submissionTime == null) {
+            _submissionTimeMillis = NO_SUBMISSION_TIME;
+        } else {
+            final JDFDate submissionTime = qe.getSubmissionTime();
+            _submissionTimeMillis = (submissionTime == null) ? NO_SUBMISSION_TIME
+                    : submissionTime.getTimeInMillis();
+        }
+        _startTime = getAttribute(qe, AttributeName.STARTTIME);
+        _endTime = getAttribute(qe, AttributeName.ENDTIME);
+        if (_endTime == null) {
+            _endTimeMillis = QueueEntryComparator.NO_TIME;
+        } else {
+            final JDFDate endTime = qe.getEndTime();
+            _endTimeMillis = (endTime == null) ? QueueEntryComparator.NO_TIME
+                    : endTime.getTimeInMillis();
+        }
+        _sortKey = QueueEntryComparator.createSortKey(_status, _priority,
+            _submissionTimeMillis, _endTimeMillis);
+        if (_endTimeMillis != QueueEntryComparator.NO_TIME) {
+            _statusChangeTimeMillis = _endTimeMillis;
+        } else {
+            final JDFDate startTime = (_startTime == null) ? null : qe
+                    .getStartTime();
+            _statusChangeTimeMillis = (startTime == null) ? _submissionTimeMillis
+                    : startTime.getTimeInMillis();
+        }
+        _jobId = getAttribute(qe, AttributeName.JOBID);
+        _jobPartId = getAttribute(qe, AttributeName.JOBPARTID);
+        _deviceId = getAttribute(qe, AttributeName.DEVICEID);
+
+        List otherAttributes = null;
+        final JDFAttributeMap attributes = qe.getAttributeMap();
+        for (Iterator it = attributes.getKeyIterator(); it.hasNext();) {
+            final String name = (String) it.next();
+            if (!isRecordedAttribute(name)) {
+                if (otherAttributes == null) {
+                    otherAttributes = new ArrayList();
+                }
+                otherAttributes.add(name);
+                otherAttributes.add(attributes.get(name));
+            }
+        }
+        _otherAttributes = toArray(otherAttributes);
+
+        List parts = null;
+        List otherElements = null;
+        for (Node n = qe.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (!(n instanceof KElement)) {
+                continue;
+            }
+            final KElement child = (KElement) n;
+            if (ElementName.PART.equals(child.getLocalName())) {
+                if (parts == null) {
+                    parts = new ArrayList();
+                }
+                parts.add(child.getAttributeMap());
+            } else {
+                if (otherElements == null) {
+                    otherElements = new ArrayList();
+                }
+                otherElements.add(child.toXML());
+            }
+        }
+        _parts = (parts == null) ? NO_PARTS
+                : (JDFAttributeMap[]) parts.toArray(new JDFAttributeMap[parts
+                        .size()]);
+        _otherElements = toArray(otherElements);
+    }
+
+    /**
+     * Returns a copy of this record with a different status.
+     *
+     * @param status the new status
+     * @return a record with the new status
+     */
+    public QueueEntryRecord withQueueEntryStatus(
+            JDFQueueEntry.EnumQueueEntryStatus status) {
+        return new QueueEntryRecord(this, status);
+    }
+
+    public String getQueueEntryID() {
+        return _queueEntryId;
+    }
+
+    public JDFQueueEntry.EnumQueueEntryStatus getQueueEntryStatus() {
+        return _status;
+    }
+
+    /**
+     * Returns the priority, or the default priority if the queue entry has no
+     * priority.
+     *
+     * @return the priority
+     */
+    public int getPriority() {
+        return _priority;
+    }
+
+    /**
+     * Returns the submission time in milliseconds.
+     *
+     * @return the submission time; {@link #NO_SUBMISSION_TIME} if the queue
+     *         entry has no submission time
+     */
+    public long getSubmissionTimeMillis() {
+        return _submissionTimeMillis;
+    }
+
+    /**
+     * Returns the time of the queue entry's latest status change that is
+     * known: the end time, else the start time, else the submission time.
+     *
+     * @return the time in milliseconds; {@link #NO_SUBMISSION_TIME} if the
+     *         queue entry has none of the times
+     */
+    public long getStatusChangeTimeMillis() {
+        return _statusChangeTimeMillis;
+    }
+
+    /**
+     * Returns the sort key of the queue entry in ascending sort order.
+     *
+     * @return the sort key
+     * @see QueueEntryComparator#createSortKey(JDFQueueEntry.EnumQueueEntryStatus,
+     *      int, long, long)
+     */
+    public long getSortKey() {
+        return _sortKey;
+    }
+
+    public String getJobID() {
+        return _jobId;
+    }
+
+    public String getJobPartID() {
+        return _jobPartId;
+    }
+
+    public String getDeviceID() {
+        return _deviceId;
+    }
+
+    /**
+     * Creates a <em>QueueEntry</em> element owned by a new document.
+     *
+     * @return a queue entry element
+     */
+    public JDFQueueEntry toQueueEntry() {
+        final JDFQueueEntry qe = (JDFQueueEntry) new JDFDoc(
+                ElementName.QUEUEENTRY).getRoot();
+        fill(qe);
+        return qe;
+    }
+
+    /**
+     * Creates a <em>QueueEntry</em> element and appends it to a queue.
+     *
+     * @param queue the queue to append the queue entry element to
+     * @return the appended queue entry element
+     */
+    public JDFQueueEntry appendTo(JDFQueue queue) {
+        final JDFQueueEntry qe = queue.appendQueueEntry();
+        fill(qe);
+        return qe;
+    }
+
+    /**
+     * Sets the attributes and child elements of a new queue entry element.
+     */
+    private void fill(JDFQueueEntry qe) {
+        setAttribute(qe, AttributeName.QUEUEENTRYID, _queueEntryId);
+        if (_status != null) {
+            qe.setQueueEntryStatus(_status);
+        }
+        if (_hasPriority) {
+            qe.setPriority(_priority);
+        }
+        setAttribute(qe, AttributeName.SUBMISSIONTIME, _submissionTime);
+        setAttribute(qe, AttributeName.STARTTIME, _startTime);
+        setAttribute(qe, AttributeName.ENDTIME, _endTime);
+        setAttribute(qe, AttributeName.JOBID, _jobId);
+        setAttribute(qe, AttributeName.JOBPARTID, _jobPartId);
+        setAttribute(qe, AttributeName.DEVICEID, _deviceId);
+        for (int i = 0; i < _otherAttributes.length; i += 2) {
+            qe.setAttribute(_otherAttributes[i], _otherAttributes[i + 1]);
+        }
+        for (int i = 0; i < _parts.length; i++) {
+            qe.appendPart().setAttributes(_parts[i]);
+        }
+        for (int i = 0; i < _otherElements.length; i++) {
+            final JDFDoc doc = new JDFParser().parseString(_otherElements[i]);
+            if (doc != null) {
+                final KElement child = qe.copyElement(doc.getRoot(), null);
+                // The parsed element declares the namespace it inherits
+                if (qe.getNamespaceURI() != null
+                        && qe.getNamespaceURI().equals(child.getAttribute(XMLNS))) {
+                    child.removeAttribute(XMLNS);
+                }
+            }
+        }
+    }
+
+    private static boolean isRecordedAttribute(String name) {
+        return AttributeName.QUEUEENTRYID.equals(name)
+                || AttributeName.STATUS.equals(name)
+                || AttributeName.PRIORITY.equals(name)
+                || AttributeName.SUBMISSIONTIME.equals(name)
+                || AttributeName.STARTTIME.equals(name)
+                || AttributeName.ENDTIME.equals(name)
+                || AttributeName.JOBID.equals(name)
+                || AttributeName.JOBPARTID.equals(name)
+                || AttributeName.DEVICEID.equals(name);
+    }
+
+    private static String getAttribute(KElement e, String name) {
+        return e.hasAttribute(name) ? e.getAttribute(name) : null;
+    }
+
+    private static void setAttribute(KElement e, String name, String value) {
+        if (value != null) {
+            e.setAttribute(name, value);
+        }
+    }
+
+    private static String[] toArray(List strings) {
+        return (strings == null) ? NO_STRINGS : (String[]) strings
+                .toArray(new String[strings.size()]);
+    }
+}
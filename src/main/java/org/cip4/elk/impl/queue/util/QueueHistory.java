@@ -0,0 +1,128 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+/**
+ * The finished queue entries of a queue, that is the queue entries with
+ * status <em>Completed</em>, <em>Aborted</em> or <em>Removed</em>, in the
+ * order in which they finished. A queue uses its history to count only its
+ * active queue entries against its capacity, and to decide which finished
+ * queue entries to evict when it keeps too many of them or keeps them too
+ * long.
+ * <p>
+ * <strong>Note: </strong> This class is not thread-safe. It is meant to be
+ * guarded by the queue that owns it.
+ * </p>
+ *
+ * @see org.cip4.elk.impl.queue.MemoryQueue#setMaxHistorySize(int)
+ * @see org.cip4.elk.impl.queue.MemoryQueue#setMaxHistoryAge(long)
+ */
+public class QueueHistory {
+
+    // Queue entry ID -> Long time the queue entry finished, in finish order
+    private Map _finishTimes;
+
+    /**
+     * Creates an empty history.
+     */
+    public QueueHistory() {
+        _finishTimes = new LinkedHashMap();
+    }
+
+    /**
+     * Returns whether a queue entry with the specified status has finished.
+     *
+     * @param status a queue entry status
+     * @return <code>true</code> if the status is <em>Completed</em>,
+     *         <em>Aborted</em> or <em>Removed</em>; <code>false</code>
+     *         otherwise
+     */
+    public static boolean isFinished(JDFQueueEntry.EnumQueueEntryStatus status) {
+        return JDFQueueEntry.EnumQueueEntryStatus.Completed.equals(status)
+                || JDFQueueEntry.EnumQueueEntryStatus.Aborted.equals(status)
+                || JDFQueueEntry.EnumQueueEntryStatus.Removed.equals(status);
+    }
+
+    /**
+     * Updates the history with a queue entry that was added or changed. A
+     * queue entry that has finished is added to the history, unless it
+     * already is in it; a queue entry that has not finished is removed from
+     * it.
+     *
+     * @param record the record of the queue entry
+     * @param now the current time in milliseconds
+     */
+    public void update(QueueEntryRecord record, long now) {
+        final String qeId = record.getQueueEntryID();
+        if (isFinished(record.getQueueEntryStatus())) {
+            if (!_finishTimes.containsKey(qeId)) {
+                _finishTimes.put(qeId, new Long(now));
+            }
+        } else {
+            _finishTimes.remove(qeId);
+        }
+    }
+
+    /**
+     * Removes a queue entry from the history.
+     *
+     * @param queueEntryId the ID of the queue entry
+     */
+    public void remove(String queueEntryId) {
+        _finishTimes.remove(queueEntryId);
+    }
+
+    /**
+     * Returns the number of finished queue entries.
+     *
+     * @return the number of queue entries in the history
+     */
+    public int size() {
+        return _finishTimes.size();
+    }
+
+    /**
+     * Returns the queue entries that should be evicted, oldest first. The
+     * queue entries are not removed from the history.
+     *
+     * @param maxSize the maximum number of finished queue entries to keep; a
+     *            negative number for no limit
+     * @param maxAge the maximum time in milliseconds to keep a finished queue
+     *            entry; a negative number for no limit
+     * @param now the current time in milliseconds
+     * @return the IDs of the queue entries to evict
+     */
+    public List getEvictableQueueEntryIDs(int maxSize, long maxAge, long now) {
+        final List ids = new ArrayList();
+        int remaining = _finishTimes.size();
+        for (Iterator it = _finishTimes.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry entry = (Map.Entry) it.next();
+            final long finishTime = ((Long) entry.getValue()).longValue();
+            final boolean tooMany = maxSize >= 0 && remaining > maxSize;
+            final boolean tooOld = maxAge >= 0 && now - finishTime > maxAge;
+            if (!tooMany && !tooOld) {
+                // The remaining queue entries finished later
+                break;
+            }
+            ids.add(entry.getKey());
+            remaining--;
+        }
+        return ids;
+    }
+
+    /**
+     * Removes all queue entries from the history.
+     */
+    public void clear() {
+        _finishTimes.clear();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.cip4.elk.impl.queue.ConcurrentQueue;
+import org.cip4.elk.queue.Queue;
+
+import EDU.oswego.cs.dl.util.concurrent.ReentrantWriterPreferenceReadWriteLock;
+import EDU.oswego.cs.dl.util.concurrent.Sync;
+
+/**
+ * A reentrant read/write lock that guards a queue. Any number of threads may
+ * hold the read lock at the same time, the write lock is exclusive. Waiting
+ * writers are preferred over new readers so that a steady stream of status
+ * queries does not starve submissions.
+ * <p>
+ * A thread that holds the write lock may also acquire the read lock, but a
+ * thread that holds the read lock must not try to acquire the write lock.
+ * </p>
+ * <p>
+ * Unlike the underlying <code>Sync</code> objects, the lock methods of this
+ * class are not interruptible. If the thread is interrupted while waiting for
+ * the lock the lock is still acquired and the thread's interrupt status is
+ * restored.
+ * </p>
+ * <p>
+ * Clients that need to change a queue in several steps without other threads
+ * seeing the intermediate states hold the queue's write lock while doing so:
+ * </p>
+ *
+ * <pre>
+ * QueueLock lock = QueueLock.getLock(queue);
+ * lock.lockWrite();
+ * try {
+ *     // Several queue operations
+ * } finally {
+ *     lock.unlockWrite();
+ * }
+ * </pre>
+ *
+ * @see org.cip4.elk.impl.queue.ConcurrentQueue
+ */
+public class QueueLock {
+
+    private static Map _fallbackLocks = new WeakHashMap();
+
+    private Lock _lock;
+    private Runnable _unlockAction;
+
+    /**
+     * Creates a new lock.
+     */
+    public QueueLock() {
+        _lock = new Lock();
+    }
+
+    /**
+     * Sets an action to run each time a thread releases the write lock and no
+     * longer holds it. The action runs without holding the lock. A queue uses
+     * this to send events about the changes made while the lock was held.
+     *
+     * @param action the action to run; <code>null</code> for none
+     */
+    public void setUnlockAction(Runnable action) {
+        _unlockAction = action;
+    }
+
+    /**
+     * Returns the lock that guards the specified queue. If the queue is not a
+     * {@link ConcurrentQueue} a lock that is shared by all clients of the
+     * queue is returned, but the queue's own methods do not use that lock.
+     *
+     * @param queue the queue
+     * @return the lock that guards the queue
+     */
+    public static QueueLock getLock(Queue queue) {
+        if (queue instanceof ConcurrentQueue) {
+            return ((ConcurrentQueue) queue).getLock();
+        }
+        synchronized (_fallbackLocks) {
+            QueueLock lock = (QueueLock) _fallbackLocks.get(queue);
+            if (lock == null) {
+                lock = new QueueLock();
+                _fallbackLocks.put(queue, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * Acquires the read lock.
+     */
+    public void lockRead() {
+        acquire(_lock.readLock());
+    }
+
+    /**
+     * Releases the read lock.
+     */
+    public void unlockRead() {
+        _lock.readLock().release();
+    }
+
+    /**
+     * Acquires the write lock.
+     */
+    public void lockWrite() {
+        acquire(_lock.writeLock());
+    }
+
+    /**
+     * Releases the write lock.
+     */
+    public void unlockWrite() {
+        _lock.writeLock().release();
+        final Runnable action = _unlockAction;
+        if (action != null && !_lock.isWriteLockHeldByCurrentThread()) {
+            action.run();
+        }
+    }
+
+    /**
+     * Returns whether the current thread holds the write lock.
+     *
+     * @return <code>true</code> if the current thread holds the write lock;
+     *         <code>false</code> otherwise
+     */
+    public boolean isWriteLockHeld() {
+        return _lock.isWriteLockHeldByCurrentThread();
+    }
+
+    /**
+     * Acquires a <code>Sync</code> without giving up if the thread is
+     * interrupted.
+     */
+    private static void acquire(Sync sync) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                sync.acquire();
+                break;
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A reentrant read/write lock that knows which thread holds the write
+     * lock.
+     */
+    private static class Lock extends ReentrantWriterPreferenceReadWriteLock {
+        synchronized boolean isWriteLockHeldByCurrentThread() {
+            return activeWriter_ == Thread.currentThread();
+        }
+    }
+}
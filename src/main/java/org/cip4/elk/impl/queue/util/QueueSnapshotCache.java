@@ -0,0 +1,163 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cip4.jdflib.auto.JDFAutoQueueFilter.EnumQueueEntryDetails;
+import org.cip4.jdflib.jmf.JDFQueue;
+import org.cip4.jdflib.jmf.JDFQueueFilter;
+
+/**
+ * A cache of filtered queue snapshots. A snapshot is the <em>Queue</em>
+ * element that a queue returns for a specific <em>QueueFilter</em>. Each
+ * snapshot is tagged with the version of the queue it was created from and is
+ * only returned as long as the queue still has that version. This way repeated
+ * <em>QueueStatus</em> queries for an unchanged queue do not have to copy,
+ * sort and filter the queue again.
+ * <p>
+ * Only filters whose result depends on the queue alone can be cached, see
+ * {@link #isCacheable(JDFQueueFilter)}.
+ * </p>
+ * <p>
+ * <strong>Note: </strong> This class is not thread-safe. It is meant to be
+ * guarded by the queue that owns it. The cached snapshots must not be modified
+ * or handed out to clients of the queue, copy them first while holding the
+ * snapshot's monitor.
+ * </p>
+ *
+ * @see org.cip4.elk.impl.queue.MemoryQueue#getQueue(JDFQueueFilter)
+ */
+public class QueueSnapshotCache {
+
+    /** The default maximum number of cached snapshots */
+    public static final int DEFAULT_MAX_SNAPSHOTS = 32;
+
+    private static final String NULL_FILTER_KEY = "";
+
+    private Map _snapshots;
+    private int _maxSnapshots;
+
+    /**
+     * Creates a cache that holds at most {@link #DEFAULT_MAX_SNAPSHOTS}
+     * snapshots.
+     */
+    public QueueSnapshotCache() {
+        this(DEFAULT_MAX_SNAPSHOTS);
+    }
+
+    /**
+     * Creates a cache that holds at most the specified number of snapshots.
+     *
+     * @param maxSnapshots the maximum number of snapshots to cache
+     * @throws IllegalArgumentException if <code>maxSnapshots</code> is less
+     *             than 1
+     */
+    public QueueSnapshotCache(int maxSnapshots) {
+        if (maxSnapshots < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum number of snapshots must be at least 1.");
+        }
+        _maxSnapshots = maxSnapshots;
+        _snapshots = new HashMap();
+    }
+
+    /**
+     * Returns whether the queue returned for the specified filter may be
+     * cached. Queues filtered with <em>QueueEntryDetails</em>
+     * <em>JobPhase</em> or <em>JDF</em> contain the progress of running jobs,
+     * which changes without the queue changing, so those are never cached.
+     *
+     * @param filter the filter, may be <code>null</code>
+     * @return <code>true</code> if the filtered queue may be cached;
+     *         <code>false</code> otherwise
+     */
+    public static boolean isCacheable(JDFQueueFilter filter) {
+        if (filter == null) {
+            return true;
+        }
+        final EnumQueueEntryDetails details = filter.getQueueEntryDetails();
+        return details == null
+                || details.equals(EnumQueueEntryDetails.None)
+                || details.equals(EnumQueueEntryDetails.Brief);
+    }
+
+    /**
+     * Returns the key that identifies snapshots created with the specified
+     * filter. Filters with the same XML representation have the same key.
+     *
+     * @param filter the filter, may be <code>null</code>
+     * @return the cache key of the filter
+     */
+    public static String getKey(JDFQueueFilter filter) {
+        return (filter == null) ? NULL_FILTER_KEY : filter.toXML();
+    }
+
+    /**
+     * Returns the snapshot cached for the specified key, if it was created from
+     * the specified queue version. A stale snapshot is removed from the cache.
+     *
+     * @param key the key of the filter, see {@link #getKey(JDFQueueFilter)}
+     * @param version the queue's current version
+     * @return the cached snapshot; <code>null</code> if there was no snapshot
+     *         for the current version
+     */
+    public JDFQueue getSnapshot(String key, long version) {
+        final Snapshot snapshot = (Snapshot) _snapshots.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+        if (snapshot.version != version) {
+            _snapshots.remove(key);
+            return null;
+        }
+        return snapshot.queue;
+    }
+
+    /**
+     * Caches a snapshot. If the cache is full all snapshots are dropped first;
+     * under normal operation the number of distinct filters is small and this
+     * only guards against unbounded growth.
+     *
+     * @param key the key of the filter, see {@link #getKey(JDFQueueFilter)}
+     * @param version the version of the queue the snapshot was created from
+     * @param queue the snapshot
+     */
+    public void putSnapshot(String key, long version, JDFQueue queue) {
+        if (_snapshots.size() >= _maxSnapshots && !_snapshots.containsKey(key)) {
+            _snapshots.clear();
+        }
+        _snapshots.put(key, new Snapshot(version, queue));
+    }
+
+    /**
+     * Returns the number of cached snapshots, including stale ones.
+     *
+     * @return the number of cached snapshots
+     */
+    public int size() {
+        return _snapshots.size();
+    }
+
+    /**
+     * Removes all snapshots from the cache.
+     */
+    public void clear() {
+        _snapshots.clear();
+    }
+
+    /**
+     * A queue snapshot and the queue version it was created from.
+     */
+    private static class Snapshot {
+        final long version;
+        final JDFQueue queue;
+
+        Snapshot(long version, JDFQueue queue) {
+            this.version = version;
+            this.queue = queue;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import org.cip4.elk.impl.queue.scheduling.AbstractSchedulingPolicy;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.util.JDFDate;
+
+/**
+ * An index of the queue entries that are runnable, that is queue entries with
+ * status <em>Waiting</em>. The index keeps the entries in the order in which
+ * they should be executed:
+ * <ol>
+ * <li>Highest priority (100 is the highest, 0 is the lowest)</li>
+ * <li>Earliest submission time</li>
+ * </ol>
+ * This is the same order that {@link SortingQueueFilter} gives waiting
+ * entries, and the default scheduling policy of a queue. Adding, updating and
+ * removing an entry is done in O(log n) time and the first runnable entry is
+ * found in O(log n) time, without copying any <em>QueueEntry</em> elements.
+ * <p>
+ * <strong>Note: </strong> This class is not thread-safe. It is meant to be
+ * guarded by the queue that owns it.
+ * </p>
+ *
+ * @see org.cip4.elk.impl.queue.util.QueueEntryComparator
+ * @see org.cip4.elk.impl.queue.MemoryQueue#getFirstRunnableQueueEntry()
+ */
+public class RunnableQueueEntryIndex extends AbstractSchedulingPolicy {
+
+    /**
+     * Creates an empty index.
+     */
+    public RunnableQueueEntryIndex() {
+        super();
+    }
+
+    /**
+     * Orders entries by the default order only.
+     */
+    protected int compareEntries(Entry e1, Entry e2) {
+        return 0;
+    }
+
+    /**
+     * Updates the index with the specified queue entry. If the queue entry has
+     * status <em>Waiting</em> it is added to the index, or repositioned if it
+     * already was indexed; otherwise it is removed from the index.
+     *
+     * @param qe the queue entry that was added or changed
+     * @throws NullPointerException if <code>qe</code> is <code>null</code>
+     */
+    public void update(JDFQueueEntry qe) {
+        final JDFDate submissionTime = qe.getSubmissionTime();
+        final long time = (submissionTime == null) ? Long.MAX_VALUE
+                : submissionTime.getTimeInMillis();
+        update(qe.getQueueEntryID(), qe.getQueueEntryStatus(), qe
+                .getPriority(), time, null);
+    }
+
+    /**
+     * Updates the index with the specified queue entry record.
+     *
+     * @param record the record of the queue entry that was added or changed
+     * @throws NullPointerException if <code>record</code> is
+     *             <code>null</code>
+     * @see #update(JDFQueueEntry)
+     */
+    public void update(QueueEntryRecord record) {
+        update(record, null);
+    }
+}
@@ -3,7 +3,6 @@
  */
 package org.cip4.elk.impl.queue.util;
 
-import java.util.Collections;
 import java.util.List;
 
 import org.cip4.elk.queue.util.QueueFilter;
@@ -66,10 +65,11 @@ public class SortingQueueFilter implements QueueFilter {
      */
     public JDFQueue filterQueue(JDFQueue queue, JDFQueueFilter filter,
             boolean copy) {
-        // Sort the original queue's queue entries
+        // Sort the original queue's queue entries, computing each entry's
+        // sort key once
         List qEntries = queue.getChildElementVector(ElementName.QUEUEENTRY,
                 null, new JDFAttributeMap(), false, 0, false);
-        Collections.sort(qEntries, _comp);
+        _comp.sort(qEntries);
         // Copy the sorted queue entries to the new queue
         if (copy) {
             // TODO Create a new owner document and import the queue so that
@@ -90,4 +90,13 @@ public class SortingQueueFilter implements QueueFilter {
         }
         return queue;
     }
+
+    /**
+     * Returns the comparator that this filter sorts queue entries with.
+     * 
+     * @return the comparator used by this filter
+     */
+    public QueueEntryComparator getComparator() {
+        return _comp;
+    }
 }
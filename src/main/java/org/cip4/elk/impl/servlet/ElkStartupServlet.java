@@ -15,6 +15,7 @@ import org.cip4.elk.device.process.Process;
 import org.cip4.elk.device.process.ProcessAmountListener;
 import org.cip4.elk.device.process.ProcessQueueEntryEventListener;
 import org.cip4.elk.device.process.ProcessStatusListener;
+import org.cip4.elk.impl.device.DeviceContainer;
 import org.cip4.elk.impl.device.process.AbstractProcess;
 import org.cip4.elk.impl.device.process.BaseProcess;
 import org.cip4.elk.impl.spring.ElkSpringConfiguration;
@@ -65,6 +66,9 @@ public class ElkStartupServlet extends HttpServlet {
         _beanFactory = ElkSpringConfiguration.getBeanFactory();
         buildDeviceConfiguration();
         configureEventListeners();
+        if (_beanFactory.containsBean("deviceContainer")) {
+            ((DeviceContainer) _beanFactory.getBean("deviceContainer")).init();
+        }
         log.debug("Initialized " + getServletName() + ".");
     }
 
@@ -74,10 +78,18 @@ public class ElkStartupServlet extends HttpServlet {
     public void destroy() {
         log.debug("Destroying " + getServletName() + " ...");
 
+        // Stops hosted devices
+        if (_beanFactory.containsBean("deviceContainer")) {
+            ((DeviceContainer) _beanFactory.getBean("deviceContainer")).destroy();
+        }
+
         // Stops process        
-        BaseProcess process = (BaseProcess) _beanFactory
-                .getBean("process");
-        process.stop();        
+        Process process = (Process) _beanFactory.getBean("process");
+        if (process instanceof BaseProcess) {
+            ((BaseProcess) process).stop();
+        } else {
+            process.destroy();
+        }
         // Stops subscription manager
         SubscriptionManager subManager = (SubscriptionManager) _beanFactory
                 .getBean("subscriptionManager");        
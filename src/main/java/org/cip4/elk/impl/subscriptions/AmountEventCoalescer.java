@@ -0,0 +1,189 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.subscriptions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.cip4.elk.device.process.Process;
+import org.cip4.elk.device.process.ProcessAmountEvent;
+
+/**
+ * Reduces the number of {@link ProcessAmountEvent}s that are broadcast to
+ * subscribers. Processes fire an amount event for every produced sheet; this
+ * class passes on at most one event per interval or per sheet delta and
+ * withholds the others. An event is always passed on if:
+ * <ul>
+ * <li>it is the first event of a process, or its amount is lower than the
+ * amount last passed on (a new job has started)</li>
+ * <li>its amount is a multiple of the <em>Subscription/@RepeatStep</em> of a
+ * subscription, so that <em>RepeatStep</em> subscribers receive exactly the
+ * signals they would receive without coalescing</li>
+ * <li>the amount has grown by at least the sheet delta since the amount last
+ * passed on</li>
+ * <li>the interval has elapsed since the event last passed on</li>
+ * </ul>
+ * Events whose amount has not changed since the previous event are dropped.
+ * If neither the interval nor the sheet delta is set, every changed amount
+ * is passed on.
+ * <p>
+ * Events are coalesced per process. The event withheld last for a process is
+ * returned by {@link #flush(Process, long)}, which should be called when a
+ * process changes its status so that subscribers see a job's final amount.
+ * A process that forwards the amount events of other processes, such as a
+ * {@link org.cip4.elk.impl.device.process.ProcessPool}, flushes the events
+ * withheld for all of them without resetting their coalescing.
+ * </p>
+ * This class is thread safe.
+ *
+ * @see AsyncSimpleSubscriptionManager#processAmountChanged(ProcessAmountEvent)
+ */
+public class AmountEventCoalescer {
+
+    private static Logger log = Logger.getLogger(AmountEventCoalescer.class);
+
+    private long _interval = 1000;
+    private int _delta = 0;
+    /** Maps a process to its <code>State</code>, guarded by this */
+    private final Map _states = new HashMap();
+
+    public AmountEventCoalescer() {
+        super();
+    }
+
+    /**
+     * Sets the minimum time between two events that are passed on for a
+     * process. Default is 1 second; 0 disables the interval.
+     *
+     * @param interval the interval in milliseconds
+     */
+    public synchronized void setInterval(long interval) {
+        _interval = interval;
+    }
+
+    public synchronized long getInterval() {
+        return _interval;
+    }
+
+    /**
+     * Sets the number of sheets after which an event is passed on regardless
+     * of the interval. Default is 0, which disables the sheet delta.
+     *
+     * @param delta the sheet delta
+     */
+    public synchronized void setDelta(int delta) {
+        _delta = delta;
+    }
+
+    public synchronized int getDelta() {
+        return _delta;
+    }
+
+    /**
+     * Decides whether an event is passed on to subscribers.
+     *
+     * @param event the event fired by a process
+     * @param repeatSteps the <em>Subscription/@RepeatStep</em>s of the
+     *            current subscriptions
+     * @param now the current time in milliseconds
+     * @return the event if it is passed on; <code>null</code> if it is
+     *         withheld or dropped
+     */
+    public synchronized ProcessAmountEvent coalesce(ProcessAmountEvent event,
+            int[] repeatSteps, long now) {
+        final int amount = event.getAmount();
+        State state = (State) _states.get(event.getProcess());
+        if (state == null) {
+            state = new State();
+            _states.put(event.getProcess(), state);
+        } else if (amount == state.amount) {
+            return null;
+        } else if (!isDue(state, amount, repeatSteps, now)) {
+            state.amount = amount;
+            state.withheld = event;
+            return null;
+        }
+        state.amount = amount;
+        state.withheld = null;
+        state.passedAmount = amount;
+        state.passedTime = now;
+        return event;
+    }
+
+    private boolean isDue(State state, int amount, int[] repeatSteps, long now) {
+        if (amount < state.passedAmount) {
+            return true;
+        }
+        if (_interval <= 0 && _delta <= 0) {
+            return true;
+        }
+        if (_delta > 0 && amount - state.passedAmount >= _delta) {
+            return true;
+        }
+        if (_interval > 0 && now - state.passedTime >= _interval) {
+            return true;
+        }
+        for (int i = 0; i < repeatSteps.length; i++) {
+            if (repeatSteps[i] > 0 && amount % repeatSteps[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the events withheld for a process whose status has changed. If
+     * amount events have been coalesced for the process, its withheld event
+     * is returned and the process is forgotten, so that its next event is
+     * passed on. Otherwise the process forwards the events of other
+     * processes, and the events withheld for all processes are returned as if
+     * they had been passed on now; the other processes are not forgotten.
+     *
+     * @param process the process whose status has changed
+     * @param now the current time in milliseconds
+     * @return a list of <code>ProcessAmountEvent</code>s, at most one per
+     *         process
+     */
+    public synchronized List flush(Process process, long now) {
+        final List withheld = new ArrayList();
+        final State own = (State) _states.remove(process);
+        if (own != null) {
+            if (own.withheld != null) {
+                withheld.add(own.withheld);
+            }
+        } else {
+            for (Iterator it = _states.values().iterator(); it.hasNext();) {
+                State state = (State) it.next();
+                if (state.withheld != null) {
+                    withheld.add(state.withheld);
+                    state.withheld = null;
+                    state.passedAmount = state.amount;
+                    state.passedTime = now;
+                }
+            }
+        }
+        if (withheld.size() > 0) {
+            log.debug("Flushed " + withheld.size() + " withheld amount events.");
+        }
+        return withheld;
+    }
+
+    /**
+     * The coalescing state of a process.
+     */
+    private static class State {
+        /** The amount of the last event */
+        int amount;
+        /** The amount of the last event that was passed on */
+        int passedAmount;
+        /** When the last event was passed on */
+        long passedTime;
+        /** The last event if it was withheld */
+        ProcessAmountEvent withheld;
+    }
+}
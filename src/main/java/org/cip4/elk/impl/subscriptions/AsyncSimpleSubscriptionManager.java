@@ -3,10 +3,12 @@
  */
 package org.cip4.elk.impl.subscriptions;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 
@@ -96,6 +98,14 @@ import EDU.oswego.cs.dl.util.concurrent.QueuedExecutor;
  * and the the EventFowarder does not need to be configured (it won't be used).
  * This may however in some cases cause Elk to deadlock.
  * </p>
+ * <p>
+ * Processes fire an amount event for every produced sheet. Amount events are
+ * coalesced before they are broadcast, see
+ * {@link #setAmountEventInterval(long)} and
+ * {@link #setAmountEventDelta(int)}. Subscriptions with a
+ * <em>Subscription/@RepeatStep</em> still receive a signal for every
+ * multiple of their <em>RepeatStep</em>.
+ * </p>
  * This class is Thread safe if its SubscriptionContainer is Thread safe.
  * 
  * @see <a
@@ -121,6 +131,12 @@ public class AsyncSimpleSubscriptionManager implements SubscriptionManager,
     private Vector _knownQueryTypes;
     private boolean _async = true;
     private Executor _executor = null;
+    private boolean _sharedExecutor = false;
+    private AmountEventCoalescer _amountCoalescer = new AmountEventCoalescer();
+    /** The RepeatSteps of the subscriptions, guarded by this */
+    private int[] _repeatSteps = new int[0];
+    /** The subscriptions' modification count when _repeatSteps was built */
+    private int _repeatStepsVersion = -1;
 
     private OutgoingJMFDispatcher _outgoingDispatcher;
     private IncomingJMFDispatcher _incomingDispatcher;
@@ -190,6 +206,20 @@ public class AsyncSimpleSubscriptionManager implements SubscriptionManager,
         _async = asynchronous;
     }
 
+    /**
+     * Sets the executor used for broadcasting events asynchronously. Several
+     * subscription managers, for example those of the devices in a
+     * {@link org.cip4.elk.impl.device.DeviceContainer}, may share one
+     * executor. A shared executor is not shut down when this subscription
+     * manager is destroyed.
+     * 
+     * @param executor the executor to use
+     */
+    public void setExecutor(Executor executor) {
+        _executor = executor;
+        _sharedExecutor = true;
+    }
+
     /**
      * Returns <code>true</code> if this manager is Asynchronous,
      * <code>false</code> otherwise.
@@ -369,20 +399,96 @@ public class AsyncSimpleSubscriptionManager implements SubscriptionManager,
      */
     public void processStatusChanged(ProcessStatusEvent processEvent) {
         log.debug("Received process status event: " + processEvent);
+        // Subscribers see the last amount before the status change
+        List withheld = _amountCoalescer.flush(processEvent.getProcess(),
+            System.currentTimeMillis());
+        for (int i = 0, imax = withheld.size(); i < imax; i++) {
+            broadcastEvent((ElkEvent) withheld.get(i));
+        }
         broadcastEvent(processEvent);
     }
 
     /**
      * Handles process Amount events. Broadcasts JMF Signals to all subscribers
      * who have subscribed had Subscription/@RepeatStep attribute set.
-     * 
+     * <p>
+     * Amount events are coalesced: an event is only broadcast if it reaches
+     * a <em>RepeatStep</em> of a subscription, or if the amount event
+     * interval or sheet delta has passed since the last broadcast amount
+     * event. The last withheld event is broadcast when the process' status
+     * changes.
+     * </p>
      * NOTE: Not all processes have an Amount, this event may be unsupported.
      * 
      * @see org.cip4.elk.device.process.ProcessAmountListener#processAmountChanged(org.cip4.elk.device.process.ProcessAmountEvent)
+     * @see AmountEventCoalescer
      */
     public void processAmountChanged(ProcessAmountEvent processAmountEvent) {
-        log.debug("Received process amount event: " + processAmountEvent + "");
-        broadcastEvent(processAmountEvent);
+        ProcessAmountEvent event = _amountCoalescer.coalesce(
+            processAmountEvent, getRepeatSteps(), System.currentTimeMillis());
+        if (event != null) {
+            log.debug("Received process amount event: " + event + "");
+            broadcastEvent(event);
+        }
+    }
+
+    /**
+     * Returns the <em>Subscription/@RepeatStep</em>s of the current
+     * subscriptions. The steps are only collected again when subscriptions
+     * have been added or removed.
+     * 
+     * @return the RepeatSteps, may contain duplicates
+     */
+    private synchronized int[] getRepeatSteps() {
+        final int version = _subscriptions.getModificationCount();
+        if (version != _repeatStepsVersion) {
+            List steps = new ArrayList();
+            for (Iterator it = _subscriptions.getSubscriptions().iterator(); it
+                    .hasNext();) {
+                Subscription sub = (Subscription) it.next();
+                if (sub.isRepeatStepSubscription()) {
+                    steps.add(new Integer(sub.getRepeatStep()));
+                }
+            }
+            _repeatSteps = new int[steps.size()];
+            for (int i = 0; i < _repeatSteps.length; i++) {
+                _repeatSteps[i] = ((Integer) steps.get(i)).intValue();
+            }
+            _repeatStepsVersion = version;
+        }
+        return _repeatSteps;
+    }
+
+    /**
+     * Sets the minimum time between two broadcast amount events of a
+     * process. Default is 1 second; 0 disables the interval. If neither the
+     * interval nor the sheet delta is set, every amount event is broadcast.
+     * 
+     * @param interval the interval in milliseconds
+     * @see #setAmountEventDelta(int)
+     */
+    public void setAmountEventInterval(long interval) {
+        _amountCoalescer.setInterval(interval);
+    }
+
+    public long getAmountEventInterval() {
+        return _amountCoalescer.getInterval();
+    }
+
+    /**
+     * Sets the number of sheets after which an amount event is broadcast
+     * regardless of the amount event interval. Default is 0, which disables
+     * the sheet delta.
+     * 
+     * @param delta the sheet delta
+     * @see #setAmountEventInterval(long)
+     */
+    public void setAmountEventDelta(int delta) {
+        _amountCoalescer.setDelta(delta);
+    }
+
+    public int getAmountEventDelta() {
+        return _amountCoalescer.getDelta();
     }
 
     /**
@@ -712,7 +818,7 @@ public class AsyncSimpleSubscriptionManager implements SubscriptionManager,
     public void destroy() {
         log.debug("Destroying subscription manager...");
         _subscriptions.cleanUp();
-        if (_executor instanceof QueuedExecutor) {
+        if (!_sharedExecutor && _executor instanceof QueuedExecutor) {
             ((QueuedExecutor) _executor).shutdownAfterProcessingCurrentTask();
         }
         log.debug("Destroyed subscription manager.");
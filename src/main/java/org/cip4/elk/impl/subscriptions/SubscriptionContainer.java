@@ -24,6 +24,11 @@ import EDU.oswego.cs.dl.util.concurrent.ConcurrentReaderHashMap;
 public class SubscriptionContainer {
 
     private Map _subscriptions;
+    /**
+     * Incremented whenever subscriptions are added or removed, only by
+     * {@link #modified()}. Read without locking.
+     */
+    private volatile int _modificationCount = 0;
 
     private static Logger log;
 
@@ -70,9 +75,11 @@ public class SubscriptionContainer {
 
             quMap.put(channelID, subscription);
             _subscriptions.put(url, quMap);
+            modified();
         } else if (oldURL instanceof Map) {
             SubscriptionImpl oldSub = (SubscriptionImpl) ((Map) oldURL).put(channelID,
                 subscription);
+            modified();
             if (oldSub != null) {
                 oldSub.cancelTimer();
                 log.warn("Queries must be unique, old subscription overridden");
@@ -117,6 +124,7 @@ public class SubscriptionContainer {
             return false; // Invalid parameters
 
         } else {
+            modified();
             s.cancelTimer();
             log.debug("Unregistered subscription with id: " + channelID);
         }
@@ -166,6 +174,7 @@ public class SubscriptionContainer {
             s.cancelTimer();
         }
         _subscriptions.remove(url);
+        modified();
         return 0;
     }
 
@@ -205,6 +214,7 @@ public class SubscriptionContainer {
             SubscriptionImpl sub = (SubscriptionImpl) it.next();
             if (sub.getMessageType().equals(messageType)) {
                 subscriptionsMap.remove(sub.getId());
+                modified();
                 sub.cancelTimer();
                 log.debug("Unregistered message " + sub.getId()
                         + " successfully");
@@ -235,6 +245,26 @@ public class SubscriptionContainer {
         return Collections.unmodifiableCollection(ret);
     }
 
+    /**
+     * Returns a number that changes whenever a <code>Subscription</code> is
+     * added to or removed from this <code>SubscriptionContainer</code>. This
+     * lets callers cache information derived from the subscriptions without
+     * copying all subscriptions for every event.
+     * 
+     * @return the modification count
+     */
+    public int getModificationCount() {
+        return _modificationCount;
+    }
+
+    /**
+     * Increments the modification count. The increment is a read and a write,
+     * so it is done while holding this container's monitor.
+     */
+    private synchronized void modified() {
+        _modificationCount++;
+    }
+
     /**
      * Clears the <code>SubscriptionContainer</code> and cancel all timer
      * threads.
@@ -253,6 +283,7 @@ public class SubscriptionContainer {
         if(_subscriptions!=null)
             _subscriptions.clear();
         _subscriptions = null;
+        modified();
         log.debug("Destroyed subscriptions.");
 
     }
@@ -0,0 +1,105 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.util;
+
+/**
+ * A clock that runs a fixed number of times faster than real time. The clock
+ * starts at the real time when it is created. Sleeps that are shorter than a
+ * millisecond in real time are added up per thread and slept once they
+ * amount to a millisecond, so that many short simulated delays, for example
+ * one per printed sheet, are not each rounded up to a millisecond.
+ */
+public class AcceleratedClock implements Clock {
+
+    /** The current rate; replaced, never modified, when the speed changes */
+    private volatile Rate _rate;
+    /** The real time each thread has not slept yet, in milliseconds */
+    private final ThreadLocal _owedSleep = new ThreadLocal() {
+        protected Object initialValue() {
+            return new double[1];
+        }
+    };
+
+    /**
+     * Creates a clock that runs 60 times faster than real time.
+     */
+    public AcceleratedClock() {
+        this(60);
+    }
+
+    /**
+     * Creates a clock.
+     * 
+     * @param speed how many times faster than real time the clock runs
+     * @throws IllegalArgumentException if <code>speed</code> is not
+     *             positive
+     */
+    public AcceleratedClock(double speed) {
+        checkSpeed(speed);
+        final long now = System.currentTimeMillis();
+        _rate = new Rate(now, now, speed);
+    }
+
+    /**
+     * Sets how many times faster than real time the clock runs. The time
+     * that has already passed is not changed.
+     * 
+     * @param speed the speed factor
+     * @throws IllegalArgumentException if <code>speed</code> is not
+     *             positive
+     */
+    public synchronized void setSpeed(double speed) {
+        checkSpeed(speed);
+        // The new speed applies from now on
+        final long now = System.currentTimeMillis();
+        _rate = new Rate(now, _rate.getSimulatedTime(now), speed);
+    }
+
+    private static void checkSpeed(double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("The speed must be positive.");
+        }
+    }
+
+    public double getSpeed() {
+        return _rate.speed;
+    }
+
+    public long currentTimeMillis() {
+        return _rate.getSimulatedTime(System.currentTimeMillis());
+    }
+
+    public void sleep(long millis) throws InterruptedException {
+        if (millis <= 0) {
+            return;
+        }
+        final double[] owed = (double[]) _owedSleep.get();
+        owed[0] += millis / _rate.speed;
+        final long realMillis = (long) owed[0];
+        if (realMillis > 0) {
+            owed[0] -= realMillis;
+            Thread.sleep(realMillis);
+        }
+    }
+
+    /**
+     * A speed and the real and simulated time at which it was set.
+     */
+    private static final class Rate {
+
+        final long realOrigin;
+        final long simulatedOrigin;
+        final double speed;
+
+        Rate(long realOrigin, long simulatedOrigin, double speed) {
+            this.realOrigin = realOrigin;
+            this.simulatedOrigin = simulatedOrigin;
+            this.speed = speed;
+        }
+
+        long getSimulatedTime(long realTime) {
+            return simulatedOrigin + (long) ((realTime - realOrigin) * speed);
+        }
+    }
+}
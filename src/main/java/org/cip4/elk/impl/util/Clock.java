@@ -0,0 +1,34 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.util;
+
+/**
+ * The time source of the simulated devices. Every simulated delay, such as
+ * the time it takes to set up a press or to print a sheet, is waited for
+ * with {@link #sleep(long)}, and every time stamp written to JDF audits and
+ * JMF is read with {@link #currentTimeMillis()}. Replacing the
+ * {@link RealTimeClock} with an {@link AcceleratedClock} or a
+ * {@link DiscreteEventClock} makes the simulation run faster than real time
+ * while the times it reports stay consistent.
+ * <p>
+ * Implementations must be thread-safe.
+ * </p>
+ */
+public interface Clock {
+
+    /**
+     * Returns the current time of this clock.
+     * 
+     * @return the time in milliseconds since midnight, January 1, 1970 UTC
+     */
+    public long currentTimeMillis();
+
+    /**
+     * Waits until the specified time has passed on this clock.
+     * 
+     * @param millis the time to wait in milliseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void sleep(long millis) throws InterruptedException;
+}
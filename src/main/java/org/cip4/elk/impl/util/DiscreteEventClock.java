@@ -0,0 +1,50 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.util;
+
+/**
+ * A clock that only advances when it is slept on. Sleeping moves the clock
+ * forward by the time slept and returns at once, so a simulation runs as
+ * fast as the machine allows and its time line depends only on the
+ * simulated delays. The clock starts at the real time when it is created.
+ * <p>
+ * The clock keeps one time line: delays that are simulated at the same time
+ * by several threads, for example by a device and its preprocessor, are
+ * added up. Measure one device per clock to get exact timings.
+ * </p>
+ */
+public class DiscreteEventClock implements Clock {
+
+    private long _now;
+
+    public DiscreteEventClock() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a clock.
+     * 
+     * @param startTime the time the clock starts at, in milliseconds
+     */
+    public DiscreteEventClock(long startTime) {
+        _now = startTime;
+    }
+
+    public synchronized long currentTimeMillis() {
+        return _now;
+    }
+
+    public void sleep(long millis) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (millis > 0) {
+            synchronized (this) {
+                _now += millis;
+            }
+        }
+        // Lets other threads run as they would while this one sleeps
+        Thread.yield();
+    }
+}
@@ -13,6 +13,7 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.commons.lang.RandomStringUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.cip4.elk.Config;
 import org.cip4.elk.lifecycle.Lifecycle;
@@ -30,6 +31,9 @@ public class FileRepository implements Repository, Lifecycle {
 
     protected static final String DEFAULT_FILE_EXTENSION = "data";
 
+    /** The length of the random part of the names of added files */
+    private static final int FILENAME_LENGTH = 24;
+
     protected static Logger log = Logger.getLogger(FileRepository.class
             .getName());
 
@@ -248,8 +252,8 @@ public class FileRepository implements Repository, Lifecycle {
             fileExtension = DEFAULT_FILE_EXTENSION;
         }
         // Create unique filename
-        String filename = RandomStringUtils.randomAlphanumeric(24) + "."
-                + fileExtension;
+        String filename = RandomStringUtils.randomAlphanumeric(FILENAME_LENGTH)
+                + "." + fileExtension;
         String url = baseUrl + filename;
         _urlTool.writeToURL(data, url);
         // TODO Handle if the file cannot be written
@@ -280,6 +284,22 @@ public class FileRepository implements Repository, Lifecycle {
         return stream;
     }
 
+    /**
+     * Returns whether the URL refers to a file in the private directory whose
+     * name was created by this repository.
+     */
+    public boolean isPrivateFile(String url) {
+        if (url == null || !url.startsWith(_privateDirBaseUrl)) {
+            return false;
+        }
+        final String filename = url.substring(_privateDirBaseUrl.length());
+        final int dot = filename.indexOf('.');
+        if (dot != FILENAME_LENGTH || filename.indexOf('/') != -1) {
+            return false;
+        }
+        return StringUtils.isAlphanumeric(filename.substring(0, dot));
+    }
+
     public boolean removeFile(String url) {
         return _urlTool.deleteURL(url);
     }
@@ -0,0 +1,23 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.util;
+
+/**
+ * A clock that runs in real time. This is the default clock.
+ */
+public class RealTimeClock implements Clock {
+
+    public RealTimeClock() {
+    }
+
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    public void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+}
@@ -0,0 +1,595 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * An append-only journal of records, forced to disk with group commit.
+ * <p>
+ * The journal consists of two files in the journal directory:
+ * </p>
+ * <ul>
+ * <li><code><i>name</i>.<i>n</i>.snapshot</code> - a compacted image of the
+ * journaled state, written by {@link #compact(List)}</li>
+ * <li><code><i>name</i>.<i>n</i>.log</code> - the records appended since the
+ * snapshot was written</li>
+ * </ul>
+ * <p>
+ * <i>n</i> is the generation of the journal, which is incremented by each
+ * compaction. A compaction writes the snapshot of the next generation and
+ * starts its log before the files of the previous generation are deleted, so
+ * a crash during compaction leaves either the old or the new generation
+ * complete. Replay uses the newest snapshot and only the log of its own
+ * generation; the records of older logs are covered by the snapshot. The
+ * files of generation 0 are named <code><i>name</i>.snapshot</code> and
+ * <code><i>name</i>.log</code>.
+ * </p>
+ * <p>
+ * Both files are sequences of records. Each record is written as its length,
+ * a CRC32 checksum and the payload: the record type, an ID and a data string.
+ * What the types, IDs and data mean is up to the user of the journal. A torn
+ * record at the end of the log, left by a crash in the middle of a write, is
+ * detected by its checksum and discarded when the journal is replayed.
+ * </p>
+ * <p>
+ * Appending and syncing are separate steps. {@link #append(int, String, String)}
+ * writes a record to the log and returns its position, which the caller passes
+ * to {@link #sync(long)} after it has released any locks. Syncing uses group
+ * commit: the first thread to sync forces the log to disk, and all records that
+ * were appended before the force started are synced by it, so concurrent
+ * writers share a single <code>fsync</code>.
+ * </p>
+ *
+ * @see org.cip4.elk.impl.queue.QueueJournal
+ * @see org.cip4.elk.impl.device.process.JobCheckpointer
+ */
+public class RecordJournal {
+
+    private static final String ENCODING = "UTF-8";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** The length of a record header: the payload length and the CRC32 */
+    private static final int HEADER_LENGTH = 12;
+    /** Longer records are treated as corrupt */
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    private static Logger log = Logger.getLogger(RecordJournal.class);
+
+    private final File _directory;
+    private final String _name;
+    private int _generation;
+    private RandomAccessFile _logRaf;
+    private FileChannel _logChannel;
+    private boolean _syncEnabled;
+    private int _recordCount;
+
+    // Logical positions, they keep growing when the log is compacted
+    private long _logBase;
+    private long _writtenPosition;
+
+    // Group commit state, guarded by _syncLock
+    private final Object _syncLock = new Object();
+    private long _syncedPosition;
+    private boolean _syncInProgress;
+
+    /**
+     * A handler of records read when the journal is replayed.
+     */
+    public interface RecordHandler {
+        /**
+         * Handles a replayed record.
+         *
+         * @param type the record type
+         * @param id the ID, may be an empty string
+         * @param data the data, may be an empty string
+         */
+        public void handleRecord(int type, String id, String data);
+    }
+
+    /**
+     * Creates a journal in the specified directory whose files are named
+     * <code><i>name</i>.<i>n</i>.log</code> and
+     * <code><i>name</i>.<i>n</i>.snapshot</code>. The directory is created if
+     * it does not exist. The journal must be replayed before records are
+     * appended.
+     *
+     * @param directory the journal directory
+     * @param name the base name of the journal files
+     * @throws IOException if the directory could not be created
+     */
+    public RecordJournal(File directory, String name) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the journal directory "
+                    + directory.getAbsolutePath() + ".");
+        }
+        _directory = directory;
+        _name = name;
+        _syncEnabled = true;
+    }
+
+    /**
+     * Sets whether records are forced to disk when synced. Disabling this
+     * trades durability for speed and should only be used for testing.
+     *
+     * @param syncEnabled <code>true</code> to force records to disk;
+     *            <code>false</code> otherwise
+     */
+    public void setSyncEnabled(boolean syncEnabled) {
+        _syncEnabled = syncEnabled;
+    }
+
+    /**
+     * Replays the newest snapshot and then its log, passing each record to
+     * the handler, and opens the log for appending. A corrupt or incomplete
+     * record at the end of the log is discarded, as are the files of older
+     * generations.
+     *
+     * @param handler the handler of replayed records
+     * @return the number of records replayed
+     * @throws IOException if the journal could not be read
+     */
+    public synchronized int replay(RecordHandler handler) throws IOException {
+        _generation = findGeneration();
+        int count = 0;
+        File snapshotFile = getSnapshotFile(_generation);
+        if (snapshotFile.exists()) {
+            CountingInputStream in = new CountingInputStream(
+                    new BufferedInputStream(new FileInputStream(snapshotFile)));
+            try {
+                count += readRecords(new DataInputStream(in), handler, in,
+                    snapshotFile.length());
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        File logFile = getLogFile(_generation);
+        long validLength = 0;
+        if (logFile.exists()) {
+            CountingInputStream in = new CountingInputStream(
+                    new BufferedInputStream(new FileInputStream(logFile)));
+            try {
+                _recordCount = readRecords(new DataInputStream(in), handler, in,
+                    logFile.length());
+                count += _recordCount;
+                validLength = in.getValidPosition();
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+        deleteStaleFiles();
+        _logRaf = new RandomAccessFile(logFile, "rw");
+        _logChannel = _logRaf.getChannel();
+        if (_logChannel.size() > validLength) {
+            log.warn("Discarding " + (_logChannel.size() - validLength)
+                    + " bytes of incomplete records at the end of "
+                    + logFile.getAbsolutePath() + ".");
+            _logChannel.truncate(validLength);
+        }
+        _logChannel.position(validLength);
+        _logBase = 0;
+        _writtenPosition = validLength;
+        synchronized (_syncLock) {
+            _syncedPosition = validLength;
+        }
+        log.info("Replayed " + count + " records of the " + _name + " journal.");
+        return count;
+    }
+
+    /**
+     * Appends a record to the log. The record is not guaranteed to be on disk
+     * until {@link #sync(long)} has been called with the returned position.
+     *
+     * @param type the record type
+     * @param id the ID, may be <code>null</code>
+     * @param data the data, may be <code>null</code>
+     * @return the position of the end of the record
+     * @throws IOException if the record could not be written
+     */
+    public synchronized long append(int type, String id, String data)
+            throws IOException {
+        if (_logChannel == null) {
+            throw new IOException("The " + _name + " journal has not been replayed.");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(encodeRecord(type, id,
+            data));
+        while (buffer.hasRemaining()) {
+            _logChannel.write(buffer);
+        }
+        _recordCount++;
+        _writtenPosition = _logBase + _logChannel.position();
+        return _writtenPosition;
+    }
+
+    /**
+     * Waits until the log has been forced to disk up to the specified
+     * position. If no other thread is forcing the log this thread does it,
+     * syncing all records appended so far.
+     *
+     * @param position a position returned by
+     *            {@link #append(int, String, String)}
+     * @throws IOException if the log could not be forced to disk
+     */
+    public void sync(long position) throws IOException {
+        while (true) {
+            synchronized (_syncLock) {
+                while (_syncInProgress && _syncedPosition < position) {
+                    try {
+                        _syncLock.wait();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException(
+                                "Interrupted while syncing the " + _name
+                                        + " journal.");
+                    }
+                }
+                if (_syncedPosition >= position) {
+                    return;
+                }
+                _syncInProgress = true;
+            }
+            // Everything written before the force starts is synced by it
+            final long target = getWrittenPosition();
+            final FileChannel channel = getLogChannel();
+            IOException failure = null;
+            try {
+                if (_syncEnabled) {
+                    channel.force(false);
+                }
+            } catch (ClosedChannelException cce) {
+                // The log was compacted meanwhile, its records are in the
+                // snapshot and the synced position has been advanced
+            } catch (IOException ioe) {
+                failure = ioe;
+            }
+            synchronized (_syncLock) {
+                _syncInProgress = false;
+                if (failure == null && target > _syncedPosition) {
+                    _syncedPosition = target;
+                }
+                _syncLock.notifyAll();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of records in the log since the last compaction.
+     *
+     * @return the number of records in the log
+     */
+    public synchronized int getRecordCount() {
+        return _recordCount;
+    }
+
+    /**
+     * Writes the specified records as the snapshot of the next generation and
+     * starts its empty log. The caller must make sure that no records are
+     * appended while the journal is compacted. The records are arrays of the
+     * form <code>{Integer type, String id, String data}</code>.
+     *
+     * @param records the records that make up the compacted state
+     * @throws IOException if the snapshot could not be written
+     */
+    public synchronized void compact(List records) throws IOException {
+        final int generation = _generation + 1;
+        final File snapshotFile = getSnapshotFile(generation);
+        final File tempFile = new File(_directory, snapshotFile.getName()
+                + TEMP_SUFFIX);
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            for (int i = 0, imax = records.size(); i < imax; i++) {
+                Object[] record = (Object[]) records.get(i);
+                out.write(encodeRecord(((Integer) record[0]).intValue(),
+                    (String) record[1], (String) record[2]));
+            }
+            out.flush();
+            if (_syncEnabled) {
+                out.getFD().sync();
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+        // The new log is created first, so that the new generation is
+        // complete as soon as its snapshot has been renamed
+        final File logFile = getLogFile(generation);
+        final RandomAccessFile logRaf = new RandomAccessFile(logFile, "rw");
+        logRaf.setLength(0);
+        if (!tempFile.renameTo(snapshotFile)) {
+            closeQuietly(logRaf);
+            logFile.delete();
+            throw new IOException("Could not rename " + tempFile + " to "
+                    + snapshotFile + ".");
+        }
+        // All logged records are now part of the durable snapshot
+        _logBase += _logChannel.size();
+        closeQuietly(_logRaf);
+        _logRaf = logRaf;
+        _logChannel = logRaf.getChannel();
+        _writtenPosition = _logBase;
+        deleteGeneration(_generation);
+        _generation = generation;
+        _recordCount = 0;
+        synchronized (_syncLock) {
+            if (_syncedPosition < _logBase) {
+                _syncedPosition = _logBase;
+            }
+            _syncLock.notifyAll();
+        }
+        log.debug("Compacted the " + _name + " journal to " + records.size()
+                + " records.");
+    }
+
+    /**
+     * Closes the log.
+     */
+    public synchronized void close() {
+        if (_logRaf != null) {
+            try {
+                _logChannel.force(false);
+                _logRaf.close();
+            } catch (IOException ioe) {
+                log.warn("Could not close the " + _name + " journal: " + ioe, ioe);
+            }
+            _logRaf = null;
+            _logChannel = null;
+        }
+    }
+
+    private synchronized long getWrittenPosition() {
+        return _writtenPosition;
+    }
+
+    private synchronized FileChannel getLogChannel() {
+        return _logChannel;
+    }
+
+    private static void closeQuietly(RandomAccessFile raf) {
+        try {
+            raf.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private File getSnapshotFile(int generation) {
+        return new File(_directory, getFileName(generation, SNAPSHOT_SUFFIX));
+    }
+
+    private File getLogFile(int generation) {
+        return new File(_directory, getFileName(generation, LOG_SUFFIX));
+    }
+
+    private String getFileName(int generation, String suffix) {
+        return (generation == 0) ? _name + suffix : _name + "." + generation
+                + suffix;
+    }
+
+    /**
+     * Returns the generation of a journal file.
+     *
+     * @return the generation; -1 if the file is not a journal file of this
+     *         journal with the specified suffix
+     */
+    private int getGeneration(String fileName, String suffix) {
+        if (!fileName.startsWith(_name) || !fileName.endsWith(suffix)) {
+            return -1;
+        }
+        String generation = fileName.substring(_name.length(), fileName
+                .length()
+                - suffix.length());
+        if (generation.length() == 0) {
+            return 0;
+        }
+        if (!generation.startsWith(".")) {
+            return -1;
+        }
+        try {
+            int n = Integer.parseInt(generation.substring(1));
+            return (n > 0) ? n : -1;
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the generation of the newest snapshot, 0 if there is none.
+     */
+    private int findGeneration() {
+        int generation = 0;
+        String[] fileNames = _directory.list();
+        for (int i = 0; fileNames != null && i < fileNames.length; i++) {
+            generation = Math.max(generation, getGeneration(fileNames[i],
+                SNAPSHOT_SUFFIX));
+        }
+        return generation;
+    }
+
+    /**
+     * Deletes the files of other generations and temporary snapshots left by
+     * an interrupted compaction.
+     */
+    private void deleteStaleFiles() {
+        String[] fileNames = _directory.list();
+        for (int i = 0; fileNames != null && i < fileNames.length; i++) {
+            String fileName = fileNames[i];
+            int generation = Math.max(getGeneration(fileName, SNAPSHOT_SUFFIX),
+                getGeneration(fileName, LOG_SUFFIX));
+            boolean stale = (generation >= 0 && generation != _generation)
+                    || getGeneration(fileName, SNAPSHOT_SUFFIX + TEMP_SUFFIX) >= 0;
+            if (stale) {
+                log.debug("Deleting stale journal file " + fileName + ".");
+                new File(_directory, fileName).delete();
+            }
+        }
+    }
+
+    private void deleteGeneration(int generation) {
+        File snapshotFile = getSnapshotFile(generation);
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            log.warn("Could not delete the old snapshot "
+                    + snapshotFile.getAbsolutePath() + ".");
+        }
+        File logFile = getLogFile(generation);
+        if (logFile.exists() && !logFile.delete()) {
+            log.warn("Could not delete the old journal log "
+                    + logFile.getAbsolutePath() + ".");
+        }
+    }
+
+    /**
+     * Encodes a record as: length, CRC32, type, ID, data.
+     */
+    private byte[] encodeRecord(int type, String id, String data)
+            throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(type);
+        writeString(payload, id);
+        writeString(payload, data);
+        payload.flush();
+        byte[] bytes = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(
+                bytes.length + HEADER_LENGTH);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeInt(bytes.length);
+        record.writeLong(crc.getValue());
+        record.write(bytes);
+        record.flush();
+        return recordBytes.toByteArray();
+    }
+
+    private void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = (s == null) ? new byte[0] : s.getBytes(ENCODING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads records until the end of the stream or the first incomplete or
+     * corrupt record. A record whose length exceeds the rest of the file is
+     * corrupt.
+     */
+    private int readRecords(DataInputStream in, RecordHandler handler,
+            CountingInputStream counter, long fileLength) throws IOException {
+        int count = 0;
+        while (true) {
+            byte[] bytes;
+            long checksum;
+            try {
+                long recordStart = counter.getPosition();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_RECORD_LENGTH
+                        || length > fileLength - recordStart - HEADER_LENGTH) {
+                    log.warn("Found a corrupt " + _name + " journal record.");
+                    break;
+                }
+                checksum = in.readLong();
+                bytes = new byte[length];
+                in.readFully(bytes);
+            } catch (EOFException eofe) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if (crc.getValue() != checksum) {
+                log.warn("Found a " + _name
+                        + " journal record with a bad checksum.");
+                break;
+            }
+            DataInputStream payload = new DataInputStream(
+                    new ByteArrayInputStream(bytes));
+            int type = payload.readByte();
+            String id = readString(payload);
+            String data = readString(payload);
+            counter.markValid();
+            handler.handleRecord(type, id, data);
+            count++;
+        }
+        return count;
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, ENCODING);
+    }
+
+    /**
+     * An input stream that remembers the position after the last complete
+     * record.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long _position;
+        private long _validPosition;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                _position++;
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                _position += n;
+            }
+            return n;
+        }
+
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            _position += skipped;
+            return skipped;
+        }
+
+        public boolean markSupported() {
+            return false;
+        }
+
+        long getPosition() {
+            return _position;
+        }
+
+        void markValid() {
+            _validPosition = _position;
+        }
+
+        long getValidPosition() {
+            return _validPosition;
+        }
+    }
+}
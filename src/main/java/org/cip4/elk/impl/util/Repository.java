@@ -121,6 +121,18 @@ public interface Repository {
      */    
     public OutputStream updateFile(String url);
     
+    /**
+     * Returns whether a URL refers to a private file of this repository, one
+     * that was added using {@link #addPrivateFile(String)} or
+     * {@link #addPrivateFile(String, InputStream)}. Files outside the
+     * repository, such as a client's copy of a JDF file, are never private.
+     * 
+     * @param url the URL to check
+     * @return <code>true</code> if the URL refers to a private file of this
+     *         repository; <code>false</code> otherwise
+     */
+    public boolean isPrivateFile(String url);
+
     /**
      * Removes the file in the repository with the specified URL.
      * 
@@ -0,0 +1,120 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cip4.elk.DefaultConfig;
+import org.cip4.elk.ElkTestCase;
+import org.cip4.elk.impl.jmf.AsyncHttpOutgoingJMFDispatcher;
+import org.cip4.elk.impl.util.FileRepository;
+import org.cip4.elk.impl.util.URLAccessTool;
+import org.cip4.jdflib.jmf.JDFDeviceInfo;
+import org.cip4.jdflib.jmf.JDFQueue;
+import org.springframework.context.support.GenericApplicationContext;
+
+import EDU.oswego.cs.dl.util.concurrent.QueuedExecutor;
+
+public class DeviceContainerTest extends ElkTestCase {
+
+    private GenericApplicationContext _parent;
+    private DeviceContainer _container;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _parent = new GenericApplicationContext();
+        _parent.getDefaultListableBeanFactory().registerSingleton("fileUtil",
+            new URLAccessTool(getResourceAsURL("data").toExternalForm()));
+        _parent.getDefaultListableBeanFactory().registerSingleton(
+            "fileRepository", new FileRepository());
+        _parent.getDefaultListableBeanFactory().registerSingleton(
+            "sharedOutgoingDispatcher",
+            new AsyncHttpOutgoingJMFDispatcher(new DefaultConfig()));
+        _parent.getDefaultListableBeanFactory().registerSingleton(
+            "signalExecutor", new QueuedExecutor());
+        _parent.refresh();
+        _container = new DeviceContainer();
+        _container.setApplicationContext(_parent);
+        _container.setFileUtil((URLAccessTool) _parent.getBean("fileUtil"));
+    }
+
+    public void tearDown() throws Exception {
+        _container.destroy();
+        ((QueuedExecutor) _parent.getBean("signalExecutor"))
+                .shutdownAfterProcessingCurrentlyQueuedTasks();
+        _parent.close();
+        super.tearDown();
+    }
+
+    public void testDevicesHaveSeparateStacks() {
+        Map devices = new HashMap();
+        devices.put("Press1", "Device_Elk_ConventionalPrinting.xml");
+        devices.put("Press2", "Device_Elk_ConventionalPrinting.xml");
+        _container.setDevices(devices);
+        _container.setJMFBaseURL("http://localhost:8080/elk/devices");
+        _container.init();
+
+        List stacks = _container.getDeviceStacks();
+        assertEquals(2, stacks.size());
+        DeviceStack press1 = _container.getDeviceStack("Press1");
+        DeviceStack press2 = _container.getDeviceStack("Press2");
+        assertEquals("Press1", press1.getID());
+        assertEquals("Press2", press2.getID());
+        assertEquals("http://localhost:8080/elk/devices/Press1", press1
+                .getConfig().getJMFURL());
+        assertNotSame(press1.getQueue(), press2.getQueue());
+        assertNotSame(press1.getProcess(), press2.getProcess());
+        assertNotSame(press1.getSubscriptionManager(), press2
+                .getSubscriptionManager());
+    }
+
+    public void testRouting() {
+        _container.setDeviceConfigURL("Device_Elk_ConventionalPrinting.xml");
+        _container.setDeviceCount(3);
+        _container.init();
+
+        assertEquals(3, _container.getDeviceStacks().size());
+        assertSame(_container.getDeviceStack("Elk2").getIncomingDispatcher(),
+            _container.getIncomingDispatcher("Elk2"));
+        assertNotSame(_container.getIncomingDispatcher("Elk1"), _container
+                .getIncomingDispatcher("Elk2"));
+        assertNull(_container.getIncomingDispatcher("Elk4"));
+    }
+
+    public void testFailedInitDestroysCreatedStacks() {
+        final List created = new ArrayList();
+        _container = new DeviceContainer() {
+            protected DeviceStack createDeviceStack(String id,
+                    String deviceConfigUrl) {
+                DeviceStack stack = super.createDeviceStack(id,
+                    deviceConfigUrl);
+                created.add(stack);
+                return stack;
+            }
+        };
+        _container.setApplicationContext(_parent);
+        _container.setFileUtil((URLAccessTool) _parent.getBean("fileUtil"));
+        Map devices = new LinkedHashMap();
+        devices.put("Press1", "Device_Elk_ConventionalPrinting.xml");
+        devices.put("Press2", "NoSuchDevice.xml");
+        _container.setDevices(devices);
+        try {
+            _container.init();
+            fail("The second device stack could not be created.");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+        assertEquals(0, _container.getDeviceStacks().size());
+        assertEquals(1, created.size());
+        DeviceStack press1 = (DeviceStack) created.get(0);
+        assertEquals(JDFQueue.EnumQueueStatus.Held, press1.getQueue()
+                .getQueueStatus());
+        assertEquals(JDFDeviceInfo.EnumDeviceStatus.Stopped, press1
+                .getProcess().getDeviceInfo(false).getDeviceStatus());
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cip4.elk.DefaultConfig;
+import org.cip4.elk.device.DeviceConfig;
+import org.cip4.elk.impl.device.SimpleDeviceConfig;
+import org.cip4.elk.impl.jmf.util.DeviceDetailsCache;
+import org.cip4.elk.impl.queue.MemoryQueue;
+import org.cip4.elk.impl.queue.QueueTestCase;
+import org.cip4.elk.impl.util.FileRepository;
+import org.cip4.elk.impl.util.URLAccessTool;
+import org.cip4.elk.queue.Queue;
+import org.cip4.jdflib.core.AttributeName;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.jmf.JDFDeviceInfo;
+import org.cip4.jdflib.jmf.JDFJobPhase;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+import org.cip4.jdflib.node.JDFNode;
+import org.cip4.jdflib.resource.JDFDevice;
+import org.cip4.jdflib.util.JDFDate;
+
+public class BaseProcessTest extends QueueTestCase {
+
+    private List _readers;
+    private List _postProcessors;
+    private List _executedNodes;
+    private List _jobPhases;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _readers = new ArrayList();
+        _postProcessors = new ArrayList();
+        _executedNodes = new ArrayList();
+        _jobPhases = new ArrayList();
+    }
+
+    public void testPipelined() throws Exception {
+        runJobs(true);
+        synchronized (this) {
+            assertEquals(2, _executedNodes.size());
+            // The second job was read while the first job ran
+            assertEquals(2, _readers.size());
+            assertTrue(_readers.contains("job1 TestProcess"));
+            assertTrue(_readers
+                    .contains("job2 ConventionalPrinting prefetcher"));
+            assertEquals(2, _postProcessors.size());
+            assertEquals("ConventionalPrinting post-processor",
+                _postProcessors.get(0));
+        }
+    }
+
+    public void testNotPipelined() throws Exception {
+        runJobs(false);
+        synchronized (this) {
+            assertEquals(2, _executedNodes.size());
+            assertEquals("job2 TestProcess", _readers.get(1));
+            assertFalse("ConventionalPrinting post-processor"
+                    .equals(_postProcessors.get(0)));
+        }
+    }
+
+    public void testPublishedJobPhase() throws Exception {
+        runJobs(true);
+        synchronized (this) {
+            assertEquals(4, _jobPhases.size());
+            // Each caller gets its own copy of the published JobPhase
+            JDFJobPhase phase = (JDFJobPhase) _jobPhases.get(0);
+            assertNotNull(phase);
+            assertNotSame(phase, _jobPhases.get(1));
+            assertNotSame(phase.getOwnerDocument(),
+                ((JDFJobPhase) _jobPhases.get(1)).getOwnerDocument());
+            assertEquals(phase.toXML(), ((JDFJobPhase) _jobPhases.get(1))
+                    .toXML());
+            assertEquals(((JDFNode) _executedNodes.get(0)).getJobID(true),
+                phase.getJobID());
+        }
+    }
+
+    public void testClaimedQueueEntryIsReleased() throws Exception {
+        MemoryQueue queue = new MemoryQueue(new DefaultConfig(), 10,
+                new URLAccessTool(getResourceAsURL(".").toString()));
+        TestProcess process = new TestProcess(queue);
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams("job1");
+        queue.addQueueEntry(qsp);
+        JDFQueueEntry qe = queue.claimFirstRunnableQueueEntry(new JDFDate());
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Running, queue
+                .getQueueEntry(qe.getQueueEntryID()).getQueueEntryStatus());
+        // The process has not been initialized and is not idle
+        assertNull(process.runJob(qe, qsp));
+        JDFQueueEntry released = queue.getQueueEntry(qe.getQueueEntryID());
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Waiting, released
+                .getQueueEntryStatus());
+        assertFalse(released.hasAttribute(AttributeName.STARTTIME));
+        assertEquals(qe.getQueueEntryID(), queue.getFirstRunnableQueueEntry()
+                .getQueueEntryID());
+    }
+
+    public void testRunsWhenIdleAgain() throws Exception {
+        MemoryQueue queue = new MemoryQueue(new DefaultConfig(), 10,
+                new URLAccessTool(getResourceAsURL(".").toString()));
+        TestProcess process = new TestProcess(queue);
+        queue.setProcess(process);
+        process.addProcessStatusListener(queue);
+        process.addQueueEntryEventListener(queue);
+        process.init();
+        try {
+            process._state.setState(JDFDeviceInfo.EnumDeviceStatus.Down);
+            queue.addQueueEntry(loadQueueSubmissionParams("job1"));
+            Thread.sleep(200);
+            assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Waiting, queue
+                    .getQueueEntry("1").getQueueEntryStatus());
+            // Becoming idle wakes up the process
+            process._state.setState(JDFDeviceInfo.EnumDeviceStatus.Idle);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (countCompleted(queue, 1) < 1
+                    && System.currentTimeMillis() < deadline) {
+                queue.awaitChange(queue.getVersion(), 100);
+            }
+            assertEquals(1, countCompleted(queue, 1));
+        } finally {
+            process.destroy();
+        }
+    }
+
+    public void testDeviceInfo() throws Exception {
+        JDFDevice device = (JDFDevice) new JDFDoc(ElementName.DEVICE)
+                .getRoot();
+        device.setDeviceID("Elk");
+        SimpleDeviceConfig config = new SimpleDeviceConfig();
+        config.setDeviceConfig(device);
+        MemoryQueue queue = new MemoryQueue(config, 10, new URLAccessTool(
+                getResourceAsURL(".").toString()));
+        TestProcess process = new TestProcess(config, queue);
+        process.publishStatus();
+        // Status queries take the Device from the DeviceDetailsCache
+        JDFDeviceInfo deviceInfo = process.getDeviceInfo(true);
+        assertNull(deviceInfo.getDevice());
+        assertNotSame(deviceInfo, process.getDeviceInfo(true));
+        deviceInfo.setDeviceStatus(JDFDeviceInfo.EnumDeviceStatus.Down);
+        assertFalse(JDFDeviceInfo.EnumDeviceStatus.Down.equals(process
+                .getDeviceInfo(true).getDeviceStatus()));
+
+        config = new SimpleDeviceConfig() {
+            public DeviceDetailsCache getDeviceDetailsCache() {
+                return null;
+            }
+        };
+        config.setDeviceConfig(device);
+        process = new TestProcess(config, queue);
+        process.publishStatus();
+        assertEquals("Elk", process.getDeviceInfo(true).getDevice()
+                .getDeviceID());
+        assertEquals("Elk", process.getDeviceInfo(false).getDevice()
+                .getDeviceID());
+    }
+
+    private void runJobs(boolean pipelined) throws Exception {
+        MemoryQueue queue = new MemoryQueue(new DefaultConfig(), 10,
+                new URLAccessTool(getResourceAsURL(".").toString()));
+        TestProcess process = new TestProcess(queue);
+        process.setPipelined(pipelined);
+        queue.setProcess(process);
+        process.addProcessStatusListener(queue);
+        process.addQueueEntryEventListener(queue);
+        queue.addQueueEntry(loadQueueSubmissionParams("job1"));
+        queue.addQueueEntry(loadQueueSubmissionParams("job2"));
+        process.init();
+        try {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (countCompleted(queue, 2) < 2
+                    && System.currentTimeMillis() < deadline) {
+                queue.awaitChange(queue.getVersion(), 100);
+            }
+            assertEquals(2, countCompleted(queue, 2));
+        } finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * A process that records which threads read and post-process its jobs.
+     * The first job runs long enough for the second job to be prefetched.
+     */
+    private class TestProcess extends BaseProcess {
+
+        TestProcess(Queue queue) throws IOException {
+            this(null, queue);
+        }
+
+        TestProcess(DeviceConfig config, Queue queue) throws IOException {
+            super(config, queue, null, null, new FileRepository() {
+                public InputStream getFile(String url) {
+                    synchronized (BaseProcessTest.this) {
+                        _readers.add(url + " "
+                                + Thread.currentThread().getName());
+                    }
+                    return getResourceAsStream(_jdfFilesPath
+                            + "Elk_ConventionalPrinting.jdf");
+                }
+            });
+            setProcessTypes(new String[] { "ConventionalPrinting" });
+            _thread = new Thread(this, "TestProcess");
+        }
+
+        protected void executeNode(JDFNode processNode) {
+            _state.setJdf(processNode);
+            synchronized (BaseProcessTest.this) {
+                _executedNodes.add(processNode);
+                _jobPhases.add(getJobPhase());
+                _jobPhases.add(getJobPhase());
+            }
+            sleepAWhile(1);
+        }
+
+        protected void postProcessJob(JDFQueueEntry qe, JDFNode jdf)
+                throws IOException {
+            synchronized (BaseProcessTest.this) {
+                _postProcessors.add(Thread.currentThread().getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cip4.elk.DefaultConfig;
+import org.cip4.elk.impl.queue.MemoryQueue;
+import org.cip4.elk.impl.queue.QueueTestCase;
+import org.cip4.elk.impl.util.URLAccessTool;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.core.JDFElement.EnumNodeStatus;
+import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.core.KElement;
+import org.cip4.jdflib.node.JDFNode;
+import org.cip4.jdflib.util.JDFDate;
+
+/**
+ * Tests that a {@link JobCheckpointer} recovers the checkpoints of running
+ * jobs from its journal.
+ */
+public class JobCheckpointerTest extends QueueTestCase {
+
+    private File _checkpointDir;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _checkpointDir = File.createTempFile("checkpoints", "");
+        _checkpointDir.delete();
+        _checkpointDir.mkdirs();
+    }
+
+    public void tearDown() throws Exception {
+        File[] files = _checkpointDir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        _checkpointDir.delete();
+        super.tearDown();
+    }
+
+    public void testRecover() throws Exception {
+        JDFNode jdf = new JDFDoc("JDF").getJDFRoot();
+        KElement phaseTime = jdf.getCreateAuditPool().addPhaseTime(
+            EnumNodeStatus.Setup, "Elk", null);
+        Map audit = Collections.singletonMap(phaseTime
+                .getAttribute("ID"), phaseTime.toXML());
+
+        JobCheckpointer checkpointer = createCheckpointer();
+        assertNull(checkpointer.getRecoveredCheckpoint("qe1", "n1"));
+        checkpointer.checkpoint(createCheckpoint("qe1", 1, 0, audit));
+        checkpointer.checkpoint(createCheckpoint("qe1", 3, 50,
+            Collections.EMPTY_MAP));
+        checkpointer.checkpoint(createCheckpoint("qe2", 2, 10, audit));
+        checkpointer.complete("qe2");
+        checkpointer.close();
+
+        checkpointer = createCheckpointer();
+        assertNull(checkpointer.getRecoveredCheckpoint("qe2", "n1"));
+        JobCheckpoint recovered = checkpointer.getRecoveredCheckpoint("qe1",
+            "n1");
+        assertEquals(3, recovered.getPhase());
+        assertEquals(50, recovered.getPhaseGood());
+        assertEquals(150, recovered.getGood());
+        assertTrue(recovered.isScenario("test", 42));
+        assertFalse(recovered.isScenario("test", 43));
+        assertFalse(recovered.isScenario("other", 42));
+        assertTrue(recovered.isJob("job1", "file:/job1.jdf"));
+        assertFalse(recovered.isJob("job1", "file:/job2.jdf"));
+        assertFalse(recovered.isJob("job2", "file:/job1.jdf"));
+        assertEquals(1, recovered.getAudits().size());
+        KElement restored = new JDFParser().parseString(
+            (String) recovered.getAudits().get(phaseTime.getAttribute("ID")))
+                .getRoot();
+        assertEquals("PhaseTime", restored.getLocalName());
+        assertEquals("Setup", restored.getAttribute("Status"));
+
+        // Audits of later checkpoints are added to the recovered ones, and a
+        // changed audit replaces its earlier version
+        KElement processRun = jdf.getAuditPool().addProcessRun(
+            EnumNodeStatus.Completed, "Elk", null);
+        phaseTime.setAttribute("End", new JDFDate().getDateTimeISO());
+        phaseTime.setAttribute("Status", "InProgress");
+        Map audits = new HashMap();
+        audits.put(phaseTime.getAttribute("ID"), phaseTime.toXML());
+        audits.put(processRun.getAttribute("ID"), processRun.toXML());
+        checkpointer.checkpoint(createCheckpoint("qe1", 4, 0, audits));
+        checkpointer.close();
+        checkpointer = createCheckpointer();
+        recovered = checkpointer.getRecoveredCheckpoint("qe1", "n1");
+        assertEquals(4, recovered.getPhase());
+        assertEquals(2, recovered.getAudits().size());
+        restored = new JDFParser().parseString(
+            (String) recovered.getAudits().get(phaseTime.getAttribute("ID")))
+                .getRoot();
+        assertEquals("InProgress", restored.getAttribute("Status"));
+
+        checkpointer.complete("qe1");
+        assertNull(checkpointer.getRecoveredCheckpoint("qe1", "n1"));
+        checkpointer.close();
+        checkpointer = createCheckpointer();
+        assertNull(checkpointer.getRecoveredCheckpoint("qe1", "n1"));
+        checkpointer.close();
+    }
+
+    public void testOtherScenario() throws Exception {
+        String now = new JDFDate().getDateTimeISO();
+        JobCheckpointer checkpointer = createCheckpointer();
+        checkpointer.checkpoint(createCheckpoint("qe1", 3, 50, Collections
+                .singletonMap("a1", "<PhaseTime ID=\"a1\"/>")));
+        // A checkpoint of another scenario starts over
+        checkpointer.checkpoint(new JobCheckpoint("qe1", "n1", "job1",
+                "file:/job1.jdf", "other", 42, 1, 0, 0, 0, 0, now, now,
+                Collections.EMPTY_MAP));
+        checkpointer.close();
+        checkpointer = createCheckpointer();
+        JobCheckpoint recovered = checkpointer.getRecoveredCheckpoint("qe1",
+            "n1");
+        assertTrue(recovered.isScenario("other", 42));
+        assertEquals(1, recovered.getPhase());
+        assertEquals(0, recovered.getAudits().size());
+        checkpointer.close();
+    }
+
+    public void testDiscardUnmatched() throws Exception {
+        MemoryQueue queue = new MemoryQueue(new DefaultConfig(), 10,
+                new URLAccessTool(getResourceAsURL(".").toString()));
+        queue.addQueueEntry(loadQueueSubmissionParams("file:/job1.jdf"));
+        queue.addQueueEntry(loadQueueSubmissionParams("file:/job2.jdf"));
+        JobCheckpointer checkpointer = createCheckpointer();
+        checkpointer.checkpoint(createCheckpoint("1", 3, 50,
+            Collections.EMPTY_MAP));
+        // The queue entry ID now belongs to another job
+        checkpointer.checkpoint(createCheckpoint("2", 3, 50,
+            Collections.EMPTY_MAP));
+        // The queue entry is gone
+        checkpointer.checkpoint(createCheckpoint("3", 3, 50,
+            Collections.EMPTY_MAP));
+        checkpointer.close();
+
+        checkpointer = createCheckpointer();
+        checkpointer.discardUnmatched(queue);
+        assertNotNull(checkpointer.getRecoveredCheckpoint("1", "n1"));
+        assertNull(checkpointer.getRecoveredCheckpoint("2", "n1"));
+        assertNull(checkpointer.getRecoveredCheckpoint("3", "n1"));
+        checkpointer.close();
+        checkpointer = createCheckpointer();
+        assertNotNull(checkpointer.getRecoveredCheckpoint("1", "n1"));
+        assertNull(checkpointer.getRecoveredCheckpoint("2", "n1"));
+        assertNull(checkpointer.getRecoveredCheckpoint("3", "n1"));
+        checkpointer.close();
+        queue.destroy();
+    }
+
+    public void testCompaction() throws Exception {
+        JobCheckpointer checkpointer = createCheckpointer();
+        for (int i = 0; i < 2500; i++) {
+            checkpointer.checkpoint(createCheckpoint("qe1", i, i,
+                Collections.EMPTY_MAP));
+        }
+        checkpointer.flush();
+        checkpointer.close();
+        checkpointer = createCheckpointer();
+        assertEquals(2499, checkpointer.getRecoveredCheckpoint("qe1", "n1")
+                .getPhase());
+        checkpointer.close();
+    }
+
+    private JobCheckpointer createCheckpointer() throws Exception {
+        JobCheckpointer checkpointer = new JobCheckpointer(_checkpointDir
+                .getAbsolutePath(), "test checkpointer");
+        checkpointer.setSyncEnabled(false);
+        return checkpointer;
+    }
+
+    private JobCheckpoint createCheckpoint(String queueEntryId, int phase,
+            int phaseGood, Map audits) {
+        String now = new JDFDate().getDateTimeISO();
+        return new JobCheckpoint(queueEntryId, "n1", "job1",
+                "file:/job1.jdf", "test", 42, phase,
+                phaseGood, 0, 100 + phaseGood, 10, now, now, audits);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cip4.elk.ElkTestCase;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.core.JDFResourceLink.EnumUsage;
+import org.cip4.jdflib.node.JDFNode;
+import org.cip4.jdflib.resource.JDFResource;
+
+public class NodeGraphTest extends ElkTestCase {
+
+    private JDFNode _root;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _root = new JDFDoc("JDF").getJDFRoot();
+        _root.setType("ProcessGroup", false);
+    }
+
+    public void testDependencies() {
+        JDFNode first = _root.addJDFNode("Approval");
+        JDFNode second = _root.addJDFNode("Approval");
+        JDFNode independent = _root.addJDFNode("Approval");
+        JDFResource proof = first.addResource("Component", EnumUsage.Output);
+        second.linkResource(proof, true, false);
+        independent.addResource("Component", EnumUsage.Output);
+
+        NodeGraph graph = new NodeGraph(toList(first, second, independent));
+        assertEquals(3, graph.size());
+        assertEquals(0, graph.getDependencies(0).length);
+        assertEquals(1, graph.getDependencies(1).length);
+        assertEquals(0, graph.getDependencies(1)[0]);
+        assertEquals(0, graph.getDependencies(2).length);
+        assertEquals(1, graph.getDependants(0).length);
+        assertEquals(1, graph.getDependants(0)[0]);
+        assertEquals(0, graph.getDependants(2).length);
+    }
+
+    public void testSeveralProducers() {
+        JDFNode first = _root.addJDFNode("Approval");
+        JDFNode second = _root.addJDFNode("Approval");
+        JDFNode consumer = _root.addJDFNode("Approval");
+        JDFResource proof = first.addResource("Component", EnumUsage.Output);
+        second.linkResource(proof, false, false);
+        consumer.linkResource(proof, true, false);
+
+        // The consumer waits for every node that produces its input
+        NodeGraph graph = new NodeGraph(toList(first, second, consumer));
+        assertEquals(0, graph.getDependencies(0).length);
+        assertEquals(0, graph.getDependencies(1).length);
+        assertEquals(2, graph.getDependencies(2).length);
+        assertEquals(0, graph.getDependencies(2)[0]);
+        assertEquals(1, graph.getDependencies(2)[1]);
+        assertEquals(2, graph.getDependants(0)[0]);
+        assertEquals(2, graph.getDependants(1)[0]);
+    }
+
+    public void testCycle() {
+        JDFNode first = _root.addJDFNode("Approval");
+        JDFNode second = _root.addJDFNode("Approval");
+        JDFResource firstOut = first.addResource("Component", EnumUsage.Output);
+        JDFResource secondOut = second.addResource("Component",
+            EnumUsage.Output);
+        first.linkResource(secondOut, true, false);
+        second.linkResource(firstOut, true, false);
+
+        // The nodes are executed in document order
+        NodeGraph graph = new NodeGraph(toList(first, second, null));
+        assertEquals(0, graph.getDependencies(0).length);
+        assertEquals(1, graph.getDependencies(1).length);
+        assertEquals(0, graph.getDependencies(1)[0]);
+    }
+
+    private List toList(JDFNode first, JDFNode second, JDFNode third) {
+        List nodes = new ArrayList();
+        nodes.add(first);
+        nodes.add(second);
+        if (third != null) {
+            nodes.add(third);
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.cip4.elk.DefaultConfig;
+import org.cip4.elk.impl.queue.MemoryQueue;
+import org.cip4.elk.impl.queue.QueueTestCase;
+import org.cip4.elk.impl.util.URLAccessTool;
+import org.cip4.elk.queue.Queue;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+import org.cip4.jdflib.node.JDFNode;
+
+public class ProcessPoolTest extends QueueTestCase {
+
+    private int _running;
+    private int _maxRunning;
+    private List _runQueueEntryIds;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _running = 0;
+        _maxRunning = 0;
+        _runQueueEntryIds = new ArrayList();
+    }
+
+    public void testLanesRunQueueEntriesInParallel() throws Exception {
+        MemoryQueue queue = new MemoryQueue(new DefaultConfig(), 10,
+                new URLAccessTool(getResourceAsURL(".").toString()));
+        ProcessPool pool = new ProcessPool();
+        List lanes = new ArrayList();
+        for (int i = 0; i < 3; i++) {
+            lanes.add(new TestProcess(queue));
+        }
+        pool.setProcesses(lanes);
+        queue.setProcess(pool);
+        pool.addProcessStatusListener(queue);
+        pool.addQueueEntryEventListener(queue);
+        pool.init();
+        try {
+            JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+            for (int i = 0; i < 6; i++) {
+                queue.addQueueEntry(qsp);
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (countCompleted(queue, 6) < 6
+                    && System.currentTimeMillis() < deadline) {
+                queue.awaitChange(queue.getVersion(), 100);
+            }
+            assertEquals(6, countCompleted(queue, 6));
+        } finally {
+            pool.destroy();
+        }
+        synchronized (this) {
+            // Each queue entry was run exactly once
+            assertEquals(6, _runQueueEntryIds.size());
+            assertEquals(6, new HashSet(_runQueueEntryIds).size());
+            assertTrue(_maxRunning > 1);
+        }
+    }
+
+    public void testStatus() {
+        ProcessPool pool = new ProcessPool();
+        List lanes = new ArrayList();
+        TestProcess lane1 = new TestProcess(null);
+        TestProcess lane2 = new TestProcess(null);
+        lanes.add(lane1);
+        lanes.add(lane2);
+        pool.setProcesses(lanes);
+        lane1.setState(lane1._state.IDLE);
+        lane2.setState(lane2._state.STOPPED);
+        assertEquals(lane1._state.IDLE, pool.getStatus());
+        lane2.setState(lane2._state.RUNNING);
+        assertEquals(lane2._state.RUNNING, pool.getStatus());
+        assertNull(pool.getRunningQueueEntry());
+        assertTrue(pool.getJobPhases().isEmpty());
+    }
+
+    /**
+     * A lane that records which queue entries it runs and how many lanes run
+     * at the same time.
+     */
+    private class TestProcess extends BaseProcess {
+
+        TestProcess(Queue queue) {
+            super(null, queue, null, null, null);
+            setProcessTypes(new String[] { "ConventionalPrinting" });
+        }
+
+        void setState(org.cip4.jdflib.jmf.JDFDeviceInfo.EnumDeviceStatus status) {
+            _state.setState(status);
+        }
+
+        public JDFNode runJob(String jdfUrl) throws Exception {
+            synchronized (ProcessPoolTest.this) {
+                _runQueueEntryIds.add(_runningQueueEntry.getQueueEntryID());
+                _running++;
+                _maxRunning = Math.max(_maxRunning, _running);
+            }
+            _state.setState(_state.RUNNING);
+            Thread.sleep(100);
+            synchronized (ProcessPoolTest.this) {
+                _running--;
+            }
+            return new JDFDoc(ElementName.JDF).getJDFRoot();
+        }
+
+        protected void postProcessJob(JDFQueueEntry qe, JDFNode jdf)
+                throws IOException {
+        }
+
+        protected void executeNode(JDFNode processNode) {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process;
+
+import org.cip4.elk.ElkTestCase;
+import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.core.JDFPartAmount;
+import org.cip4.jdflib.core.JDFResourceLink;
+import org.cip4.jdflib.datatypes.JDFAttributeMap;
+import org.cip4.jdflib.node.JDFNode;
+import org.cip4.jdflib.pool.JDFAmountPool;
+import org.cip4.jdflib.resource.JDFResource;
+
+public class ProductionCountersTest extends ElkTestCase {
+
+    public void testMaterialize() throws Exception {
+        JDFNode jdf = new JDFParser().parseStream(
+            getResourceAsStream(_jdfFilesPath + "Elk_ConventionalPrinting.jdf"))
+                .getJDFRoot();
+        ConventionalPrintingProcess process = new ConventionalPrintingProcess(
+                null, null, null, null, null);
+        JDFResourceLink amountOut = process.getOutputResourceLink(jdf);
+        JDFResource resource = (JDFResource) amountOut.getTarget();
+        JDFAmountPool amountPool = amountOut.getCreateAmountPool();
+        JDFPartAmount good = amountPool.getCreatePartAmount(process
+                .getCreateConditionPart(resource, "Good").getPartMap());
+        JDFPartAmount waste = amountPool.getCreatePartAmount(process
+                .getCreateConditionPart(resource, "Waste").getPartMap());
+
+        ProductionCounters counters = new ProductionCounters();
+        counters.bind(amountOut, null, good, waste);
+        counters.addGood(1);
+        counters.addGood(1);
+        counters.addWaste(3);
+        assertEquals(2, counters.getGood());
+        assertEquals(3, counters.getWaste());
+        assertEquals(5, counters.getAmount());
+        // Nothing is written to the JDF until the counts are materialized
+        assertEquals("", good.getAttribute("ActualAmount"));
+        counters.materialize();
+        assertEquals("2", good.getAttribute("ActualAmount"));
+        assertEquals("3", waste.getAttribute("ActualAmount"));
+        assertEquals(5.0, amountOut.getActualAmount(new JDFAttributeMap()),
+            0.001);
+
+        // Binding resets the job's counts but not the device's counter
+        counters.bind(amountOut, null, good, waste);
+        counters.addGood(1);
+        assertEquals(1, counters.getAmount());
+        assertEquals(6, counters.getTotalProductionCounter());
+        counters.materialize();
+        assertEquals("1", good.getAttribute("ActualAmount"));
+        assertEquals("0", waste.getAttribute("ActualAmount"));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.device.process.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.cip4.elk.ElkTestCase;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.node.JDFNode;
+
+public class SimulationScenarioTest extends ElkTestCase {
+
+    private SimulationScenario _scenario;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _scenario = SimulationScenarioParser.parse(
+            getResourceAsStream(_testDataPath
+                    + "SimulationScenario_Breakdowns.xml"), "test");
+    }
+
+    public void testDefaultScenario() {
+        ConfSimuHandler simulation = new ConfSimuHandler();
+        SimulationScenario scenario = simulation.getActiveScenario();
+        assertEquals(ConfSimuHandler.DEFAULT_SCENARIO, scenario.getName());
+        assertEquals(40, simulation.getSimuPhases().size());
+        // Without probabilities and jitter every job runs all phases
+        List run = scenario.createRun("1");
+        assertEquals(scenario.getPhases(), run);
+        Setup setup = (Setup) run.get(0);
+        assertEquals(5, setup.getPhaseLength());
+        assertSame(DeviceStatusDetails.WARMINGUP, setup.getStatusDetails());
+    }
+
+    public void testReproducibleRuns() {
+        assertEquals("breakdowns", _scenario.getName());
+        assertEquals(42, _scenario.getSeed());
+        assertEquals(6, _scenario.getPhases().size());
+        List first = describe(_scenario.createRun("1"));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(first, describe(_scenario.createRun("1")));
+        }
+        // Other jobs get other runs
+        Set runs = new HashSet();
+        for (int i = 0; i < 10; i++) {
+            runs.add(describe(_scenario.createRun(Integer.toString(i))));
+        }
+        assertTrue(runs.size() > 1);
+    }
+
+    public void testProbabilityAndJitter() {
+        List run = _scenario.createRun("1");
+        // The Cleanup phase never occurs
+        assertTrue(run.size() >= 3 && run.size() <= 5);
+        assertTrue(run.get(0) instanceof Setup);
+        long length = ((Setup) run.get(0)).getPhaseLength();
+        assertTrue(length >= 3 && length <= 7);
+        Running running = (Running) run.get(1);
+        assertTrue(running.getGoodVariance() >= 45
+                && running.getGoodVariance() <= 55);
+        assertSame(DeviceStatusDetails.GOOD, running.getStatusDetails());
+        assertTrue(run.get(run.size() - 1) instanceof Running);
+    }
+
+    public void testSwitchScenario() {
+        ConfSimuHandler simulation = new ConfSimuHandler();
+        simulation.setScenarioFiles(Collections.singletonList(_testDataPath
+                + "SimulationScenario_Breakdowns.xml"));
+        simulation.setJobTypeScenarios(Collections.singletonMap("Approval",
+            "breakdowns"));
+        simulation.init();
+        assertEquals(2, simulation.getScenarioNames().size());
+
+        JDFNode printing = new JDFDoc("JDF").getJDFRoot();
+        printing.setType("ConventionalPrinting", false);
+        JDFNode approval = new JDFDoc("JDF").getJDFRoot();
+        approval.setType("Approval", false);
+        assertEquals(ConfSimuHandler.DEFAULT_SCENARIO, simulation.getScenario(
+            printing).getName());
+        assertEquals("breakdowns", simulation.getScenario(approval).getName());
+
+        simulation.setActiveScenario("breakdowns");
+        assertEquals("breakdowns", simulation.getScenario(printing).getName());
+        assertEquals(6, simulation.getSimuPhases().size());
+        try {
+            simulation.setActiveScenario("unknown");
+            fail("Switched to an unknown scenario");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private List describe(List phases) {
+        List description = new ArrayList();
+        for (int i = 0; i < phases.size(); i++) {
+            SimulationPhaseInterface phase = (SimulationPhaseInterface) phases
+                    .get(i);
+            description.add(phase.getJmfComment() + " "
+                    + phase.getPhaseLength() + " " + phase.getGoodVariance()
+                    + " " + phase.getWasteVariance());
+        }
+        return description;
+    }
+}
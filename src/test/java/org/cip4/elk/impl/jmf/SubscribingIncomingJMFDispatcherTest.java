@@ -1,15 +1,29 @@
 package org.cip4.elk.impl.jmf;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
 import org.cip4.elk.Config;
 import org.cip4.elk.DefaultConfig;
 import org.cip4.elk.ElkTestCase;
+import org.cip4.elk.JDFElementFactory;
+import org.cip4.elk.impl.queue.MemoryQueue;
+import org.cip4.elk.impl.queue.jmf.HoldQueueJMFProcessor;
+import org.cip4.elk.impl.queue.jmf.RemoveQueueEntryJMFProcessor;
+import org.cip4.elk.impl.queue.jmf.ResumeQueueJMFProcessor;
+import org.cip4.elk.impl.util.URLAccessTool;
 import org.cip4.elk.jmf.IncomingJMFDispatcher;
 import org.cip4.elk.jmf.JMFProcessor;
+import org.cip4.elk.queue.QueueStatusEvent;
+import org.cip4.elk.queue.QueueStatusListener;
+import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.jmf.JDFCommand;
 import org.cip4.jdflib.jmf.JDFJMF;
 import org.cip4.jdflib.jmf.JDFMessage;
+import org.cip4.jdflib.jmf.JDFQueue;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+import org.cip4.jdflib.jmf.JDFResponse;
 
 /**
  * @author clabu    
@@ -95,6 +109,73 @@ public class SubscribingIncomingJMFDispatcherTest extends ElkTestCase {
     
     
     
+    /**
+     * Tests that several queue commands in one JMF are processed as one batch
+     * that sends a single QueueStatus event, that each command gets a
+     * response, and that submissions are dispatched outside the batch.
+     */
+    public void testDispatchQueueBatch() throws Exception {
+        Config config = new DefaultConfig();
+        config.setID("Elk");
+        MemoryQueue queue = new MemoryQueue(config, 2, new URLAccessTool(
+                getResourceAsURL(".").toString()));
+        JDFQueueSubmissionParams qsp = new JDFParser().parseStream(
+            getResourceAsStream(_testDataPath + "SubmitQueueEntry.jmf"))
+                .getJMFRoot().getCommand().getQueueSubmissionParams(0);
+        String id1 = queue.addQueueEntry(qsp).getQueueEntryID();
+        String id2 = queue.addQueueEntry(qsp).getQueueEntryID();
+        assertEquals(JDFQueue.EnumQueueStatus.Full, queue.getQueueStatus());
+        final List events = new java.util.ArrayList();
+        final List submitLocked = new java.util.ArrayList();
+        queue.addQueueStatusListener(new QueueStatusListener() {
+            public void queueStatusChanged(QueueStatusEvent event) {
+                events.add(event.getQueueStatus());
+            }
+        });
+
+        SubscribingIncomingJMFDispatcher disp = new SubscribingIncomingJMFDispatcher();
+        disp.registerDefaultProcessor(new NotImplementedJMFProcessor());
+        disp.registerProcessor("RemoveQueueEntry",
+            new RemoveQueueEntryJMFProcessor(config, queue));
+        disp.registerProcessor("HoldQueue", new HoldQueueJMFProcessor(config,
+                queue));
+        disp.registerProcessor("ResumeQueue", new ResumeQueueJMFProcessor(
+                config, queue));
+        final MemoryQueue lockedQueue = queue;
+        disp.registerProcessor("SubmitQueueEntry", new AbstractJMFProcessor() {
+            public int processMessage(JDFMessage input, JDFResponse output) {
+                submitLocked.add(Boolean.valueOf(lockedQueue.getLock()
+                        .isWriteLockHeld()));
+                return 0;
+            }
+        });
+        disp.setConfig(config);
+        disp.setQueue(queue);
+
+        JDFJMF jmfIn = JDFElementFactory.getInstance().createJMF();
+        appendCommand(jmfIn, "C1", "RemoveQueueEntry").appendQueueEntryDef()
+                .setQueueEntryID(id1);
+        appendCommand(jmfIn, "C2", "HoldQueue");
+        appendCommand(jmfIn, "C3", "ResumeQueue");
+        appendCommand(jmfIn, "C4", "RemoveQueueEntry").appendQueueEntryDef()
+                .setQueueEntryID(id2);
+        appendCommand(jmfIn, "C5", "SubmitQueueEntry");
+        JDFJMF jmfOut = disp.dispatchJMF(jmfIn);
+
+        assertEquals(5, jmfOut.getMessageVector().size());
+        assertEquals(0, queue.getQueueEntryCount());
+        assertEquals(1, events.size());
+        assertEquals(JDFQueue.EnumQueueStatus.Waiting, events.get(0));
+        assertEquals(Collections.singletonList(Boolean.FALSE), submitLocked);
+    }
+
+    private JDFCommand appendCommand(JDFJMF jmf, String id, String type) {
+        JDFCommand command = jmf.appendCommand();
+        command.setID(id);
+        command.setType(type);
+        return command;
+    }
+
     public void testRegisterProcessor()
     {
         IncomingJMFDispatcher disp = new SubscribingIncomingJMFDispatcher();
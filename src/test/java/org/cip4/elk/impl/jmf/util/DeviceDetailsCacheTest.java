@@ -0,0 +1,82 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.jmf.util;
+
+import org.cip4.elk.ElkTestCase;
+import org.cip4.elk.JDFElementFactory;
+import org.cip4.elk.impl.device.SimpleDeviceConfig;
+import org.cip4.jdflib.auto.JDFAutoDeviceFilter.EnumDeviceDetails;
+import org.cip4.jdflib.auto.JDFAutoDeviceInfo.EnumDeviceStatus;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.jmf.JDFDeviceInfo;
+import org.cip4.jdflib.resource.JDFDevice;
+import org.cip4.jdflib.resource.JDFDeviceList;
+
+public class DeviceDetailsCacheTest extends ElkTestCase {
+
+    private SimpleDeviceConfig _config;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _config = new SimpleDeviceConfig();
+        _config.setDeviceConfig((JDFDevice) getResourceAsJDF(_testDataPath
+                + "Device_Elk_ConventionalPrinting.xml"));
+    }
+
+    public void testGetDevice() {
+        DeviceDetailsCache devices = _config.getDeviceDetailsCache();
+        assertNull(devices.getDevice(EnumDeviceDetails.None.getName()));
+        assertNull(devices.getDevice(EnumDeviceDetails.Brief.getName()));
+        JDFDevice details = devices.getDevice(EnumDeviceDetails.Details
+                .getName());
+        assertEquals(0, details.numChildElements(ElementName.DEVICECAP, null));
+        JDFDevice full = devices.getDevice(EnumDeviceDetails.Full.getName());
+        assertEquals(1, full.numChildElements(ElementName.DEVICECAP, null));
+        // Filtering did not modify the configuration
+        assertEquals(1, _config.getDeviceConfig().numChildElements(
+            ElementName.DEVICECAP, null));
+    }
+
+    public void testConfigurationChanged() {
+        DeviceDetailsCache devices = _config.getDeviceDetailsCache();
+        assertSame(devices, _config.getDeviceDetailsCache());
+        _config.setID("Changed");
+        devices = _config.getDeviceDetailsCache();
+        assertEquals("Changed", devices.getDevice(
+            EnumDeviceDetails.Details.getName()).getDeviceID());
+    }
+
+    public void testAppendDeviceInfo() {
+        JDFDeviceInfo deviceInfo = (JDFDeviceInfo) JDFElementFactory
+                .getInstance().createJDFElement(ElementName.DEVICEINFO);
+        deviceInfo.copyElement(_config.getDeviceConfig(), null);
+        deviceInfo.setDeviceStatus(EnumDeviceStatus.Running);
+        deviceInfo.appendElement(ElementName.JOBPHASE, null);
+
+        BaseICSDeviceFilter filter = new BaseICSDeviceFilter();
+        String[] levels = new String[] { EnumDeviceDetails.None.getName(),
+                EnumDeviceDetails.Brief.getName(),
+                EnumDeviceDetails.Details.getName(),
+                EnumDeviceDetails.Full.getName() };
+        for (int i = 0; i < levels.length; i++) {
+            JDFDeviceList expected = (JDFDeviceList) JDFElementFactory
+                    .getInstance().createJDFElement(ElementName.DEVICELIST);
+            JDFDeviceInfo expectedInfo = (JDFDeviceInfo) expected
+                    .copyElement(deviceInfo, null);
+            filter.applyDetails(expectedInfo, levels[i]);
+            JDFDeviceList actual = (JDFDeviceList) JDFElementFactory
+                    .getInstance().createJDFElement(ElementName.DEVICELIST);
+            filter.appendDeviceInfo(actual, deviceInfo, _config
+                    .getDeviceDetailsCache(), levels[i]);
+            assertEquals(levels[i], toString(expected), toString(actual));
+        }
+    }
+
+    /**
+     * Returns the XML of a DeviceList without the generated Comment IDs.
+     */
+    private String toString(JDFDeviceList list) {
+        return list.toString().replaceAll(" ID=\"c[0-9_]*\"", "");
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Vector;
+
+import org.cip4.elk.DefaultConfig;
+import org.cip4.elk.impl.util.URLAccessTool;
+import org.cip4.jdflib.auto.JDFAutoQueueFilter.EnumStatusList;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.jmf.JDFQueue;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueFilter;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+
+/**
+ * Tests that a {@link JournaledQueue} is restored from its journal.
+ */
+public class JournaledQueueTest extends QueueTestCase {
+
+    private File _journalDir;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _journalDir = File.createTempFile("queue-journal", "");
+        _journalDir.delete();
+        _journalDir.mkdirs();
+    }
+
+    public void tearDown() throws Exception {
+        File[] files = _journalDir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        _journalDir.delete();
+        super.tearDown();
+    }
+
+    public void testReplay() throws IOException {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        JournaledQueue q = createQueue();
+        JDFQueueEntry qe1 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe2 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe3 = q.addQueueEntry(qsp);
+        q.removeQueueEntry(qe2.getQueueEntryID());
+        q.abortQueueEntry(qe3.getQueueEntryID());
+        q.closeQueue();
+        q.destroy();
+
+        q = createQueue();
+        assertEquals(2, q.getQueueEntryCount());
+        assertEquals(JDFQueue.EnumQueueStatus.Closed, q.getQueueStatus());
+        assertNull(q.getQueueEntry(qe2.getQueueEntryID()));
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Waiting, q
+                .getQueueEntry(qe1.getQueueEntryID()).getQueueEntryStatus());
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Aborted, q
+                .getQueueEntry(qe3.getQueueEntryID()).getQueueEntryStatus());
+        assertEquals(qsp.getURL(), q.getQueueSubmissionParams(
+            qe1.getQueueEntryID()).getURL());
+        // New queue entries do not reuse restored IDs
+        q.openQueue();
+        JDFQueueEntry qe4 = q.addQueueEntry(qsp);
+        assertEquals("4", qe4.getQueueEntryID());
+        q.destroy();
+    }
+
+    public void testCompaction() throws IOException {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        JournaledQueue q = createQueue();
+        q.setCompactionThreshold(3);
+        for (int i = 0; i < 5; i++) {
+            q.addQueueEntry(qsp);
+        }
+        q.removeQueueEntry("2");
+        q.holdQueue();
+        q.destroy();
+        // Only the snapshot and log of the last compaction are kept
+        assertFalse(new File(_journalDir, "queue.snapshot").exists());
+        assertEquals(2, _journalDir.list().length);
+
+        q = createQueue();
+        assertEquals(4, q.getQueueEntryCount());
+        assertNull(q.getQueueEntry("2"));
+        assertNotNull(q.getQueueSubmissionParams("5"));
+        assertEquals(JDFQueue.EnumQueueStatus.Held, q.getQueueStatus());
+        q.destroy();
+    }
+
+    public void testBatchIsSyncedAfterUnlock() throws IOException {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        final int[] syncs = new int[1];
+        JournaledQueue q = new JournaledQueue(new DefaultConfig(), 10,
+                new URLAccessTool(getResourceAsURL(".").toString()),
+                _journalDir.getAbsolutePath()) {
+            protected void writeLockReleased() {
+                assertFalse(getLock().isWriteLockHeld());
+                super.writeLockReleased();
+                syncs[0]++;
+            }
+        };
+        syncs[0] = 0;
+        q.beginBatch();
+        try {
+            q.addQueueEntry(qsp);
+            q.addQueueEntry(qsp);
+            q.holdQueue();
+        } finally {
+            q.endBatch();
+        }
+        assertEquals(1, syncs[0]);
+        q.destroy();
+
+        q = createQueue();
+        assertEquals(2, q.getQueueEntryCount());
+        assertEquals(JDFQueue.EnumQueueStatus.Held, q.getQueueStatus());
+        q.destroy();
+    }
+
+    public void testQueueEntryIDsAreNotReused() throws IOException {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        JournaledQueue q = createQueue();
+        q.setCompactionThreshold(1);
+        q.setArchive(new QueueArchive(_journalDir.getAbsolutePath()));
+        q.setMaxHistorySize(0);
+        q.abortQueueEntry(q.addQueueEntry(qsp).getQueueEntryID());
+        q.removeQueueEntry(q.addQueueEntry(qsp).getQueueEntryID());
+        q.destroy();
+
+        // The counter is restored from the compacted journal
+        q = createQueue();
+        assertEquals(0, q.getQueueEntryCount());
+        assertEquals("3", q.addQueueEntry(qsp).getQueueEntryID());
+        q.destroy();
+
+        // The counter is advanced past the IDs of archived queue entries
+        MemoryQueue memoryQueue = new MemoryQueue(new DefaultConfig(), 10,
+                new URLAccessTool(getResourceAsURL(".").toString()));
+        memoryQueue.setArchive(new QueueArchive(_journalDir
+                .getAbsolutePath()));
+        assertEquals("2", memoryQueue.addQueueEntry(qsp).getQueueEntryID());
+        memoryQueue.destroy();
+    }
+
+    public void testInterruptedQueueEntryIsRequeued() throws IOException {
+        JournaledQueue q = createQueue();
+        JDFQueueEntry qe = q.addQueueEntry(loadQueueSubmissionParams());
+        qe.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Running);
+        q.putQueueEntry(qe);
+        q.destroy();
+
+        q = createQueue();
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Waiting, q
+                .getQueueEntry(qe.getQueueEntryID()).getQueueEntryStatus());
+        assertEquals(qe.getQueueEntryID(), q.getFirstRunnableQueueEntry()
+                .getQueueEntryID());
+        q.destroy();
+    }
+
+    public void testTornRecordIsDiscarded() throws IOException {
+        JournaledQueue q = createQueue();
+        q.addQueueEntry(loadQueueSubmissionParams());
+        q.destroy();
+        // Simulates a crash in the middle of writing a record
+        FileOutputStream out = new FileOutputStream(new File(_journalDir,
+                "queue.log"), true);
+        out.write(new byte[] { 0, 0, 1, 0, 1, 2, 3 });
+        out.close();
+
+        q = createQueue();
+        assertEquals(1, q.getQueueEntryCount());
+        assertNotNull(q.addQueueEntry(loadQueueSubmissionParams()));
+        q.destroy();
+
+        q = createQueue();
+        assertEquals(2, q.getQueueEntryCount());
+        q.destroy();
+    }
+
+    public void testEvictedQueueEntriesAreArchived() throws IOException {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        JournaledQueue q = createQueue();
+        q.setArchive(new QueueArchive(_journalDir.getAbsolutePath()));
+        q.setMaxHistorySize(1);
+        JDFQueueEntry qe1 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe2 = q.addQueueEntry(qsp);
+        q.addQueueEntry(qsp);
+        q.abortQueueEntry(qe1.getQueueEntryID());
+        q.abortQueueEntry(qe2.getQueueEntryID());
+        // The oldest finished queue entry was evicted
+        assertEquals(2, q.getQueueEntryCount());
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Aborted, q.getArchive()
+                .getQueueEntry(qe1.getQueueEntryID()).getQueueEntryStatus());
+        // Evicted queue entries are still found by status queries, but can
+        // no longer be changed
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Aborted, q
+                .getArchivedQueueEntry(qe1.getQueueEntryID())
+                .getQueueEntryStatus());
+        assertNull(q.getQueueEntry(qe1.getQueueEntryID()));
+        assertNull(q.removeQueueEntry(qe1.getQueueEntryID()));
+        assertNotNull(q.getArchivedQueueEntry(qe1.getQueueEntryID()));
+        JDFQueueFilter filter = (JDFQueueFilter) new JDFDoc("QueueFilter")
+                .getRoot();
+        filter.appendQueueEntryDef().setQueueEntryID(qe1.getQueueEntryID());
+        filter.appendQueueEntryDef().setQueueEntryID(qe2.getQueueEntryID());
+        JDFQueue queue = q.getQueue(filter);
+        assertEquals(2, queue.getQueueEntryVector().size());
+        assertTrue(qe1.getQueueEntryID().equals(
+            queue.getQueueEntry(0).getQueueEntryID())
+                || qe1.getQueueEntryID().equals(
+                    queue.getQueueEntry(1).getQueueEntryID()));
+        filter.setStatusList(new Vector(Collections
+                .singletonList(EnumStatusList.Completed)));
+        assertEquals(0, q.getQueue(filter).getQueueEntryVector().size());
+        q.destroy();
+
+        // The eviction was journaled and the archive is kept
+        q = createQueue();
+        assertEquals(2, q.getQueueEntryCount());
+        assertNull(q.getQueueEntry(qe1.getQueueEntryID()));
+        q.destroy();
+        QueueArchive archive = new QueueArchive(_journalDir.getAbsolutePath());
+        assertEquals(1, archive.size());
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Aborted, archive
+                .getQueueEntry(qe1.getQueueEntryID()).getQueueEntryStatus());
+        archive.close();
+    }
+
+    public void testEvictedAbortIsNotRestored() throws IOException {
+        JournaledQueue q = createQueue();
+        q.setArchive(new QueueArchive(_journalDir.getAbsolutePath()));
+        q.setMaxHistorySize(0);
+        JDFQueueEntry qe = q.addQueueEntry(loadQueueSubmissionParams());
+        q.abortQueueEntry(qe.getQueueEntryID());
+        assertEquals(0, q.getQueueEntryCount());
+        q.destroy();
+
+        q = createQueue();
+        assertEquals(0, q.getQueueEntryCount());
+        q.destroy();
+    }
+
+    public void testFlushIsJournaled() throws IOException {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        JournaledQueue q = createQueue();
+        q.addQueueEntry(qsp);
+        JDFQueueEntry qe2 = q.addQueueEntry(qsp);
+        q.addQueueEntry(qsp);
+        q.abortQueueEntry(qe2.getQueueEntryID());
+        assertEquals(3, q.flushQueue(null).size());
+        q.destroy();
+
+        q = createQueue();
+        assertEquals(0, q.getQueueEntryCount());
+        q.destroy();
+    }
+
+    private JournaledQueue createQueue() throws IOException {
+        URLAccessTool fileUtil = new URLAccessTool(getResourceAsURL(".")
+                .toString());
+        return new JournaledQueue(new DefaultConfig(), 10, fileUtil,
+                _journalDir.getAbsolutePath());
+    }
+}
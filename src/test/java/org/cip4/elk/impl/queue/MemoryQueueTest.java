@@ -3,18 +3,29 @@
  */
 package org.cip4.elk.impl.queue;
 
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
 
 import org.cip4.elk.Config;
 import org.cip4.elk.DefaultConfig;
-import org.cip4.elk.ElkTestCase;
+import org.cip4.elk.impl.queue.scheduling.EarliestDeadlineFirstPolicy;
+import org.cip4.elk.impl.queue.scheduling.JobProfile;
+import org.cip4.elk.impl.queue.util.AttributeQueueFilter;
+import org.cip4.elk.impl.util.FileRepository;
 import org.cip4.elk.impl.util.URLAccessTool;
 import org.cip4.elk.queue.Queue;
-import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.core.AttributeName;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.core.JDFDoc;
 import org.cip4.jdflib.core.KElement.EnumValidationLevel;
+import org.cip4.jdflib.datatypes.JDFAttributeMap;
 import org.cip4.jdflib.jmf.JDFQueue;
 import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueFilter;
 import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+import org.cip4.jdflib.util.JDFDate;
 
 /**
  * NOTE: To run this test, a folder named data containing the file:
@@ -24,7 +35,7 @@ import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
  * @author Ola Stering (olst6875@student.uu.se)
  * @version $Id: MemoryQueueTest.java,v 1.11 2006/09/12 08:34:52 buckwalter Exp $
  */
-public class MemoryQueueTest extends ElkTestCase {
+public class MemoryQueueTest extends QueueTestCase {
 
     String fileAncectorPool0parts = _jdfFilesPath + "AncestorPoolTest0.jdf";
     String fileAncectorPool1parts = _jdfFilesPath + "AncestorPoolTest.jdf";
@@ -105,6 +116,288 @@ public class MemoryQueueTest extends ElkTestCase {
         assertEquals(JDFQueue.EnumQueueStatus.Waiting, q.getQueueStatus());
     }
 
+    public void testGetFirstRunnableQueueEntry() {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        Queue q = createQueue(10);
+        JDFQueueEntry qe1 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe2 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe3 = q.addQueueEntry(qsp);
+        assertEquals(qe1.getQueueEntryID(), q.getFirstRunnableQueueEntry()
+                .getQueueEntryID());
+        // Higher priority entries are run first
+        qe3.setPriority(100);
+        q.putQueueEntry(qe3);
+        assertEquals(qe3.getQueueEntryID(), q.getFirstRunnableQueueEntry()
+                .getQueueEntryID());
+        // Held, aborted and removed entries are not runnable
+        qe3.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Held);
+        q.putQueueEntry(qe3);
+        q.abortQueueEntry(qe1.getQueueEntryID());
+        assertEquals(qe2.getQueueEntryID(), q.getFirstRunnableQueueEntry()
+                .getQueueEntryID());
+        q.removeQueueEntry(qe2.getQueueEntryID());
+        assertNull(q.getFirstRunnableQueueEntry());
+        // A held queue returns no runnable entries
+        qe3.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Waiting);
+        q.putQueueEntry(qe3);
+        q.holdQueue();
+        assertNull(q.getFirstRunnableQueueEntry());
+        q.resumeQueue();
+        assertEquals(qe3.getQueueEntryID(), q.getFirstRunnableQueueEntry()
+                .getQueueEntryID());
+    }
+
+    public void testSchedulingPolicy() {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        MemoryQueue q = (MemoryQueue) createQueue(10);
+        JDFQueueEntry qe1 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe2 = q.addQueueEntry(qsp);
+        q.setJobProfile(qe2.getQueueEntryID(), new JobProfile(100, 1000, null));
+        assertEquals(qe1.getQueueEntryID(), q.getFirstRunnableQueueEntry()
+                .getQueueEntryID());
+        // The runnable queue entries are added to the new policy
+        q.setSchedulingPolicy(new EarliestDeadlineFirstPolicy());
+        assertEquals(qe2.getQueueEntryID(), q.getFirstRunnableQueueEntry()
+                .getQueueEntryID());
+        JDFQueueEntry qe3 = q.addQueueEntry(qsp);
+        q.setJobProfile(qe3.getQueueEntryID(), new JobProfile(100, 500, null));
+        assertEquals(qe3.getQueueEntryID(), q.claimFirstRunnableQueueEntry(
+            new JDFDate()).getQueueEntryID());
+        assertEquals(qe2.getQueueEntryID(), q.getFirstRunnableQueueEntry()
+                .getQueueEntryID());
+    }
+
+    public void testQueueVersion() {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        MemoryQueue q = (MemoryQueue) createQueue(10);
+        long version = q.getVersion();
+        JDFQueueEntry qe = q.addQueueEntry(qsp);
+        assertTrue(q.getVersion() > version);
+        // An unchanged queue returns equal copies of the same snapshot
+        version = q.getVersion();
+        JDFQueue q1 = q.getQueue((JDFQueueFilter) null);
+        JDFQueue q2 = q.getQueue((JDFQueueFilter) null);
+        assertEquals(version, q.getVersion());
+        assertNotSame(q1, q2);
+        assertNotSame(q1.getOwnerDocument(), q2.getOwnerDocument());
+        assertEquals(q1.toString(), q2.toString());
+        // A modified queue returns a new snapshot
+        qe.setPriority(99);
+        q.putQueueEntry(qe);
+        assertTrue(q.getVersion() > version);
+        JDFQueue q3 = q.getQueue((JDFQueueFilter) null);
+        assertEquals(99, q3.getQueueEntry(0).getPriority());
+        version = q.getVersion();
+        q.closeQueue();
+        assertTrue(q.getVersion() > version);
+        assertEquals(JDFQueue.EnumQueueStatus.Closed, q.getQueue(
+            (JDFQueueFilter) null).getQueueStatus());
+    }
+
+    public void testAwaitChange() throws Exception {
+        final JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        final MemoryQueue q = (MemoryQueue) createQueue(10);
+        long version = q.getVersion();
+        // Times out if the queue is not changed
+        assertEquals(version, q.awaitChange(version, 50));
+        // Wakes up when another thread changes the queue
+        Thread submitter = new Thread() {
+            public void run() {
+                q.addQueueEntry(qsp);
+            }
+        };
+        long start = System.currentTimeMillis();
+        submitter.start();
+        assertTrue(q.awaitChange(version, 10000) > version);
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        submitter.join();
+        assertEquals(1, q.getQueueEntryCount());
+    }
+
+    public void testRunnableSignal() throws Exception {
+        final JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        final MemoryQueue q = (MemoryQueue) createQueue(10);
+        long signal = q.getRunnableSignal();
+        JDFQueueEntry qe = q.addQueueEntry(qsp);
+        assertTrue(q.getRunnableSignal() > signal);
+        // Changes that do not make a queue entry runnable do not raise it
+        signal = q.getRunnableSignal();
+        qe.setPriority(99);
+        q.putQueueEntry(qe);
+        qe.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Held);
+        q.putQueueEntry(qe);
+        q.holdQueue();
+        assertEquals(signal, q.getRunnableSignal());
+        // Resuming the queue and releasing a queue entry raise it
+        q.resumeQueue();
+        assertTrue(q.getRunnableSignal() > signal);
+        signal = q.getRunnableSignal();
+        qe.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Waiting);
+        q.putQueueEntry(qe);
+        assertTrue(q.getRunnableSignal() > signal);
+        // Times out if no queue entry becomes runnable
+        signal = q.getRunnableSignal();
+        assertEquals(signal, q.awaitRunnable(signal, 50));
+        // Wakes up when another thread adds a queue entry
+        Thread submitter = new Thread() {
+            public void run() {
+                q.addQueueEntry(qsp);
+            }
+        };
+        submitter.start();
+        assertTrue(q.awaitRunnable(signal, 0) > signal);
+        submitter.join();
+    }
+
+    public void testWriteLockMakesChangesAtomic() throws Exception {
+        final JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        final MemoryQueue q = (MemoryQueue) createQueue(10);
+        final JDFQueueEntry[] seen = new JDFQueueEntry[1];
+        Thread reader = new Thread() {
+            public void run() {
+                seen[0] = q.getFirstRunnableQueueEntry();
+            }
+        };
+        q.getLock().lockWrite();
+        try {
+            JDFQueueEntry qe = q.addQueueEntry(qsp);
+            reader.start();
+            // The reader cannot see the queue entry before it is held
+            reader.join(200);
+            assertTrue(reader.isAlive());
+            qe.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Held);
+            q.putQueueEntry(qe);
+        } finally {
+            q.getLock().unlockWrite();
+        }
+        reader.join();
+        assertNull(seen[0]);
+    }
+
+    public void testSelectQueueEntries() {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        MemoryQueue q = (MemoryQueue) createQueue(10);
+        JDFQueueEntry qe1 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe2 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe3 = q.addQueueEntry(qsp);
+        q.abortQueueEntry(qe2.getQueueEntryID());
+        qe3.setJobID("Job3");
+        q.putQueueEntry(qe3);
+        // Selects by StatusList
+        JDFQueueFilter filter = createQueueFilter();
+        Vector statusList = new Vector();
+        statusList.add(JDFQueueFilter.EnumStatusList.Aborted);
+        filter.setStatusList(statusList);
+        JDFQueue result = q.getQueue(filter);
+        assertEquals(1, result.getQueueEntryVector().size());
+        assertEquals(qe2.getQueueEntryID(), result.getQueueEntry(0).getQueueEntryID());
+        // Selects by QueueEntryDef and StatusList
+        filter.appendQueueEntryDef().setQueueEntryID(qe1.getQueueEntryID());
+        assertEquals(0, q.getQueue(filter).getQueueEntryVector().size());
+        filter = createQueueFilter();
+        filter.appendQueueEntryDef().setQueueEntryID(qe1.getQueueEntryID());
+        filter.appendQueueEntryDef().setQueueEntryID(qe3.getQueueEntryID());
+        assertEquals(2, q.getQueue(filter).getQueueEntryVector().size());
+        // Selects by NewerThan
+        filter.setNewerThan(new JDFDate(System.currentTimeMillis() + 60000));
+        assertEquals(0, q.getQueue(filter).getQueueEntryVector().size());
+        // Selects by indexed attributes
+        List ids = q.findQueueEntryIDs(new JDFAttributeMap(AttributeName.JOBID, "Job3"));
+        assertEquals(1, ids.size());
+        assertEquals(qe3.getQueueEntryID(), ids.get(0));
+        result = q.getQueue(new AttributeQueueFilter(new JDFAttributeMap(
+                AttributeName.STATUS, "Waiting")));
+        assertEquals(2, result.getQueueEntryVector().size());
+        // The index is updated when a queue entry is removed
+        q.removeQueueEntry(qe3.getQueueEntryID());
+        assertTrue(q.findQueueEntryIDs(new JDFAttributeMap(AttributeName.JOBID, "Job3")).isEmpty());
+    }
+
+    public void testFinishedQueueEntriesDoNotFillQueue() throws Exception {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        MemoryQueue q = (MemoryQueue) createQueue(2);
+        JDFQueueEntry qe1 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe2 = q.addQueueEntry(qsp);
+        assertEquals(JDFQueue.EnumQueueStatus.Full, q.getQueueStatus());
+        // Finished queue entries are kept but do not count against the size
+        q.abortQueueEntry(qe1.getQueueEntryID());
+        assertEquals(JDFQueue.EnumQueueStatus.Waiting, q.getQueueStatus());
+        assertNotNull(q.addQueueEntry(qsp));
+        assertEquals(3, q.getQueueEntryCount());
+        assertEquals(2, q.getActiveQueueEntryCount());
+        // Finished queue entries are evicted by count
+        qe2.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Completed);
+        q.putQueueEntry(qe2);
+        q.setMaxHistorySize(1);
+        assertEquals(2, q.getQueueEntryCount());
+        assertNull(q.getQueueEntry(qe1.getQueueEntryID()));
+        assertNotNull(q.getQueueEntry(qe2.getQueueEntryID()));
+        // Finished queue entries are evicted by age
+        q.setMaxHistoryAge(60000);
+        assertEquals(2, q.getQueueEntryCount());
+        Thread.sleep(10);
+        q.setMaxHistoryAge(1);
+        assertEquals(1, q.getQueueEntryCount());
+        assertEquals(1, q.getActiveQueueEntryCount());
+    }
+
+    public void testFlushQueue() throws Exception {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        MemoryQueue q = (MemoryQueue) createQueue(10);
+        final List removedUrls = new ArrayList();
+        q.setRepository(new FileRepository(new HashMap(), "file:/elk/private",
+                "file:/elk/public", "http://elk/public") {
+            public boolean removeFile(String url) {
+                synchronized (removedUrls) {
+                    removedUrls.add(url);
+                    removedUrls.notifyAll();
+                }
+                return true;
+            }
+        });
+        // Only files in the repository's private directory are removed
+        JDFQueueSubmissionParams privateQsp2 = loadQueueSubmissionParams();
+        privateQsp2.setURL("file:/elk/private/abcdefghijklmnopqrstuvwx.jdf");
+        JDFQueueSubmissionParams privateQsp4 = loadQueueSubmissionParams();
+        privateQsp4.setURL("file:/elk/private/ABCDEFGHIJKLMNOPQRSTUVWX.jdf");
+        JDFQueueEntry qe1 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe2 = q.addQueueEntry(privateQsp2);
+        JDFQueueEntry qe3 = q.addQueueEntry(qsp);
+        JDFQueueEntry qe4 = q.addQueueEntry(privateQsp4);
+        q.abortQueueEntry(qe2.getQueueEntryID());
+        qe3.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Running);
+        q.putQueueEntry(qe3);
+        // Flushes the queue entries selected by the filter
+        JDFQueueFilter filter = createQueueFilter();
+        Vector statusList = new Vector();
+        statusList.add(JDFQueueFilter.EnumStatusList.Aborted);
+        filter.setStatusList(statusList);
+        List ids = q.flushQueue(filter);
+        assertEquals(1, ids.size());
+        assertEquals(qe2.getQueueEntryID(), ids.get(0));
+        assertEquals(3, q.getQueueEntryCount());
+        // Running queue entries are not flushed
+        ids = q.flushQueue(null);
+        assertEquals(2, ids.size());
+        assertTrue(ids.contains(qe1.getQueueEntryID()));
+        assertTrue(ids.contains(qe4.getQueueEntryID()));
+        assertEquals(1, q.getQueueEntryCount());
+        assertNotNull(q.getQueueEntry(qe3.getQueueEntryID()));
+        assertNull(q.getQueueSubmissionParams(qe1.getQueueEntryID()));
+        // The JDF files are removed from the repository in the background
+        synchronized (removedUrls) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (removedUrls.size() < 2
+                    && System.currentTimeMillis() < deadline) {
+                removedUrls.wait(100);
+            }
+            assertEquals(2, removedUrls.size());
+            assertEquals(privateQsp2.getURL(), removedUrls.get(0));
+            assertEquals(privateQsp4.getURL(), removedUrls.get(1));
+        }
+        q.destroy();
+    }
+
     public void testAncestorPool() throws Exception {
     }
 
@@ -128,10 +421,8 @@ public class MemoryQueueTest extends ElkTestCase {
         assertEquals(JDFQueue.EnumQueueStatus.Full, q.getQueueStatus());
     }
 
-    private JDFQueueSubmissionParams loadQueueSubmissionParams() {
-        InputStream in = getResourceAsStream(_testDataPath + "SubmitQueueEntry.jmf");
-        return new JDFParser().parseStream(in).getJMFRoot().getCommand()
-                .getQueueSubmissionParams(0);
+    private JDFQueueFilter createQueueFilter() {
+        return (JDFQueueFilter) new JDFDoc(ElementName.QUEUEFILTER).getRoot();
     }
 
     private Queue createQueue(int size) {
@@ -0,0 +1,71 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+/**
+ * Tests that a {@link QueueArchive} keeps its latest queue entries across
+ * restarts and drops older ones.
+ */
+public class QueueArchiveTest extends QueueTestCase {
+
+    private File _archiveDir;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _archiveDir = File.createTempFile("queue-archive", "");
+        _archiveDir.delete();
+        _archiveDir.mkdirs();
+    }
+
+    public void tearDown() throws Exception {
+        File[] files = _archiveDir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        _archiveDir.delete();
+        super.tearDown();
+    }
+
+    public void testRetention() throws IOException {
+        QueueArchive archive = createArchive();
+        archive.setMaxSize(3);
+        long sequence = 0;
+        for (int i = 1; i <= 10; i++) {
+            sequence = archive.archive(createRecord(Integer.toString(i), 1,
+                JDFQueueEntry.EnumQueueEntryStatus.Completed, i));
+        }
+        // Archiving a queue entry again makes it the latest one
+        sequence = archive.archive(createRecord("8", 1,
+            JDFQueueEntry.EnumQueueEntryStatus.Aborted, 11));
+        assertEquals(11, sequence);
+        archive.sync(sequence);
+        assertEquals(3, archive.size());
+        assertNull(archive.getQueueEntry("7"));
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Aborted, archive
+                .getQueueEntry("8").getQueueEntryStatus());
+        assertNotNull(archive.getQueueEntry("10"));
+        archive.close();
+        // The file was rewritten with the kept queue entries
+        assertEquals(1, _archiveDir.list().length);
+
+        archive = createArchive();
+        assertEquals(3, archive.size());
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Aborted, archive
+                .getQueueEntry("8").getQueueEntryStatus());
+        assertNotNull(archive.getQueueEntry("9"));
+        assertNotNull(archive.getQueueEntry("10"));
+        archive.close();
+    }
+
+    private QueueArchive createArchive() throws IOException {
+        QueueArchive archive = new QueueArchive(_archiveDir.getAbsolutePath());
+        archive.setSyncEnabled(false);
+        return archive;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.apache.commons.io.IOUtils;
+import org.cip4.elk.ElkTestCase;
+
+/**
+ * Tests that a {@link QueueJournal} survives crashes during compaction and
+ * corrupt records.
+ */
+public class QueueJournalTest extends ElkTestCase {
+
+    private File _journalDir;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _journalDir = File.createTempFile("queue-journal", "");
+        _journalDir.delete();
+        _journalDir.mkdirs();
+    }
+
+    public void tearDown() throws Exception {
+        File[] files = _journalDir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        _journalDir.delete();
+        super.tearDown();
+    }
+
+    public void testInterruptedCompaction() throws IOException {
+        QueueJournal journal = createJournal();
+        assertEquals(0, journal.replay(new RecordList()));
+        journal.append(QueueJournal.PUT_QUEUE_ENTRY, "1", "a");
+        journal.append(QueueJournal.PUT_QUEUE_ENTRY, "2", "b");
+        journal.close();
+        File oldLog = new File(_journalDir, "queue.log");
+        byte[] oldRecords = readFile(oldLog);
+
+        journal = createJournal();
+        assertEquals(2, journal.replay(new RecordList()));
+        journal.compact(Collections.singletonList(new Object[] {
+                new Integer(QueueJournal.PUT_QUEUE_ENTRY), "2", "b" }));
+        journal.append(QueueJournal.REMOVE_QUEUE_ENTRY, "2", null);
+        journal.close();
+        assertFalse(oldLog.exists());
+
+        // A crash before the old generation was deleted leaves its files
+        writeFile(oldLog, oldRecords);
+        writeFile(new File(_journalDir, "queue.snapshot"), oldRecords);
+        writeFile(new File(_journalDir, "queue.2.snapshot.tmp"), oldRecords);
+        journal = createJournal();
+        RecordList records = new RecordList();
+        assertEquals(2, journal.replay(records));
+        assertEquals("2", records.get(0));
+        assertEquals("2", records.get(1));
+        journal.close();
+        assertEquals(2, _journalDir.list().length);
+    }
+
+    public void testCorruptRecordLength() throws IOException {
+        QueueJournal journal = createJournal();
+        journal.replay(new RecordList());
+        journal.append(QueueJournal.OPEN_QUEUE, null, null);
+        journal.close();
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(
+                new File(_journalDir, "queue.log"), true));
+        out.writeInt(Integer.MAX_VALUE);
+        out.writeLong(0);
+        out.close();
+
+        journal = createJournal();
+        assertEquals(1, journal.replay(new RecordList()));
+        journal.append(QueueJournal.CLOSE_QUEUE, null, null);
+        journal.close();
+        journal = createJournal();
+        assertEquals(2, journal.replay(new RecordList()));
+        journal.close();
+    }
+
+    private QueueJournal createJournal() throws IOException {
+        QueueJournal journal = new QueueJournal(_journalDir);
+        journal.setSyncEnabled(false);
+        return journal;
+    }
+
+    private byte[] readFile(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void writeFile(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Collects the queue entry IDs of replayed records.
+     */
+    private static class RecordList extends ArrayList implements
+            QueueJournal.RecordHandler {
+        public void handleRecord(int type, String queueEntryId, String data) {
+            add(queueEntryId);
+        }
+    }
+}
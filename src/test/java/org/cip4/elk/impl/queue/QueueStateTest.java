@@ -292,6 +292,61 @@ public class QueueStateTest extends ElkTestCase {
         qs.closeQueue();        
     }
     
+    /**
+     * Tests that a batch recalculates the status when it ends and sends a
+     * single event.
+     */
+    public void testBatch() {
+        QueueState qs = new QueueState(new DummyQueue());
+        final int[] events = new int[1];
+        qs.addQueueStatusListener(new QueueStatusListener() {
+            public void queueStatusChanged(QueueStatusEvent event) {
+                events[0]++;
+                assertEquals(QueueState.FULL, event.getQueueStatus());
+            }
+        });
+        qs.beginBatch();
+        qs.setQueueFull(true);
+        // The status is current but not published until the batch ends
+        assertEquals(QueueState.FULL, qs.getQueueStatus());
+        qs.holdQueue();
+        qs.resumeQueue();
+        assertEquals(0, events[0]);
+        assertEquals(QueueState.FULL, qs.endBatch());
+        assertEquals(1, events[0]);
+        try {
+            qs.endBatch();
+            fail("No batch has been started");
+        } catch (IllegalStateException ise) {
+        }
+    }
+
+    public void testCoalescedEvents() {
+        QueueState qs = new QueueState(new DummyQueue());
+        final int[] events = new int[1];
+        qs.addQueueStatusListener(new QueueStatusListener() {
+            public void queueStatusChanged(QueueStatusEvent event) {
+                events[0]++;
+                assertEquals(QueueState.HELD, event.getQueueStatus());
+            }
+        });
+        qs.setPublishingDeferred(true);
+        qs.setQueueFull(true);
+        qs.setProcessFull(true);
+        qs.holdQueue();
+        assertEquals(0, events[0]);
+        qs.publishStatus();
+        assertEquals(1, events[0]);
+        // Nothing has changed since the last event
+        qs.publishStatus();
+        assertEquals(1, events[0]);
+        // A change that is undone before it is published sends no event
+        qs.resumeQueue();
+        qs.holdQueue();
+        qs.publishStatus();
+        assertEquals(1, events[0]);
+    }
+
     /**
      * Listens for QueueStatusEvents. Compares the fired event to the expected event. 
      * @author Claes Buckwalter (clabu@itn.liu.se)
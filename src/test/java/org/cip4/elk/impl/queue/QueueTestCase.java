@@ -0,0 +1,102 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue;
+
+import java.io.InputStream;
+
+import org.cip4.elk.ElkTestCase;
+import org.cip4.elk.impl.queue.util.QueueEntryRecord;
+import org.cip4.elk.queue.Queue;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.jmf.JDFQueueSubmissionParams;
+import org.cip4.jdflib.util.JDFDate;
+
+/**
+ * A test case with helpers for tests that submit jobs to a queue or work with
+ * queue entries.
+ */
+public abstract class QueueTestCase extends ElkTestCase {
+
+    /**
+     * Loads the queue submission parameters of the test SubmitQueueEntry
+     * command.
+     *
+     * @return the queue submission parameters
+     */
+    public JDFQueueSubmissionParams loadQueueSubmissionParams() {
+        InputStream in = getResourceAsStream(_testDataPath
+                + "SubmitQueueEntry.jmf");
+        return new JDFParser().parseStream(in).getJMFRoot().getCommand()
+                .getQueueSubmissionParams(0);
+    }
+
+    /**
+     * Loads the queue submission parameters of the test SubmitQueueEntry
+     * command and points them to a JDF file.
+     *
+     * @param url the URL of the JDF file
+     * @return the queue submission parameters
+     */
+    public JDFQueueSubmissionParams loadQueueSubmissionParams(String url) {
+        JDFQueueSubmissionParams qsp = loadQueueSubmissionParams();
+        qsp.setURL(url);
+        return qsp;
+    }
+
+    /**
+     * Counts the completed queue entries among the queue entries with the
+     * IDs <code>1</code> to <code>count</code>.
+     *
+     * @param queue the queue
+     * @param count the number of queue entries to look at
+     * @return the number of completed queue entries
+     */
+    public int countCompleted(Queue queue, int count) {
+        int completed = 0;
+        for (int i = 1; i <= count; i++) {
+            JDFQueueEntry qe = queue.getQueueEntry(Integer.toString(i));
+            if (qe != null
+                    && JDFQueueEntry.EnumQueueEntryStatus.Completed.equals(qe
+                            .getQueueEntryStatus())) {
+                completed++;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Creates a queue entry.
+     *
+     * @param id the queue entry ID; <code>null</code> for none
+     * @param priority the priority
+     * @param status the status
+     * @param submissionTime the submission time in milliseconds
+     * @return the queue entry
+     */
+    public JDFQueueEntry createQueueEntry(String id, int priority,
+            JDFQueueEntry.EnumQueueEntryStatus status, long submissionTime) {
+        JDFQueueEntry qe = (JDFQueueEntry) createJDFElement(ElementName.QUEUEENTRY);
+        if (id != null) {
+            qe.setQueueEntryID(id);
+        }
+        qe.setPriority(priority);
+        qe.setQueueEntryStatus(status);
+        qe.setSubmissionTime(new JDFDate(submissionTime));
+        return qe;
+    }
+
+    /**
+     * Creates the record of a queue entry.
+     *
+     * @see #createQueueEntry(String, int, JDFQueueEntry.EnumQueueEntryStatus,
+     *      long)
+     */
+    public QueueEntryRecord createRecord(String id, int priority,
+            JDFQueueEntry.EnumQueueEntryStatus status, long submissionTime) {
+        return new QueueEntryRecord(createQueueEntry(id, priority, status,
+            submissionTime));
+    }
+}
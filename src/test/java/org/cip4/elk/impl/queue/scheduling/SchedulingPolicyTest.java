@@ -0,0 +1,148 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.scheduling;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cip4.elk.impl.queue.QueueTestCase;
+import org.cip4.jdflib.core.JDFParser;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+import org.cip4.jdflib.node.JDFNode;
+import org.cip4.jdflib.util.JDFDate;
+
+public class SchedulingPolicyTest extends QueueTestCase {
+
+    private long _time = System.currentTimeMillis();
+
+    public void testShortestJobFirst() {
+        ShortestJobFirstPolicy policy = new ShortestJobFirstPolicy();
+        policy.setSpeed(3600);
+        policy.setSetupTime(1000);
+        assertEquals(11000, policy.getEstimatedDuration(new JobProfile(10,
+                JobProfile.NO_TIME, null)));
+        policy.update(createRecord("1", 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            new JobProfile(5000, JobProfile.NO_TIME, null));
+        policy.update(createRecord("2", 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            null);
+        policy.update(createRecord("3", 90, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            new JobProfile(200, JobProfile.NO_TIME, null));
+        assertEquals("3", policy.getFirstQueueEntryID());
+        // The profile is kept when the queue entry is updated without one
+        policy.update(createRecord("3", 90, JDFQueueEntry.EnumQueueEntryStatus.Running, _time),
+            null);
+        assertEquals("1", policy.getFirstQueueEntryID());
+        policy.remove("1");
+        // Jobs without an amount come last
+        assertEquals("2", policy.getFirstQueueEntryID());
+        assertEquals(1, policy.size());
+    }
+
+    public void testEarliestDeadlineFirst() {
+        EarliestDeadlineFirstPolicy policy = new EarliestDeadlineFirstPolicy();
+        policy.update(createRecord("1", 90, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            null);
+        policy.update(createRecord("2", 10, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            new JobProfile(100, _time + 20000, null));
+        policy.update(createRecord("3", 10, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            new JobProfile(100, _time + 10000, null));
+        assertEquals("3", policy.getFirstQueueEntryID());
+        policy.remove("3");
+        assertEquals("2", policy.getFirstQueueEntryID());
+        policy.remove("2");
+        assertEquals("1", policy.getFirstQueueEntryID());
+    }
+
+    public void testFairShare() {
+        FairSharePolicy policy = new FairSharePolicy();
+        Map weights = new HashMap();
+        weights.put("A", "2");
+        policy.setWeights(weights);
+        for (int i = 1; i <= 4; i++) {
+            policy.update(createRecord("a" + i, 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+                new JobProfile(100, JobProfile.NO_TIME, "A"));
+            policy.update(createRecord("b" + i, 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+                new JobProfile(100, JobProfile.NO_TIME, "B"));
+        }
+        assertEquals(8, policy.size());
+        // Sender A gets twice the service of sender B
+        StringBuffer order = new StringBuffer();
+        for (int i = 0; i < 6; i++) {
+            String qeId = policy.getFirstQueueEntryID();
+            order.append(qeId.charAt(0));
+            policy.update(createRecord(qeId, 50, JDFQueueEntry.EnumQueueEntryStatus.Running, _time),
+                null);
+        }
+        assertEquals("abaaba", order.toString());
+        assertEquals(200.0, policy.getCharge("A"), 0.001);
+        assertEquals(200.0, policy.getCharge("B"), 0.001);
+        // An idle sender does not save up service
+        policy.update(createRecord("c1", 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            new JobProfile(100, JobProfile.NO_TIME, "C"));
+        assertEquals(200.0, policy.getCharge("C"), 0.001);
+        // Removed queue entries are not charged
+        assertTrue(policy.remove("b3"));
+        assertFalse(policy.contains("b3"));
+        assertEquals(200.0, policy.getCharge("B"), 0.001);
+    }
+
+    public void testSetupMinimizing() {
+        SetupMinimizingPolicy policy = new SetupMinimizingPolicy();
+        JobProfile a4 = new JobProfile(100, JobProfile.NO_TIME, null, "A4",
+                "P1");
+        JobProfile a3 = new JobProfile(100, JobProfile.NO_TIME, null, "A3",
+                "P2");
+        assertEquals(10000, policy.getSetupTime(null, a4));
+        assertEquals(0, policy.getSetupTime(a4, a4));
+        policy.update(createRecord("1", 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            a4);
+        policy.update(createRecord("2", 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            a3);
+        policy.update(createRecord("3", 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            a4);
+        policy.update(createRecord("4", 10, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            a4);
+        assertEquals("1", policy.getFirstQueueEntryID());
+        policy.update(createRecord("1", 50, JDFQueueEntry.EnumQueueEntryStatus.Running, _time),
+            null);
+        // Grouped with the job that was started last
+        assertEquals("3", policy.getFirstQueueEntryID());
+        policy.update(createRecord("3", 50, JDFQueueEntry.EnumQueueEntryStatus.Running, _time),
+            null);
+        // Never passed over for a job with a lower priority
+        assertEquals("2", policy.getFirstQueueEntryID());
+        policy.update(createRecord("2", 50, JDFQueueEntry.EnumQueueEntryStatus.Running, _time),
+            null);
+        assertEquals("4", policy.getFirstQueueEntryID());
+        policy.update(createRecord("5", 10, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            a3);
+        assertEquals("5", policy.getFirstQueueEntryID());
+        // A job that has waited too long is not passed over
+        _time -= 1000;
+        policy.update(createRecord("4", 10, JDFQueueEntry.EnumQueueEntryStatus.Waiting, _time),
+            null);
+        policy.setMaxWaitTime(500);
+        assertEquals("4", policy.getFirstQueueEntryID());
+    }
+
+    public void testCreateJobProfile() throws Exception {
+        JDFNode jdf = new JDFParser().parseStream(
+            getResourceAsStream(_jdfFilesPath + "Elk_ConventionalPrinting.jdf"))
+                .getJDFRoot();
+        JobProfile profile = JobProfile.create(Collections.singletonList(jdf),
+            "Sender");
+        assertEquals(1000, profile.getAmount());
+        assertEquals(JobProfile.NO_TIME, profile.getDeadline());
+        assertEquals("Sender", profile.getSenderID());
+        assertEquals("2551.181102 1814.173228/200.0", profile.getMediaKey());
+        assertNull(profile.getPlateKey());
+        assertFalse(JobProfile.needsFormatChange(profile, profile));
+        assertTrue(JobProfile.needsFormChange(profile, profile));
+        JDFDate end = new JDFDate();
+        jdf.getNodeInfo().setEnd(end);
+        profile = JobProfile.create(Collections.singletonList(jdf), null);
+        assertEquals(end.getTimeInMillis() / 1000, profile.getDeadline() / 1000);
+    }
+}
@@ -4,8 +4,10 @@
 package org.cip4.elk.impl.queue.util;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.cip4.elk.ElkTestCase;
+import org.cip4.elk.impl.queue.QueueTestCase;
 import org.cip4.jdflib.core.JDFElement;
 import org.cip4.jdflib.core.JDFParser;
 import org.cip4.jdflib.jmf.JDFQueue;
@@ -16,7 +18,7 @@ import org.cip4.jdflib.util.JDFDate;
  * @author Ola Stering (olst6875@student.uu.se)
  * @version $Id: QueueEntryComparatorTest.java,v 1.3 2006/08/30 15:55:23 buckwalter Exp $
  */
-public class QueueEntryComparatorTest extends ElkTestCase {
+public class QueueEntryComparatorTest extends QueueTestCase {
 
     public void testCompare() {
         log.info("Testing: QueueEntryComaparator...");
@@ -52,4 +54,51 @@ public class QueueEntryComparatorTest extends ElkTestCase {
         qe.setEndTime(new JDFDate());
     }
 
+    public void testSortKeys() {
+        QueueEntryComparator asc = new QueueEntryComparator(true);
+        QueueEntryComparator desc = new QueueEntryComparator(false);
+        JDFQueueEntry high = createQueueEntry(null, 90, JDFQueueEntry.EnumQueueEntryStatus.Waiting, 1000);
+        JDFQueueEntry low = createQueueEntry(null, 10, JDFQueueEntry.EnumQueueEntryStatus.Waiting, 0);
+        JDFQueueEntry later = createQueueEntry(null, 90, JDFQueueEntry.EnumQueueEntryStatus.Waiting, 2000);
+        JDFQueueEntry running = createQueueEntry(null, 50, JDFQueueEntry.EnumQueueEntryStatus.Running, 0);
+        JDFQueueEntry ended = createQueueEntry(null, 50, JDFQueueEntry.EnumQueueEntryStatus.Completed, 0);
+        ended.setEndTime(new JDFDate(5000));
+        JDFQueueEntry notEnded = createQueueEntry(null, 50, JDFQueueEntry.EnumQueueEntryStatus.Completed, 0);
+        // Descending: running first, highest priority first
+        assertTrue(desc.getSortKey(running) < desc.getSortKey(high));
+        assertTrue(desc.getSortKey(high) < desc.getSortKey(low));
+        assertTrue(asc.getSortKey(low) < asc.getSortKey(high));
+        // Earliest submission first in both orders
+        assertTrue(desc.getSortKey(high) < desc.getSortKey(later));
+        assertTrue(asc.getSortKey(high) < asc.getSortKey(later));
+        // Entries without end time are last in descending order
+        assertTrue(desc.getSortKey(ended) < desc.getSortKey(notEnded));
+        assertTrue(asc.getSortKey(notEnded) < asc.getSortKey(ended));
+        // The keys agree with compare
+        assertTrue(desc.compare(high, low) < 0);
+        assertTrue(asc.compare(ended, notEnded) > 0);
+        assertEquals(0, desc.compare(running, running));
+    }
+
+    public void testRecordSortKeys() {
+        InputStream stream = getResourceAsStream(_testDataPath + "Queue_unsorted.xml");
+        JDFQueue queue = new JDFParser().parseStream(stream).getJMFRoot().getResponse().getQueue(0);
+        QueueEntryComparator asc = new QueueEntryComparator(true);
+        QueueEntryComparator desc = new QueueEntryComparator(false);
+        List entries = new ArrayList(queue.getQueueEntryVector());
+        QueueEntryRecord[] records = new QueueEntryRecord[entries.size()];
+        for (int i = 0; i < records.length; i++) {
+            JDFQueueEntry qe = (JDFQueueEntry) entries.get(i);
+            records[i] = new QueueEntryRecord(qe);
+            assertEquals(asc.getSortKey(qe), asc.getSortKey(records[i]));
+            assertEquals(desc.getSortKey(qe), desc.getSortKey(records[i]));
+        }
+        // Sorting records gives the same order as sorting elements
+        desc.sort(entries);
+        desc.sort(records);
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(((JDFQueueEntry) entries.get(i)).getQueueEntryID(),
+                records[i].getQueueEntryID());
+        }
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import org.cip4.elk.impl.queue.QueueTestCase;
+import org.cip4.jdflib.core.AttributeName;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+public class QueueEntryIndexTest extends QueueTestCase {
+
+    public void testUpdate() {
+        QueueEntryIndex index = new QueueEntryIndex();
+        QueueEntryRecord r1 = createRecord("1", "Job1", "Part1");
+        QueueEntryRecord r2 = createRecord("2", "Job1", "Part2");
+        index.update(null, r1);
+        index.update(null, r2);
+        assertEquals(2, index.getQueueEntryIDs(AttributeName.JOBID, "Job1").size());
+        assertEquals(1, index.getQueueEntryIDs(AttributeName.JOBPARTID, "Part2").size());
+        assertEquals(2, index.getQueueEntryIDs(AttributeName.STATUS, "Waiting").size());
+        assertEquals(2, index.getQueueEntryIDs(AttributeName.DEVICEID, "Elk").size());
+        assertTrue(index.getQueueEntryIDs(AttributeName.JOBID, "Job2").isEmpty());
+        // Changing the status moves the queue entry
+        QueueEntryRecord aborted = r1
+                .withQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Aborted);
+        index.update(r1, aborted);
+        assertEquals(1, index.getQueueEntryIDs(AttributeName.STATUS, "Waiting").size());
+        assertTrue(index.getQueueEntryIDs(AttributeName.STATUS, "Aborted").contains("1"));
+        // Removing the queue entry removes it from all indexes
+        index.remove(aborted);
+        assertTrue(index.getQueueEntryIDs(AttributeName.STATUS, "Aborted").isEmpty());
+        assertEquals(1, index.getQueueEntryIDs(AttributeName.JOBID, "Job1").size());
+    }
+
+    public void testNotIndexed() {
+        assertTrue(QueueEntryIndex.isIndexed(AttributeName.JOBID));
+        assertFalse(QueueEntryIndex.isIndexed(AttributeName.PRIORITY));
+        try {
+            new QueueEntryIndex().getQueueEntryIDs(AttributeName.PRIORITY, "50");
+            fail("Priority is not indexed");
+        } catch (IllegalArgumentException iae) {
+        }
+    }
+
+    private QueueEntryRecord createRecord(String id, String jobId, String jobPartId) {
+        JDFQueueEntry qe = createQueueEntry(id, 50,
+            JDFQueueEntry.EnumQueueEntryStatus.Waiting, 0);
+        qe.setJobID(jobId);
+        qe.setJobPartID(jobPartId);
+        qe.setDeviceID("Elk");
+        return new QueueEntryRecord(qe);
+    }
+}
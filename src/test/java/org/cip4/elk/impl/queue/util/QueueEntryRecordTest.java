@@ -0,0 +1,78 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import org.cip4.elk.impl.queue.QueueTestCase;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.core.JDFDoc;
+import org.cip4.jdflib.jmf.JDFQueue;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+public class QueueEntryRecordTest extends QueueTestCase {
+
+    public void testRoundTrip() {
+        JDFQueueEntry qe = createQueueEntry();
+        QueueEntryRecord record = new QueueEntryRecord(qe);
+        assertEquals("1", record.getQueueEntryID());
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Waiting, record
+                .getQueueEntryStatus());
+        assertEquals(80, record.getPriority());
+        assertEquals(qe.getSubmissionTime().getTimeInMillis(), record
+                .getSubmissionTimeMillis());
+        assertEquals("Job1", record.getJobID());
+        // All attributes and child elements are kept
+        JDFQueueEntry copy = record.toQueueEntry();
+        assertNotSame(qe.getOwnerDocument(), copy.getOwnerDocument());
+        assertEquals(qe.toXML(), copy.toXML());
+        // Each element is owned by a new document
+        assertNotSame(copy.getOwnerDocument(), record.toQueueEntry()
+                .getOwnerDocument());
+    }
+
+    public void testAppendTo() {
+        JDFQueue queue = (JDFQueue) new JDFDoc(ElementName.QUEUE).getRoot();
+        QueueEntryRecord record = new QueueEntryRecord(createQueueEntry());
+        record.appendTo(queue);
+        record.appendTo(queue);
+        assertEquals(2, queue.getQueueEntryVector().size());
+        assertEquals("Job1", queue.getQueueEntry(1).getJobID());
+    }
+
+    public void testWithQueueEntryStatus() {
+        QueueEntryRecord record = new QueueEntryRecord(createQueueEntry());
+        QueueEntryRecord aborted = record
+                .withQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Aborted);
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Waiting, record
+                .getQueueEntryStatus());
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Aborted, aborted
+                .getQueueEntryStatus());
+        assertEquals(JDFQueueEntry.EnumQueueEntryStatus.Aborted, aborted
+                .toQueueEntry().getQueueEntryStatus());
+        assertEquals(record.getPriority(), aborted.getPriority());
+    }
+
+    public void testMissingAttributes() {
+        JDFQueueEntry qe = (JDFQueueEntry) new JDFDoc(ElementName.QUEUEENTRY)
+                .getRoot();
+        qe.setQueueEntryID("2");
+        QueueEntryRecord record = new QueueEntryRecord(qe);
+        assertEquals(QueueEntryRecord.NO_SUBMISSION_TIME, record
+                .getSubmissionTimeMillis());
+        assertNull(record.getJobID());
+        assertEquals(qe.toXML(), record.toQueueEntry().toXML());
+    }
+
+    private JDFQueueEntry createQueueEntry() {
+        JDFQueueEntry qe = createQueueEntry("1", 80,
+            JDFQueueEntry.EnumQueueEntryStatus.Waiting, System.currentTimeMillis());
+        qe.setJobID("Job1");
+        qe.setJobPartID("Part1");
+        qe.setDeviceID("Elk");
+        qe.setAttribute("DescriptiveName", "Brochure");
+        qe.appendPart().setAttribute("SheetName", "S1");
+        qe.appendPart().setAttribute("SheetName", "S2");
+        qe.appendComment().setText("A comment");
+        return qe;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import java.util.List;
+
+import org.cip4.elk.impl.queue.QueueTestCase;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+public class QueueHistoryTest extends QueueTestCase {
+
+    public void testUpdate() {
+        QueueHistory history = new QueueHistory();
+        history.update(createRecord("1", 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, 0), 0);
+        assertEquals(0, history.size());
+        history.update(createRecord("1", 50, JDFQueueEntry.EnumQueueEntryStatus.Completed, 0), 10);
+        history.update(createRecord("2", 50, JDFQueueEntry.EnumQueueEntryStatus.Aborted, 0), 20);
+        assertEquals(2, history.size());
+        // A queue entry that is resubmitted is active again
+        history.update(createRecord("2", 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, 0), 30);
+        assertEquals(1, history.size());
+        history.remove("1");
+        assertEquals(0, history.size());
+    }
+
+    public void testGetEvictableQueueEntryIDs() {
+        QueueHistory history = new QueueHistory();
+        history.update(createRecord("1", 50, JDFQueueEntry.EnumQueueEntryStatus.Completed, 0), 10);
+        history.update(createRecord("2", 50, JDFQueueEntry.EnumQueueEntryStatus.Aborted, 0), 20);
+        history.update(createRecord("3", 50, JDFQueueEntry.EnumQueueEntryStatus.Completed, 0), 30);
+        // The finish time is not changed by later updates
+        history.update(createRecord("1", 50, JDFQueueEntry.EnumQueueEntryStatus.Completed, 0), 40);
+        assertTrue(history.getEvictableQueueEntryIDs(-1, -1, 100).isEmpty());
+        List ids = history.getEvictableQueueEntryIDs(1, -1, 100);
+        assertEquals(2, ids.size());
+        assertEquals("1", ids.get(0));
+        assertEquals("2", ids.get(1));
+        ids = history.getEvictableQueueEntryIDs(-1, 75, 100);
+        assertEquals(2, ids.size());
+        assertEquals(3, history.getEvictableQueueEntryIDs(0, 75, 100).size());
+    }
+}
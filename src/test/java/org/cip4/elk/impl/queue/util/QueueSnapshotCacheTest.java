@@ -0,0 +1,63 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import org.cip4.elk.ElkTestCase;
+import org.cip4.jdflib.auto.JDFAutoQueueFilter.EnumQueueEntryDetails;
+import org.cip4.jdflib.core.ElementName;
+import org.cip4.jdflib.jmf.JDFQueue;
+import org.cip4.jdflib.jmf.JDFQueueFilter;
+
+public class QueueSnapshotCacheTest extends ElkTestCase {
+
+    public void testIsCacheable() {
+        assertTrue(QueueSnapshotCache.isCacheable(null));
+        JDFQueueFilter filter = createFilter(EnumQueueEntryDetails.Brief);
+        assertTrue(QueueSnapshotCache.isCacheable(filter));
+        filter.setQueueEntryDetails(EnumQueueEntryDetails.None);
+        assertTrue(QueueSnapshotCache.isCacheable(filter));
+        filter.setQueueEntryDetails(EnumQueueEntryDetails.JobPhase);
+        assertFalse(QueueSnapshotCache.isCacheable(filter));
+        filter.setQueueEntryDetails(EnumQueueEntryDetails.JDF);
+        assertFalse(QueueSnapshotCache.isCacheable(filter));
+    }
+
+    public void testGetKey() {
+        JDFQueueFilter f1 = createFilter(EnumQueueEntryDetails.Brief);
+        JDFQueueFilter f2 = createFilter(EnumQueueEntryDetails.Brief);
+        assertEquals(QueueSnapshotCache.getKey(f1), QueueSnapshotCache.getKey(f2));
+        f2.setMaxEntries(2);
+        assertFalse(QueueSnapshotCache.getKey(f1).equals(
+            QueueSnapshotCache.getKey(f2)));
+    }
+
+    public void testGetSnapshot() {
+        QueueSnapshotCache cache = new QueueSnapshotCache();
+        JDFQueue queue = (JDFQueue) createJDFElement(ElementName.QUEUE);
+        assertNull(cache.getSnapshot("key", 1));
+        cache.putSnapshot("key", 1, queue);
+        assertSame(queue, cache.getSnapshot("key", 1));
+        // Stale snapshots are dropped
+        assertNull(cache.getSnapshot("key", 2));
+        assertEquals(0, cache.size());
+    }
+
+    public void testMaxSnapshots() {
+        QueueSnapshotCache cache = new QueueSnapshotCache(2);
+        JDFQueue queue = (JDFQueue) createJDFElement(ElementName.QUEUE);
+        cache.putSnapshot("a", 1, queue);
+        cache.putSnapshot("b", 1, queue);
+        cache.putSnapshot("b", 1, queue);
+        assertEquals(2, cache.size());
+        cache.putSnapshot("c", 1, queue);
+        assertEquals(1, cache.size());
+        assertSame(queue, cache.getSnapshot("c", 1));
+    }
+
+    private JDFQueueFilter createFilter(EnumQueueEntryDetails details) {
+        JDFQueueFilter filter = (JDFQueueFilter) createJDFElement(ElementName.QUEUEFILTER);
+        filter.setQueueEntryDetails(details);
+        return filter;
+    }
+}
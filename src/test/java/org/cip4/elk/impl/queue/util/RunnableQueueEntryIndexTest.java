@@ -0,0 +1,67 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.queue.util;
+
+import org.cip4.elk.impl.queue.QueueTestCase;
+import org.cip4.jdflib.jmf.JDFQueueEntry;
+
+public class RunnableQueueEntryIndexTest extends QueueTestCase {
+
+    private long _time = System.currentTimeMillis();
+
+    public void testEmptyIndex() {
+        RunnableQueueEntryIndex index = new RunnableQueueEntryIndex();
+        assertNull(index.getFirstQueueEntryID());
+        assertEquals(0, index.size());
+        assertFalse(index.remove("1"));
+    }
+
+    public void testOrderByPriorityAndSubmissionTime() {
+        RunnableQueueEntryIndex index = new RunnableQueueEntryIndex();
+        index.update(createQueueEntry("1", 50, JDFQueueEntry.EnumQueueEntryStatus.Waiting, nextSubmissionTime()));
+        index.update(createQueueEntry("2", 80, JDFQueueEntry.EnumQueueEntryStatus.Waiting, nextSubmissionTime()));
+        index.update(createQueueEntry("3", 80, JDFQueueEntry.EnumQueueEntryStatus.Waiting, nextSubmissionTime()));
+        assertEquals(3, index.size());
+        // Highest priority first, then earliest submission time
+        assertEquals("2", index.getFirstQueueEntryID());
+        index.remove("2");
+        assertEquals("3", index.getFirstQueueEntryID());
+        index.remove("3");
+        assertEquals("1", index.getFirstQueueEntryID());
+    }
+
+    public void testUpdateStatus() {
+        RunnableQueueEntryIndex index = new RunnableQueueEntryIndex();
+        JDFQueueEntry qe1 = createQueueEntry("1", 90, JDFQueueEntry.EnumQueueEntryStatus.Waiting, nextSubmissionTime());
+        JDFQueueEntry qe2 = createQueueEntry("2", 10, JDFQueueEntry.EnumQueueEntryStatus.Held, nextSubmissionTime());
+        index.update(qe1);
+        index.update(qe2);
+        assertEquals(1, index.size());
+        assertFalse(index.contains("2"));
+        // Running entries are no longer runnable
+        qe1.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Running);
+        index.update(qe1);
+        assertNull(index.getFirstQueueEntryID());
+        // Released entries become runnable
+        qe2.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Waiting);
+        index.update(qe2);
+        assertEquals("2", index.getFirstQueueEntryID());
+        // Changing the priority repositions the entry
+        qe1.setQueueEntryStatus(JDFQueueEntry.EnumQueueEntryStatus.Waiting);
+        qe1.setPriority(5);
+        index.update(qe1);
+        assertEquals(2, index.size());
+        assertEquals("2", index.getFirstQueueEntryID());
+        index.clear();
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Each entry is submitted one second after the previous one.
+     */
+    private long nextSubmissionTime() {
+        _time += 1000;
+        return _time;
+    }
+}
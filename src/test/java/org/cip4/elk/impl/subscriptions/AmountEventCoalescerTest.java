@@ -0,0 +1,118 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.subscriptions;
+
+import java.util.List;
+
+import org.cip4.elk.ElkEvent;
+import org.cip4.elk.ElkTestCase;
+import org.cip4.elk.device.process.Process;
+import org.cip4.elk.device.process.ProcessAmountEvent;
+import org.cip4.elk.impl.device.process.ApprovalProcess;
+
+public class AmountEventCoalescerTest extends ElkTestCase {
+
+    private static final int[] NO_STEPS = new int[0];
+
+    private Process _process;
+    private AmountEventCoalescer _coalescer;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        _process = new ApprovalProcess(null, null, null, null, null);
+        _coalescer = new AmountEventCoalescer();
+    }
+
+    public void testInterval() {
+        _coalescer.setInterval(1000);
+        assertPassed(1, NO_STEPS, 0);
+        assertWithheld(2, NO_STEPS, 500);
+        // Unchanged amounts are dropped
+        assertWithheld(2, NO_STEPS, 1000);
+        assertPassed(3, NO_STEPS, 1000);
+        assertWithheld(4, NO_STEPS, 1999);
+        assertPassed(5, NO_STEPS, 2000);
+    }
+
+    public void testDelta() {
+        _coalescer.setInterval(0);
+        _coalescer.setDelta(10);
+        assertPassed(1, NO_STEPS, 0);
+        assertWithheld(10, NO_STEPS, 0);
+        assertPassed(11, NO_STEPS, 0);
+        // A lower amount starts a new job
+        assertPassed(1, NO_STEPS, 0);
+    }
+
+    public void testRepeatStep() {
+        _coalescer.setInterval(60000);
+        int[] steps = new int[] { 7, 10 };
+        int passed = 0;
+        for (int amount = 1; amount <= 100; amount++) {
+            if (_coalescer.coalesce(createEvent(amount), steps, amount) != null) {
+                passed++;
+            }
+        }
+        // The first event and every multiple of 7 or 10
+        assertEquals(1 + 14 + 10 - 1, passed);
+    }
+
+    public void testNoCoalescing() {
+        _coalescer.setInterval(0);
+        _coalescer.setDelta(0);
+        for (int amount = 1; amount <= 10; amount++) {
+            assertPassed(amount, NO_STEPS, 0);
+        }
+    }
+
+    public void testFlush() {
+        assertPassed(1, NO_STEPS, 0);
+        assertWithheld(2, NO_STEPS, 0);
+        assertWithheld(3, NO_STEPS, 0);
+        List withheld = _coalescer.flush(_process, 0);
+        assertEquals(1, withheld.size());
+        assertEquals(3, ((ProcessAmountEvent) withheld.get(0)).getAmount());
+        assertEquals(0, _coalescer.flush(_process, 0).size());
+        // The next event after a flush is passed on
+        assertPassed(3, NO_STEPS, 0);
+    }
+
+    public void testFlushForwardingProcess() {
+        Process otherLane = new ApprovalProcess(null, null, null, null, null);
+        Process pool = new ApprovalProcess(null, null, null, null, null);
+        assertNotNull(_coalescer.coalesce(createEvent(otherLane, 1), NO_STEPS, 0));
+        assertNull(_coalescer.coalesce(createEvent(otherLane, 5), NO_STEPS, 0));
+        // Flushing another lane leaves this lane's state alone
+        assertEquals(1, _coalescer.flush(otherLane, 0).size());
+        assertPassed(1, NO_STEPS, 0);
+        assertWithheld(2, NO_STEPS, 0);
+        assertNotNull(_coalescer.coalesce(createEvent(otherLane, 1), NO_STEPS, 0));
+        assertNull(_coalescer.coalesce(createEvent(otherLane, 6), NO_STEPS, 0));
+        // A status change of the forwarding process flushes every lane
+        assertEquals(2, _coalescer.flush(pool, 0).size());
+        // ...but the lanes keep coalescing
+        assertWithheld(3, NO_STEPS, 0);
+        assertNull(_coalescer.coalesce(createEvent(otherLane, 7), NO_STEPS, 0));
+        List withheld = _coalescer.flush(pool, 0);
+        assertEquals(2, withheld.size());
+        assertEquals(0, _coalescer.flush(pool, 0).size());
+    }
+
+    private void assertPassed(int amount, int[] steps, long now) {
+        assertNotNull(_coalescer.coalesce(createEvent(amount), steps, now));
+    }
+
+    private void assertWithheld(int amount, int[] steps, long now) {
+        assertNull(_coalescer.coalesce(createEvent(amount), steps, now));
+    }
+
+    private ProcessAmountEvent createEvent(int amount) {
+        return createEvent(_process, amount);
+    }
+
+    private ProcessAmountEvent createEvent(Process process, int amount) {
+        return new ProcessAmountEvent(ElkEvent.EVENT, amount, process,
+                "Amount changed event");
+    }
+}
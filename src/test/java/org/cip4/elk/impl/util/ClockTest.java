@@ -0,0 +1,65 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package org.cip4.elk.impl.util;
+
+import org.cip4.elk.ElkTestCase;
+
+public class ClockTest extends ElkTestCase {
+
+    public void testRealTimeClock() throws Exception {
+        Clock clock = new RealTimeClock();
+        long start = System.currentTimeMillis();
+        clock.sleep(50);
+        assertTrue(clock.currentTimeMillis() - start >= 40);
+    }
+
+    public void testAcceleratedClock() throws Exception {
+        AcceleratedClock clock = new AcceleratedClock(1000);
+        long start = clock.currentTimeMillis();
+        long realStart = System.currentTimeMillis();
+        // 10000 sheets at 60 ms per sheet take 600 seconds
+        for (int i = 0; i < 10000; i++) {
+            clock.sleep(60);
+        }
+        long realTime = System.currentTimeMillis() - realStart;
+        assertTrue("Took " + realTime + " ms", realTime < 5000);
+        assertTrue(clock.currentTimeMillis() - start >= 590000);
+        try {
+            clock.setSpeed(0);
+            fail("The speed must be positive");
+        } catch (IllegalArgumentException iae) {
+        }
+    }
+
+    public void testAcceleratedClockSpeedChange() throws Exception {
+        AcceleratedClock clock = new AcceleratedClock(100);
+        Thread.sleep(200);
+        long before = clock.currentTimeMillis();
+        // Slowing down does not turn the clock back by the 20 seconds that
+        // have passed
+        clock.setSpeed(1);
+        long after = clock.currentTimeMillis();
+        assertTrue(after >= before);
+        assertTrue(after - before < 5000);
+        // Speeding up does not move it forwards by them either
+        clock.setSpeed(100);
+        assertTrue(clock.currentTimeMillis() - after < 5000);
+        assertEquals(100, clock.getSpeed(), 0);
+    }
+
+    public void testDiscreteEventClock() throws Exception {
+        DiscreteEventClock clock = new DiscreteEventClock(1000);
+        assertEquals(1000, clock.currentTimeMillis());
+        clock.sleep(5000);
+        clock.sleep(-1);
+        assertEquals(6000, clock.currentTimeMillis());
+        Thread.currentThread().interrupt();
+        try {
+            clock.sleep(1);
+            fail("Interrupted threads may not sleep");
+        } catch (InterruptedException ie) {
+        }
+        assertEquals(6000, clock.currentTimeMillis());
+    }
+}
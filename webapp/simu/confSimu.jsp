@@ -15,9 +15,25 @@
 <div id="simu">
 <h1>Simulation Phases for Conventional Printing</h1>
 <normal>
-Simulation phases are hard coded in the Elk source. To alter the phases take a look into the package org.cip4.elk.simulation. The phases are generated in the ConfSimuHandler class.
+Simulation phases are scripted in simulation scenario files. The scenario files are configured in the ConfSimuHandler bean of the Spring configuration, the default scenario is org/cip4/elk/impl/device/process/simulation/default-scenario.xml.
 </normal>
-<p><c:set var='simu' value='${requestScope.simu}' /> <label>
+<c:set var='simu' value='${requestScope.simu}' />
+<form action="simu" method="post">
+<p><input type="hidden" name="cmd" value="switchScenario" />
+<label>Active scenario:</label> <select name="scenario">
+	<c:forEach var='name' items='${simu.scenarioNames}'>
+		<c:choose>
+			<c:when test='${name == simu.activeScenario.name}'>
+				<option selected="selected">${name}</option>
+			</c:when>
+			<c:otherwise>
+				<option>${name}</option>
+			</c:otherwise>
+		</c:choose>
+	</c:forEach>
+</select> <input type="submit" value="Switch" /> <small>Seed: ${simu.activeScenario.seed}</small></p>
+</form>
+<p><label>
 Phases table:</label><br />
 </p>
 <table border="1" cellspacing="2" cellpadding="5">